@@ -46,6 +46,7 @@ public class ParserOptions {
 	private boolean myAutoContainReferenceTargetsWithNoId = true;
 	private Set<String> myEncodeElementsForSummaryMode = null;
 	private Set<String> myDontEncodeElementsForSummaryMode = null;
+	private boolean myStreamingJsonParse = false;
 
 	/**
 	 * If set to {@literal true} (which is the default), contained resources may be specified by
@@ -324,4 +325,28 @@ public class ParserOptions {
 	public Set<String> getDontEncodeElementsForSummaryMode() {
 		return myDontEncodeElementsForSummaryMode;
 	}
+
+	/**
+	 * @return Returns the value set by {@link #setStreamingJsonParse(boolean)}
+	 * @since 7.6.0
+	 */
+	public boolean isStreamingJsonParse() {
+		return myStreamingJsonParse;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will read the
+	 * raw JSON token stream and build a compact read-only structure directly from it, instead of
+	 * first materializing a full Jackson node tree and then wrapping each node as it is visited.
+	 * This avoids holding the Jackson tree in memory while parsing large documents such as
+	 * transaction Bundles. Parse results and errors are the same in both modes.
+	 *
+	 * @since 7.6.0
+	 */
+	@SuppressWarnings({"UnusedReturnValue"})
+	@Nonnull
+	public ParserOptions setStreamingJsonParse(boolean theStreamingJsonParse) {
+		myStreamingJsonParse = theStreamingJsonParse;
+		return this;
+	}
 }
@@ -44,14 +44,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -79,6 +84,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	private final Object myRegistryMutex = new Object();
 	private final Class<POINTCUT> myPointcutType;
 	private volatile EnumSet<POINTCUT> myRegisteredPointcuts;
+	/**
+	 * Immutable, ordered snapshot of the invokers for each pointcut, rebuilt whenever the
+	 * registry changes so that hooks can be dispatched without locking or copying
+	 */
+	private volatile Map<POINTCUT, List<BaseInvoker>> myInvokerSnapshots;
+
 	private String myName;
 	private boolean myWarnOnInterceptorWithNoHooks = true;
 
@@ -222,6 +233,15 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		EnumSet<POINTCUT> registeredPointcuts = EnumSet.noneOf(myPointcutType);
 		registeredPointcuts.addAll(myAnonymousInvokers.keySet());
 		registeredPointcuts.addAll(myGlobalInvokers.keySet());
+
+		Map<POINTCUT, List<BaseInvoker>> invokerSnapshots = new EnumMap<>(myPointcutType);
+		for (POINTCUT nextPointcut : registeredPointcuts) {
+			List<BaseInvoker> invokers =
+					union(myGlobalInvokers.get(nextPointcut), myAnonymousInvokers.get(nextPointcut), null);
+			invokerSnapshots.put(nextPointcut, Collections.unmodifiableList(new ArrayList<>(invokers)));
+		}
+
+		myInvokerSnapshots = invokerSnapshots;
 		myRegisteredPointcuts = registeredPointcuts;
 	}
 
@@ -287,16 +307,19 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 	}
 
 	private Object doCallHooks(POINTCUT thePointcut, HookParams theParams, Object theRetVal) {
-		// use new list for loop to avoid ConcurrentModificationException in case invoker gets added while looping
-		List<BaseInvoker> invokers = new ArrayList<>(getInvokersForPointcut(thePointcut));
+		// the snapshot is immutable, so invokers being added while looping don't affect this call
+		List<BaseInvoker> invokers = getInvokersForPointcut(thePointcut);
+		Class<?> pointcutReturnType = thePointcut.getReturnType();
+		boolean booleanReturnType = pointcutReturnType.equals(getBooleanReturnType());
 
 		/*
 		 * Call each hook in order
 		 */
-		for (BaseInvoker nextInvoker : invokers) {
+		//noinspection ForLoopReplaceableByForEach - avoid allocating an iterator on this hot path
+		for (int i = 0; i < invokers.size(); i++) {
+			BaseInvoker nextInvoker = invokers.get(i);
 			Object nextOutcome = nextInvoker.invoke(theParams);
-			Class<?> pointcutReturnType = thePointcut.getReturnType();
-			if (pointcutReturnType.equals(getBooleanReturnType())) {
+			if (booleanReturnType) {
 				Boolean nextOutcomeAsBoolean = (Boolean) nextOutcome;
 				if (Boolean.FALSE.equals(nextOutcomeAsBoolean)) {
 					ourLog.trace("callHooks({}) for invoker({}) returned false", thePointcut, nextInvoker);
@@ -325,19 +348,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 
 	/**
 	 * Returns an ordered list of invokers for the given pointcut. Note that
-	 * a new and stable list is returned to.. do whatever you want with it.
+	 * the returned list is an immutable snapshot which will not change
+	 * even if interceptors are registered or unregistered while it is in use.
 	 */
 	private List<BaseInvoker> getInvokersForPointcut(POINTCUT thePointcut) {
-		List<BaseInvoker> invokers;
-
-		synchronized (myRegistryMutex) {
-			List<BaseInvoker> globalInvokers = myGlobalInvokers.get(thePointcut);
-			List<BaseInvoker> anonymousInvokers = myAnonymousInvokers.get(thePointcut);
-			List<BaseInvoker> threadLocalInvokers = null;
-			invokers = union(globalInvokers, anonymousInvokers, threadLocalInvokers);
-		}
-
-		return invokers;
+		List<BaseInvoker> invokers = myInvokerSnapshots.get(thePointcut);
+		return invokers != null ? invokers : Collections.emptyList();
 	}
 
 	/**
@@ -489,6 +505,12 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 		private final Class<?>[] myParameterTypes;
 		private final int[] myParameterIndexes;
 		private final POINTCUT myPointcut;
+		/**
+		 * Direct handle to the hook method, bound to the interceptor and adapted to take an
+		 * argument array. This is <code>null</code> if the method could not be unreflected,
+		 * in which case the hook is called using reflection.
+		 */
+		private final MethodHandle myMethodHandle;
 
 		/**
 		 * Constructor
@@ -524,6 +546,22 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			}
 
 			myMethod.setAccessible(true);
+			myMethodHandle = createMethodHandle(theInterceptor, theHookMethod);
+		}
+
+		@Nullable
+		private MethodHandle createMethodHandle(Object theInterceptor, Method theHookMethod) {
+			try {
+				MethodHandle retVal = MethodHandles.lookup().unreflect(theHookMethod);
+				if (!Modifier.isStatic(theHookMethod.getModifiers())) {
+					retVal = retVal.bindTo(theInterceptor);
+				}
+				return retVal.asSpreader(Object[].class, myParameterTypes.length)
+						.asType(MethodType.methodType(Object.class, Object[].class));
+			} catch (IllegalAccessException | RuntimeException e) {
+				ourLog.debug("Unable to create method handle for hook method {}, using reflection", theHookMethod, e);
+				return null;
+			}
 		}
 
 		@Override
@@ -556,29 +594,34 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 			}
 
 			// Invoke the method
+			Throwable targetException;
 			try {
 				return invokeMethod(args);
 			} catch (InvocationTargetException e) {
-				Throwable targetException = e.getTargetException();
-				if (myPointcut.isShouldLogAndSwallowException(targetException)) {
-					ourLog.error("Exception thrown by interceptor: " + targetException.toString(), targetException);
-					return null;
-				}
-
-				if (targetException instanceof RuntimeException) {
-					throw ((RuntimeException) targetException);
-				} else {
-					throw new InternalErrorException(
-							Msg.code(1910) + "Failure invoking interceptor for pointcut(s) " + getPointcut(),
-							targetException);
-				}
-			} catch (Exception e) {
+				targetException = e.getTargetException();
+			} catch (IllegalAccessException e) {
 				throw new InternalErrorException(Msg.code(1911) + e);
+			} catch (Throwable e) {
+				// The method handle throws the hook method's exceptions directly
+				targetException = e;
+			}
+
+			if (myPointcut.isShouldLogAndSwallowException(targetException)) {
+				ourLog.error("Exception thrown by interceptor: " + targetException.toString(), targetException);
+				return null;
+			}
+
+			if (targetException instanceof RuntimeException) {
+				throw ((RuntimeException) targetException);
+			} else {
+				throw new InternalErrorException(
+						Msg.code(1910) + "Failure invoking interceptor for pointcut(s) " + getPointcut(),
+						targetException);
 			}
 		}
 
 		@WithSpan("hapifhir.interceptor")
-		private Object invokeMethod(Object[] args) throws InvocationTargetException, IllegalAccessException {
+		private Object invokeMethod(Object[] args) throws Throwable {
 			// Add attributes to the opentelemetry span
 			Span currentSpan = Span.current();
 			currentSpan.setAttribute(OTEL_INTERCEPTOR_POINTCUT_NAME_ATT_KEY, myPointcut.name());
@@ -587,6 +630,9 @@ public abstract class BaseInterceptorService<POINTCUT extends Enum<POINTCUT> & I
 					myMethod.getDeclaringClass().getName());
 			currentSpan.setAttribute(OTEL_INTERCEPTOR_METHOD_NAME_ATT_KEY, myMethod.getName());
 
+			if (myMethodHandle != null) {
+				return myMethodHandle.invokeExact(args);
+			}
 			return myMethod.invoke(getInterceptor(), args);
 		}
 	}
@@ -236,7 +236,8 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
-		JsonLikeStructure jsonStructure = new JacksonStructure();
+		JsonLikeStructure jsonStructure = new JacksonStructure()
+				.setStreamingParse(getContext().getParserOptions().isStreamingJsonParse());
 		jsonStructure.load(theReader);
 
 		T retVal = doParseResource(theResourceType, jsonStructure);
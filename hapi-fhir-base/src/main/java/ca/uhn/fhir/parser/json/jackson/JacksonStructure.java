@@ -24,21 +24,26 @@ import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.json.BaseJsonLikeArray;
 import ca.uhn.fhir.parser.json.BaseJsonLikeObject;
 import ca.uhn.fhir.parser.json.BaseJsonLikeValue;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ScalarType;
+import ca.uhn.fhir.parser.json.BaseJsonLikeValue.ValueType;
 import ca.uhn.fhir.parser.json.BaseJsonLikeWriter;
 import ca.uhn.fhir.parser.json.JsonLikeStructure;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.DecimalNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ClassUtil;
 
 import java.io.IOException;
 import java.io.PushbackReader;
@@ -47,6 +52,7 @@ import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -58,6 +64,19 @@ public class JacksonStructure implements JsonLikeStructure {
 	private ROOT_TYPE rootType = null;
 	private JsonNode nativeRoot = null;
 	private JsonNode jsonLikeRoot = null;
+	private boolean streamingParse = false;
+	private BaseJsonLikeValue streamedRoot = null;
+
+	/**
+	 * If set to <code>true</code>, {@link #load(Reader, boolean)} reads the JSON token stream
+	 * directly into a compact read-only structure instead of building a Jackson node tree.
+	 *
+	 * @see ca.uhn.fhir.context.ParserOptions#setStreamingJsonParse(boolean)
+	 */
+	public JacksonStructure setStreamingParse(boolean theStreamingParse) {
+		this.streamingParse = theStreamingParse;
+		return this;
+	}
 
 	public void setNativeObject(ObjectNode objectNode) {
 		this.rootType = ROOT_TYPE.OBJECT;
@@ -71,7 +90,7 @@ public class JacksonStructure implements JsonLikeStructure {
 
 	@Override
 	public JsonLikeStructure getInstance() {
-		return new JacksonStructure();
+		return new JacksonStructure().setStreamingParse(streamingParse);
 	}
 
 	@Override
@@ -110,44 +129,137 @@ public class JacksonStructure implements JsonLikeStructure {
 						+ (char) nextInt + "' (must be '{')");
 			}
 
-			if (nextInt == '{') {
-				setNativeObject((ObjectNode) OBJECT_MAPPER.readTree(pbr));
-			} else {
-				setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
+			if (!streamingParse) {
+				if (nextInt == '{') {
+					setNativeObject((ObjectNode) OBJECT_MAPPER.readTree(pbr));
+				} else {
+					setNativeArray((ArrayNode) OBJECT_MAPPER.readTree(pbr));
+				}
 			}
 		} catch (Exception e) {
-			String message;
-			if (e instanceof JsonProcessingException) {
-				/*
-				 * Currently there is no way of preventing Jackson from adding this
-				 * annoying REDACTED message from certain messages we get back from
-				 * the parser, so we just manually strip them. Hopefully Jackson
-				 * will accept this request at some point:
-				 * https://github.com/FasterXML/jackson-core/issues/1158
-				 */
-				JsonProcessingException jpe = (JsonProcessingException) e;
-				StringBuilder messageBuilder = new StringBuilder();
-				String originalMessage = jpe.getOriginalMessage();
-				originalMessage = originalMessage.replace(
-						"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
-				messageBuilder.append(originalMessage);
-				if (jpe.getLocation() != null) {
-					messageBuilder.append("\n at [");
-					jpe.getLocation().appendOffsetDescription(messageBuilder);
-					messageBuilder.append("]");
-				}
-				message = messageBuilder.toString();
+			throw newParseFailure(e);
+		}
+
+		/*
+		 * The streaming parser reports structural problems with its own error codes, so only
+		 * failures coming from Jackson itself (including trailing content) are translated here
+		 */
+		if (streamingParse) {
+			try {
+				loadStreaming(pbr);
+			} catch (IOException e) {
+				throw newParseFailure(e);
+			}
+		}
+	}
+
+	private static DataFormatException newParseFailure(Exception e) {
+		String message;
+		if (e instanceof JsonProcessingException) {
+			/*
+			 * Currently there is no way of preventing Jackson from adding this
+			 * annoying REDACTED message from certain messages we get back from
+			 * the parser, so we just manually strip them. Hopefully Jackson
+			 * will accept this request at some point:
+			 * https://github.com/FasterXML/jackson-core/issues/1158
+			 */
+			JsonProcessingException jpe = (JsonProcessingException) e;
+			StringBuilder messageBuilder = new StringBuilder();
+			String originalMessage = jpe.getOriginalMessage();
+			originalMessage = originalMessage.replace(
+					"Source: REDACTED (`StreamReadFeature.INCLUDE_SOURCE_IN_LOCATION` disabled); ", "");
+			messageBuilder.append(originalMessage);
+			if (jpe.getLocation() != null) {
+				messageBuilder.append("\n at [");
+				jpe.getLocation().appendOffsetDescription(messageBuilder);
+				messageBuilder.append("]");
+			}
+			message = messageBuilder.toString();
+		} else {
+			message = e.getMessage();
+		}
+
+		if (message.startsWith("Unexpected char 39")) {
+			return new DataFormatException(
+					Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
+							+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
+					e);
+		}
+		return new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
+	}
+
+	private void loadStreaming(Reader theReader) throws IOException {
+		try (JsonParser parser = OBJECT_MAPPER.createParser(theReader)) {
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				rootType = ROOT_TYPE.OBJECT;
 			} else {
-				message = e.getMessage();
+				rootType = ROOT_TYPE.ARRAY;
+			}
+			streamedRoot = readStreamedValue(parser, token);
+
+			// Report trailing content exactly like ObjectMapper#readTree does in the non-streaming mode
+			JsonToken trailing = parser.nextToken();
+			if (trailing != null) {
+				throw MismatchedInputException.from(
+						parser,
+						JsonNode.class,
+						String.format(
+								"Trailing token (of type %s) found after value (bound as %s): not allowed as per `DeserializationFeature.FAIL_ON_TRAILING_TOKENS`",
+								trailing, ClassUtil.nameOf(JsonNode.class)));
 			}
+		}
+	}
 
-			if (message.startsWith("Unexpected char 39")) {
-				throw new DataFormatException(
-						Msg.code(1860) + "Failed to parse JSON encoded FHIR content: " + message + " - "
-								+ "This may indicate that single quotes are being used as JSON escapes where double quotes are required",
-						e);
+	/**
+	 * Reads a single value starting at the current token. Object and array members are consumed
+	 * recursively, so on return the parser is positioned on the last token of the value.
+	 */
+	private static BaseJsonLikeValue readStreamedValue(JsonParser theParser, JsonToken theToken) throws IOException {
+		if (theToken == null) {
+			throw new DataFormatException(
+					Msg.code(2776) + "Failed to parse JSON encoded FHIR content: Unexpected end of content");
+		}
+		switch (theToken) {
+			case START_OBJECT: {
+				StreamedJsonObject retVal = new StreamedJsonObject();
+				for (JsonToken next = theParser.nextToken();
+						next != JsonToken.END_OBJECT;
+						next = theParser.nextToken()) {
+					String name = theParser.currentName();
+					retVal.put(name, readStreamedValue(theParser, theParser.nextToken()));
+				}
+				return retVal;
+			}
+			case START_ARRAY: {
+				StreamedJsonArray retVal = new StreamedJsonArray();
+				for (JsonToken next = theParser.nextToken();
+						next != JsonToken.END_ARRAY;
+						next = theParser.nextToken()) {
+					retVal.add(readStreamedValue(theParser, next));
+				}
+				retVal.trimToSize();
+				return retVal;
 			}
-			throw new DataFormatException(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: " + message, e);
+			case VALUE_STRING:
+				return new StreamedJsonScalar(ScalarType.STRING, theParser.getText(), null);
+			case VALUE_NUMBER_INT: {
+				Number value = theParser.getNumberValue();
+				return new StreamedJsonScalar(ScalarType.NUMBER, value.toString(), value);
+			}
+			case VALUE_NUMBER_FLOAT: {
+				BigDecimal value = theParser.getDecimalValue();
+				return new StreamedJsonScalar(ScalarType.NUMBER, value.toPlainString(), value);
+			}
+			case VALUE_TRUE:
+				return BaseJsonLikeValue.TRUE;
+			case VALUE_FALSE:
+				return BaseJsonLikeValue.FALSE;
+			case VALUE_NULL:
+				return BaseJsonLikeValue.NULL;
+			default:
+				throw new DataFormatException(
+						Msg.code(2777) + "Failed to parse JSON encoded FHIR content: Unexpected token " + theToken);
 		}
 	}
 
@@ -171,6 +283,9 @@ public class JacksonStructure implements JsonLikeStructure {
 	@Override
 	public BaseJsonLikeObject getRootObject() throws DataFormatException {
 		if (rootType == ROOT_TYPE.OBJECT) {
+			if (streamedRoot != null) {
+				return streamedRoot.getAsObject();
+			}
 			if (null == jsonLikeRoot) {
 				jsonLikeRoot = nativeRoot;
 			}
@@ -213,6 +328,126 @@ public class JacksonStructure implements JsonLikeStructure {
 		}
 	}
 
+	/**
+	 * Object produced by the streaming load. Members are held in insertion order in parallel
+	 * arrays, which is considerably smaller than a map for the small objects typical of FHIR
+	 * content. As with {@link ObjectNode}, a repeated key replaces the earlier value.
+	 */
+	private static class StreamedJsonObject extends BaseJsonLikeObject {
+		private String[] keys = new String[4];
+		private BaseJsonLikeValue[] values = new BaseJsonLikeValue[4];
+		private int size;
+
+		void put(String theKey, BaseJsonLikeValue theValue) {
+			int index = indexOf(theKey);
+			if (index != -1) {
+				values[index] = theValue;
+				return;
+			}
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = theKey;
+			values[size] = theValue;
+			size++;
+		}
+
+		private int indexOf(String theKey) {
+			for (int i = 0; i < size; i++) {
+				if (keys[i].equals(theKey)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public Iterator<String> keyIterator() {
+			return Arrays.asList(keys).subList(0, size).iterator();
+		}
+
+		@Override
+		public BaseJsonLikeValue get(String key) {
+			int index = indexOf(key);
+			return index != -1 ? values[index] : null;
+		}
+	}
+
+	private static class StreamedJsonArray extends BaseJsonLikeArray {
+		private final ArrayList<BaseJsonLikeValue> values = new ArrayList<>();
+
+		void add(BaseJsonLikeValue theValue) {
+			values.add(theValue);
+		}
+
+		void trimToSize() {
+			values.trimToSize();
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public int size() {
+			return values.size();
+		}
+
+		@Override
+		public BaseJsonLikeValue get(int index) {
+			return values.get(index);
+		}
+	}
+
+	private static class StreamedJsonScalar extends BaseJsonLikeValue {
+		private final ScalarType dataType;
+		private final String text;
+		private final Number number;
+
+		StreamedJsonScalar(ScalarType theDataType, String theText, Number theNumber) {
+			this.dataType = theDataType;
+			this.text = theText;
+			this.number = theNumber;
+		}
+
+		@Override
+		public ValueType getJsonType() {
+			return ValueType.SCALAR;
+		}
+
+		@Override
+		public ScalarType getDataType() {
+			return dataType;
+		}
+
+		@Override
+		public Object getValue() {
+			return number != null ? number : text;
+		}
+
+		@Override
+		public Number getAsNumber() {
+			return number;
+		}
+
+		@Override
+		public String getAsString() {
+			return text;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
 	private static class EntryOrderedSet<T> extends AbstractSet<T> {
 		private final transient ArrayList<T> data;
 
@@ -150,6 +150,43 @@ public class HapiExtensions {
 	public static final String EX_SEND_DELETE_MESSAGES =
 			"http://hapifhir.io/fhir/StructureDefinition/subscription-send-delete-messages";
 
+	/**
+	 * This extension URL enables batched delivery for a REST HOOK subscription, and
+	 * indicates the maximum number of notifications that will be combined into
+	 * a single request to the endpoint. Notifications are combined into a
+	 * <code>history</code> Bundle (or a single <code>subscription-notification</code>
+	 * Bundle for topic subscriptions), even when only one notification arrived
+	 * within the window. Values of 1 or less disable batching.
+	 * <p>
+	 * Each notification waiting in an open batch occupies one delivery channel
+	 * consumer, and at most 10 consumers are used per subscription, so with the
+	 * default in-memory channel a batch holds at most 10 notifications.
+	 * </p>
+	 * <p>
+	 * This extension should be of type <code>integer</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE =
+			"http://hapifhir.io/fhir/StructureDefinition/subscription-resthook-batch-max-size";
+
+	/**
+	 * This extension URL indicates how long (in milliseconds) a batched REST HOOK
+	 * subscription will wait for additional notifications before delivering a batch
+	 * which is not yet full. Only used if {@link #EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE}
+	 * is also present.
+	 * <p>
+	 * This extension should be of type <code>integer</code> and should be
+	 * placed on the <code>Subscription.channel</code> element.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS =
+			"http://hapifhir.io/fhir/StructureDefinition/subscription-resthook-batch-window-millis";
+
 	/**
 	 * This entension allows subscriptions to be marked as cross partition and with correct settings, listen to incoming resources from all partitions.
 	 */
@@ -23,6 +23,7 @@ import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
 import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
 import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.model.api.annotation.Description;
@@ -380,6 +381,30 @@ public class ParametersUtil {
 		addPart(theContext, theParameter, theName, value);
 	}
 
+	/**
+	 * Adds a part holding a whole number which may not fit in an <code>integer</code>. The part is an
+	 * <code>integer64</code> in R5 and later. Earlier versions have no such type, so the part is an
+	 * <code>integer</code> if the value fits in one, and a <code>decimal</code> otherwise.
+	 *
+	 * @since 7.6.0
+	 */
+	public static void addPartInteger64(FhirContext theContext, IBase theParameter, String theName, Long theValue) {
+		if (theContext.getVersion().getVersion().isEqualOrNewerThan(FhirVersionEnum.R5)) {
+			IPrimitiveType<Long> value = (IPrimitiveType<Long>)
+					theContext.getElementDefinition("integer64").newInstance();
+			value.setValue(theValue);
+			addPart(theContext, theParameter, theName, value);
+		} else if (theValue == null
+				|| (theValue >= Integer.MIN_VALUE && theValue <= Integer.MAX_VALUE)) {
+			addPartInteger(theContext, theParameter, theName, theValue != null ? theValue.intValue() : null);
+		} else {
+			IPrimitiveType<BigDecimal> value = (IPrimitiveType<BigDecimal>)
+					theContext.getElementDefinition("decimal").newInstance();
+			value.setValue(BigDecimal.valueOf(theValue));
+			addPart(theContext, theParameter, theName, value);
+		}
+	}
+
 	public static void addPartString(FhirContext theContext, IBase theParameter, String theName, String theValue) {
 		IPrimitiveType<String> value = (IPrimitiveType<String>)
 				theContext.getElementDefinition("string").newInstance();
@@ -16,6 +16,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,6 +25,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -63,6 +65,57 @@ public class InterceptorServiceTest {
 
 	}
 
+	@Test
+	public void testInterceptorThrowsCheckedException() {
+
+		class InterceptorThrowingCheckedException {
+			@Hook(Pointcut.TEST_RB)
+			public void test(String theValue) throws IOException {
+				throw new IOException(theValue);
+			}
+		}
+
+		InterceptorService svc = new InterceptorService();
+		svc.registerInterceptor(new InterceptorThrowingCheckedException());
+
+		InternalErrorException e = assertThrows(InternalErrorException.class, () -> svc.callHooks(Pointcut.TEST_RB, new HookParams("A MESSAGE", "B")));
+		assertThat(e.getMessage()).startsWith(Msg.code(1910));
+		assertInstanceOf(IOException.class, e.getCause());
+		assertEquals("A MESSAGE", e.getCause().getMessage());
+	}
+
+	@Test
+	public void testRegisterInterceptorWhileCallingHooks() {
+
+		class SecondInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			public void test(String theValue0, String theValue1) {
+				myInvocations.add("second " + theValue0 + " " + theValue1);
+			}
+		}
+
+		InterceptorService svc = new InterceptorService();
+		SecondInterceptor secondInterceptor = new SecondInterceptor();
+
+		class FirstInterceptor {
+			@Hook(Pointcut.TEST_RB)
+			public void test(String theValue0, String theValue1) {
+				myInvocations.add("first " + theValue0 + " " + theValue1);
+				svc.registerInterceptor(secondInterceptor);
+			}
+		}
+
+		svc.registerInterceptor(new FirstInterceptor());
+
+		// The interceptor registered during the call only sees the following calls
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("A", "B"));
+		assertThat(myInvocations).containsExactly("first A B");
+
+		myInvocations.clear();
+		svc.callHooks(Pointcut.TEST_RB, new HookParams("C", "D"));
+		assertThat(myInvocations).containsExactly("first C D", "second C D");
+	}
+
 	@Test
 	public void testInterceptorReturnsClass() {
 
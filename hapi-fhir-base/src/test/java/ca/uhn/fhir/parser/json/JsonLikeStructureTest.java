@@ -141,4 +141,30 @@ public class JsonLikeStructureTest {
 		assertEquals(value.getAsString(), "true");
 	}
 
+	@Test
+	public void testJsonAndDataTypesStreaming() {
+		StringReader reader = new StringReader(TEST_JSONTYPES_DATA);
+		JsonLikeStructure jsonStructure = new JacksonStructure().setStreamingParse(true);
+		jsonStructure.load(reader);
+
+		BaseJsonLikeObject rootObject = jsonStructure.getRootObject();
+		assertNotNull(rootObject);
+
+		BaseJsonLikeObject obj = rootObject.get("object-value").getAsObject();
+		assertNotNull(obj);
+		assertEquals("3909-09-20T10:10:10.000-07:00", obj.get("deleted").getAsString());
+
+		BaseJsonLikeArray array = rootObject.get("array-value").getAsArray();
+		assertEquals(2, array.size());
+		assertEquals(BaseJsonLikeValue.ScalarType.NUMBER, array.get(0).getDataType());
+		assertEquals("15250", array.get(1).getAsObject().get("value").getAsString());
+
+		assertEquals(true, rootObject.get("null-value").isNull());
+		assertEquals("A scalar string", rootObject.get("scalar-string").getAsString());
+		assertEquals("11111", rootObject.get("scalar-number").getAsString());
+		assertEquals(11111, rootObject.get("scalar-number").getAsNumber().intValue());
+		assertEquals(BaseJsonLikeValue.ScalarType.BOOLEAN, rootObject.get("scalar-boolean").getDataType());
+		assertEquals("true", rootObject.get("scalar-boolean").getAsString());
+	}
+
 }
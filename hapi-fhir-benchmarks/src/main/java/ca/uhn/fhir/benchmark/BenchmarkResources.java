@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import org.hl7.fhir.r4.model.Address;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.util.UUID;
+
+/**
+ * Builds the representative R4 resources shared by the benchmark suites. Content is
+ * deterministic so that results are comparable between runs and between HAPI versions.
+ */
+public final class BenchmarkResources {
+
+	public static final String LOINC = "http://loinc.org";
+
+	private BenchmarkResources() {}
+
+	public static Patient newPatient(int theIndex) {
+		Patient retVal = new Patient();
+		retVal.setId("Patient/P" + theIndex);
+		retVal.getMeta().addProfile("http://hl7.org/fhir/us/core/StructureDefinition/us-core-patient");
+		retVal.addExtension("http://example.com/ext/race", new StringType("2106-3"));
+		retVal.addIdentifier(
+				new Identifier().setSystem("http://example.com/mrn").setValue("MRN" + theIndex));
+		retVal.addIdentifier(
+				new Identifier().setSystem("http://hl7.org/fhir/sid/us-ssn").setValue("999-00-" + theIndex));
+		retVal.addName(
+				new HumanName().setFamily("Family" + theIndex).addGiven("Given").addGiven("Middle"));
+		retVal.setGender(Enumerations.AdministrativeGender.FEMALE);
+		retVal.setBirthDateElement(new DateType("1970-01-01"));
+		retVal.addAddress(new Address()
+				.addLine("123 Main Street")
+				.setCity("Toronto")
+				.setState("ON")
+				.setPostalCode("M5V 1A1")
+				.setCountry("CA"));
+		retVal.setManagingOrganization(new Reference("Organization/O1"));
+		return retVal;
+	}
+
+	public static Observation newObservation(int theIndex) {
+		Observation retVal = new Observation();
+		retVal.setId("Observation/O" + theIndex);
+		retVal.setStatus(Observation.ObservationStatus.FINAL);
+		retVal.addCategory(new CodeableConcept(
+				new Coding("http://terminology.hl7.org/CodeSystem/observation-category", "vital-signs", null)));
+		retVal.setCode(new CodeableConcept(new Coding(LOINC, "85354-9", "Blood pressure")));
+		retVal.setSubject(new Reference("Patient/P" + theIndex));
+		retVal.setEffective(new DateTimeType("2024-06-01T10:15:00-04:00"));
+		retVal.addComponent()
+				.setCode(new CodeableConcept(new Coding(LOINC, "8480-6", null)))
+				.setValue(new Quantity()
+						.setValue(120)
+						.setUnit("mmHg")
+						.setSystem("http://unitsofmeasure.org")
+						.setCode("mm[Hg]"));
+		retVal.addComponent()
+				.setCode(new CodeableConcept(new Coding(LOINC, "8462-4", null)))
+				.setValue(new Quantity()
+						.setValue(80)
+						.setUnit("mmHg")
+						.setSystem("http://unitsofmeasure.org")
+						.setCode("mm[Hg]"));
+		return retVal;
+	}
+
+	/**
+	 * Creates a transaction Bundle containing the given number of Patient/Observation pairs,
+	 * linked together through <code>urn:uuid:</code> placeholders as a client would send them.
+	 */
+	public static Bundle newTransactionBundle(int thePatientCount) {
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < thePatientCount; i++) {
+			String patientFullUrl = "urn:uuid:" + new UUID(0, i);
+
+			Patient patient = newPatient(i);
+			patient.setId((String) null);
+			retVal.addEntry()
+					.setFullUrl(patientFullUrl)
+					.setResource(patient)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Patient");
+
+			Observation observation = newObservation(i);
+			observation.setId((String) null);
+			observation.setSubject(new Reference(patientFullUrl));
+			retVal.addEntry()
+					.setFullUrl("urn:uuid:" + new UUID(1, i))
+					.setResource(observation)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Observation");
+		}
+		return retVal;
+	}
+}
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.ComboSearchParamType;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.rest.server.util.FhirContextSearchParamRegistry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Search parameter registry backed by the built-in search parameters of the
+ * {@link FhirContext}, with no combo search parameters. This is enough to drive the
+ * full extraction path without a database.
+ */
+public class BenchmarkSearchParamRegistry extends FhirContextSearchParamRegistry {
+
+	public BenchmarkSearchParamRegistry(FhirContext theCtx) {
+		super(theCtx);
+	}
+
+	@Override
+	public List<RuntimeSearchParam> getActiveComboSearchParams(String theResourceName) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<RuntimeSearchParam> getActiveComboSearchParams(
+			String theResourceName, ComboSearchParamType theParamType) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public List<RuntimeSearchParam> getActiveComboSearchParams(String theResourceName, Set<String> theParamNames) {
+		return Collections.emptyList();
+	}
+}
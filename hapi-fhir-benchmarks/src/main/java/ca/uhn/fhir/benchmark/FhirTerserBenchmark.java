@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path evaluation through {@link FhirTerser#getValues(org.hl7.fhir.instance.model.api.IBase, String)}
+ * against a transaction Bundle and a single Observation, for shallow and deep paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FhirTerserBenchmark {
+
+	@Param({
+		"Bundle.entry.request.url",
+		"Bundle.entry.resource.meta.profile",
+		"Observation.code.coding.code",
+		"Observation.component.valueQuantity.value"
+	})
+	private String myPath;
+
+	private FhirTerser myTerser;
+	private IBase myTarget;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		myTerser = FhirContext.forR4().newTerser();
+		if (myPath.startsWith("Bundle.")) {
+			myTarget = BenchmarkResources.newTransactionBundle(100);
+		} else {
+			myTarget = BenchmarkResources.newObservation(0);
+		}
+	}
+
+	@Benchmark
+	public List<IBase> getValues() {
+		return myTerser.getValues(myTarget, myPath);
+	}
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.executor.InterceptorService;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
+import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
+import ca.uhn.fhir.jpa.searchparam.matcher.IndexedSearchParamExtractor;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating subscription-style criteria against an Observation in memory, both when
+ * the matcher extracts the relevant search parameters itself and when they were extracted
+ * ahead of time.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryResourceMatcherBenchmark {
+
+	@Param({
+		"Observation?code=http://loinc.org|85354-9",
+		"Observation?subject=Patient/P0&status=final",
+		"Observation?code=http://loinc.org|8480-6&date=ge2024-01-01"
+	})
+	private String myCriteria;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private InMemoryResourceMatcher myMatcher;
+	private Observation myObservation;
+	private ResourceIndexedSearchParams myIndexedSearchParams;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+		myMatcher = myAppCtx.getBean(InMemoryResourceMatcher.class);
+		myObservation = BenchmarkResources.newObservation(0);
+		myIndexedSearchParams = myAppCtx.getBean(IndexedSearchParamExtractor.class)
+				.extractIndexedSearchParams(myObservation, new SystemRequestDetails());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public InMemoryMatchResult matchWithExtraction() {
+		return myMatcher.match(myCriteria, myObservation, null, new SystemRequestDetails());
+	}
+
+	@Benchmark
+	public InMemoryMatchResult matchPreExtracted() {
+		return myMatcher.match(myCriteria, myObservation, myIndexedSearchParams, new SystemRequestDetails());
+	}
+
+	@Configuration
+	public static class BenchmarkConfig {
+
+		@Bean
+		public FhirContext fhirContext() {
+			return FhirContext.forR4();
+		}
+
+		@Bean
+		public StorageSettings storageSettings() {
+			return new StorageSettings();
+		}
+
+		@Bean
+		public PartitionSettings partitionSettings() {
+			return new PartitionSettings();
+		}
+
+		@Bean
+		public ISearchParamRegistry searchParamRegistry(FhirContext theFhirContext) {
+			return new BenchmarkSearchParamRegistry(theFhirContext);
+		}
+
+		@Bean
+		public IInterceptorBroadcaster interceptorBroadcaster() {
+			return new InterceptorService();
+		}
+
+		@Bean
+		public ISearchParamExtractor searchParamExtractor() {
+			return new SearchParamExtractorR4();
+		}
+
+		@Bean
+		public SearchParamExtractorService searchParamExtractorService() {
+			return new SearchParamExtractorService();
+		}
+
+		@Bean
+		public IndexedSearchParamExtractor indexedSearchParamExtractor() {
+			return new IndexedSearchParamExtractor();
+		}
+
+		@Bean
+		public MatchUrlService matchUrlService() {
+			return new MatchUrlService();
+		}
+
+		@Bean
+		public InMemoryResourceMatcher inMemoryResourceMatcher() {
+			return new InMemoryResourceMatcher();
+		}
+	}
+}
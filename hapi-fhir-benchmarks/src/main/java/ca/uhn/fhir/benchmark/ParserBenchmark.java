@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and parse throughput of the JSON and XML parsers for a single resource and for
+ * transaction Bundles of increasing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	/**
+	 * The parser to benchmark. The streaming JSON parse mode (see
+	 * {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParse(boolean)}) only
+	 * applies to JSON, so it is its own mode rather than a separate parameter.
+	 */
+	@Param({"JSON", "JSON_STREAMING", "XML"})
+	private ParserMode myParserMode;
+
+	/**
+	 * Number of Patient/Observation pairs in the Bundle. Zero benchmarks a single Observation.
+	 */
+	@Param({"0", "10", "500"})
+	private int myBundleSize;
+
+	private FhirContext myFhirContext;
+	private IBaseResource myResource;
+	private String myEncoded;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		myFhirContext = FhirContext.forR4();
+		myFhirContext.getParserOptions().setStreamingJsonParse(myParserMode == ParserMode.JSON_STREAMING);
+		if (myBundleSize == 0) {
+			myResource = BenchmarkResources.newObservation(0);
+		} else {
+			myResource = BenchmarkResources.newTransactionBundle(myBundleSize);
+		}
+		myEncoded = newParser().encodeResourceToString(myResource);
+	}
+
+	@Benchmark
+	public String encode() {
+		return newParser().encodeResourceToString(myResource);
+	}
+
+	@Benchmark
+	public IBaseResource parse() {
+		return newParser().parseResource(myEncoded);
+	}
+
+	private IParser newParser() {
+		return myParserMode.getEncoding().newParser(myFhirContext);
+	}
+
+	public enum ParserMode {
+		JSON(EncodingEnum.JSON),
+		JSON_STREAMING(EncodingEnum.JSON),
+		XML(EncodingEnum.XML);
+
+		private final EncodingEnum myEncoding;
+
+		ParserMode(EncodingEnum theEncoding) {
+			myEncoding = theEncoding;
+		}
+
+		public EncodingEnum getEncoding() {
+			return myEncoding;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.BaseSearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorR4;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per resource type cost of the individual {@link BaseSearchParamExtractor} extraction passes
+ * that run for every create and update, using the built-in R4 search parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchParamExtractorBenchmark {
+
+	@Param({"Patient", "Observation"})
+	private String myResourceType;
+
+	private BaseSearchParamExtractor myExtractor;
+	private IBaseResource myResource;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		FhirContext ctx = FhirContext.forR4();
+		myExtractor = new SearchParamExtractorR4(
+				new StorageSettings(), new PartitionSettings(), ctx, new BenchmarkSearchParamRegistry(ctx));
+		myExtractor.start();
+
+		if ("Patient".equals(myResourceType)) {
+			myResource = BenchmarkResources.newPatient(0);
+		} else {
+			myResource = BenchmarkResources.newObservation(0);
+		}
+	}
+
+	@Benchmark
+	public Object tokens() {
+		return myExtractor.extractSearchParamTokens(myResource, ISearchParamExtractor.ALL_PARAMS);
+	}
+
+	@Benchmark
+	public Object strings() {
+		return myExtractor.extractSearchParamStrings(myResource, ISearchParamExtractor.ALL_PARAMS);
+	}
+
+	@Benchmark
+	public Object dates() {
+		return myExtractor.extractSearchParamDates(myResource, ISearchParamExtractor.ALL_PARAMS);
+	}
+
+	@Benchmark
+	public Object quantities() {
+		return myExtractor.extractSearchParamQuantity(myResource, ISearchParamExtractor.ALL_PARAMS);
+	}
+
+	@Benchmark
+	public Object uris() {
+		return myExtractor.extractSearchParamUri(myResource, ISearchParamExtractor.ALL_PARAMS);
+	}
+
+	@Benchmark
+	public Object references() {
+		return myExtractor.extractResourceLinks(myResource, false);
+	}
+}
@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * HAPI FHIR - JMH Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.benchmark;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.model.config.PartitionSettings;
+import ca.uhn.fhir.jpa.model.dialect.HapiFhirOracleDialect;
+import ca.uhn.fhir.jpa.model.dialect.HapiFhirPostgresDialect;
+import ca.uhn.fhir.jpa.model.dialect.HapiFhirSQLServerDialect;
+import ca.uhn.fhir.jpa.search.builder.predicate.DatePredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.ResourceTablePredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.predicate.StringPredicateBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.GeneratedSql;
+import ca.uhn.fhir.jpa.search.builder.sql.SearchQueryBuilder;
+import ca.uhn.fhir.jpa.search.builder.sql.SqlObjectFactory;
+import ca.uhn.fhir.rest.param.DateParam;
+import org.hibernate.dialect.Dialect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL generation cost for a typical two-parameter Observation search with sorting and paging,
+ * rendered for each of the main supported database dialects. No database is involved.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchQueryBuilderBenchmark {
+
+	@Param({"POSTGRES", "MSSQL", "ORACLE"})
+	private String myDialect;
+
+	private AnnotationConfigApplicationContext myAppCtx;
+	private FhirContext myFhirContext;
+	private JpaStorageSettings myStorageSettings;
+	private PartitionSettings myPartitionSettings;
+	private SqlObjectFactory mySqlObjectFactory;
+	private HibernatePropertiesProvider myDialectProvider;
+	private DateParam myDate;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		myAppCtx = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+		myFhirContext = myAppCtx.getBean(FhirContext.class);
+		myStorageSettings = myAppCtx.getBean(JpaStorageSettings.class);
+		myPartitionSettings = new PartitionSettings();
+		mySqlObjectFactory = myAppCtx.getBean(SqlObjectFactory.class);
+
+		Dialect dialect;
+		switch (myDialect) {
+			case "MSSQL":
+				dialect = new HapiFhirSQLServerDialect();
+				break;
+			case "ORACLE":
+				dialect = new HapiFhirOracleDialect();
+				break;
+			case "POSTGRES":
+			default:
+				dialect = new HapiFhirPostgresDialect();
+				break;
+		}
+		myDialectProvider = new HibernatePropertiesProvider();
+		myDialectProvider.setDialectForUnitTest(dialect);
+
+		myDate = new DateParam("ge2024-01-01");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		myAppCtx.close();
+	}
+
+	@Benchmark
+	public GeneratedSql generate() {
+		SearchQueryBuilder builder = new SearchQueryBuilder(
+				myFhirContext,
+				myStorageSettings,
+				myPartitionSettings,
+				RequestPartitionId.allPartitions(),
+				"Observation",
+				mySqlObjectFactory,
+				myDialectProvider,
+				false);
+
+		StringPredicateBuilder stringPredicateBuilder = builder.addStringPredicateBuilder(null);
+		builder.addPredicate(stringPredicateBuilder.combineWithHashIdentityPredicate(
+				"Observation",
+				"code-text",
+				stringPredicateBuilder.createPredicateExact("Observation", "code-text", "Blood pressure")));
+
+		DatePredicateBuilder datePredicateBuilder =
+				builder.addDatePredicateBuilder(stringPredicateBuilder.getResourceIdColumn());
+		builder.addPredicate(datePredicateBuilder.combineWithHashIdentityPredicate(
+				"Observation", "date", datePredicateBuilder.createPredicateDateWithoutIdentityPredicate(myDate, null)));
+
+		builder.addSortDate(builder.getOrCreateResourceTablePredicateBuilder().getColumnLastUpdated(), false);
+
+		return builder.generate(100, 50);
+	}
+
+	@Configuration
+	public static class BenchmarkConfig {
+
+		@Bean
+		public FhirContext fhirContext() {
+			return FhirContext.forR4();
+		}
+
+		@Bean
+		public JpaStorageSettings storageSettings() {
+			return new JpaStorageSettings();
+		}
+
+		@Bean
+		public SqlObjectFactory sqlObjectFactory() {
+			return new SqlObjectFactory();
+		}
+
+		@Bean
+		@Scope("prototype")
+		public ResourceTablePredicateBuilder newResourceTablePredicateBuilder(SearchQueryBuilder theSearchBuilder) {
+			return new ResourceTablePredicateBuilder(theSearchBuilder);
+		}
+
+		@Bean
+		@Scope("prototype")
+		public StringPredicateBuilder newStringPredicateBuilder(SearchQueryBuilder theSearchBuilder) {
+			return new StringPredicateBuilder(theSearchBuilder);
+		}
+
+		@Bean
+		@Scope("prototype")
+		public DatePredicateBuilder newDatePredicateBuilder(SearchQueryBuilder theSearchBuilder) {
+			return new DatePredicateBuilder(theSearchBuilder);
+		}
+	}
+}
@@ -26,19 +26,27 @@ import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.TokenOrListParam;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -49,6 +57,12 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class ResourceVersionSvcDaoImpl implements IResourceVersionSvc {
 	private static final Logger ourLog = getLogger(ResourceVersionSvcDaoImpl.class);
 
+	/**
+	 * If more resources than this have changed, an incremental refresh is not worth it and
+	 * {@link #getVersionChangesSince(RequestPartitionId, String, SearchParameterMap, Date)} returns <code>null</code>
+	 */
+	static final int MAX_INCREMENTAL_CHANGES = 1000;
+
 	@Autowired
 	DaoRegistry myDaoRegistry;
 
@@ -74,6 +88,45 @@ public class ResourceVersionSvcDaoImpl implements IResourceVersionSvc {
 		return ResourceVersionMap.fromIdsWithVersions(fhirIds);
 	}
 
+	@Nullable
+	@Override
+	public ResourceVersionChanges getVersionChangesSince(
+			RequestPartitionId theRequestPartitionId,
+			String theResourceName,
+			SearchParameterMap theSearchParamMap,
+			Date theSince) {
+		Slice<Object[]> changed = myResourceTableDao.findIdsAndFhirIdsOfResourcesOfTypeUpdatedSince(
+				PageRequest.of(0, MAX_INCREMENTAL_CHANGES), theResourceName, theSince);
+		if (changed.hasNext()) {
+			ourLog.debug(
+					"More than {} {} resources changed since {}", MAX_INCREMENTAL_CHANGES, theResourceName, theSince);
+			return null;
+		}
+		if (changed.isEmpty()) {
+			return ResourceVersionChanges.empty();
+		}
+
+		List<IIdType> changedIds = new ArrayList<>(changed.getNumberOfElements());
+		TokenOrListParam idParam = new TokenOrListParam();
+		for (Object[] next : changed) {
+			// order matters!
+			Long pid = (Long) next[0];
+			String fhirId = defaultIfBlank((String) next[1], pid.toString());
+			changedIds.add(new IdDt(theResourceName, fhirId));
+			idParam.add(null, fhirId);
+		}
+
+		// Of the changed resources, find the ones which still exist and match
+		SearchParameterMap searchParamMap = theSearchParamMap.clone();
+		searchParamMap.add(IAnyResource.SP_RES_ID, idParam);
+		searchParamMap.setLoadSynchronous(true);
+		IFhirResourceDao<?> dao = myDaoRegistry.getResourceDao(theResourceName);
+		SystemRequestDetails request = new SystemRequestDetails().setRequestPartitionId(theRequestPartitionId);
+		List<IIdType> matchingIds = dao.searchForResourceIds(searchParamMap, request);
+
+		return new ResourceVersionChanges(changedIds, ResourceVersionMap.fromIdsWithVersions(matchingIds));
+	}
+
 	/**
 	 * Retrieves the latest versions for any resourceid that are found.
 	 * If they are not found, they will not be contained in the returned map.
@@ -156,6 +156,7 @@ import ca.uhn.fhir.jpa.term.TermCodeSystemStorageSvcImpl;
 import ca.uhn.fhir.jpa.term.TermConceptMappingSvcImpl;
 import ca.uhn.fhir.jpa.term.TermReadSvcImpl;
 import ca.uhn.fhir.jpa.term.TermReindexingSvcImpl;
+import ca.uhn.fhir.jpa.term.ValueSetCodeIndexSvc;
 import ca.uhn.fhir.jpa.term.ValueSetConceptAccumulator;
 import ca.uhn.fhir.jpa.term.ValueSetConceptAccumulatorFactory;
 import ca.uhn.fhir.jpa.term.api.ITermCodeSystemStorageSvc;
@@ -831,6 +832,11 @@ public class JpaConfig {
 		return new ValueSetConceptAccumulatorFactory();
 	}
 
+	@Bean
+	public ValueSetCodeIndexSvc valueSetCodeIndexSvc() {
+		return new ValueSetCodeIndexSvc();
+	}
+
 	@Bean
 	@Scope("prototype")
 	public ValueSetConceptAccumulator valueSetConceptAccumulator(TermValueSet theTermValueSet) {
@@ -1934,6 +1934,9 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> extends BaseStora
 			case JSONC:
 				resourceText = GZipUtil.decompress(theResourceBytes);
 				break;
+			case LZ4:
+				resourceText = Lz4Util.decompress(theResourceBytes);
+				break;
 			case DEL:
 			case ESR:
 				break;
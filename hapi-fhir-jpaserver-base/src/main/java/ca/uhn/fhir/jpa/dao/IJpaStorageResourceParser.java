@@ -39,6 +39,30 @@ public interface IJpaStorageResourceParser extends IStorageResourceParser {
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation);
 
+	/**
+	 * Same as {@link #toResource(Class, IBaseResourceEntity, Collection, boolean)}, except that the partition
+	 * information is not populated. When called with an entity which carries the full resource body (such as
+	 * the search view), this method only decodes data which has already been loaded and never touches the
+	 * database, so it may be called from a thread which does not own the current transaction.
+	 *
+	 * @see #populateResourcePartitionInformation(IBaseResourceEntity, IBaseResource)
+	 * @since 7.6.0
+	 */
+	<R extends IBaseResource> R toResourceWithoutPartitionInformation(
+			Class<R> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTagList,
+			boolean theForHistoryOperation);
+
+	/**
+	 * Stores the partition of the given entity in the user data of the resource, if partitioning is enabled.
+	 * This may need to look up the partition, so it should be called on the thread which owns the current
+	 * transaction.
+	 *
+	 * @since 7.6.0
+	 */
+	void populateResourcePartitionInformation(IBaseResourceEntity theEntity, IBaseResource theResource);
+
 	/**
 	 * Populate the metadata (Resource.meta.*) from a storage entity and other related
 	 * objects pulled from the database
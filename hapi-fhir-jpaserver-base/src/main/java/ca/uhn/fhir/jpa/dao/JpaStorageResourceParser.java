@@ -117,6 +117,20 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 			IBaseResourceEntity theEntity,
 			Collection<ResourceTag> theTagList,
 			boolean theForHistoryOperation) {
+		R retVal =
+				toResourceWithoutPartitionInformation(theResourceType, theEntity, theTagList, theForHistoryOperation);
+		if (retVal != null) {
+			populateResourcePartitionInformation(theEntity, retVal);
+		}
+		return retVal;
+	}
+
+	@Override
+	public <R extends IBaseResource> R toResourceWithoutPartitionInformation(
+			Class<R> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTagList,
+			boolean theForHistoryOperation) {
 
 		// 1. get resource, it's encoding and the tags if any
 		byte[] resourceBytes;
@@ -232,25 +246,22 @@ public class JpaStorageResourceParser implements IJpaStorageResourceParser {
 		// 6. Handle source (provenance)
 		MetaUtil.populateResourceSource(myFhirContext, provenanceSourceUri, provenanceRequestId, retVal);
 
-		// 7. Add partition information
-		populateResourcePartitionInformation(theEntity, retVal);
-
-		// 8. sort tags, security labels and profiles
+		// 7. sort tags, security labels and profiles
 		myMetaTagSorter.sort(retVal.getMeta());
 
 		return retVal;
 	}
 
-	private <R extends IBaseResource> void populateResourcePartitionInformation(
-			IBaseResourceEntity theEntity, R retVal) {
+	@Override
+	public void populateResourcePartitionInformation(IBaseResourceEntity theEntity, IBaseResource theResource) {
 		if (myPartitionSettings.isPartitioningEnabled()) {
 			PartitionablePartitionId partitionId = theEntity.getPartitionId();
 			if (partitionId != null && partitionId.getPartitionId() != null) {
 				PartitionEntity persistedPartition =
 						myPartitionLookupSvc.getPartitionById(partitionId.getPartitionId());
-				retVal.setUserData(Constants.RESOURCE_PARTITION_ID, persistedPartition.toRequestPartitionId());
+				theResource.setUserData(Constants.RESOURCE_PARTITION_ID, persistedPartition.toRequestPartitionId());
 			} else {
-				retVal.setUserData(Constants.RESOURCE_PARTITION_ID, RequestPartitionId.defaultPartition());
+				theResource.setUserData(Constants.RESOURCE_PARTITION_ID, RequestPartitionId.defaultPartition());
 			}
 		}
 	}
@@ -523,13 +523,34 @@ public class TransactionProcessor extends BaseTransactionProcessor {
 				updateCount = -1;
 			}
 
+			/*
+			 * Hibernate groups the inserts by table (hibernate.order_inserts), so for large
+			 * transactions we raise the JDBC batch size for this flush in order to write the
+			 * index rows with far fewer round trips
+			 */
+			int flushBatchSize = myStorageSettings.getTransactionFlushJdbcBatchSize();
+			boolean adjustBatchSize =
+					session != null && flushBatchSize > 0 && insertionCount + updateCount > flushBatchSize;
+			Integer previousBatchSize = null;
+			if (adjustBatchSize) {
+				previousBatchSize = session.getJdbcBatchSize();
+				session.setJdbcBatchSize(flushBatchSize);
+			}
+
 			StopWatch sw = new StopWatch();
-			myEntityManager.flush();
+			try {
+				myEntityManager.flush();
+			} finally {
+				if (adjustBatchSize) {
+					session.setJdbcBatchSize(previousBatchSize);
+				}
+			}
 			ourLog.debug(
-					"Session flush took {}ms for {} inserts and {} updates",
+					"Session flush took {}ms for {} inserts and {} updates (JDBC batch size {})",
 					sw.getMillis(),
 					insertionCount,
-					updateCount);
+					updateCount,
+					adjustBatchSize ? flushBatchSize : "default");
 		} catch (PersistenceException e) {
 			if (myHapiFhirHibernateJpaDialect != null) {
 				List<String> types = theIdToPersistedOutcome.keySet().stream()
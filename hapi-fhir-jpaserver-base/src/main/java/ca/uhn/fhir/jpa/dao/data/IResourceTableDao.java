@@ -165,6 +165,15 @@ public interface IResourceTableDao
 			"SELECT t.myResourceType, t.myId, t.myDeleted, t.myPartitionIdValue, t.myPartitionDateValue FROM ResourceTable t WHERE t.myId IN (:pid) AND t.myPartitionIdValue IS NULL")
 	Collection<Object[]> findLookupFieldsByResourcePidInPartitionNull(@Param("pid") List<Long> thePids);
 
+	/**
+	 * @return List of arrays containing [PID, FHIR ID] for the resources of the given type (including deleted ones)
+	 * which were updated at or after the given time, oldest first
+	 */
+	@Query(
+			"SELECT t.myId, t.myFhirId FROM ResourceTable t WHERE t.myResourceType = :restype AND t.myUpdated >= :low ORDER BY t.myUpdated ASC")
+	Slice<Object[]> findIdsAndFhirIdsOfResourcesOfTypeUpdatedSince(
+			Pageable thePage, @Param("restype") String theResourceType, @Param("low") Date theLow);
+
 	@Query("SELECT t.myVersion FROM ResourceTable t WHERE t.myId = :pid")
 	Long findCurrentVersionByPid(@Param("pid") Long thePid);
 
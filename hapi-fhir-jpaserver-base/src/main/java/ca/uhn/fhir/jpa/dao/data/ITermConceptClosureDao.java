@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao.data;
+
+import ca.uhn.fhir.jpa.entity.TermConcept;
+import ca.uhn.fhir.jpa.entity.TermConceptClosure;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ITermConceptClosureDao extends JpaRepository<TermConceptClosure, Long>, IHapiFhirJpaRepository {
+
+	@Query(
+			"SELECT COUNT(t) FROM TermConceptClosure t "
+					+ "WHERE t.myAncestorPid = :ancestor_pid AND t.myDescendantPid = :descendant_pid AND t.myDepth >= :min_depth")
+	int countByAncestorAndDescendant(
+			@Param("ancestor_pid") Long theAncestorPid,
+			@Param("descendant_pid") Long theDescendantPid,
+			@Param("min_depth") int theMinDepth);
+
+	/**
+	 * Returns the PIDs of the descendants of the given concept which have a PID greater than
+	 * <code>theAfterPid</code>, in PID order. This allows large hierarchies to be walked in pages.
+	 */
+	@Query("SELECT t.myDescendantPid FROM TermConceptClosure t "
+			+ "WHERE t.myAncestorPid = :ancestor_pid AND t.myDepth >= :min_depth AND t.myDescendantPid > :after_pid "
+			+ "ORDER BY t.myDescendantPid")
+	List<Long> findDescendantPids(
+			@Param("ancestor_pid") Long theAncestorPid,
+			@Param("min_depth") int theMinDepth,
+			@Param("after_pid") Long theAfterPid,
+			Pageable thePage);
+
+	@Query("SELECT c FROM TermConcept c, TermConceptClosure t "
+			+ "WHERE t.myAncestorPid = :ancestor_pid AND t.myDepth >= :min_depth AND c.myId = t.myDescendantPid")
+	List<TermConcept> findDescendants(@Param("ancestor_pid") Long theAncestorPid, @Param("min_depth") int theMinDepth);
+
+	@Query("SELECT c FROM TermConcept c, TermConceptClosure t "
+			+ "WHERE t.myDescendantPid = :descendant_pid AND t.myDepth >= :min_depth AND c.myId = t.myAncestorPid")
+	List<TermConcept> findAncestors(
+			@Param("descendant_pid") Long theDescendantPid, @Param("min_depth") int theMinDepth);
+
+	/**
+	 * Crosses the ancestors of the given parents (including the parents themselves) with the descendants
+	 * of the given concept (including the concept itself), adding the depths. Returns one row per pair
+	 * holding the ancestor PID, the descendant PID, the shortest depth through any of the parents, the
+	 * code system version PID, and the PID and depth of the existing row for the pair if there is one.
+	 * Pairs whose existing row already has an equal or shorter depth are left out.
+	 */
+	@Query("SELECT a.myAncestorPid, d.myDescendantPid, MIN(a.myDepth + d.myDepth + 1), d.myCodeSystemVersionPid, "
+			+ "e.myPid, e.myDepth "
+			+ "FROM TermConceptClosure a "
+			+ "JOIN TermConceptClosure d ON d.myAncestorPid = :pid "
+			+ "LEFT JOIN TermConceptClosure e "
+			+ "ON e.myAncestorPid = a.myAncestorPid AND e.myDescendantPid = d.myDescendantPid "
+			+ "WHERE a.myDescendantPid IN (:parent_pids) "
+			+ "GROUP BY a.myAncestorPid, d.myDescendantPid, d.myCodeSystemVersionPid, e.myPid, e.myDepth "
+			+ "HAVING e.myPid IS NULL OR MIN(a.myDepth + d.myDepth + 1) < e.myDepth")
+	List<Object[]> findClosureOfSubtreeBelowParents(
+			@Param("pid") Long theConceptPid, @Param("parent_pids") Collection<Long> theParentPids);
+
+	@Modifying
+	@Query("UPDATE TermConceptClosure SET myDepth = :depth WHERE myPid = :pid")
+	int updateDepth(@Param("pid") Long thePid, @Param("depth") int theDepth);
+
+	@Modifying
+	@Query("DELETE FROM TermConceptClosure WHERE myDescendantPid = :descendant_pid")
+	int deleteByDescendant(@Param("descendant_pid") Long theDescendantPid);
+
+	@Modifying
+	@Query("DELETE FROM TermConceptClosure WHERE myAncestorPid = :pid OR myDescendantPid = :pid")
+	int deleteByConcept(@Param("pid") Long theConceptPid);
+
+	@Modifying
+	@Query("DELETE FROM TermConceptClosure WHERE myCodeSystemVersionPid = :cs_pid")
+	int deleteByCodeSystemVersion(@Param("cs_pid") Long theCodeSystemVersionPid);
+}
@@ -40,6 +40,9 @@ public interface ITermConceptDao extends JpaRepository<TermConcept, Long>, IHapi
 			+ "WHERE t.myCodeSystemVersionPid = :pid")
 	List<TermConcept> fetchConceptsAndDesignationsByVersionPid(@Param("pid") Long theCodeSystemVersionPid);
 
+	@Query("SELECT t.myId FROM TermConcept t WHERE t.myId IN :pids")
+	List<Long> findExistingPids(@Param("pids") List<Long> thePids);
+
 	@Query("SELECT COUNT(t) FROM TermConcept t WHERE t.myCodeSystem.myId = :cs_pid")
 	Integer countByCodeSystemVersion(@Param("cs_pid") Long thePid);
 
@@ -78,6 +78,11 @@ public interface ITermValueSetConceptDao extends JpaRepository<TermValueSetConce
 	@Query("SELECT vsc.myId FROM TermValueSetConcept vsc WHERE vsc.myValueSetPid = :pid ORDER BY vsc.myId")
 	List<Long> findIdsByTermValueSetId(@Param("pid") Long theValueSetId);
 
+	@Query(
+			"SELECT vsc.myId, vsc.mySystem, vsc.mySystemVer, vsc.myCode, vsc.myDisplay FROM TermValueSetConcept vsc WHERE vsc.myValueSetPid = :pid AND vsc.myId > :after_id ORDER BY vsc.myId")
+	List<Object[]> findCodesByTermValueSetIdAfterId(
+			Pageable thePage, @Param("pid") Long theValueSetId, @Param("after_id") Long theAfterId);
+
 	@Query("UPDATE TermValueSetConcept vsc SET vsc.myOrder = :order WHERE vsc.myId = :pid")
 	@Modifying
 	void updateOrderById(@Param("pid") Long theId, @Param("order") int theOrder);
@@ -24,9 +24,11 @@ import ca.uhn.fhir.jpa.entity.TermValueSetPreExpansionStatusEnum;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,6 +46,14 @@ public interface ITermValueSetDao extends JpaRepository<TermValueSet, Long>, IHa
 	Slice<TermValueSet> findByExpansionStatus(
 			Pageable pageable, @Param("expansion_status") TermValueSetPreExpansionStatusEnum theExpansionStatus);
 
+	@Query(
+			"UPDATE TermValueSet vs SET vs.myExpansionStatus = :new_status WHERE vs.myId IN (:pids) AND vs.myExpansionStatus = :current_status")
+	@Modifying
+	int updateExpansionStatus(
+			@Param("pids") Collection<Long> thePids,
+			@Param("current_status") TermValueSetPreExpansionStatusEnum theCurrentStatus,
+			@Param("new_status") TermValueSetPreExpansionStatusEnum theNewStatus);
+
 	@Query(
 			value =
 					"SELECT vs FROM TermValueSet vs INNER JOIN ResourceTable r ON r.myId = vs.myResourcePid WHERE vs.myUrl = :url ORDER BY r.myUpdated DESC")
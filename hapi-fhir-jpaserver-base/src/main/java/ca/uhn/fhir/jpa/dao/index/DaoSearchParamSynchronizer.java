@@ -169,7 +169,17 @@ public class DaoSearchParamSynchronizer {
 		}
 
 		for (T next : paramsToAdd) {
-			myEntityManager.merge(next);
+			if (next.getId() == null) {
+				/*
+				 * Brand new rows are persisted directly rather than merged, which avoids
+				 * copying every new index row into a second instance. The rows become managed,
+				 * so they can also be removed later on in the same transaction if needed.
+				 * The inserts themselves are grouped by table and JDBC-batched at flush time.
+				 */
+				myEntityManager.persist(next);
+			} else {
+				myEntityManager.merge(next);
+			}
 		}
 
 		// TODO:  are there any unintended consequences to fixing this bug?
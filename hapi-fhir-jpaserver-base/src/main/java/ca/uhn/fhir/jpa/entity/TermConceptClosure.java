@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.Serializable;
+
+/**
+ * One row of the transitive closure of the concept hierarchy for a code system version.
+ * Every stored concept has a row pointing to itself with a depth of 0, plus one row
+ * for every ancestor reachable through its parent links, holding the length of the
+ * shortest path to that ancestor.
+ */
+@Entity
+@Table(
+		name = "TRM_CONCEPT_CLOSURE",
+		indexes = {
+			@Index(name = "IDX_CNCPT_CLOSURE_ANC", columnList = "ANCESTOR_PID, DESCENDANT_PID, DEPTH"),
+			@Index(name = "IDX_CNCPT_CLOSURE_DESC", columnList = "DESCENDANT_PID, ANCESTOR_PID, DEPTH"),
+			@Index(name = "IDX_CNCPT_CLOSURE_CS", columnList = "CODESYSTEM_PID")
+		})
+public class TermConceptClosure implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	@Id()
+	@SequenceGenerator(name = "SEQ_CONCEPT_CLOSURE_PID", sequenceName = "SEQ_CONCEPT_CLOSURE_PID")
+	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_CONCEPT_CLOSURE_PID")
+	@Column(name = "PID")
+	private Long myPid;
+
+	@Column(name = "ANCESTOR_PID", nullable = false)
+	private Long myAncestorPid;
+
+	@Column(name = "DESCENDANT_PID", nullable = false)
+	private Long myDescendantPid;
+
+	@Column(name = "DEPTH", nullable = false)
+	private int myDepth;
+
+	@Column(name = "CODESYSTEM_PID", nullable = false)
+	private Long myCodeSystemVersionPid;
+
+	/**
+	 * Constructor
+	 */
+	public TermConceptClosure() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public TermConceptClosure(Long theAncestorPid, Long theDescendantPid, int theDepth, Long theCodeSystemVersionPid) {
+		myAncestorPid = theAncestorPid;
+		myDescendantPid = theDescendantPid;
+		myDepth = theDepth;
+		myCodeSystemVersionPid = theCodeSystemVersionPid;
+	}
+
+	public Long getPid() {
+		return myPid;
+	}
+
+	public Long getAncestorPid() {
+		return myAncestorPid;
+	}
+
+	public Long getDescendantPid() {
+		return myDescendantPid;
+	}
+
+	public int getDepth() {
+		return myDepth;
+	}
+
+	public Long getCodeSystemVersionPid() {
+		return myCodeSystemVersionPid;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+				.append("ancestor", myAncestorPid)
+				.append("descendant", myDescendantPid)
+				.append("depth", myDepth)
+				.append("codeSystemVersion", myCodeSystemVersionPid)
+				.toString();
+	}
+}
@@ -125,6 +125,38 @@ public class HapiFhirJpaMigrationTasks extends BaseMigrationTasks<VersionEnum> {
 		init700();
 		init720();
 		init740();
+		init760();
+	}
+
+	protected void init760() {
+		// Start of migrations from 7.4 to 7.6
+
+		final Builder version = forVersion(VersionEnum.V7_6_0);
+
+		{
+			// Transitive closure of the terminology concept hierarchy
+			// Existing concepts are not backfilled, they keep using the previous lookups until reloaded
+			version.addIdGenerator("20241017.1", "SEQ_CONCEPT_CLOSURE_PID");
+			Builder.BuilderAddTableByColumns closureTable =
+					version.addTableByColumns("20241017.2", "TRM_CONCEPT_CLOSURE", "PID");
+			closureTable.addColumn("PID").nonNullable().type(ColumnTypeEnum.LONG);
+			closureTable.addColumn("ANCESTOR_PID").nonNullable().type(ColumnTypeEnum.LONG);
+			closureTable.addColumn("DESCENDANT_PID").nonNullable().type(ColumnTypeEnum.LONG);
+			closureTable.addColumn("DEPTH").nonNullable().type(ColumnTypeEnum.INT);
+			closureTable.addColumn("CODESYSTEM_PID").nonNullable().type(ColumnTypeEnum.LONG);
+			closureTable
+					.addIndex("20241017.3", "IDX_CNCPT_CLOSURE_ANC")
+					.unique(false)
+					.withColumns("ANCESTOR_PID", "DESCENDANT_PID", "DEPTH");
+			closureTable
+					.addIndex("20241017.4", "IDX_CNCPT_CLOSURE_DESC")
+					.unique(false)
+					.withColumns("DESCENDANT_PID", "ANCESTOR_PID", "DEPTH");
+			closureTable
+					.addIndex("20241017.5", "IDX_CNCPT_CLOSURE_CS")
+					.unique(false)
+					.withColumns("CODESYSTEM_PID");
+		}
 	}
 
 	protected void init740() {
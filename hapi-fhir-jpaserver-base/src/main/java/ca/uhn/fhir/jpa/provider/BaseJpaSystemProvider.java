@@ -23,6 +23,7 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.search.reindex.IResourceReindexingSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.api.ReindexTerminologyResult;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.annotation.At;
 import ca.uhn.fhir.rest.annotation.History;
 import ca.uhn.fhir.rest.annotation.Offset;
@@ -69,6 +70,9 @@ public abstract class BaseJpaSystemProvider<T, MT> extends BaseStorageSystemProv
 	@Autowired
 	private ITermReadSvc myTermReadSvc;
 
+	@Autowired
+	private MemoryCacheService myMemoryCacheService;
+
 	public BaseJpaSystemProvider() {
 		// nothing
 	}
@@ -77,6 +81,10 @@ public abstract class BaseJpaSystemProvider<T, MT> extends BaseStorageSystemProv
 		return myResourceReindexingSvc;
 	}
 
+	protected MemoryCacheService getMemoryCacheService() {
+		return myMemoryCacheService;
+	}
+
 	@History
 	public IBundleProvider historyServer(
 			HttpServletRequest theRequest,
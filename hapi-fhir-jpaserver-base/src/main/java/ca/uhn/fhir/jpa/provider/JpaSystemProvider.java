@@ -19,25 +19,33 @@
  */
 package ca.uhn.fhir.jpa.provider;
 
+import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
+import ca.uhn.fhir.jpa.util.MemoryCacheStatistics;
 import ca.uhn.fhir.model.api.annotation.Description;
 import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Transaction;
 import ca.uhn.fhir.rest.annotation.TransactionParam;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.provider.ProviderConstants;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.ParametersUtil;
+import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseParameters;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -119,6 +127,56 @@ public final class JpaSystemProvider<T, MT> extends BaseJpaSystemProvider<T, MT>
 		return retVal;
 	}
 
+	@Operation(name = JpaConstants.OPERATION_CACHE_STATS, idempotent = true)
+	@Description(
+			shortDefinition =
+					"Provides hit, miss, load and eviction statistics for the in-memory caches used by the server")
+	public IBaseParameters getCacheStatistics(
+			@OperationParam(name = "cache", min = 0, max = OperationParam.MAX_UNLIMITED, typeName = "code")
+					List<IPrimitiveType<String>> theCaches) {
+		List<MemoryCacheService.CacheEnum> caches;
+		if (theCaches == null || theCaches.isEmpty()) {
+			caches = Arrays.asList(MemoryCacheService.CacheEnum.values());
+		} else {
+			caches = theCaches.stream()
+					.map(IPrimitiveType::getValueAsString)
+					.map(JpaSystemProvider::parseCacheName)
+					.collect(Collectors.toList());
+		}
+
+		IBaseParameters retVal = ParametersUtil.newInstance(getContext());
+		for (MemoryCacheService.CacheEnum next : caches) {
+			MemoryCacheStatistics stats = getMemoryCacheService().getStatistics(next);
+			IBase cache = ParametersUtil.addParameterToParameters(getContext(), retVal, "cache");
+			ParametersUtil.addPartCode(getContext(), cache, "name", next.name());
+			ParametersUtil.addPartInteger64(getContext(), cache, "size", stats.getEstimatedSize());
+			ParametersUtil.addPartInteger64(getContext(), cache, "hitCount", stats.getHitCount());
+			ParametersUtil.addPartInteger64(getContext(), cache, "missCount", stats.getMissCount());
+			ParametersUtil.addPartDecimal(getContext(), cache, "hitRatio", stats.getHitRatio());
+			ParametersUtil.addPartInteger64(getContext(), cache, "loadCount", stats.getLoadCount());
+			ParametersUtil.addPartDecimal(
+					getContext(), cache, "averageLoadMillis", stats.getAverageLoadPenaltyNanos() / 1_000_000.0);
+			ParametersUtil.addPartInteger64(getContext(), cache, "evictionCount", stats.getEvictionCount());
+			if (stats.getMaximumBytes() != null) {
+				ParametersUtil.addPartInteger64(getContext(), cache, "maximumBytes", stats.getMaximumBytes());
+			}
+			if (stats.getEstimatedBytes() != null) {
+				ParametersUtil.addPartInteger64(getContext(), cache, "estimatedBytes", stats.getEstimatedBytes());
+			}
+		}
+
+		return retVal;
+	}
+
+	private static MemoryCacheService.CacheEnum parseCacheName(String theName) {
+		try {
+			return MemoryCacheService.CacheEnum.valueOf(theName);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidRequestException(Msg.code(2784) + "Unknown cache: " + theName + ". Valid values: "
+					+ Arrays.toString(MemoryCacheService.CacheEnum.values()));
+		}
+	}
+
 	@Operation(
 			name = ProviderConstants.OPERATION_META,
 			idempotent = true,
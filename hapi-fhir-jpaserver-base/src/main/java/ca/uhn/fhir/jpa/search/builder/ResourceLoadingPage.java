@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceTag;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.StopWatch;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One chunk of resources fetched by {@link SearchBuilder#loadResourcesByPid} whose decoding has
+ * been handed to the {@link SearchResourceLoadingExecutor}. The rows are split into up to one
+ * batch per loading thread, and the decoded resources are returned in the order the rows were
+ * added.
+ * <p>
+ * Only the parsing happens on the loading threads. Anything which may need the database, such as
+ * resolving the partition of each resource, is left to the thread which owns the transaction.
+ * </p>
+ */
+class ResourceLoadingPage {
+
+	/**
+	 * Below this size it isn't worth splitting a batch any further
+	 */
+	private static final int MIN_BATCH_SIZE = 10;
+
+	private final int myFetchedCount;
+	private final long myFetchMillis;
+	private final int myThreadCount;
+	private final List<Class<? extends IBaseResource>> myResourceTypes = new ArrayList<>();
+	private final List<IBaseResourceEntity> myEntities = new ArrayList<>();
+	private final List<Collection<ResourceTag>> myTags = new ArrayList<>();
+	private final List<JpaPid> myResourceIds = new ArrayList<>();
+	private final List<Future<List<IBaseResource>>> myFutures = new ArrayList<>();
+	private final AtomicLong myDecodeMillis = new AtomicLong();
+
+	ResourceLoadingPage(int theFetchedCount, long theFetchMillis, int theThreadCount) {
+		myFetchedCount = theFetchedCount;
+		myFetchMillis = theFetchMillis;
+		myThreadCount = Math.max(theThreadCount, 1);
+	}
+
+	void add(
+			Class<? extends IBaseResource> theResourceType,
+			IBaseResourceEntity theEntity,
+			Collection<ResourceTag> theTags,
+			JpaPid theResourceId) {
+		myResourceTypes.add(theResourceType);
+		myEntities.add(theEntity);
+		myTags.add(theTags);
+		myResourceIds.add(theResourceId);
+	}
+
+	void submit(
+			SearchResourceLoadingExecutor theExecutor,
+			IJpaStorageResourceParser theParser,
+			boolean theForHistoryOperation) {
+		int size = myEntities.size();
+		int batchSize = Math.max((size + myThreadCount - 1) / myThreadCount, MIN_BATCH_SIZE);
+		for (int from = 0; from < size; from += batchSize) {
+			int start = from;
+			int end = Math.min(from + batchSize, size);
+			myFutures.add(theExecutor.submit(() -> decode(theParser, start, end, theForHistoryOperation)));
+		}
+	}
+
+	private List<IBaseResource> decode(
+			IJpaStorageResourceParser theParser, int theFrom, int theTo, boolean theForHistoryOperation) {
+		StopWatch sw = new StopWatch();
+		List<IBaseResource> retVal = new ArrayList<>(theTo - theFrom);
+		for (int i = theFrom; i < theTo; i++) {
+			retVal.add(theParser.toResourceWithoutPartitionInformation(
+					myResourceTypes.get(i), myEntities.get(i), myTags.get(i), theForHistoryOperation));
+		}
+		myDecodeMillis.addAndGet(sw.getMillis());
+		return retVal;
+	}
+
+	/**
+	 * Blocks until every batch in this page has been decoded
+	 *
+	 * @return The decoded resources, in the order they were added. An entry is <code>null</code> if the resource could not be decoded.
+	 */
+	List<IBaseResource> await() {
+		List<IBaseResource> retVal = new ArrayList<>(myEntities.size());
+		for (Future<List<IBaseResource>> next : myFutures) {
+			try {
+				retVal.addAll(next.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(Msg.code(2779) + "Interrupted while loading resources", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new InternalErrorException(
+						Msg.code(2780) + "Failed to load resources: "
+								+ e.getCause().getMessage(),
+						e.getCause());
+			}
+		}
+		return retVal;
+	}
+
+	void cancel() {
+		myFutures.forEach(t -> t.cancel(true));
+	}
+
+	IBaseResourceEntity getEntity(int theIndex) {
+		return myEntities.get(theIndex);
+	}
+
+	JpaPid getResourceId(int theIndex) {
+		return myResourceIds.get(theIndex);
+	}
+
+	int getFetchedCount() {
+		return myFetchedCount;
+	}
+
+	long getFetchMillis() {
+		return myFetchMillis;
+	}
+
+	/**
+	 * @return The total time spent decoding, summed across all batches
+	 */
+	long getDecodeMillis() {
+		return myDecodeMillis.get();
+	}
+
+	int getTaskCount() {
+		return myFutures.size();
+	}
+}
@@ -52,6 +52,7 @@ import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
 import ca.uhn.fhir.jpa.model.entity.BaseResourceIndexedSearchParam;
 import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.ResourceTag;
 import ca.uhn.fhir.jpa.model.search.SearchBuilderLoadIncludesParameters;
 import ca.uhn.fhir.jpa.model.search.SearchRuntimeDetails;
@@ -209,6 +210,9 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 	@Autowired
 	private IJpaStorageResourceParser myJpaStorageResourceParser;
 
+	@Autowired(required = false)
+	private SearchResourceLoadingExecutor mySearchResourceLoadingExecutor;
+
 	/**
 	 * Constructor
 	 */
@@ -1108,12 +1112,19 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		}
 	}
 
+	/**
+	 * @param theParallelPages If not <code>null</code>, the decoding of resources fetched from the search view is
+	 *                         submitted to {@link #mySearchResourceLoadingExecutor} and the resulting page is added
+	 *                         to this list instead of being written to <code>theResourceListToPopulate</code>
+	 */
 	private void doLoadPids(
 			Collection<JpaPid> thePids,
 			Collection<JpaPid> theIncludedPids,
 			List<IBaseResource> theResourceListToPopulate,
 			boolean theForHistoryOperation,
-			Map<JpaPid, Integer> thePosition) {
+			Map<JpaPid, Integer> thePosition,
+			@Nullable List<ResourceLoadingPage> theParallelPages) {
+		StopWatch fetchSw = new StopWatch();
 
 		Map<Long, Long> resourcePidToVersion = null;
 		for (JpaPid next : thePids) {
@@ -1137,6 +1148,14 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 		// -- preload all tags with tag definition if any
 		Map<Long, Collection<ResourceTag>> tagMap = getResourceTagMap(resourceSearchViewList);
 
+		ResourceLoadingPage page = null;
+		if (theParallelPages != null) {
+			page = new ResourceLoadingPage(
+					resourceSearchViewList.size(),
+					fetchSw.getMillis(),
+					mySearchResourceLoadingExecutor.getThreadCount());
+		}
+
 		for (IBaseResourceEntity next : resourceSearchViewList) {
 			if (next.getDeleted() != null) {
 				continue;
@@ -1164,37 +1183,116 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 				}
 			}
 
+			/*
+			 * Rows from the search view carry everything needed to build the resource, so they
+			 * can be decoded off-thread. Anything else (e.g. a specific version loaded above) may
+			 * need the current persistence context, so it is always decoded here.
+			 */
+			if (page != null
+					&& next instanceof ResourceSearchView
+					&& ((ResourceSearchView) next).getEncoding() != ResourceEncodingEnum.ESR) {
+				page.add(resourceType, next, tagMap.get(next.getId()), resourceId);
+				continue;
+			}
+
 			IBaseResource resource = null;
 			if (next != null) {
 				resource = myJpaStorageResourceParser.toResource(
 						resourceType, next, tagMap.get(next.getId()), theForHistoryOperation);
 			}
-			if (resource == null) {
-				if (next != null) {
-					ourLog.warn(
-							"Unable to find resource {}/{}/_history/{} in database",
-							next.getResourceType(),
-							next.getIdDt().getIdPart(),
-							next.getVersion());
-				} else {
-					ourLog.warn("Unable to find resource in database.");
-				}
-				continue;
-			}
+			addLoadedResource(next, resourceId, resource, theIncludedPids, theResourceListToPopulate, thePosition);
+		}
 
-			Integer index = thePosition.get(resourceId);
-			if (index == null) {
-				ourLog.warn("Got back unexpected resource PID {}", resourceId);
-				continue;
-			}
+		if (page != null) {
+			page.submit(mySearchResourceLoadingExecutor, myJpaStorageResourceParser, theForHistoryOperation);
+			theParallelPages.add(page);
+		}
+	}
 
-			if (theIncludedPids.contains(resourceId)) {
-				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.INCLUDE);
+	private void addLoadedResource(
+			@Nullable IBaseResourceEntity theEntity,
+			JpaPid theResourceId,
+			@Nullable IBaseResource theResource,
+			Collection<JpaPid> theIncludedPids,
+			List<IBaseResource> theResourceListToPopulate,
+			Map<JpaPid, Integer> thePosition) {
+		if (theResource == null) {
+			if (theEntity != null) {
+				ourLog.warn(
+						"Unable to find resource {}/{}/_history/{} in database",
+						theEntity.getResourceType(),
+						theEntity.getIdDt().getIdPart(),
+						theEntity.getVersion());
 			} else {
-				ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(resource, BundleEntrySearchModeEnum.MATCH);
+				ourLog.warn("Unable to find resource in database.");
 			}
+			return;
+		}
+
+		Integer index = thePosition.get(theResourceId);
+		if (index == null) {
+			ourLog.warn("Got back unexpected resource PID {}", theResourceId);
+			return;
+		}
+
+		if (theIncludedPids.contains(theResourceId)) {
+			ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(theResource, BundleEntrySearchModeEnum.INCLUDE);
+		} else {
+			ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.put(theResource, BundleEntrySearchModeEnum.MATCH);
+		}
+
+		theResourceListToPopulate.set(index, theResource);
+	}
+
+	/**
+	 * Waits for the pages submitted by {@link #doLoadPids} to finish decoding, and places the
+	 * decoded resources at their expected positions
+	 */
+	private void awaitParallelPages(
+			List<ResourceLoadingPage> thePages,
+			Collection<JpaPid> theIncludedPids,
+			List<IBaseResource> theResourceListToPopulate,
+			Map<JpaPid, Integer> thePosition,
+			RequestDetails theRequest) {
+		boolean haveHooks = CompositeInterceptorBroadcaster.hasHooks(
+				Pointcut.JPA_PERFTRACE_INFO, myInterceptorBroadcaster, theRequest);
+		try {
+			for (int pageIdx = 0; pageIdx < thePages.size(); pageIdx++) {
+				ResourceLoadingPage page = thePages.get(pageIdx);
+				List<IBaseResource> resources = page.await();
+				for (int i = 0; i < resources.size(); i++) {
+					IBaseResource resource = resources.get(i);
+					if (resource != null) {
+						// The partition lookup may hit the database, so it happens here rather than on the loading
+						// thread
+						myJpaStorageResourceParser.populateResourcePartitionInformation(page.getEntity(i), resource);
+					}
+					addLoadedResource(
+							page.getEntity(i),
+							page.getResourceId(i),
+							resource,
+							theIncludedPids,
+							theResourceListToPopulate,
+							thePosition);
+				}
 
-			theResourceListToPopulate.set(index, resource);
+				// Interceptor broadcast: JPA_PERFTRACE_INFO
+				if (haveHooks) {
+					StorageProcessingMessage message = new StorageProcessingMessage();
+					message.setMessage("Loaded page " + (pageIdx + 1) + "/" + thePages.size() + " with "
+							+ page.getFetchedCount() + " resources - Fetched in " + page.getFetchMillis()
+							+ "ms, decoded " + resources.size() + " resources in " + page.getDecodeMillis()
+							+ "ms across " + page.getTaskCount() + " tasks");
+					HookParams params = new HookParams()
+							.add(RequestDetails.class, theRequest)
+							.addIfMatchesType(ServletRequestDetails.class, theRequest)
+							.add(StorageProcessingMessage.class, message);
+					CompositeInterceptorBroadcaster.doCallHooks(
+							myInterceptorBroadcaster, theRequest, Pointcut.JPA_PERFTRACE_INFO, params);
+				}
+			}
+		} finally {
+			thePages.forEach(ResourceLoadingPage::cancel);
 		}
 	}
 
@@ -1274,12 +1372,32 @@ public class SearchBuilder implements ISearchBuilder<JpaPid> {
 			}
 		}
 
+		/*
+		 * If parallel loading is enabled, the rows for each chunk are still fetched on this
+		 * thread (so that they are read in the current transaction), but they are decoded
+		 * on the loading executor while the next chunk is being fetched.
+		 */
+		List<ResourceLoadingPage> parallelPages = null;
+		if (mySearchResourceLoadingExecutor != null && mySearchResourceLoadingExecutor.isEnabled()) {
+			parallelPages = new ArrayList<>();
+		}
+		List<ResourceLoadingPage> pages = parallelPages;
+
 		// We only chunk because some jdbc drivers can't handle long param lists.
 		new QueryChunker<JpaPid>()
 				.chunk(
 						thePids,
 						t -> doLoadPids(
-								t, theIncludedPids, theResourceListToPopulate, theForHistoryOperation, position));
+								t,
+								theIncludedPids,
+								theResourceListToPopulate,
+								theForHistoryOperation,
+								position,
+								pages));
+
+		if (parallelPages != null) {
+			awaitParallelPages(parallelPages, theIncludedPids, theResourceListToPopulate, position, theDetails);
+		}
 	}
 
 	/**
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.util.ResizableThreadPool;
+import jakarta.annotation.PreDestroy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Shared, bounded thread pool used by {@link SearchBuilder} to decode loaded resources in
+ * parallel when {@link JpaStorageSettings#getSearchResourceLoadingThreadCount()} is greater
+ * than zero. The pool is created lazily and resized if the setting changes at runtime
+ * (see {@link ResizableThreadPool}).
+ */
+public class SearchResourceLoadingExecutor {
+
+	private final JpaStorageSettings myStorageSettings;
+	private final ResizableThreadPool myThreadPool;
+
+	public SearchResourceLoadingExecutor(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+		myThreadPool = new ResizableThreadPool("search-resource-loading-", this::getThreadCount);
+	}
+
+	/**
+	 * @return Returns the number of threads available for decoding, or <code>0</code> if parallel decoding is disabled
+	 */
+	public int getThreadCount() {
+		return myStorageSettings.getSearchResourceLoadingThreadCount();
+	}
+
+	public boolean isEnabled() {
+		return getThreadCount() > 0;
+	}
+
+	public <T> Future<T> submit(Callable<T> theTask) {
+		return myThreadPool.submit(theTask);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myThreadPool.stop();
+	}
+}
@@ -29,6 +29,7 @@ import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDesignationDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptParentChildLinkDao;
@@ -120,6 +121,9 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 	@Autowired
 	private ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
 
+	@Autowired
+	private ITermConceptClosureDao myConceptClosureDao;
+
 	@Autowired
 	private ITermVersionAdapterSvc myTerminologyVersionAdapterSvc;
 
@@ -250,6 +254,8 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 		}
 		theConcept.getProperties().clear();
 
+		myConceptClosureDao.deleteByConcept(theConcept.getId());
+
 		ourLog.info("Deleting concept {} - Code {}", theConcept.getId(), theConcept.getCode());
 
 		myConceptDao.deleteById(theConcept.getId());
@@ -624,6 +630,12 @@ public class TermCodeSystemStorageSvcImpl implements ITermCodeSystemStorageSvc {
 			}
 		}
 
+		// The concept was stored before its new parent links existed, so the closure rows of
+		// the concept and of everything already stored below it are missing the new ancestors
+		if (!parentConceptsWeShouldLinkTo.isEmpty() && conceptToAdd.getId() != null) {
+			myTermConceptDaoSvc.addParentsToClosureOfSubtree(conceptToAdd, parentConceptsWeShouldLinkTo);
+		}
+
 		ourLog.trace("About to save parent-child links");
 
 		// Save children recursively
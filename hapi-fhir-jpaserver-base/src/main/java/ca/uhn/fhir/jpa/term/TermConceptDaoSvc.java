@@ -20,19 +20,30 @@
 package ca.uhn.fhir.jpa.term;
 
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDesignationDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptPropertyDao;
 import ca.uhn.fhir.jpa.entity.TermConcept;
+import ca.uhn.fhir.jpa.entity.TermConceptClosure;
 import ca.uhn.fhir.jpa.entity.TermConceptDesignation;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
 import ca.uhn.fhir.jpa.entity.TermConceptProperty;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 public class TermConceptDaoSvc {
 	private static final Logger ourLog = LoggerFactory.getLogger(TermCodeSystemStorageSvcImpl.class);
@@ -46,9 +57,23 @@ public class TermConceptDaoSvc {
 	@Autowired
 	protected ITermConceptDesignationDao myConceptDesignationDao;
 
+	@Autowired
+	protected ITermConceptClosureDao myConceptClosureDao;
+
 	private boolean mySupportLegacyLob = false;
 
 	public int saveConcept(TermConcept theConcept) {
+		return saveConcept(theConcept, null);
+	}
+
+	/**
+	 * Saves a concept along with its properties, designations and hierarchy closure rows
+	 *
+	 * @param theAncestorDepths The PIDs of the ancestors of the concept along with the length of the shortest
+	 *                          path to each, or <code>null</code> to derive these from the parent links of
+	 *                          the concept
+	 */
+	public int saveConcept(TermConcept theConcept, @Nullable Map<Long, Integer> theAncestorDepths) {
 		int retVal = 0;
 
 		/*
@@ -69,6 +94,7 @@ public class TermConceptDaoSvc {
 		}
 
 		if (theConcept.getId() == null || theConcept.getIndexStatus() == null) {
+			boolean isNew = theConcept.getId() == null;
 			retVal++;
 			theConcept.setIndexStatus(BaseHapiFhirDao.INDEX_STATUS_INDEXED);
 			theConcept.setUpdated(new Date());
@@ -83,12 +109,100 @@ public class TermConceptDaoSvc {
 			for (TermConceptDesignation next : theConcept.getDesignations()) {
 				myConceptDesignationDao.save(next);
 			}
+
+			saveClosure(theConcept, isNew, theAncestorDepths);
 		}
 
 		ourLog.trace("Saved {} and got PID {}", theConcept.getCode(), theConcept.getId());
 		return retVal;
 	}
 
+	/**
+	 * Adds the rows of the hierarchy closure table implied by giving an already stored concept
+	 * new parents. Every ancestor of a new parent (including the parent itself) becomes an ancestor
+	 * of the concept and of every stored descendant of it, so the closure ancestors of the new
+	 * parents are crossed with the closure descendants of the concept, adding the depths and
+	 * keeping the shortest path where a row already exists.
+	 */
+	public void addParentsToClosureOfSubtree(TermConcept theConcept, Collection<TermConcept> theNewParents) {
+		Long conceptPid = theConcept.getId();
+		List<Long> parentPids = theNewParents.stream()
+				.map(TermConcept::getId)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		if (conceptPid == null || parentPids.isEmpty()) {
+			return;
+		}
+
+		List<TermConceptClosure> rows = new ArrayList<>();
+		int updated = 0;
+		for (Object[] next : myConceptClosureDao.findClosureOfSubtreeBelowParents(conceptPid, parentPids)) {
+			int depth = ((Number) next[2]).intValue();
+			Long existingPid = (Long) next[4];
+			if (existingPid == null) {
+				rows.add(new TermConceptClosure((Long) next[0], (Long) next[1], depth, (Long) next[3]));
+			} else {
+				// Already linked through another path, but the new parent gives a shorter one
+				myConceptClosureDao.updateDepth(existingPid, depth);
+				updated++;
+			}
+		}
+		myConceptClosureDao.saveAll(rows);
+		ourLog.debug(
+				"Added {} and shortened {} closure rows below {}", rows.size(), updated, theConcept.getCode());
+	}
+
+	/**
+	 * Stores the rows of the hierarchy closure table which have the given concept as their
+	 * descendant. These are derived from the same parent links used to populate
+	 * {@link TermConcept#getParentPidsAsString()}, so the two always describe the same hierarchy.
+	 */
+	private void saveClosure(TermConcept theConcept, boolean theIsNew, @Nullable Map<Long, Integer> theAncestorDepths) {
+		Long conceptPid = theConcept.getId();
+		if (conceptPid == null || theConcept.getCodeSystemVersion() == null) {
+			return;
+		}
+
+		if (!theIsNew) {
+			myConceptClosureDao.deleteByDescendant(conceptPid);
+		}
+
+		Long codeSystemVersionPid = theConcept.getCodeSystemVersion().getPid();
+		Map<Long, Integer> ancestorDepths =
+				theAncestorDepths != null ? theAncestorDepths : getAncestorDepths(theConcept);
+		List<TermConceptClosure> rows = new ArrayList<>(ancestorDepths.size() + 1);
+		rows.add(new TermConceptClosure(conceptPid, conceptPid, 0, codeSystemVersionPid));
+		for (Map.Entry<Long, Integer> next : ancestorDepths.entrySet()) {
+			rows.add(new TermConceptClosure(next.getKey(), conceptPid, next.getValue(), codeSystemVersionPid));
+		}
+		myConceptClosureDao.saveAll(rows);
+	}
+
+	/**
+	 * Walks the parent links of the given concept breadth-first, returning every ancestor PID
+	 * along with the length of the shortest path to it.
+	 */
+	static Map<Long, Integer> getAncestorDepths(TermConcept theConcept) {
+		Map<Long, Integer> retVal = new HashMap<>();
+		Deque<TermConcept> queue = new ArrayDeque<>();
+		queue.add(theConcept);
+
+		while (!queue.isEmpty()) {
+			TermConcept next = queue.removeFirst();
+			int depth = next == theConcept ? 1 : retVal.get(next.getId()) + 1;
+			for (TermConceptParentChildLink nextLink : next.getParents()) {
+				TermConcept parent = nextLink.getParent();
+				if (parent == null || parent.getId() == null || retVal.containsKey(parent.getId())) {
+					continue;
+				}
+				retVal.put(parent.getId(), depth);
+				queue.addLast(parent);
+			}
+		}
+
+		return retVal;
+	}
+
 	public TermConceptDaoSvc setSupportLegacyLob(boolean theSupportLegacyLob) {
 		mySupportLegacyLob = theSupportLegacyLob;
 		return this;
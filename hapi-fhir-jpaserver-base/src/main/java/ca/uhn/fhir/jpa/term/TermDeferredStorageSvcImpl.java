@@ -22,6 +22,8 @@ package ca.uhn.fhir.jpa.term;
 import ca.uhn.fhir.batch2.api.IJobCoordinator;
 import ca.uhn.fhir.batch2.model.JobInstance;
 import ca.uhn.fhir.batch2.model.JobInstanceStartRequest;
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.batch.models.Batch2JobStartResponse;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
@@ -41,9 +43,13 @@ import ca.uhn.fhir.jpa.term.api.ITermVersionAdapterSvc;
 import ca.uhn.fhir.jpa.term.models.TermCodeSystemDeleteJobParameters;
 import ca.uhn.fhir.jpa.term.models.TermCodeSystemDeleteVersionJobParameters;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
 import ca.uhn.fhir.util.TimeoutManager;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.hl7.fhir.r4.model.ConceptMap;
@@ -52,6 +58,7 @@ import org.quartz.JobExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -62,11 +69,20 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static ca.uhn.fhir.batch2.jobs.termcodesystem.TermCodeSystemJobConfig.TERM_CODE_SYSTEM_DELETE_JOB_NAME;
@@ -75,6 +91,8 @@ import static ca.uhn.fhir.batch2.jobs.termcodesystem.TermCodeSystemJobConfig.TER
 public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHasScheduledJobs {
 
 	private static final Logger ourLog = LoggerFactory.getLogger(TermDeferredStorageSvcImpl.class);
+	private static final int DEFERRED_BATCH_SIZE = 1000;
+	private static final int EXISTENCE_CHECK_CHUNK_SIZE = 500;
 	private static final long SAVE_ALL_DEFERRED_WARN_MINUTES = 1;
 	private static final long SAVE_ALL_DEFERRED_ERROR_MINUTES = 5;
 	private boolean myAllowDeferredTasksTimeout = true;
@@ -82,11 +100,10 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 			List.of(TERM_CODE_SYSTEM_DELETE_JOB_NAME, TERM_CODE_SYSTEM_VERSION_DELETE_JOB_NAME);
 	private final List<TermCodeSystem> myDeferredCodeSystemsDeletions = Collections.synchronizedList(new ArrayList<>());
 	private final Queue<TermCodeSystemVersion> myDeferredCodeSystemVersionsDeletions = new ConcurrentLinkedQueue<>();
-	private final List<TermConcept> myDeferredConcepts = Collections.synchronizedList(new ArrayList<>());
+	private final BlockingDeque<TermConcept> myDeferredConcepts = new LinkedBlockingDeque<>();
 	private final List<ValueSet> myDeferredValueSets = Collections.synchronizedList(new ArrayList<>());
 	private final List<ConceptMap> myDeferredConceptMaps = Collections.synchronizedList(new ArrayList<>());
-	private final List<TermConceptParentChildLink> myConceptLinksToSaveLater =
-			Collections.synchronizedList(new ArrayList<>());
+	private final BlockingQueue<TermConceptParentChildLink> myConceptLinksToSaveLater = new LinkedBlockingQueue<>();
 
 	// TODO - why is this needed? it's cumbersome to maintain; consider removing it
 	/**
@@ -109,6 +126,11 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 
 	private boolean myProcessDeferred = true;
 
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
 	@Autowired
 	private ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
 
@@ -187,11 +209,183 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 	private void processDeferredConcepts() {
 		int codeCount = 0, relCount = 0;
 		StopWatch stopwatch = new StopWatch();
+		int threadCount = myStorageSettings.getDeferredTerminologyStorageThreadCount();
+
+		List<List<TermConcept>> conceptBatches = takeDeferredConceptBatches(threadCount);
+		if (!conceptBatches.isEmpty()) {
+			ourLog.debug(
+					"Saving {} deferred concepts using {} batches...",
+					conceptBatches.stream().mapToInt(List::size).sum(),
+					conceptBatches.size());
+			codeCount = saveBatches(conceptBatches, this::saveDeferredConcepts);
+		}
 
-		int count = Math.min(1000, myDeferredConcepts.size());
-		ourLog.debug("Saving {} deferred concepts...", count);
-		while (codeCount < count && myDeferredConcepts.size() > 0) {
-			TermConcept next = myDeferredConcepts.remove(0);
+		if (codeCount > 0) {
+			ourLog.info(
+					"Saved {} deferred concepts ({} codes remain and {} relationships remain) in {}ms ({} codes/sec)",
+					codeCount,
+					myDeferredConcepts.size(),
+					myConceptLinksToSaveLater.size(),
+					stopwatch.getMillis(),
+					stopwatch.formatThroughput(codeCount, TimeUnit.SECONDS));
+		}
+
+		// Relationships can only be saved once every concept they point to has been saved
+		if (conceptBatches.isEmpty()) {
+			List<List<TermConceptParentChildLink>> linkBatches = takeDeferredConceptLinkBatches(threadCount);
+			ourLog.info(
+					"Saving {} deferred concept relationships...",
+					linkBatches.stream().mapToInt(List::size).sum());
+			relCount = saveBatches(linkBatches, this::saveDeferredConceptLinks);
+		}
+
+		if (relCount > 0) {
+			ourLog.info(
+					"Saved {} deferred relationships ({} remain) in {}ms ({} entries/sec)",
+					relCount,
+					myConceptLinksToSaveLater.size(),
+					stopwatch.getMillis(),
+					stopwatch.formatThroughput(relCount, TimeUnit.SECONDS));
+		}
+
+		if ((myDeferredConcepts.size() + myConceptLinksToSaveLater.size()) == 0) {
+			ourLog.info("All deferred concepts and relationships have now been synchronized to the database");
+		}
+	}
+
+	/**
+	 * Takes the next concepts to save off of the queue, split into one batch per thread.
+	 * <p>
+	 * Concepts are queued parents-first, and {@link TermConceptDaoSvc#saveConcept(TermConcept)}
+	 * stores any unsaved parents of a concept along with it. That is fine on a single thread,
+	 * but two threads must never try to store the same parent. So when several threads are
+	 * used, a batch only ever holds concepts whose parents are already stored. Concepts which
+	 * are not ready yet go back on the queue in their original order, and are normally ready
+	 * for the next round since their parents are saved in this one. If nothing in reach is
+	 * ready (e.g. a concept whose second parent is queued much further along), the first
+	 * concept is saved on its own, exactly as it would be on a single thread.
+	 * </p>
+	 */
+	private List<List<TermConcept>> takeDeferredConceptBatches(int theThreadCount) {
+		List<List<TermConcept>> retVal = new ArrayList<>();
+		if (theThreadCount == 1) {
+			List<TermConcept> batch = new ArrayList<>();
+			drainUpTo(myDeferredConcepts, batch, DEFERRED_BATCH_SIZE);
+			if (!batch.isEmpty()) {
+				retVal.add(batch);
+			}
+			return retVal;
+		}
+
+		for (int i = 0; i < theThreadCount; i++) {
+			retVal.add(new ArrayList<>());
+		}
+		int maxCount = theThreadCount * DEFERRED_BATCH_SIZE;
+		int maxScanned = maxCount * 4;
+		int count = 0;
+		List<TermConcept> notReady = new ArrayList<>();
+		while (count < maxCount && notReady.size() < maxScanned) {
+			TermConcept next = myDeferredConcepts.pollFirst();
+			if (next == null) {
+				break;
+			}
+			if (isReadyForConcurrentSave(next)) {
+				retVal.get(count % theThreadCount).add(next);
+				count++;
+			} else {
+				notReady.add(next);
+			}
+		}
+
+		if (count == 0 && !notReady.isEmpty()) {
+			retVal.get(0).add(notReady.remove(0));
+		}
+		for (int i = notReady.size() - 1; i >= 0; i--) {
+			myDeferredConcepts.addFirst(notReady.get(i));
+		}
+
+		retVal.removeIf(List::isEmpty);
+		return retVal;
+	}
+
+	private static boolean isReadyForConcurrentSave(TermConcept theConcept) {
+		if (theConcept.getId() != null) {
+			return true;
+		}
+		for (TermConceptParentChildLink next : theConcept.getParents()) {
+			if (next.getParent().getId() == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private List<List<TermConceptParentChildLink>> takeDeferredConceptLinkBatches(int theThreadCount) {
+		List<List<TermConceptParentChildLink>> retVal = new ArrayList<>();
+		for (int i = 0; i < theThreadCount; i++) {
+			List<TermConceptParentChildLink> batch = new ArrayList<>();
+			drainUpTo(myConceptLinksToSaveLater, batch, DEFERRED_BATCH_SIZE);
+			if (batch.isEmpty()) {
+				break;
+			}
+			retVal.add(batch);
+		}
+		return retVal;
+	}
+
+	private static <T> void drainUpTo(Queue<T> theQueue, List<T> theTarget, int theMaxCount) {
+		while (theTarget.size() < theMaxCount) {
+			T next = theQueue.poll();
+			if (next == null) {
+				break;
+			}
+			theTarget.add(next);
+		}
+	}
+
+	/**
+	 * Saves each batch in its own transaction. A single batch is saved on the calling
+	 * thread, otherwise the batches are saved concurrently and this method waits for all
+	 * of them to finish before returning.
+	 */
+	private <T> int saveBatches(List<List<T>> theBatches, Function<List<T>, Integer> theSaver) {
+		if (theBatches.isEmpty()) {
+			return 0;
+		}
+		if (theBatches.size() == 1) {
+			return runInTransaction(() -> theSaver.apply(theBatches.get(0)));
+		}
+
+		ThreadPoolTaskExecutor executor = getExecutor(theBatches.size());
+		List<Future<Integer>> futures = new ArrayList<>(theBatches.size());
+		for (List<T> next : theBatches) {
+			futures.add(executor.submit(() -> runInTransaction(() -> theSaver.apply(next))));
+		}
+
+		int retVal = 0;
+		Throwable failure = null;
+		for (Future<Integer> next : futures) {
+			try {
+				retVal += next.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure = e;
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			}
+		}
+		if (failure != null) {
+			throw new InternalErrorException(
+					Msg.code(2795) + "Failed to save deferred terminology: " + failure.getMessage(), failure);
+		}
+		return retVal;
+	}
+
+	private int saveDeferredConcepts(List<TermConcept> theConcepts) {
+		int codeCount = 0;
+		for (TermConcept next : theConcepts) {
 			if (myCodeSystemVersionDao
 					.findById(next.getCodeSystemVersion().getPid())
 					.isPresent()) {
@@ -212,56 +406,60 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 						next.getCodeSystemVersion().getPid());
 			}
 		}
+		return codeCount;
+	}
 
-		if (codeCount > 0) {
-			ourLog.info(
-					"Saved {} deferred concepts ({} codes remain and {} relationships remain) in {}ms ({} codes/sec)",
-					codeCount,
-					myDeferredConcepts.size(),
-					myConceptLinksToSaveLater.size(),
-					stopwatch.getMillis(),
-					stopwatch.formatThroughput(codeCount, TimeUnit.SECONDS));
+	private int saveDeferredConceptLinks(List<TermConceptParentChildLink> theLinks) {
+		Set<Long> conceptPids = new HashSet<>();
+		for (TermConceptParentChildLink next : theLinks) {
+			assert next.getChild() != null;
+			assert next.getParent() != null;
+			if (next.getChild().getId() != null) {
+				conceptPids.add(next.getChild().getId());
+			}
+			if (next.getParent().getId() != null) {
+				conceptPids.add(next.getParent().getId());
+			}
 		}
 
-		if (codeCount == 0) {
-			count = Math.min(1000, myConceptLinksToSaveLater.size());
-			ourLog.info("Saving {} deferred concept relationships...", count);
-			while (relCount < count && myConceptLinksToSaveLater.size() > 0) {
-				TermConceptParentChildLink next = myConceptLinksToSaveLater.remove(0);
-				assert next.getChild() != null;
-				assert next.getParent() != null;
-
-				if ((next.getChild().getId() == null
-								|| !myConceptDao
-										.findById(next.getChild().getId())
-										.isPresent())
-						|| (next.getParent().getId() == null
-								|| !myConceptDao
-										.findById(next.getParent().getId())
-										.isPresent())) {
-					ourLog.warn(
-							"Not inserting link from child {} to parent {} because it appears to have been deleted",
-							next.getParent().getCode(),
-							next.getChild().getCode());
-					continue;
-				}
+		Set<Long> existingConceptPids = new HashSet<>();
+		for (List<Long> next : Lists.partition(new ArrayList<>(conceptPids), EXISTENCE_CHECK_CHUNK_SIZE)) {
+			existingConceptPids.addAll(myConceptDao.findExistingPids(next));
+		}
 
-				saveConceptLink(next);
-				relCount++;
+		int relCount = 0;
+		for (TermConceptParentChildLink next : theLinks) {
+			if (!existingConceptPids.contains(next.getChild().getId())
+					|| !existingConceptPids.contains(next.getParent().getId())) {
+				ourLog.warn(
+						"Not inserting link from child {} to parent {} because it appears to have been deleted",
+						next.getParent().getCode(),
+						next.getChild().getCode());
+				continue;
 			}
+
+			saveConceptLink(next);
+			relCount++;
 		}
+		return relCount;
+	}
 
-		if (relCount > 0) {
-			ourLog.info(
-					"Saved {} deferred relationships ({} remain) in {}ms ({} entries/sec)",
-					relCount,
-					myConceptLinksToSaveLater.size(),
-					stopwatch.getMillis(),
-					stopwatch.formatThroughput(relCount, TimeUnit.SECONDS));
+	private synchronized ThreadPoolTaskExecutor getExecutor(int theThreadCount) {
+		if (myExecutor == null) {
+			myExecutor = ThreadPoolUtil.newThreadPool(theThreadCount, theThreadCount, "TermDeferredStorage-");
+		} else if (myExecutor.getMaxPoolSize() < theThreadCount) {
+			// The thread count setting was raised, so grow the existing pool
+			myExecutor.setMaxPoolSize(theThreadCount);
+			myExecutor.setCorePoolSize(theThreadCount);
 		}
+		return myExecutor;
+	}
 
-		if ((myDeferredConcepts.size() + myConceptLinksToSaveLater.size()) == 0) {
-			ourLog.info("All deferred concepts and relationships have now been synchronized to the database");
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
 		}
 	}
 
@@ -347,11 +545,7 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 			}
 
 			if (isDeferredConceptsOrConceptLinksToSaveLater()) {
-				runInTransaction(() -> {
-					processDeferredConcepts();
-					return null;
-				});
-
+				processDeferredConcepts();
 				continue;
 			}
 
@@ -515,6 +709,16 @@ public class TermDeferredStorageSvcImpl implements ITermDeferredStorageSvc, IHas
 		myConceptDao = theConceptDao;
 	}
 
+	@VisibleForTesting
+	void setConceptParentChildLinkDaoForUnitTest(ITermConceptParentChildLinkDao theConceptParentChildLinkDao) {
+		myConceptParentChildLinkDao = theConceptParentChildLinkDao;
+	}
+
+	@VisibleForTesting
+	void setStorageSettingsForUnitTest(JpaStorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+	}
+
 	@VisibleForTesting
 	void setCodeSystemVersionDaoForUnitTest(ITermCodeSystemVersionDao theCodeSystemVersionDao) {
 		myCodeSystemVersionDao = theCodeSystemVersionDao;
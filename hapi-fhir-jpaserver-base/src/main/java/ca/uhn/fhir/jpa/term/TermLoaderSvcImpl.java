@@ -1042,7 +1042,6 @@ public class TermLoaderSvcImpl implements ITermLoaderSvc {
 	private UploadStatistics processSnomedCtFiles(
 			LoadedFileDescriptors theDescriptors, RequestDetails theRequestDetails) {
 		final TermCodeSystemVersion codeSystemVersion = new TermCodeSystemVersion();
-		final Map<String, TermConcept> id2concept = new HashMap<>();
 		final Map<String, TermConcept> code2concept = new HashMap<>();
 		final Set<String> validConceptIds = new HashSet<>();
 
@@ -1051,13 +1050,13 @@ public class TermLoaderSvcImpl implements ITermLoaderSvc {
 
 		ourLog.info("Have {} valid concept IDs", validConceptIds.size());
 
-		handler = new SctHandlerDescription(validConceptIds, code2concept, id2concept, codeSystemVersion);
+		handler = new SctHandlerDescription(validConceptIds, code2concept, codeSystemVersion);
 		iterateOverZipFileCsv(theDescriptors, SCT_FILE_DESCRIPTION, handler, '\t', null, true);
 
 		ourLog.info("Got {} concepts, cloning map", code2concept.size());
 		final HashMap<String, TermConcept> rootConcepts = new HashMap<>(code2concept);
 
-		handler = new SctHandlerRelationship(codeSystemVersion, rootConcepts, code2concept);
+		handler = new SctHandlerRelationship(rootConcepts, code2concept);
 		iterateOverZipFileCsv(theDescriptors, SCT_FILE_RELATIONSHIP, handler, '\t', null, true);
 
 		IOUtils.closeQuietly(theDescriptors);
@@ -19,6 +19,10 @@
  */
 package ca.uhn.fhir.jpa.term;
 
+import ca.uhn.fhir.batch2.api.IJobCoordinator;
+import ca.uhn.fhir.batch2.model.JobInstance;
+import ca.uhn.fhir.batch2.model.JobInstanceStartRequest;
+import ca.uhn.fhir.batch2.model.StatusEnum;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
 import ca.uhn.fhir.context.support.ConceptValidationOptions;
@@ -34,6 +38,7 @@ import ca.uhn.fhir.jpa.api.dao.IDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDaoCodeSystem;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.batch.models.Batch2JobStartResponse;
 import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
 import ca.uhn.fhir.jpa.config.util.ConnectionPoolInfoProvider;
 import ca.uhn.fhir.jpa.config.util.IConnectionPoolInfoProvider;
@@ -41,6 +46,7 @@ import ca.uhn.fhir.jpa.dao.IFulltextSearchSvc;
 import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDesignationDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptPropertyDao;
@@ -73,8 +79,10 @@ import ca.uhn.fhir.jpa.term.api.ITermDeferredStorageSvc;
 import ca.uhn.fhir.jpa.term.api.ITermReadSvc;
 import ca.uhn.fhir.jpa.term.api.ReindexTerminologyResult;
 import ca.uhn.fhir.jpa.term.ex.ExpansionTooCostlyException;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPreExpansionJobParameters;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
@@ -163,6 +171,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -175,10 +184,12 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static ca.uhn.fhir.batch2.jobs.termvalueset.TermValueSetPreExpansionJobConfig.TERM_VALUE_SET_PRE_EXPANSION_JOB_NAME;
 import static ca.uhn.fhir.jpa.entity.TermConceptPropertyBinder.CONCEPT_PROPERTY_PREFIX_NAME;
 import static ca.uhn.fhir.jpa.term.api.ITermLoaderSvc.LOINC_URI;
 import static java.lang.String.join;
@@ -225,6 +236,9 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 	@Autowired
 	protected ITermConceptDesignationDao myConceptDesignationDao;
 
+	@Autowired
+	protected ITermConceptClosureDao myConceptClosureDao;
+
 	@Autowired
 	protected ITermValueSetDao myTermValueSetDao;
 
@@ -240,7 +254,7 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
 	protected EntityManager myEntityManager;
 
-	private boolean myPreExpandingValueSets = false;
+	private final AtomicInteger myPreExpandingValueSetCount = new AtomicInteger();
 
 	@Autowired
 	private ITermCodeSystemVersionDao myCodeSystemVersionDao;
@@ -271,6 +285,9 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 	@Autowired(required = false)
 	private ITermDeferredStorageSvc myDeferredStorageSvc;
 
+	@Autowired
+	private IJobCoordinator myJobCoordinator;
+
 	@Autowired
 	private IIdHelperService<JpaPid> myIdHelperService;
 
@@ -298,6 +315,9 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 	@Autowired
 	private ValueSetConceptAccumulatorFactory myValueSetConceptAccumulatorFactory;
 
+	@Autowired
+	private ValueSetCodeIndexSvc myValueSetCodeIndexSvc;
+
 	@Override
 	public boolean isCodeSystemSupported(ValidationSupportContext theValidationSupportContext, String theSystem) {
 		if (isBlank(theSystem)) {
@@ -481,6 +501,7 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 			ourLog.info("Deleting existing TermValueSet[{}] and its children...", existingTermValueSet.getId());
 			deletePreCalculatedValueSetContents(existingTermValueSet);
 			myTermValueSetDao.deleteById(existingTermValueSet.getId());
+			myValueSetCodeIndexSvc.deleteIndex(existingTermValueSet.getId());
 			ourLog.info("Done deleting existing TermValueSet[{}] and its children.", existingTermValueSet.getId());
 		}
 	}
@@ -931,8 +952,18 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		ourLog.debug("Handling includes");
 		for (ValueSet.ConceptSetComponent include :
 				theValueSetToExpand.getCompose().getInclude()) {
-			myTxTemplate.executeWithoutResult(tx -> expandValueSetHandleIncludeOrExclude(
-					theExpansionOptions, theValueSetCodeAccumulator, theAddedCodes, include, true, theExpansionFilter));
+			myTxTemplate.executeWithoutResult(tx -> {
+				expandValueSetHandleIncludeOrExclude(
+						theExpansionOptions,
+						theValueSetCodeAccumulator,
+						theAddedCodes,
+						include,
+						true,
+						theExpansionFilter);
+				if (theValueSetCodeAccumulator instanceof ValueSetConceptAccumulator) {
+					((ValueSetConceptAccumulator) theValueSetCodeAccumulator).flush();
+				}
+			});
 		}
 
 		// Handle excludes
@@ -1145,6 +1176,27 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		}
 		int chunkSize = chunkSizeOpt.get();
 
+		/*
+		 * A lone is-a or descendent-of filter can be answered straight from the hierarchy
+		 * closure table, which is a single indexed range scan instead of a full text query
+		 * against the parent PIDs of every concept in the code system.
+		 */
+		Optional<TermConcept> closureAncestor = findClosureFilterAncestor(
+				theExpansionFilter, theSystem, theIncludeOrExclude, theTermCodeSystemVersion, includeOrExcludeVersion);
+		if (closureAncestor.isPresent()) {
+			int minDepth = theIncludeOrExclude.getFilterFirstRep().getOp() == ValueSet.FilterOperator.ISA ? 0 : 1;
+			expandUsingClosureTable(
+					theExpansionOptions,
+					theValueSetCodeAccumulator,
+					theAddedCodes,
+					theAdd,
+					includeOrExcludeVersion,
+					closureAncestor.get().getId(),
+					minDepth,
+					chunkSize);
+			return;
+		}
+
 		/*
 		 * Turn the filter into one or more Hibernate Search queries. Ideally we want it
 		 * to be handled by a single query, but Lucene/ES don't like it when we exceed
@@ -1231,6 +1283,95 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		}
 	}
 
+	private Optional<TermConcept> findClosureFilterAncestor(
+			ExpansionFilter theExpansionFilter,
+			String theSystem,
+			ValueSet.ConceptSetComponent theIncludeOrExclude,
+			TermCodeSystemVersion theTermCodeSystemVersion,
+			String theIncludeOrExcludeVersion) {
+		if (theExpansionFilter.hasCode()
+				|| !theExpansionFilter.getFilters().isEmpty()
+				|| !theIncludeOrExclude.getConcept().isEmpty()
+				|| theIncludeOrExclude.getFilter().size() != 1) {
+			return Optional.empty();
+		}
+
+		ValueSet.ConceptSetFilterComponent filter = theIncludeOrExclude.getFilterFirstRep();
+		boolean isHierarchyFilter =
+				filter.getOp() == ValueSet.FilterOperator.ISA || filter.getOp() == ValueSet.FilterOperator.DESCENDENTOF;
+		if (!isHierarchyFilter
+				|| isBlank(filter.getValue())
+				|| !("concept".equals(filter.getProperty()) || "code".equals(filter.getProperty()))) {
+			return Optional.empty();
+		}
+
+		String codeSystemUrlAndVersion = buildCodeSystemUrlAndVersion(theSystem, theIncludeOrExcludeVersion);
+		TermConcept code = findCodeForFilterCriteriaCodeOrConcept(codeSystemUrlAndVersion, filter);
+		if (!theTermCodeSystemVersion
+						.getPid()
+						.equals(code.getCodeSystemVersion().getPid())
+				|| !hasClosure(code)) {
+			return Optional.empty();
+		}
+		return Optional.of(code);
+	}
+
+	private void expandUsingClosureTable(
+			ValueSetExpansionOptions theExpansionOptions,
+			IValueSetConceptAccumulator theValueSetCodeAccumulator,
+			Set<String> theAddedCodes,
+			boolean theAdd,
+			String theIncludeOrExcludeVersion,
+			Long theAncestorPid,
+			int theMinDepth,
+			int theChunkSize) {
+		StopWatch sw = new StopWatch();
+		int count = 0;
+		Long afterPid = Long.MIN_VALUE;
+
+		while (true) {
+			List<Long> pids = myConceptClosureDao.findDescendantPids(
+					theAncestorPid, theMinDepth, afterPid, PageRequest.of(0, theChunkSize));
+			if (pids.isEmpty()) {
+				break;
+			}
+			afterPid = pids.get(pids.size() - 1);
+
+			List<TermConcept> termConcepts = new ArrayList<>(myTermConceptDao.fetchConceptsAndDesignationsByPid(pids));
+			termConcepts.sort(Comparator.comparing(TermConcept::getId));
+
+			int delta = 0;
+			for (TermConcept concept : termConcepts) {
+				count++;
+				boolean added = addCodeIfNotAlreadyAdded(
+						theExpansionOptions,
+						theValueSetCodeAccumulator,
+						theAddedCodes,
+						concept,
+						theAdd,
+						theIncludeOrExcludeVersion);
+				if (added) {
+					delta++;
+				}
+			}
+			theValueSetCodeAccumulator.incrementOrDecrementTotalConcepts(theAdd, delta);
+
+			// keep session bounded
+			myEntityManager.flush();
+			myEntityManager.clear();
+
+			if (pids.size() < theChunkSize) {
+				break;
+			}
+		}
+
+		ourLog.debug(
+				"Closure table expansion for {} produced {} results in {}ms",
+				(theAdd ? "inclusion" : "exclusion"),
+				count,
+				sw.getMillis());
+	}
+
 	private List<TermConcept> sortTermConcepts(SearchProperties searchProps, List<TermConcept> termConcepts) {
 		List<String> codes = searchProps.getIncludeOrExcludeCodes();
 		if (codes.size() > 1) {
@@ -2099,6 +2240,14 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 
 		ValidateUtil.isNotNullOrThrowUnprocessableEntity(theValueSet.hasId(), "ValueSet.id is required");
 		JpaPid valueSetResourcePid = getValueSetResourcePersistentId(theValueSet);
+		if (isBlank(theCode) && theCoding == null && theCodeableConcept == null) {
+			return null;
+		}
+
+		TermValueSet valueSetEntity = myTermValueSetDao
+				.findByResourcePid(valueSetResourcePid.getId())
+				.orElseThrow(IllegalStateException::new);
+		ValueSetCodeIndex codeIndex = myValueSetCodeIndexSvc.getIndex(valueSetEntity);
 
 		List<TermValueSetConcept> concepts = new ArrayList<>();
 		if (isNotBlank(theCode)) {
@@ -2106,30 +2255,26 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 				concepts.addAll(
 						myValueSetConceptDao.findByValueSetResourcePidAndCode(valueSetResourcePid.getId(), theCode));
 			} else if (isNotBlank(theSystem)) {
-				concepts.addAll(findByValueSetResourcePidSystemAndCode(valueSetResourcePid, theSystem, theCode));
+				concepts.addAll(
+						findByValueSetResourcePidSystemAndCode(codeIndex, valueSetResourcePid, theSystem, theCode));
 			}
 		} else if (theCoding != null) {
 			if (theCoding.hasSystem() && theCoding.hasCode()) {
 				concepts.addAll(findByValueSetResourcePidSystemAndCode(
-						valueSetResourcePid, theCoding.getSystem(), theCoding.getCode()));
+						codeIndex, valueSetResourcePid, theCoding.getSystem(), theCoding.getCode()));
 			}
-		} else if (theCodeableConcept != null) {
+		} else {
 			for (Coding coding : theCodeableConcept.getCoding()) {
 				if (coding.hasSystem() && coding.hasCode()) {
 					concepts.addAll(findByValueSetResourcePidSystemAndCode(
-							valueSetResourcePid, coding.getSystem(), coding.getCode()));
+							codeIndex, valueSetResourcePid, coding.getSystem(), coding.getCode()));
 					if (!concepts.isEmpty()) {
 						break;
 					}
 				}
 			}
-		} else {
-			return null;
 		}
 
-		TermValueSet valueSetEntity = myTermValueSetDao
-				.findByResourcePid(valueSetResourcePid.getId())
-				.orElseThrow(IllegalStateException::new);
 		String timingDescription = toHumanReadableExpansionTimestamp(valueSetEntity);
 		String preExpansionMessage = myContext
 				.getLocalizer()
@@ -2168,10 +2313,16 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		}
 
 		// Ok, we failed
-		List<TermValueSetConcept> outcome = myValueSetConceptDao.findByTermValueSetIdSystemOnly(
-				Pageable.ofSize(1), valueSetEntity.getId(), theSystem);
+		boolean systemInValueSet;
+		if (codeIndex != null) {
+			systemInValueSet = codeIndex.containsSystem(theSystem);
+		} else {
+			systemInValueSet = !myValueSetConceptDao
+					.findByTermValueSetIdSystemOnly(Pageable.ofSize(1), valueSetEntity.getId(), theSystem)
+					.isEmpty();
+		}
 		String append;
-		if (outcome.size() == 0) {
+		if (!systemInValueSet) {
 			append = " - No codes in ValueSet belong to CodeSystem with URL " + theSystem;
 		} else {
 			String unknownCodeMessage = myContext
@@ -2198,13 +2349,15 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 	}
 
 	private List<TermValueSetConcept> findByValueSetResourcePidSystemAndCode(
-			JpaPid theResourcePid, String theSystem, String theCode) {
+			@Nullable ValueSetCodeIndex theCodeIndex, JpaPid theResourcePid, String theSystem, String theCode) {
 		assert TransactionSynchronizationManager.isSynchronizationActive();
 
 		List<TermValueSetConcept> retVal = new ArrayList<>();
 		Optional<TermValueSetConcept> optionalTermValueSetConcept;
 		int versionIndex = theSystem.indexOf(OUR_PIPE_CHARACTER);
-		if (versionIndex >= 0) {
+		if (theCodeIndex != null && versionIndex < 0) {
+			optionalTermValueSetConcept = lookupInCodeIndex(theCodeIndex, theSystem, theCode);
+		} else if (versionIndex >= 0) {
 			String systemUrl = theSystem.substring(0, versionIndex);
 			String systemVersion = theSystem.substring(versionIndex + 1);
 			optionalTermValueSetConcept = myValueSetConceptDao.findByValueSetResourcePidSystemAndCodeWithVersion(
@@ -2217,6 +2370,24 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		return retVal;
 	}
 
+	/**
+	 * The code index only holds what is needed to produce a validation result, so the
+	 * concept returned here is a transient one that is never attached to the session
+	 */
+	private Optional<TermValueSetConcept> lookupInCodeIndex(
+			ValueSetCodeIndex theCodeIndex, String theSystem, String theCode) {
+		ValueSetCodeIndex.IndexedCode indexedCode = theCodeIndex.lookup(theSystem, theCode);
+		if (indexedCode == null) {
+			return Optional.empty();
+		}
+		TermValueSetConcept retVal = new TermValueSetConcept()
+				.setSystem(indexedCode.getSystem())
+				.setSystemVersion(indexedCode.getSystemVersion())
+				.setCode(indexedCode.getCode())
+				.setDisplay(indexedCode.getDisplay());
+		return Optional.of(retVal);
+	}
+
 	private void fetchChildren(TermConcept theConcept, Set<TermConcept> theSetToPopulate) {
 		for (TermConceptParentChildLink nextChildLink : theConcept.getChildren()) {
 			TermConcept nextChild = nextChildLink.getChild();
@@ -2226,6 +2397,15 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		}
 	}
 
+	/**
+	 * Concepts stored before the hierarchy closure table existed have no rows in it, so
+	 * callers fall back to walking the hierarchy for those. Every concept stored since has
+	 * at least the row linking it to itself.
+	 */
+	private boolean hasClosure(TermConcept theConcept) {
+		return myConceptClosureDao.countByAncestorAndDescendant(theConcept.getId(), theConcept.getId(), 0) > 0;
+	}
+
 	private Optional<TermConcept> fetchLoadedCode(Long theCodeSystemResourcePid, String theCode) {
 		TermCodeSystemVersion codeSystem =
 				myCodeSystemVersionDao.findCurrentVersionForCodeSystemResourcePid(theCodeSystemResourcePid);
@@ -2336,7 +2516,14 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		Set<TermConcept> retVal = new HashSet<>();
 		retVal.add(concept.get());
 
-		fetchParents(concept.get(), retVal);
+		if (hasClosure(concept.get())) {
+			for (TermConcept next :
+					myConceptClosureDao.findAncestors(concept.get().getId(), 1)) {
+				addToSet(retVal, next);
+			}
+		} else {
+			fetchParents(concept.get(), retVal);
+		}
 
 		ourLog.debug("Fetched {} codes above code {} in {}ms", retVal.size(), theCode, stopwatch.getMillis());
 		return retVal;
@@ -2369,7 +2556,14 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		Set<TermConcept> retVal = new HashSet<>();
 		retVal.add(concept.get());
 
-		fetchChildren(concept.get(), retVal);
+		if (hasClosure(concept.get())) {
+			for (TermConcept next :
+					myConceptClosureDao.findDescendants(concept.get().getId(), 1)) {
+				addToSet(retVal, next);
+			}
+		} else {
+			fetchChildren(concept.get(), retVal);
+		}
 
 		ourLog.debug(
 				"Fetched {} codes below code {} in {}ms",
@@ -2422,73 +2616,191 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 			ourLog.info("Skipping scheduled pre-expansion of ValueSets while deferred entities are being loaded.");
 			return;
 		}
-		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
 
 		while (true) {
-			StopWatch sw = new StopWatch();
-			TermValueSet valueSetToExpand = txTemplate.execute(t -> {
-				Optional<TermValueSet> optionalTermValueSet = getNextTermValueSetNotExpanded();
-				if (optionalTermValueSet.isEmpty()) {
-					return null;
-				}
+			// Deferred entities may start loading while we work through the ValueSets
+			if (isNotSafeToPreExpandValueSets()) {
+				ourLog.info("Stopping pre-expansion of ValueSets while deferred entities are being loaded.");
+				return;
+			}
+			List<Long> claimed = claimValueSetsForPreExpansion(1);
+			if (claimed.isEmpty()) {
+				return;
+			}
+			preExpandValueSet(claimed.get(0));
+		}
+	}
 
-				TermValueSet termValueSet = optionalTermValueSet.get();
+	@Override
+	@Nullable
+	public String startValueSetPreExpansionJob() {
+		if (!myStorageSettings.isEnableTaskPreExpandValueSets()) {
+			return null;
+		}
+		if (isNotSafeToPreExpandValueSets()) {
+			ourLog.info("Skipping scheduled pre-expansion of ValueSets while deferred entities are being loaded.");
+			return null;
+		}
+
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		txTemplate.setReadOnly(true);
+		boolean haveValueSetsToExpand = Boolean.TRUE.equals(
+				txTemplate.execute(t -> getNextTermValueSetNotExpanded().isPresent()));
+		if (!haveValueSetsToExpand) {
+			return null;
+		}
+
+		List<JobInstance> activeInstances = myJobCoordinator.getJobInstancesByJobDefinitionIdAndStatuses(
+				TERM_VALUE_SET_PRE_EXPANSION_JOB_NAME, StatusEnum.getNotEndedStatuses(), 1, 0);
+		if (!activeInstances.isEmpty()) {
+			ourLog.debug(
+					"ValueSet pre-expansion job {} is still running, not starting another one",
+					activeInstances.get(0).getInstanceId());
+			return null;
+		}
+
+		JobInstanceStartRequest request = new JobInstanceStartRequest();
+		request.setJobDefinitionId(TERM_VALUE_SET_PRE_EXPANSION_JOB_NAME);
+		request.setParameters(new TermValueSetPreExpansionJobParameters());
+		Batch2JobStartResponse response = myJobCoordinator.startInstance(new SystemRequestDetails(), request);
+		ourLog.info("Started ValueSet pre-expansion job {}", response.getInstanceId());
+		return response.getInstanceId();
+	}
+
+	@Override
+	public List<Long> claimValueSetsForPreExpansion(int theMaxCount) {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		List<Long> retVal = txTemplate.execute(t -> {
+			Slice<TermValueSet> page = myTermValueSetDao.findByExpansionStatus(
+					PageRequest.of(0, theMaxCount), TermValueSetPreExpansionStatusEnum.NOT_EXPANDED);
+
+			List<Long> pids = new ArrayList<>(page.getNumberOfElements());
+			for (TermValueSet termValueSet : page.getContent()) {
 				termValueSet.setTotalConcepts(0L);
 				termValueSet.setTotalConceptDesignations(0L);
 				termValueSet.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS);
-				return myTermValueSetDao.saveAndFlush(termValueSet);
-			});
-			if (valueSetToExpand == null) {
-				return;
+				myTermValueSetDao.save(termValueSet);
+				pids.add(termValueSet.getId());
 			}
+			myTermValueSetDao.flush();
+			return pids;
+		});
+		assert retVal != null;
+		return retVal;
+	}
 
-			// We have a ValueSet to pre-expand.
-			setPreExpandingValueSets(true);
-			try {
-				ValueSet valueSet = txTemplate.execute(t -> {
-					TermValueSet refreshedValueSetToExpand = myTermValueSetDao
-							.findById(valueSetToExpand.getId())
-							.orElseThrow(() -> new IllegalStateException("Unknown VS ID: " + valueSetToExpand.getId()));
-					return getValueSetFromResourceTable(refreshedValueSetToExpand.getResource());
-				});
-				assert valueSet != null;
-
-				ValueSetConceptAccumulator valueSetConceptAccumulator =
-						myValueSetConceptAccumulatorFactory.create(valueSetToExpand);
-				ValueSetExpansionOptions options = new ValueSetExpansionOptions();
-				options.setIncludeHierarchy(true);
-				expandValueSet(options, valueSet, valueSetConceptAccumulator);
-
-				// We are done with this ValueSet.
-				txTemplate.executeWithoutResult(t -> {
-					valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANDED);
-					valueSetToExpand.setExpansionTimestamp(new Date());
-					myTermValueSetDao.saveAndFlush(valueSetToExpand);
-				});
+	@Override
+	@Nullable
+	public Integer preExpandValueSet(long theTermValueSetPid) {
+		StopWatch sw = new StopWatch();
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
 
-				afterValueSetExpansionStatusChange();
+		/*
+		 * Remove anything left behind by an earlier attempt at this expansion (e.g. a work
+		 * chunk that was interrupted by a node going down) so that the expansion starts clean
+		 */
+		TermValueSet valueSetToExpand = txTemplate.execute(t -> {
+			Optional<TermValueSet> optionalTermValueSet = myTermValueSetDao.findById(theTermValueSetPid);
+			if (optionalTermValueSet.isEmpty()
+					|| optionalTermValueSet.get().getExpansionStatus()
+							!= TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS) {
+				return null;
+			}
 
+			TermValueSet termValueSet = optionalTermValueSet.get();
+			if (isNotSafeToPreExpandValueSets()) {
 				ourLog.info(
-						"Pre-expanded ValueSet[{}] with URL[{}] - Saved {} concepts in {}",
-						valueSet.getId(),
-						valueSet.getUrl(),
-						valueSetConceptAccumulator.getConceptsSaved(),
-						sw);
-
-			} catch (Exception e) {
-				ourLog.error(
-						"Failed to pre-expand ValueSet with URL[{}]: {}", valueSetToExpand.getUrl(), e.getMessage(), e);
-				txTemplate.executeWithoutResult(t -> {
-					valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.FAILED_TO_EXPAND);
-					myTermValueSetDao.saveAndFlush(valueSetToExpand);
-				});
+						"Deferred entities are being loaded, leaving TermValueSet[{}] for a later pre-expansion",
+						theTermValueSetPid);
+				termValueSet.setExpansionStatus(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED);
+				myTermValueSetDao.saveAndFlush(termValueSet);
+				return null;
+			}
 
-			} finally {
-				setPreExpandingValueSets(false);
+			deletePreCalculatedValueSetContents(termValueSet);
+			termValueSet.setTotalConcepts(0L);
+			termValueSet.setTotalConceptDesignations(0L);
+			return myTermValueSetDao.saveAndFlush(termValueSet);
+		});
+		if (valueSetToExpand == null) {
+			ourLog.info("TermValueSet[{}] is no longer waiting for pre-expansion, skipping it", theTermValueSetPid);
+			return null;
+		}
+
+		myPreExpandingValueSetCount.incrementAndGet();
+		try {
+			ValueSet valueSet = txTemplate.execute(t -> {
+				TermValueSet refreshedValueSetToExpand = myTermValueSetDao
+						.findById(valueSetToExpand.getId())
+						.orElseThrow(() -> new IllegalStateException("Unknown VS ID: " + valueSetToExpand.getId()));
+				return getValueSetFromResourceTable(refreshedValueSetToExpand.getResource());
+			});
+			assert valueSet != null;
+
+			ValueSetConceptAccumulator valueSetConceptAccumulator =
+					myValueSetConceptAccumulatorFactory.create(valueSetToExpand);
+			ValueSetExpansionOptions options = new ValueSetExpansionOptions();
+			options.setIncludeHierarchy(true);
+			expandValueSet(options, valueSet, valueSetConceptAccumulator);
+
+			// We are done with this ValueSet.
+			txTemplate.executeWithoutResult(t -> {
+				valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.EXPANDED);
+				valueSetToExpand.setExpansionTimestamp(new Date());
+				myTermValueSetDao.saveAndFlush(valueSetToExpand);
+			});
+
+			/*
+			 * Build the code index from a fresh read so that its timestamp matches what
+			 * validation will see, regardless of the precision the database stores
+			 */
+			if (myValueSetCodeIndexSvc.isEnabled()) {
+				txTemplate.executeWithoutResult(t -> myTermValueSetDao
+						.findById(valueSetToExpand.getId())
+						.ifPresent(myValueSetCodeIndexSvc::buildIndex));
 			}
+
+			afterValueSetExpansionStatusChange();
+
+			ourLog.info(
+					"Pre-expanded ValueSet[{}] with URL[{}] - Saved {} concepts in {}",
+					valueSet.getId(),
+					valueSet.getUrl(),
+					valueSetConceptAccumulator.getConceptsSaved(),
+					sw);
+
+			return valueSetConceptAccumulator.getConceptsSaved();
+
+		} catch (Exception e) {
+			ourLog.error(
+					"Failed to pre-expand ValueSet with URL[{}]: {}", valueSetToExpand.getUrl(), e.getMessage(), e);
+			txTemplate.executeWithoutResult(t -> {
+				valueSetToExpand.setExpansionStatus(TermValueSetPreExpansionStatusEnum.FAILED_TO_EXPAND);
+				myTermValueSetDao.saveAndFlush(valueSetToExpand);
+			});
+			return 0;
+
+		} finally {
+			myPreExpandingValueSetCount.decrementAndGet();
 		}
 	}
 
+	@Override
+	public int releaseValueSetsClaimedForPreExpansion(Collection<Long> theTermValueSetPids) {
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		int retVal = 0;
+		for (List<Long> nextPids :
+				ListUtils.partition(new ArrayList<>(theTermValueSetPids), SearchBuilder.getMaximumPageSize())) {
+			Integer released = txTemplate.execute(t -> myTermValueSetDao.updateExpansionStatus(
+					nextPids,
+					TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS,
+					TermValueSetPreExpansionStatusEnum.NOT_EXPANDED));
+			assert released != null;
+			retVal += released;
+		}
+		return retVal;
+	}
+
 	/*
 	 * If a ValueSet has just finished pre-expanding, let's flush the caches. This is
 	 * kind of a blunt tool, but it should ensure that users don't get unpredictable
@@ -2500,12 +2812,8 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		myCachingValidationSupport.invalidateCaches();
 	}
 
-	private synchronized boolean isPreExpandingValueSets() {
-		return myPreExpandingValueSets;
-	}
-
-	private synchronized void setPreExpandingValueSets(boolean thePreExpandingValueSets) {
-		myPreExpandingValueSets = thePreExpandingValueSets;
+	private boolean isPreExpandingValueSets() {
+		return myPreExpandingValueSetCount.get() > 0;
 	}
 
 	private boolean isNotSafeToPreExpandValueSets() {
@@ -2641,12 +2949,18 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		TermConcept codeB = findCode(codeBSystemIdentifier, conceptB.getCode())
 				.orElseThrow(() -> new InvalidRequestException("Unknown code: " + conceptB));
 
-		SearchSession searchSession = Search.session(myEntityManager);
-
 		ConceptSubsumptionOutcome subsumes;
-		subsumes = testForSubsumption(searchSession, codeA, codeB, ConceptSubsumptionOutcome.SUBSUMES);
-		if (subsumes == null) {
-			subsumes = testForSubsumption(searchSession, codeB, codeA, ConceptSubsumptionOutcome.SUBSUMEDBY);
+		if (hasClosure(codeA) && hasClosure(codeB)) {
+			subsumes = testForSubsumptionUsingClosure(codeA, codeB, ConceptSubsumptionOutcome.SUBSUMES);
+			if (subsumes == null) {
+				subsumes = testForSubsumptionUsingClosure(codeB, codeA, ConceptSubsumptionOutcome.SUBSUMEDBY);
+			}
+		} else {
+			SearchSession searchSession = Search.session(myEntityManager);
+			subsumes = testForSubsumption(searchSession, codeA, codeB, ConceptSubsumptionOutcome.SUBSUMES);
+			if (subsumes == null) {
+				subsumes = testForSubsumption(searchSession, codeB, codeA, ConceptSubsumptionOutcome.SUBSUMEDBY);
+			}
 		}
 		if (subsumes == null) {
 			subsumes = ConceptSubsumptionOutcome.NOTSUBSUMED;
@@ -2714,6 +3028,16 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		});
 	}
 
+	@Nullable
+	private ConceptSubsumptionOutcome testForSubsumptionUsingClosure(
+			TermConcept theLeft, TermConcept theRight, ConceptSubsumptionOutcome theOutput) {
+		if (myConceptClosureDao.countByAncestorAndDescendant(theLeft.getId(), theRight.getId(), 1) > 0) {
+			return theOutput;
+		} else {
+			return null;
+		}
+	}
+
 	@Nullable
 	private ConceptSubsumptionOutcome testForSubsumption(
 			SearchSession theSearchSession,
@@ -3220,9 +3544,16 @@ public class TermReadSvcImpl implements ITermReadSvc, IHasScheduledJobs {
 		@Autowired
 		private ITermReadSvc myTerminologySvc;
 
+		@Autowired
+		private JpaStorageSettings myStorageSettings;
+
 		@Override
 		public void execute(JobExecutionContext theContext) {
-			myTerminologySvc.preExpandDeferredValueSetsToTerminologyTables();
+			if (myStorageSettings.isPreExpandValueSetsUsingBatch2Job()) {
+				myTerminologySvc.startValueSetPreExpansionJob();
+			} else {
+				myTerminologySvc.preExpandDeferredValueSetsToTerminologyTables();
+			}
 		}
 	}
 
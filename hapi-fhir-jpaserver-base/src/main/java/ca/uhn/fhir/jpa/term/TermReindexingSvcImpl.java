@@ -45,8 +45,13 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -82,34 +87,7 @@ public class TermReindexingSvcImpl implements ITermReindexingSvc, IHasScheduledJ
 		tt.execute(new TransactionCallbackWithoutResult() {
 			private void createParentsString(StringBuilder theParentsBuilder, Long theConceptPid) {
 				Validate.notNull(theConceptPid, "theConceptPid must not be null");
-				List<Long> parents = myChildToParentPidCache.get(theConceptPid);
-				if (parents.contains(-1L)) {
-					return;
-				} else if (parents.isEmpty()) {
-					Collection<Long> parentLinks = myConceptParentChildLinkDao.findAllWithChild(theConceptPid);
-					if (parentLinks.isEmpty()) {
-						myChildToParentPidCache.put(theConceptPid, -1L);
-						ourLog.info(
-								"Found {} parent concepts of concept {} (cache has {})",
-								0,
-								theConceptPid,
-								myChildToParentPidCache.size());
-						return;
-					} else {
-						for (Long next : parentLinks) {
-							myChildToParentPidCache.put(theConceptPid, next);
-						}
-						int parentCount =
-								myChildToParentPidCache.get(theConceptPid).size();
-						ourLog.info(
-								"Found {} parent concepts of concept {} (cache has {})",
-								parentCount,
-								theConceptPid,
-								myChildToParentPidCache.size());
-					}
-				}
-
-				for (Long nextParent : parents) {
+				for (Long nextParent : getParentPids(theConceptPid)) {
 					if (theParentsBuilder.length() > 0) {
 						theParentsBuilder.append(' ');
 					}
@@ -148,7 +126,8 @@ public class TermReindexingSvcImpl implements ITermReindexingSvc, IHasScheduledJ
 						nextConcept.setParentPids(parentsBuilder.toString());
 					}
 
-					myTermConceptDaoSvc.saveConcept(nextConcept);
+					// The closure rows are rebuilt from the same parent links as the parent PIDs above
+					myTermConceptDaoSvc.saveConcept(nextConcept, getAncestorDepths(nextConcept.getId()));
 					count++;
 				}
 
@@ -162,6 +141,63 @@ public class TermReindexingSvcImpl implements ITermReindexingSvc, IHasScheduledJ
 		});
 	}
 
+	/**
+	 * Returns the PIDs of the direct parents of the given concept, loading them into the
+	 * parent cache if needed
+	 */
+	private List<Long> getParentPids(Long theConceptPid) {
+		List<Long> parents = myChildToParentPidCache.get(theConceptPid);
+		if (parents.contains(-1L)) {
+			return Collections.emptyList();
+		} else if (parents.isEmpty()) {
+			Collection<Long> parentLinks = myConceptParentChildLinkDao.findAllWithChild(theConceptPid);
+			if (parentLinks.isEmpty()) {
+				myChildToParentPidCache.put(theConceptPid, -1L);
+				ourLog.info(
+						"Found {} parent concepts of concept {} (cache has {})",
+						0,
+						theConceptPid,
+						myChildToParentPidCache.size());
+				return Collections.emptyList();
+			} else {
+				for (Long next : parentLinks) {
+					myChildToParentPidCache.put(theConceptPid, next);
+				}
+				int parentCount = myChildToParentPidCache.get(theConceptPid).size();
+				ourLog.info(
+						"Found {} parent concepts of concept {} (cache has {})",
+						parentCount,
+						theConceptPid,
+						myChildToParentPidCache.size());
+			}
+		}
+		return parents;
+	}
+
+	/**
+	 * Walks the cached parent links of the given concept breadth-first, returning every ancestor
+	 * PID along with the length of the shortest path to it
+	 */
+	private Map<Long, Integer> getAncestorDepths(Long theConceptPid) {
+		Map<Long, Integer> retVal = new HashMap<>();
+		Deque<Long> queue = new ArrayDeque<>();
+		queue.add(theConceptPid);
+
+		while (!queue.isEmpty()) {
+			Long next = queue.removeFirst();
+			int depth = next.equals(theConceptPid) ? 1 : retVal.get(next) + 1;
+			for (Long nextParent : getParentPids(next)) {
+				if (nextParent.equals(theConceptPid) || retVal.containsKey(nextParent)) {
+					continue;
+				}
+				retVal.put(nextParent, depth);
+				queue.addLast(nextParent);
+			}
+		}
+
+		return retVal;
+	}
+
 	@Override
 	public void scheduleJobs(ISchedulerService theSchedulerService) {
 		// TODO KHS what does this mean?
@@ -0,0 +1,368 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.i18n.Msg;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A read-only, memory-mapped index of the codes in a single pre-expanded ValueSet. This
+ * is used to answer code membership questions during validation without querying the
+ * expanded concepts table.
+ * <p>
+ * The file is laid out as follows (all numbers are big-endian):
+ * <ul>
+ *     <li>A fixed header: magic number, format version, expansion timestamp, entry count,
+ *     system count, Bloom filter word count and Bloom filter hash count</li>
+ *     <li>The distinct code system URLs in the expansion</li>
+ *     <li>The Bloom filter bits, keyed on system and code</li>
+ *     <li>One absolute offset per entry, in key order</li>
+ *     <li>The entries: key (system and code), system version and display</li>
+ * </ul>
+ * Strings are stored as a length followed by UTF-8 bytes, with a length of <code>-1</code>
+ * meaning <code>null</code>. Entries are sorted by the unsigned bytes of their key, so a
+ * lookup is a binary search over the offsets.
+ * </p>
+ */
+public class ValueSetCodeIndex {
+
+	static final int MAGIC = 0x48564349;
+	static final int FORMAT_VERSION = 1;
+	private static final int HEADER_LENGTH = 32;
+	private static final int BLOOM_BITS_PER_ENTRY = 10;
+	private static final int BLOOM_HASH_COUNT = 7;
+	private static final HashFunction ourHashFunction = Hashing.murmur3_128();
+
+	private final ByteBuffer myBuffer;
+	private final long myExpansionTimestamp;
+	private final int myEntryCount;
+	private final Set<String> mySystems;
+	private final int myBloomStart;
+	private final int myBloomWordCount;
+	private final int myBloomHashCount;
+	private final int myOffsetsStart;
+
+	private ValueSetCodeIndex(ByteBuffer theBuffer) throws IOException {
+		myBuffer = theBuffer;
+		if (myBuffer.limit() < HEADER_LENGTH || myBuffer.getInt(0) != MAGIC || myBuffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException(Msg.code(2805) + "Not a ValueSet code index, or written by an incompatible version");
+		}
+		myExpansionTimestamp = myBuffer.getLong(8);
+		myEntryCount = myBuffer.getInt(16);
+		int systemCount = myBuffer.getInt(20);
+		myBloomWordCount = myBuffer.getInt(24);
+		myBloomHashCount = myBuffer.getInt(28);
+
+		Set<String> systems = new HashSet<>();
+		int position = HEADER_LENGTH;
+		for (int i = 0; i < systemCount; i++) {
+			systems.add(readString(position));
+			position += 4 + myBuffer.getInt(position);
+		}
+		mySystems = Collections.unmodifiableSet(systems);
+
+		myBloomStart = position;
+		myOffsetsStart = myBloomStart + (myBloomWordCount * 8);
+	}
+
+	/**
+	 * Returns the timestamp of the ValueSet expansion this index was built from
+	 */
+	public long getExpansionTimestamp() {
+		return myExpansionTimestamp;
+	}
+
+	public int getEntryCount() {
+		return myEntryCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if at least one code in the expansion belongs to the given code system
+	 */
+	public boolean containsSystem(@Nullable String theSystem) {
+		return theSystem != null && mySystems.contains(theSystem);
+	}
+
+	/**
+	 * Returns the indexed code for the given system and code, or <code>null</code> if it
+	 * is not part of the expansion
+	 */
+	@Nullable
+	public IndexedCode lookup(@Nonnull String theSystem, @Nonnull String theCode) {
+		byte[] key = toKey(theSystem, theCode);
+		if (!mightContain(key)) {
+			return null;
+		}
+
+		int low = 0;
+		int high = myEntryCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int entryPosition = myBuffer.getInt(myOffsetsStart + (mid * 4));
+			int cmp = compareKeyAt(entryPosition, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				int position = entryPosition + 4 + key.length;
+				String systemVersion = readString(position);
+				position += 4 + Math.max(0, myBuffer.getInt(position));
+				String display = readString(position);
+				return new IndexedCode(theSystem, systemVersion, theCode, display);
+			}
+		}
+		return null;
+	}
+
+	private boolean mightContain(byte[] theKey) {
+		long bitCount = (long) myBloomWordCount * 64;
+		HashCode hashCode = ourHashFunction.hashBytes(theKey);
+		long hash1 = hashCode.asLong();
+		long hash2 = ByteBuffer.wrap(hashCode.asBytes(), 8, 8).getLong();
+		for (int i = 0; i < myBloomHashCount; i++) {
+			long bit = ((hash1 + (i * hash2)) & Long.MAX_VALUE) % bitCount;
+			long word = myBuffer.getLong(myBloomStart + (int) (bit / 64) * 8);
+			if ((word & (1L << (bit % 64))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int compareKeyAt(int thePosition, byte[] theKey) {
+		int length = myBuffer.getInt(thePosition);
+		int common = Math.min(length, theKey.length);
+		for (int i = 0; i < common; i++) {
+			int cmp = Byte.compareUnsigned(myBuffer.get(thePosition + 4 + i), theKey[i]);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, theKey.length);
+	}
+
+	@Nullable
+	private String readString(int thePosition) {
+		int length = myBuffer.getInt(thePosition);
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer buffer = myBuffer.duplicate();
+		buffer.position(thePosition + 4);
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Memory-maps an existing index file
+	 */
+	public static ValueSetCodeIndex open(Path theFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(theFile, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ValueSetCodeIndex(buffer);
+		}
+	}
+
+	/**
+	 * Writes a new index file containing the given codes, replacing any existing file
+	 * atomically so that readers never see a partially written index. If the same system
+	 * and code appears more than once, the first occurrence is kept.
+	 */
+	public static void write(Path theFile, long theExpansionTimestamp, List<IndexedCode> theCodes) throws IOException {
+		List<EncodedEntry> entries = new ArrayList<>(theCodes.size());
+		Set<String> systems = new TreeSet<>();
+		for (IndexedCode next : theCodes) {
+			entries.add(new EncodedEntry(next));
+			systems.add(next.getSystem());
+		}
+		// This sort is stable, so the first occurrence of any duplicate key stays in front
+		entries.sort((o1, o2) -> Arrays.compareUnsigned(o1.myKey, o2.myKey));
+		List<EncodedEntry> distinctEntries = new ArrayList<>(entries.size());
+		for (EncodedEntry next : entries) {
+			if (distinctEntries.isEmpty()
+					|| !Arrays.equals(distinctEntries.get(distinctEntries.size() - 1).myKey, next.myKey)) {
+				distinctEntries.add(next);
+			}
+		}
+
+		List<byte[]> systemBytes = new ArrayList<>(systems.size());
+		long position = HEADER_LENGTH;
+		for (String next : systems) {
+			byte[] bytes = next.getBytes(StandardCharsets.UTF_8);
+			systemBytes.add(bytes);
+			position += 4 + bytes.length;
+		}
+
+		int bloomWordCount = (int) Math.max(1, ((long) distinctEntries.size() * BLOOM_BITS_PER_ENTRY + 63) / 64);
+		long[] bloom = new long[bloomWordCount];
+		long bitCount = (long) bloomWordCount * 64;
+		for (EncodedEntry next : distinctEntries) {
+			HashCode hashCode = ourHashFunction.hashBytes(next.myKey);
+			long hash1 = hashCode.asLong();
+			long hash2 = ByteBuffer.wrap(hashCode.asBytes(), 8, 8).getLong();
+			for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+				long bit = ((hash1 + (i * hash2)) & Long.MAX_VALUE) % bitCount;
+				bloom[(int) (bit / 64)] |= 1L << (bit % 64);
+			}
+		}
+		position += (long) bloomWordCount * 8;
+		position += (long) distinctEntries.size() * 4;
+
+		int[] offsets = new int[distinctEntries.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			Validate.isTrue(position <= Integer.MAX_VALUE, "ValueSet is too large to be indexed");
+			offsets[i] = (int) position;
+			position += distinctEntries.get(i).length();
+		}
+		Validate.isTrue(position <= Integer.MAX_VALUE, "ValueSet is too large to be indexed");
+
+		Path directory = theFile.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path tempFile = Files.createTempFile(directory, theFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out =
+					new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(theExpansionTimestamp);
+				out.writeInt(distinctEntries.size());
+				out.writeInt(systemBytes.size());
+				out.writeInt(bloomWordCount);
+				out.writeInt(BLOOM_HASH_COUNT);
+				for (byte[] next : systemBytes) {
+					writeBytes(out, next);
+				}
+				for (long next : bloom) {
+					out.writeLong(next);
+				}
+				for (int next : offsets) {
+					out.writeInt(next);
+				}
+				for (EncodedEntry next : distinctEntries) {
+					writeBytes(out, next.myKey);
+					writeBytes(out, next.mySystemVersion);
+					writeBytes(out, next.myDisplay);
+				}
+			}
+			Files.move(tempFile, theFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static void writeBytes(DataOutputStream theOutputStream, @Nullable byte[] theBytes) throws IOException {
+		if (theBytes == null) {
+			theOutputStream.writeInt(-1);
+		} else {
+			theOutputStream.writeInt(theBytes.length);
+			theOutputStream.write(theBytes);
+		}
+	}
+
+	private static byte[] toKey(String theSystem, String theCode) {
+		return (theSystem + '\u0000' + theCode).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Nullable
+	private static byte[] toBytes(@Nullable String theString) {
+		return theString != null ? theString.getBytes(StandardCharsets.UTF_8) : null;
+	}
+
+	private static class EncodedEntry {
+
+		private final byte[] myKey;
+		private final byte[] mySystemVersion;
+		private final byte[] myDisplay;
+
+		private EncodedEntry(IndexedCode theCode) {
+			myKey = toKey(theCode.getSystem(), theCode.getCode());
+			mySystemVersion = toBytes(theCode.getSystemVersion());
+			myDisplay = toBytes(theCode.getDisplay());
+		}
+
+		private int length() {
+			return 12
+					+ myKey.length
+					+ (mySystemVersion != null ? mySystemVersion.length : 0)
+					+ (myDisplay != null ? myDisplay.length : 0);
+		}
+	}
+
+	public static class IndexedCode {
+
+		private final String mySystem;
+		private final String mySystemVersion;
+		private final String myCode;
+		private final String myDisplay;
+
+		public IndexedCode(
+				@Nonnull String theSystem,
+				@Nullable String theSystemVersion,
+				@Nonnull String theCode,
+				@Nullable String theDisplay) {
+			mySystem = theSystem;
+			mySystemVersion = theSystemVersion;
+			myCode = theCode;
+			myDisplay = theDisplay;
+		}
+
+		public String getSystem() {
+			return mySystem;
+		}
+
+		public String getSystemVersion() {
+			return mySystemVersion;
+		}
+
+		public String getCode() {
+			return myCode;
+		}
+
+		public String getDisplay() {
+			return myDisplay;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.data.ITermValueSetConceptDao;
+import ca.uhn.fhir.jpa.entity.TermValueSet;
+import ca.uhn.fhir.jpa.entity.TermValueSetPreExpansionStatusEnum;
+import ca.uhn.fhir.util.StopWatch;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Maintains the {@link ValueSetCodeIndex memory-mapped code indexes} for pre-expanded
+ * ValueSets, if {@link JpaStorageSettings#getValueSetCodeIndexDirectory() enabled}.
+ * <p>
+ * Every index records the expansion timestamp of the ValueSet it was built from, and is only
+ * ever used while the ValueSet is still expanded with that same timestamp. An index which is
+ * missing or out of date (e.g. because the ValueSet was pre-expanded by another node in the
+ * cluster) is rebuilt in the background from the expanded concepts table the first time it is
+ * needed. While an index is being built, callers are expected to fall back to querying the
+ * database. If building the index for a given expansion fails, it is not attempted again until
+ * the ValueSet is expanded again.
+ * </p>
+ */
+public class ValueSetCodeIndexSvc {
+
+	private static final Logger ourLog = LoggerFactory.getLogger(ValueSetCodeIndexSvc.class);
+	private static final int BUILD_PAGE_SIZE = 10000;
+
+	private final Map<Long, ValueSetCodeIndex> myIndexes = new ConcurrentHashMap<>();
+	private final Set<Long> myIndexesBeingBuilt = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * TermValueSet PID to the expansion timestamp of the ValueSet when building its index failed
+	 */
+	private final Map<Long, Long> myFailedBuilds = new ConcurrentHashMap<>();
+
+	@Autowired
+	private JpaStorageSettings myStorageSettings;
+
+	@Autowired
+	private ITermValueSetConceptDao myValueSetConceptDao;
+
+	@Autowired
+	private PlatformTransactionManager myTxManager;
+
+	private ThreadPoolTaskExecutor myExecutor;
+
+	public boolean isEnabled() {
+		return !isBlank(myStorageSettings.getValueSetCodeIndexDirectory());
+	}
+
+	/**
+	 * Returns the code index for the given ValueSet. Returns <code>null</code> if indexing is
+	 * disabled, the ValueSet is not currently pre-expanded, or the index is not available right
+	 * now, in which case a build is started in the background if needed.
+	 */
+	@Nullable
+	public ValueSetCodeIndex getIndex(TermValueSet theValueSet) {
+		if (!isEnabled()
+				|| theValueSet.getExpansionStatus() != TermValueSetPreExpansionStatusEnum.EXPANDED
+				|| theValueSet.getExpansionTimestamp() == null) {
+			return null;
+		}
+
+		Long pid = theValueSet.getId();
+		long expansionTimestamp = theValueSet.getExpansionTimestamp().getTime();
+		ValueSetCodeIndex retVal = myIndexes.get(pid);
+		if (retVal != null && retVal.getExpansionTimestamp() == expansionTimestamp) {
+			return retVal;
+		}
+
+		Path file = getIndexFile(pid);
+		if (Files.exists(file)) {
+			try {
+				retVal = ValueSetCodeIndex.open(file);
+				if (retVal.getExpansionTimestamp() == expansionTimestamp) {
+					myIndexes.put(pid, retVal);
+					return retVal;
+				}
+			} catch (IOException e) {
+				ourLog.warn("Failed to open code index for TermValueSet[{}]: {}", pid, e.toString());
+			}
+		}
+
+		Long failedExpansionTimestamp = myFailedBuilds.get(pid);
+		if (failedExpansionTimestamp != null && failedExpansionTimestamp == expansionTimestamp) {
+			return null;
+		}
+
+		// Only one thread builds a given index, anyone else just uses the database for now
+		if (myIndexesBeingBuilt.add(pid)) {
+			try {
+				getExecutor().execute(() -> {
+					try {
+						new TransactionTemplate(myTxManager).executeWithoutResult(t -> buildIndex(theValueSet));
+					} finally {
+						myIndexesBeingBuilt.remove(pid);
+					}
+				});
+			} catch (RuntimeException e) {
+				myIndexesBeingBuilt.remove(pid);
+				throw e;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds (or rebuilds) the code index for a ValueSet which has just finished pre-expanding.
+	 * Failures are logged and otherwise ignored, since the database can always be used instead.
+	 *
+	 * @return The new index, or <code>null</code> if indexing is disabled or failed
+	 */
+	@Nullable
+	public ValueSetCodeIndex buildIndex(TermValueSet theValueSet) {
+		if (!isEnabled()
+				|| theValueSet.getExpansionStatus() != TermValueSetPreExpansionStatusEnum.EXPANDED
+				|| theValueSet.getExpansionTimestamp() == null) {
+			return null;
+		}
+
+		StopWatch sw = new StopWatch();
+		Long pid = theValueSet.getId();
+		try {
+			List<ValueSetCodeIndex.IndexedCode> codes = new ArrayList<>();
+			Long afterId = Long.MIN_VALUE;
+			while (true) {
+				List<Object[]> page = myValueSetConceptDao.findCodesByTermValueSetIdAfterId(
+						PageRequest.of(0, BUILD_PAGE_SIZE), pid, afterId);
+				for (Object[] next : page) {
+					codes.add(new ValueSetCodeIndex.IndexedCode(
+							(String) next[1], (String) next[2], (String) next[3], (String) next[4]));
+				}
+				if (page.size() < BUILD_PAGE_SIZE) {
+					break;
+				}
+				afterId = (Long) page.get(page.size() - 1)[0];
+			}
+
+			Path file = getIndexFile(pid);
+			ValueSetCodeIndex.write(file, theValueSet.getExpansionTimestamp().getTime(), codes);
+			ValueSetCodeIndex retVal = ValueSetCodeIndex.open(file);
+			myIndexes.put(pid, retVal);
+			myFailedBuilds.remove(pid);
+
+			ourLog.info(
+					"Built code index for ValueSet[{}] with {} codes in {}", theValueSet.getUrl(), codes.size(), sw);
+			return retVal;
+
+		} catch (IOException | RuntimeException e) {
+			ourLog.warn(
+					"Failed to build code index for ValueSet[{}], the database will be used until it is expanded again: {}",
+					theValueSet.getUrl(),
+					e.toString());
+			myFailedBuilds.put(pid, theValueSet.getExpansionTimestamp().getTime());
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the code index for a ValueSet which is being deleted
+	 */
+	public void deleteIndex(Long theTermValueSetPid) {
+		myIndexes.remove(theTermValueSetPid);
+		myFailedBuilds.remove(theTermValueSetPid);
+		if (!isEnabled()) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(getIndexFile(theTermValueSetPid));
+		} catch (IOException e) {
+			ourLog.warn("Failed to delete code index for TermValueSet[{}]: {}", theTermValueSetPid, e.toString());
+		}
+	}
+
+	/**
+	 * Builds are queued rather than rejected, but at most one build per ValueSet is ever queued
+	 */
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		if (myExecutor == null) {
+			myExecutor = ThreadPoolUtil.newThreadPool(1, 1, "ValueSetCodeIndex-", Integer.MAX_VALUE);
+		}
+		return myExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+
+	private Path getIndexFile(Long theTermValueSetPid) {
+		return Paths.get(myStorageSettings.getValueSetCodeIndexDirectory(), "valueset-" + theTermValueSetPid + ".idx");
+	}
+}
@@ -29,6 +29,7 @@ import ca.uhn.fhir.jpa.entity.TermValueSetConceptDesignation;
 import ca.uhn.fhir.util.ValidateUtil;
 import jakarta.annotation.Nonnull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -49,6 +50,9 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 	private int myConceptsExcluded;
 
 	private boolean mySupportLegacyLob = false;
+	private int myFlushBatchSize = 1;
+	private final List<TermValueSetConcept> myPendingConcepts = new ArrayList<>();
+	private final List<TermValueSetConceptDesignation> myPendingDesignations = new ArrayList<>();
 
 	public ValueSetConceptAccumulator(
 			@Nonnull TermValueSet theTermValueSet,
@@ -85,6 +89,7 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 				theSourceConceptPid,
 				theSourceConceptDirectParentPids,
 				theSystemVersion);
+		flushIfBatchIsFull();
 	}
 
 	@Override
@@ -108,6 +113,7 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 				saveConceptDesignation(concept, designation);
 			}
 		}
+		flushIfBatchIsFull();
 	}
 
 	@Override
@@ -116,6 +122,8 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 			return false;
 		}
 
+		flush();
+
 		// Get existing entity so it can be deleted.
 		Optional<TermValueSetConcept> optionalConcept;
 		int versionIdx = theSystem.indexOf("|");
@@ -190,8 +198,13 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 			concept.clearSourceConceptDirectParentPidsLob();
 		}
 
-		myValueSetConceptDao.save(concept);
-		myValueSetDao.save(myTermValueSet.incrementTotalConcepts());
+		if (myFlushBatchSize > 1) {
+			myPendingConcepts.add(concept);
+			myTermValueSet.incrementTotalConcepts();
+		} else {
+			myValueSetConceptDao.save(concept);
+			myValueSetDao.save(myTermValueSet.incrementTotalConcepts());
+		}
 
 		if (++myConceptsSaved % 250 == 0) {
 			ourLog.info("Have pre-expanded {} concepts in ValueSet[{}]", myConceptsSaved, myTermValueSet.getUrl());
@@ -200,6 +213,31 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 		return concept;
 	}
 
+	/**
+	 * Inserts any concepts and designations which have been buffered because a
+	 * {@link #setFlushBatchSize(int) flush batch size} greater than one is in use, and
+	 * stores the updated totals on the ValueSet. This must be called within the same
+	 * transaction as the calls which added the concepts.
+	 */
+	public void flush() {
+		if (myPendingConcepts.isEmpty() && myPendingDesignations.isEmpty()) {
+			return;
+		}
+
+		// Designations reference their concept, so the concepts need to be inserted first
+		myValueSetConceptDao.saveAll(myPendingConcepts);
+		myValueSetConceptDesignationDao.saveAll(myPendingDesignations);
+		myValueSetDao.save(myTermValueSet);
+		myPendingConcepts.clear();
+		myPendingDesignations.clear();
+	}
+
+	private void flushIfBatchIsFull() {
+		if (myPendingConcepts.size() + myPendingDesignations.size() >= myFlushBatchSize) {
+			flush();
+		}
+	}
+
 	private TermValueSetConceptDesignation saveConceptDesignation(
 			TermValueSetConcept theConcept, TermConceptDesignation theDesignation) {
 		ValidateUtil.isNotBlankOrThrowInvalidRequest(
@@ -217,8 +255,13 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 			}
 		}
 		designation.setValue(theDesignation.getValue());
-		myValueSetConceptDesignationDao.save(designation);
-		myValueSetDao.save(myTermValueSet.incrementTotalConceptDesignations());
+		if (myFlushBatchSize > 1) {
+			myPendingDesignations.add(designation);
+			myTermValueSet.incrementTotalConceptDesignations();
+		} else {
+			myValueSetConceptDesignationDao.save(designation);
+			myValueSetDao.save(myTermValueSet.incrementTotalConceptDesignations());
+		}
 
 		if (++myDesignationsSaved % 250 == 0) {
 			ourLog.debug(
@@ -233,6 +276,8 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 	}
 
 	public Boolean removeGapsFromConceptOrder() {
+		flush();
+
 		if (myConceptsExcluded <= 0) {
 			return false;
 		}
@@ -260,6 +305,17 @@ public class ValueSetConceptAccumulator implements IValueSetConceptAccumulator {
 	// TODO: DM 2019-07-30 - Expansions don't include the properties themselves; they may be needed to facilitate
 	// filters and parameterized expansions.
 
+	/**
+	 * If set to a value greater than one, concepts and designations are buffered and inserted in
+	 * batches of (roughly) this size rather than individually, and the ValueSet totals are only
+	 * stored once per batch. Callers must invoke {@link #flush()} before ending the transaction
+	 * in which concepts were added. Defaults to <code>1</code>.
+	 */
+	public ValueSetConceptAccumulator setFlushBatchSize(int theFlushBatchSize) {
+		myFlushBatchSize = theFlushBatchSize;
+		return this;
+	}
+
 	public ValueSetConceptAccumulator setSupportLegacyLob(boolean theSupportLegacyLob) {
 		mySupportLegacyLob = theSupportLegacyLob;
 		return this;
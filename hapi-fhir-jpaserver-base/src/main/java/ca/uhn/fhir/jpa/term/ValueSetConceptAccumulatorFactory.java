@@ -45,6 +45,7 @@ public class ValueSetConceptAccumulatorFactory {
 				theTermValueSet, myValueSetDao, myValueSetConceptDao, myValueSetConceptDesignationDao);
 
 		valueSetConceptAccumulator.setSupportLegacyLob(myStorageSettings.isWriteToLegacyLobColumns());
+		valueSetConceptAccumulator.setFlushBatchSize(myStorageSettings.getPreExpandValueSetsInsertBatchSize());
 
 		return valueSetConceptAccumulator;
 	}
@@ -40,6 +40,7 @@ import org.hl7.fhir.r4.model.CodeSystem;
 import org.hl7.fhir.r4.model.ValueSet;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -114,6 +115,43 @@ public interface ITermReadSvc extends IValidationSupport {
 
 	void preExpandDeferredValueSetsToTerminologyTables();
 
+	/**
+	 * Starts a batch2 job which pre-expands all of the ValueSets waiting for pre-expansion, unless
+	 * there is nothing to expand or such a job is already running.
+	 *
+	 * @return The ID of the started job instance, or <code>null</code> if no job was started
+	 * @since 7.6.0
+	 */
+	@Nullable
+	String startValueSetPreExpansionJob();
+
+	/**
+	 * Marks up to the given number of ValueSets waiting for pre-expansion as in progress.
+	 *
+	 * @return The PIDs of the claimed TermValueSet entities
+	 * @since 7.6.0
+	 */
+	List<Long> claimValueSetsForPreExpansion(int theMaxCount);
+
+	/**
+	 * Pre-expands a single ValueSet previously claimed through {@link #claimValueSetsForPreExpansion(int)}.
+	 *
+	 * @return The number of concepts saved, or <code>null</code> if the ValueSet is no longer waiting for pre-expansion
+	 * @since 7.6.0
+	 */
+	@Nullable
+	Integer preExpandValueSet(long theTermValueSetPid);
+
+	/**
+	 * Returns the given ValueSets, previously claimed through {@link #claimValueSetsForPreExpansion(int)},
+	 * back to waiting for pre-expansion if they have not finished pre-expanding, so that a later run picks
+	 * them up again. ValueSets claimed by anyone else are left alone.
+	 *
+	 * @return The number of ValueSets released
+	 * @since 7.6.0
+	 */
+	int releaseValueSetsClaimedForPreExpansion(Collection<Long> theTermValueSetPids);
+
 	/**
 	 * Version independent
 	 */
@@ -21,6 +21,7 @@ package ca.uhn.fhir.jpa.term.api;
 
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemDao;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDesignationDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptParentChildLinkDao;
@@ -57,6 +58,9 @@ public class TermCodeSystemDeleteJobSvc implements ITermCodeSystemDeleteJobSvc {
 	@Autowired
 	private ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
 
+	@Autowired
+	private ITermConceptClosureDao myConceptClosureDao;
+
 	@Autowired
 	private ITermConceptPropertyDao myConceptPropertyDao;
 
@@ -91,6 +95,11 @@ public class TermCodeSystemDeleteJobSvc implements ITermCodeSystemDeleteJobSvc {
 		ourLog.info("Deleted {} term code links", ourDecimalFormat.format(deletedLinks));
 		result.setDeletedLinks(deletedLinks);
 
+		// code system hierarchy closure
+		ourLog.info("Deleting term code hierarchy closure");
+		int deletedClosureRows = myConceptClosureDao.deleteByCodeSystemVersion(theCodeSystemVersionPid);
+		ourLog.info("Deleted {} term code hierarchy closure rows", ourDecimalFormat.format(deletedClosureRows));
+
 		// code system concept properties
 		ourLog.info("Deleting term code properties");
 		int deletedProperties = myConceptPropertyDao.deleteByCodeSystemVersion(theCodeSystemVersionPid);
@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.term.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Collection;
+import java.util.List;
+
+public class TermValueSetPreExpansionJobSvc implements ITermValueSetPreExpansionJobSvc {
+	private static final Logger ourLog = LoggerFactory.getLogger(TermValueSetPreExpansionJobSvc.class);
+
+	@Autowired
+	private ITermReadSvc myTermReadSvc;
+
+	@Override
+	public List<Long> claimValueSetsForPreExpansion(int theMaxCount) {
+		return myTermReadSvc.claimValueSetsForPreExpansion(theMaxCount);
+	}
+
+	@Override
+	public Integer preExpandValueSet(long theTermValueSetPid) {
+		return myTermReadSvc.preExpandValueSet(theTermValueSetPid);
+	}
+
+	@Override
+	public void notifyJobComplete(String theJobId) {
+		ourLog.info("ValueSet pre-expansion job {} has ended", theJobId);
+	}
+
+	@Override
+	public void notifyJobFailed(String theJobId, Collection<Long> theClaimedTermValueSetPids) {
+		int released = myTermReadSvc.releaseValueSetsClaimedForPreExpansion(theClaimedTermValueSetPids);
+		ourLog.warn(
+				"ValueSet pre-expansion job {} did not complete, released {} ValueSet(s) for a later pre-expansion",
+				theJobId,
+				released);
+	}
+}
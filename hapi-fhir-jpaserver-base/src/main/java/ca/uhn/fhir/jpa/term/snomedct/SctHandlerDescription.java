@@ -31,23 +31,19 @@ import java.util.Set;
 public final class SctHandlerDescription implements IZipContentsHandlerCsv {
 	private final Map<String, TermConcept> myCode2concept;
 	private final TermCodeSystemVersion myCodeSystemVersion;
-	private final Map<String, TermConcept> myId2concept;
 	private Set<String> myValidConceptIds;
 
 	public SctHandlerDescription(
 			Set<String> theValidConceptIds,
 			Map<String, TermConcept> theCode2concept,
-			Map<String, TermConcept> theId2concept,
 			TermCodeSystemVersion theCodeSystemVersion) {
 		myCode2concept = theCode2concept;
-		myId2concept = theId2concept;
 		myCodeSystemVersion = theCodeSystemVersion;
 		myValidConceptIds = theValidConceptIds;
 	}
 
 	@Override
 	public void accept(CSVRecord theRecord) {
-		String id = theRecord.get("id");
 		boolean active = "1".equals(theRecord.get("active"));
 		if (!active) {
 			return;
@@ -59,10 +55,10 @@ public final class SctHandlerDescription implements IZipContentsHandlerCsv {
 
 		String term = theRecord.get("term");
 
-		TermConcept concept = TermLoaderSvcImpl.getOrCreateConcept(myId2concept, id);
+		// A concept has several descriptions, the last active one read wins as the display
+		TermConcept concept = TermLoaderSvcImpl.getOrCreateConcept(myCode2concept, conceptId);
 		concept.setCode(conceptId);
 		concept.setDisplay(term);
 		concept.setCodeSystemVersion(myCodeSystemVersion);
-		myCode2concept.put(conceptId, concept);
 	}
 }
@@ -19,7 +19,6 @@
  */
 package ca.uhn.fhir.jpa.term.snomedct;
 
-import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
 import ca.uhn.fhir.jpa.term.IZipContentsHandlerCsv;
@@ -27,37 +26,32 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 public final class SctHandlerRelationship implements IZipContentsHandlerCsv {
+	private static final Set<String> IGNORED_TYPES = Set.of(
+			"Method (attribute)",
+			"Direct device (attribute)",
+			"Has focus (attribute)",
+			"Access instrument",
+			"Procedure site (attribute)",
+			"Causative agent (attribute)",
+			"Course (attribute)",
+			"Finding site (attribute)",
+			"Has definitional manifestation (attribute)");
+
 	private final Map<String, TermConcept> myCode2concept;
-	private final TermCodeSystemVersion myCodeSystemVersion;
 	private final Map<String, TermConcept> myRootConcepts;
 
 	public SctHandlerRelationship(
-			TermCodeSystemVersion theCodeSystemVersion,
-			HashMap<String, TermConcept> theRootConcepts,
-			Map<String, TermConcept> theCode2concept) {
-		myCodeSystemVersion = theCodeSystemVersion;
+			HashMap<String, TermConcept> theRootConcepts, Map<String, TermConcept> theCode2concept) {
 		myRootConcepts = theRootConcepts;
 		myCode2concept = theCode2concept;
 	}
 
 	@Override
 	public void accept(CSVRecord theRecord) {
-		Set<String> ignoredTypes = new HashSet<String>();
-		ignoredTypes.add("Method (attribute)");
-		ignoredTypes.add("Direct device (attribute)");
-		ignoredTypes.add("Has focus (attribute)");
-		ignoredTypes.add("Access instrument");
-		ignoredTypes.add("Procedure site (attribute)");
-		ignoredTypes.add("Causative agent (attribute)");
-		ignoredTypes.add("Course (attribute)");
-		ignoredTypes.add("Finding site (attribute)");
-		ignoredTypes.add("Has definitional manifestation (attribute)");
-
 		String sourceId = theRecord.get("sourceId");
 		String destinationId = theRecord.get("destinationId");
 		String typeId = theRecord.get("typeId");
@@ -72,12 +66,6 @@ public final class SctHandlerRelationship implements IZipContentsHandlerCsv {
 						TermConceptParentChildLink.RelationshipTypeEnum.ISA;
 				if (!sourceId.equals(destinationId)) {
 					if (active) {
-						TermConceptParentChildLink link = new TermConceptParentChildLink();
-						link.setChild(sourceConcept);
-						link.setParent(targetConcept);
-						link.setRelationshipType(relationshipType);
-						link.setCodeSystem(myCodeSystemVersion);
-
 						targetConcept.addChild(sourceConcept, relationshipType);
 					} else {
 						// not active, so we're removing any existing links
@@ -92,7 +80,7 @@ public final class SctHandlerRelationship implements IZipContentsHandlerCsv {
 						}
 					}
 				}
-			} else if (ignoredTypes.contains(typeConcept.getDisplay())) {
+			} else if (IGNORED_TYPES.contains(typeConcept.getDisplay())) {
 				// ignore
 			} else {
 				// ourLog.warn("Unknown relationship type: {}/{}", typeId, typeConcept.getDisplay());
@@ -64,7 +64,9 @@ class ResourceHistoryCalculatorTest {
 			Arguments.of(FhirContext.forR4Cached(), true, ResourceEncodingEnum.ESR, EXCLUDED_ELEMENTS_1),
 			Arguments.of(FhirContext.forR4Cached(), false, ResourceEncodingEnum.ESR, EXCLUDED_ELEMENTS_2),
 			Arguments.of(FhirContext.forR4Cached(), true, ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_2),
-			Arguments.of(FhirContext.forR4Cached(), false, ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_1)
+			Arguments.of(FhirContext.forR4Cached(), false, ResourceEncodingEnum.JSON, EXCLUDED_ELEMENTS_1),
+			Arguments.of(FhirContext.forR4Cached(), true, ResourceEncodingEnum.LZ4, EXCLUDED_ELEMENTS_1),
+			Arguments.of(FhirContext.forR4Cached(), false, ResourceEncodingEnum.LZ4, EXCLUDED_ELEMENTS_2)
 		);
 	}
 
@@ -89,6 +91,9 @@ class ResourceHistoryCalculatorTest {
 			assertNull(result.getResourceText()); // On Oracle: We do NOT use the resource text to serve up the resource content
 			assertEquals(theResourceEncoding, result.getEncoding()); // On Oracle, the resource encoding is what we used to encode the binary
 			assertEquals(SHA_256.hashBytes(result.getResourceBinary()), result.getHashCode()); // On Oracle, the SHA 256 hash is of the binary
+			if (theResourceEncoding == ResourceEncodingEnum.JSONC || theResourceEncoding == ResourceEncodingEnum.LZ4) {
+				assertEquals(calculator.encodeResource(patient, theResourceEncoding, theExcludedElements), BaseHapiFhirDao.decodeResource(result.getResourceBinary(), theResourceEncoding));
+			}
 		} else {
 			assertNull(result.getResourceBinary()); // Non-Oracle: We do NOT use the resource binary to serve up the resource content
 			assertNotNull(result.getResourceText()); // Non-Oracle: We use the resource text to serve up the resource content
@@ -190,7 +195,9 @@ class ResourceHistoryCalculatorTest {
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_1),
 			Arguments.of(ResourceEncodingEnum.ESR, ENCODED_RESOURCE_2),
 			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_1),
-			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2)
+			Arguments.of(ResourceEncodingEnum.JSON, ENCODED_RESOURCE_2),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_1),
+			Arguments.of(ResourceEncodingEnum.LZ4, ENCODED_RESOURCE_2)
 		);
 	}
 
@@ -205,6 +212,11 @@ class ResourceHistoryCalculatorTest {
 				break;
 			case JSONC:
 				assertArrayEquals(GZipUtil.compress(theEncodedResource), resourceBinary);
+				assertEquals(theEncodedResource, BaseHapiFhirDao.decodeResource(resourceBinary, theResourceEncoding));
+				break;
+			case LZ4:
+				assertArrayEquals(Lz4Util.compress(theEncodedResource), resourceBinary);
+				assertEquals(theEncodedResource, BaseHapiFhirDao.decodeResource(resourceBinary, theResourceEncoding));
 				break;
 			case DEL :
 			case ESR :
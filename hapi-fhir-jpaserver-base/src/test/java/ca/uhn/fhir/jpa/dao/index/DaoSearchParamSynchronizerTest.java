@@ -59,6 +59,7 @@ public class DaoSearchParamSynchronizerTest {
 		final ResourceTable resourceTable = new ResourceTable();
 		resourceTable.setId(1L);
 		EXISTING_SEARCH_PARAM_NUMBER.setResource(resourceTable);
+		EXISTING_SEARCH_PARAM_NUMBER.setId(2L);
 		THE_SEARCH_PARAM_NUMBER.setResource(resourceTable);
 
 		subject.setEntityManager(entityManager);
@@ -74,5 +75,17 @@ public class DaoSearchParamSynchronizerTest {
 
 		verify(entityManager, never()).remove(any(BaseResourceIndex.class));
 		verify(entityManager, times(1)).merge(THE_SEARCH_PARAM_NUMBER);
+		verify(entityManager, never()).persist(any());
+	}
+
+	@Test
+	void synchronizeSearchParamsNewRowIsPersisted() {
+		final AddRemoveCount addRemoveCount = subject.synchronizeSearchParamsToDatabase(theParams, theEntity, ResourceIndexedSearchParams.withSets());
+
+		assertEquals(0, addRemoveCount.getRemoveCount());
+		assertEquals(1, addRemoveCount.getAddCount());
+
+		verify(entityManager, times(1)).persist(THE_SEARCH_PARAM_NUMBER);
+		verify(entityManager, never()).merge(any());
 	}
 }
@@ -0,0 +1,101 @@
+package ca.uhn.fhir.jpa.search.builder;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.dao.IJpaStorageResourceParser;
+import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.jpa.model.entity.IBaseResourceEntity;
+import ca.uhn.fhir.parser.DataFormatException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ResourceLoadingPageTest {
+
+	@Mock
+	private IJpaStorageResourceParser myParser;
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings();
+	private final SearchResourceLoadingExecutor myExecutor = new SearchResourceLoadingExecutor(myStorageSettings);
+
+	@AfterEach
+	public void after() {
+		myExecutor.stop();
+	}
+
+	@Test
+	public void testDecodeInParallelPreservesOrder() {
+		myStorageSettings.setSearchResourceLoadingThreadCount(4);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<IBaseResourceEntity> entities = new ArrayList<>();
+		when(myParser.toResourceWithoutPartitionInformation(eq(Patient.class), any(), any(), anyBoolean())).thenAnswer(t -> {
+			threadNames.add(Thread.currentThread().getName());
+			Patient patient = new Patient();
+			patient.setId(Integer.toString(entities.indexOf(t.getArgument(1, IBaseResourceEntity.class))));
+			return patient;
+		});
+
+		ResourceLoadingPage page = new ResourceLoadingPage(100, 5, myExecutor.getThreadCount());
+		for (long i = 0; i < 100; i++) {
+			IBaseResourceEntity entity = mock(IBaseResourceEntity.class);
+			entities.add(entity);
+			page.add(Patient.class, entity, null, JpaPid.fromId(i));
+		}
+		page.submit(myExecutor, myParser, false);
+
+		List<IBaseResource> resources = page.await();
+		assertThat(resources).hasSize(100);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.toString(i), resources.get(i).getIdElement().getIdPart());
+			assertEquals(JpaPid.fromId((long) i), page.getResourceId(i));
+		}
+		assertEquals(4, page.getTaskCount());
+		assertEquals(100, page.getFetchedCount());
+		assertThat(threadNames).allMatch(t -> t.startsWith("search-resource-loading-") || t.equals(Thread.currentThread().getName()));
+	}
+
+	@Test
+	public void testSmallPageIsNotSplit() {
+		myStorageSettings.setSearchResourceLoadingThreadCount(4);
+		when(myParser.toResourceWithoutPartitionInformation(eq(Patient.class), any(), any(), anyBoolean())).thenReturn(new Patient());
+
+		ResourceLoadingPage page = new ResourceLoadingPage(5, 5, myExecutor.getThreadCount());
+		for (long i = 0; i < 5; i++) {
+			page.add(Patient.class, mock(IBaseResourceEntity.class), null, JpaPid.fromId(i));
+		}
+		page.submit(myExecutor, myParser, false);
+
+		assertThat(page.await()).hasSize(5);
+		assertEquals(1, page.getTaskCount());
+	}
+
+	@Test
+	public void testDecodeFailureIsPropagated() {
+		myStorageSettings.setSearchResourceLoadingThreadCount(2);
+		when(myParser.toResourceWithoutPartitionInformation(eq(Patient.class), any(), any(), anyBoolean())).thenThrow(new DataFormatException("Bad resource"));
+
+		ResourceLoadingPage page = new ResourceLoadingPage(1, 5, myExecutor.getThreadCount());
+		page.add(Patient.class, mock(IBaseResourceEntity.class), null, JpaPid.fromId(1L));
+		page.submit(myExecutor, myParser, false);
+
+		DataFormatException e = assertThrows(DataFormatException.class, page::await);
+		assertEquals("Bad resource", e.getMessage());
+	}
+}
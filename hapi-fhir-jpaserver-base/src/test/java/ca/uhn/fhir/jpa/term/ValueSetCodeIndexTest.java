@@ -0,0 +1,117 @@
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.jpa.term.ValueSetCodeIndex.IndexedCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValueSetCodeIndexTest {
+
+	@TempDir
+	private Path myTempDir;
+
+	@Test
+	public void testWriteAndLookup() throws Exception {
+		// given
+		List<IndexedCode> codes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			codes.add(new IndexedCode("http://loinc.org", "2.77", "code-" + i, "Display " + i));
+		}
+		codes.add(new IndexedCode("http://snomed.info/sct", null, "123", null));
+		codes.add(new IndexedCode("http://example.com/cs", "1", "été", "Summer ☀"));
+		Path file = myTempDir.resolve("valueset-1.idx");
+
+		// when
+		ValueSetCodeIndex.write(file, 12345L, codes);
+		ValueSetCodeIndex index = ValueSetCodeIndex.open(file);
+
+		// then
+		assertEquals(12345L, index.getExpansionTimestamp());
+		assertEquals(1002, index.getEntryCount());
+
+		for (int i = 0; i < 1000; i++) {
+			IndexedCode found = index.lookup("http://loinc.org", "code-" + i);
+			assertThat(found).isNotNull();
+			assertEquals("2.77", found.getSystemVersion());
+			assertEquals("Display " + i, found.getDisplay());
+		}
+
+		IndexedCode snomed = index.lookup("http://snomed.info/sct", "123");
+		assertThat(snomed).isNotNull();
+		assertNull(snomed.getSystemVersion());
+		assertNull(snomed.getDisplay());
+
+		IndexedCode unicode = index.lookup("http://example.com/cs", "été");
+		assertThat(unicode).isNotNull();
+		assertEquals("Summer ☀", unicode.getDisplay());
+
+		assertNull(index.lookup("http://loinc.org", "code-1000"));
+		assertNull(index.lookup("http://snomed.info/sct", "code-1"));
+		assertNull(index.lookup("http://loinc.org", "code-"));
+	}
+
+	@Test
+	public void testContainsSystem() throws Exception {
+		Path file = myTempDir.resolve("valueset-2.idx");
+		ValueSetCodeIndex.write(file, 1L, List.of(new IndexedCode("http://loinc.org", null, "A", "A")));
+		ValueSetCodeIndex index = ValueSetCodeIndex.open(file);
+
+		assertTrue(index.containsSystem("http://loinc.org"));
+		assertFalse(index.containsSystem("http://snomed.info/sct"));
+		assertFalse(index.containsSystem(null));
+	}
+
+	@Test
+	public void testDuplicateCodes_firstOccurrenceIsKept() throws Exception {
+		Path file = myTempDir.resolve("valueset-3.idx");
+		ValueSetCodeIndex.write(
+				file,
+				1L,
+				List.of(
+						new IndexedCode("http://loinc.org", "1", "A", "First"),
+						new IndexedCode("http://loinc.org", "2", "A", "Second")));
+		ValueSetCodeIndex index = ValueSetCodeIndex.open(file);
+
+		assertEquals(1, index.getEntryCount());
+		assertEquals("First", index.lookup("http://loinc.org", "A").getDisplay());
+	}
+
+	@Test
+	public void testEmptyIndex() throws Exception {
+		Path file = myTempDir.resolve("valueset-4.idx");
+		ValueSetCodeIndex.write(file, 1L, List.of());
+		ValueSetCodeIndex index = ValueSetCodeIndex.open(file);
+
+		assertEquals(0, index.getEntryCount());
+		assertNull(index.lookup("http://loinc.org", "A"));
+	}
+
+	@Test
+	public void testRewriteReplacesExistingFile() throws Exception {
+		Path file = myTempDir.resolve("valueset-5.idx");
+		ValueSetCodeIndex.write(file, 1L, List.of(new IndexedCode("http://loinc.org", null, "A", "A")));
+		ValueSetCodeIndex oldIndex = ValueSetCodeIndex.open(file);
+
+		ValueSetCodeIndex.write(file, 2L, List.of(new IndexedCode("http://loinc.org", null, "B", "B")));
+		ValueSetCodeIndex newIndex = ValueSetCodeIndex.open(file);
+
+		assertEquals(2L, newIndex.getExpansionTimestamp());
+		assertNull(newIndex.lookup("http://loinc.org", "A"));
+		assertThat(newIndex.lookup("http://loinc.org", "B")).isNotNull();
+		// The previous mapping stays readable for anyone still holding it
+		assertThat(oldIndex.lookup("http://loinc.org", "A")).isNotNull();
+		try (var files = Files.list(myTempDir)) {
+			assertThat(files.count()).isEqualTo(1);
+		}
+	}
+}
@@ -32,12 +32,17 @@ import ca.uhn.fhir.jpa.fql.parser.HfqlFhirPathParser;
 import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
 import ca.uhn.fhir.jpa.fql.parser.HfqlStatementParser;
 import ca.uhn.fhir.jpa.fql.util.HfqlConstants;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.searchparam.util.JpaParamUtil;
 import ca.uhn.fhir.model.api.IQueryParameterAnd;
 import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.QualifiedParamList;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SortSpec;
+import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.param.DateOrListParam;
@@ -54,6 +59,7 @@ import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.collect.Lists;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -75,15 +81,22 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.startsWith;
 
 /**
  * This class could be considered the main entrypoint into the HFQL executor.
@@ -101,6 +114,8 @@ public class HfqlExecutor implements IHfqlExecutor {
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
 	public static final Set<GroupByKey> NULL_GROUP_BY_KEY = Set.of(new GroupByKey(List.of()));
 	private static final Logger ourLog = LoggerFactory.getLogger(HfqlExecutor.class);
+	private static final String BUILT_IN_SEARCH_PARAMETER_URL_PREFIX = "http://hl7.org/fhir/SearchParameter/";
+	private static final Pattern SIMPLE_FHIRPATH_PATTERN = Pattern.compile("^[a-zA-Z]+(\\.[a-zA-Z]+)+$");
 
 	@Autowired
 	private DaoRegistry myDaoRegistry;
@@ -114,6 +129,9 @@ public class HfqlExecutor implements IHfqlExecutor {
 	@Autowired
 	private ISearchParamRegistry mySearchParamRegistry;
 
+	private int myRowEvaluationThreadCount = Runtime.getRuntime().availableProcessors();
+	private ForkJoinPool myRowEvaluationPool;
+
 	/**
 	 * Constructor
 	 */
@@ -121,6 +139,54 @@ public class HfqlExecutor implements IHfqlExecutor {
 		super();
 	}
 
+	/**
+	 * Sets the number of threads used to evaluate the FHIRPath expressions in the
+	 * SELECT and WHERE clauses of a statement against each page of search results.
+	 * Rows are always returned in search result order regardless of this setting.
+	 * A value of 1 evaluates every row on the thread reading the results. Defaults
+	 * to the number of available processors.
+	 *
+	 * @since 7.6.0
+	 */
+	public synchronized void setRowEvaluationThreadCount(int theRowEvaluationThreadCount) {
+		Validate.isTrue(theRowEvaluationThreadCount > 0, "Row evaluation thread count must be positive");
+		if (myRowEvaluationThreadCount != theRowEvaluationThreadCount) {
+			myRowEvaluationThreadCount = theRowEvaluationThreadCount;
+			stop();
+		}
+	}
+
+	/**
+	 * Returns the pool used to evaluate rows, or <code>null</code> if rows should be
+	 * evaluated on the calling thread.
+	 */
+	@Nullable
+	private synchronized ForkJoinPool getRowEvaluationPool() {
+		if (myRowEvaluationThreadCount <= 1) {
+			return null;
+		}
+		if (myRowEvaluationPool == null) {
+			myRowEvaluationPool = new ForkJoinPool(
+					myRowEvaluationThreadCount,
+					pool -> {
+						ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						thread.setName("hfql-row-evaluation-" + thread.getPoolIndex());
+						return thread;
+					},
+					null,
+					false);
+		}
+		return myRowEvaluationPool;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myRowEvaluationPool != null) {
+			myRowEvaluationPool.shutdown();
+			myRowEvaluationPool = null;
+		}
+	}
+
 	@Override
 	public IHfqlExecutionResult executeInitialSearch(
 			String theStatement, Integer theLimit, RequestDetails theRequestDetails) {
@@ -152,20 +218,31 @@ public class HfqlExecutor implements IHfqlExecutor {
 		addHfqlWhereClausesToSearchParameterMap(statement, map);
 
 		Integer limit = theLimit;
-		if (statement.hasOrderClause()) {
-			/*
-			 * If we're ordering search results, we need to load all available data in order
-			 * to sort it because we handle ordering in application code currently. A good
-			 * future optimization would be to handle ordering in the database when possible,
-			 * but we can't always do that because the query can specify an order on any
-			 * arbitrary FHIRPath expression.
-			 */
-			limit = null;
-		} else if (statement.getLimit() != null) {
+		if (statement.getLimit() != null) {
 			limit = limit == null ? statement.getLimit() : Math.min(limit, statement.getLimit());
 		}
 
-		HfqlExecutionContext executionContext = new HfqlExecutionContext(myFhirContext.newFhirPath());
+		/*
+		 * If we're ordering search results on something the database can sort on, we let
+		 * the search handle the ordering. Otherwise we need to load all available data in
+		 * order to sort it in application code, since the query can specify an order on any
+		 * arbitrary FHIRPath expression.
+		 */
+		boolean orderInApplication = statement.hasOrderClause();
+		if (orderInApplication && !statement.hasCountClauses()) {
+			SortSpec sort = toSearchSort(statement);
+			if (sort != null) {
+				map.setSort(sort);
+				orderInApplication = false;
+			}
+		}
+
+		if (isCountStarOnlyOnSearchMatch(statement)) {
+			map.setSummaryMode(SummaryEnum.COUNT);
+			map.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		}
+
+		HfqlExecutionContext executionContext = new HfqlExecutionContext(myFhirContext::newFhirPath);
 		IBundleProvider outcome = dao.search(map, theRequestDetails);
 		Predicate<IBaseResource> whereClausePredicate = newWhereClausePredicate(executionContext, statement);
 
@@ -174,16 +251,79 @@ public class HfqlExecutor implements IHfqlExecutor {
 			executionResult = executeCountClause(statement, executionContext, outcome, whereClausePredicate);
 		} else {
 			executionResult = new LocalSearchHfqlExecutionResult(
-					statement, outcome, executionContext, limit, 0, whereClausePredicate, myFhirContext);
+					statement,
+					outcome,
+					executionContext,
+					orderInApplication ? null : limit,
+					0,
+					whereClausePredicate,
+					myFhirContext,
+					getRowEvaluationPool());
 		}
 
-		if (statement.hasOrderClause()) {
-			executionResult = createOrderedResult(statement, executionResult);
+		if (orderInApplication) {
+			executionResult = createOrderedResult(statement, executionResult, limit);
 		}
 
 		return executionResult;
 	}
 
+	/**
+	 * If every ORDER BY clause in the statement refers to a column that the database can
+	 * sort on with the same ordering that would be applied in application code, returns
+	 * the equivalent <code>_sort</code> specification. Otherwise returns <code>null</code>.
+	 */
+	@Nullable
+	private SortSpec toSearchSort(HfqlStatement theStatement) {
+		SortSpec retVal = null;
+		SortSpec last = null;
+		for (HfqlStatement.OrderByClause next : theStatement.getOrderByClauses()) {
+			int index = theStatement.findSelectClauseIndex(next.getClause());
+			if (index == -1) {
+				return null;
+			}
+
+			String clause = theStatement.getSelectClauses().get(index).getClause();
+			String paramName;
+			if (isFhirPathExpressionEquivalent("meta.lastUpdated", clause, theStatement.getFromResourceName())) {
+				paramName = Constants.PARAM_LASTUPDATED;
+			} else {
+				return null;
+			}
+
+			SortSpec sort = new SortSpec(paramName, next.isAscending() ? SortOrderEnum.ASC : SortOrderEnum.DESC);
+			if (retVal == null) {
+				retVal = sort;
+			} else {
+				last.setChain(sort);
+			}
+			last = sort;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns {@literal true} if the statement only selects <code>COUNT(*)</code> and only
+	 * has <code>search_match</code> WHERE clauses, in which case the count can be computed
+	 * by the search itself without loading any resources.
+	 */
+	private static boolean isCountStarOnlyOnSearchMatch(HfqlStatement theStatement) {
+		if (!theStatement.hasCountClauses() || !theStatement.getGroupByClauses().isEmpty()) {
+			return false;
+		}
+		for (HfqlStatement.SelectClause next : theStatement.getSelectClauses()) {
+			if (next.getOperator() != HfqlStatement.SelectClauseOperator.COUNT || !"*".equals(next.getClause())) {
+				return false;
+			}
+		}
+		for (HfqlStatement.WhereClause next : theStatement.getWhereClauses()) {
+			if (next.getOperator() != HfqlStatement.WhereClauseOperatorEnum.SEARCH_MATCH) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private void validateWhereClauses(HfqlStatement theStatement) {
 		for (HfqlStatement.WhereClause next : theStatement.getWhereClauses()) {
 			if (isDataValueWhereClause(next)) {
@@ -203,11 +343,14 @@ public class HfqlExecutor implements IHfqlExecutor {
 	/**
 	 * If the user has included a WHERE clause that has a FHIRPath expression but
 	 * could actually be satisfied by a Search Parameter, we'll insert a
-	 * search_match expression so that it's more efficient.
+	 * search_match expression so that it's more efficient. Equality tests on the
+	 * path of other search parameters get an additional search_match expression
+	 * that narrows the search (see {@link #newSearchParameterPreFilter}).
 	 */
 	private void massageWhereClauses(HfqlStatement theStatement) {
 		String fromResourceName = theStatement.getFromResourceName();
 		ResourceSearchParams activeSearchParams = mySearchParamRegistry.getActiveSearchParams(fromResourceName);
+		List<HfqlStatement.WhereClause> preFilterClauses = new ArrayList<>();
 
 		for (HfqlStatement.WhereClause nextWhereClause : theStatement.getWhereClauses()) {
 
@@ -271,9 +414,102 @@ public class HfqlExecutor implements IHfqlExecutor {
 							.map(value -> comparator + ParameterUtil.escape(value))
 							.collect(Collectors.joining(","));
 					nextWhereClause.setRight(Constants.PARAM_LASTUPDATED, joinedParamValues);
+				} else if ("".equals(comparator)) {
+					List<String> rawRightValues = nextWhereClause.getRight();
+					if (!isDataValueWhereClause(nextWhereClause)) {
+						rawRightValues = rawRightValues.subList(1, rawRightValues.size());
+					}
+					HfqlStatement.WhereClause preFilter =
+							newSearchParameterPreFilter(left, rawRightValues, activeSearchParams, fromResourceName);
+					if (preFilter != null) {
+						preFilterClauses.add(preFilter);
+					}
 				}
 			}
 		}
+
+		theStatement.getWhereClauses().addAll(preFilterClauses);
+	}
+
+	/**
+	 * If an equality WHERE clause compares a FHIRPath expression which is exactly the path
+	 * of a built-in token, string or uri search parameter against literal values, returns a
+	 * <code>search_match</code> clause which narrows the search using that parameter.
+	 * The original clause is kept and is still evaluated against every resource, so the
+	 * search parameter only needs to match a superset of the resources matched by the
+	 * expression, which is the case for these parameter types. Custom search parameters
+	 * are not used since they may not have been indexed for all existing resources yet.
+	 */
+	@Nullable
+	private static HfqlStatement.WhereClause newSearchParameterPreFilter(
+			String theFhirPath,
+			List<String> theRawRightValues,
+			ResourceSearchParams theSearchParams,
+			String theFromResourceName) {
+		List<String> values = new ArrayList<>();
+		for (String next : theRawRightValues) {
+			String value;
+			if (next.length() >= 2 && next.startsWith("'") && next.endsWith("'")) {
+				value = next.substring(1, next.length() - 1);
+			} else if ("true".equals(next) || "false".equals(next)) {
+				value = next;
+			} else {
+				// Not a literal, so we can't know what it will evaluate to
+				return null;
+			}
+			if (value.isEmpty()
+					|| value.contains("\\")
+					|| value.length() > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+				return null;
+			}
+			values.add(value);
+		}
+		if (values.isEmpty()) {
+			return null;
+		}
+
+		for (RuntimeSearchParam nextSearchParam : theSearchParams.values()) {
+			if (!isSearchParameterUsableAsPreFilter(nextSearchParam)) {
+				continue;
+			}
+			String path = nextSearchParam.getPath().trim();
+			String pathBase = path.substring(0, path.indexOf('.'));
+			if (!pathBase.equals(theFromResourceName) && !"Resource".equals(pathBase)) {
+				continue;
+			}
+			if (isFhirPathExpressionEquivalent(
+					path.substring(pathBase.length() + 1), theFhirPath, theFromResourceName)) {
+				HfqlStatement.WhereClause retVal = new HfqlStatement.WhereClause();
+				retVal.setLeft("id");
+				retVal.setOperator(HfqlStatement.WhereClauseOperatorEnum.SEARCH_MATCH);
+				String joinedParamValues =
+						values.stream().map(ParameterUtil::escape).collect(Collectors.joining(","));
+				retVal.setRight(nextSearchParam.getName(), joinedParamValues);
+				return retVal;
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isSearchParameterUsableAsPreFilter(RuntimeSearchParam theSearchParam) {
+		// Resource-level parameters such as _profile and _tag can't be used in search_match
+		if (theSearchParam.getName().startsWith("_")) {
+			return false;
+		}
+		switch (theSearchParam.getParamType()) {
+			case TOKEN:
+			case STRING:
+			case URI:
+				break;
+			default:
+				return false;
+		}
+		return startsWith(theSearchParam.getUri(), BUILT_IN_SEARCH_PARAMETER_URL_PREFIX)
+				&& theSearchParam.getPath() != null
+				&& SIMPLE_FHIRPATH_PATTERN
+						.matcher(theSearchParam.getPath().trim())
+						.matches();
 	}
 
 	private void addHfqlWhereClausesToSearchParameterMap(HfqlStatement statement, SearchParameterMap map) {
@@ -326,18 +562,14 @@ public class HfqlExecutor implements IHfqlExecutor {
 		}
 	}
 
+	/**
+	 * Sorts the rows in application code. If a limit is supplied, only the top rows are
+	 * kept in memory, otherwise rows are sorted in memory in runs of up to
+	 * {@link HfqlConstants#ORDER_AND_GROUP_LIMIT} rows, and larger result sets are merged
+	 * from runs spilled to temporary files.
+	 */
 	private IHfqlExecutionResult createOrderedResult(
-			HfqlStatement theStatement, IHfqlExecutionResult theExecutionResult) {
-		List<IHfqlExecutionResult.Row> rows = new ArrayList<>();
-		while (theExecutionResult.hasNext()) {
-			IHfqlExecutionResult.Row nextRow = theExecutionResult.getNextRow();
-			rows.add(nextRow);
-			Validate.isTrue(
-					rows.size() <= HfqlConstants.ORDER_AND_GROUP_LIMIT,
-					"Can not ORDER BY result sets over %d results",
-					HfqlConstants.ORDER_AND_GROUP_LIMIT);
-		}
-
+			HfqlStatement theStatement, IHfqlExecutionResult theExecutionResult, @Nullable Integer theLimit) {
 		List<Integer> orderColumnIndexes = theStatement.getOrderByClauses().stream()
 				.map(t -> {
 					int index = theStatement.findSelectClauseIndex(t.getClause());
@@ -371,14 +603,23 @@ public class HfqlExecutor implements IHfqlExecutor {
 			}
 		}
 
-		rows.sort(comparator);
-		for (int i = 0; i < rows.size(); i++) {
-			rows.set(i, rows.get(i).toRowOffset(i));
+		HfqlRowSorter sorter = new HfqlRowSorter(comparator, theLimit, HfqlConstants.ORDER_AND_GROUP_LIMIT);
+		try {
+			while (theExecutionResult.hasNext()) {
+				IHfqlExecutionResult.Row nextRow = theExecutionResult.getNextRow();
+				if (nextRow.getRowOffset() == IHfqlExecutionResult.ROW_OFFSET_ERROR) {
+					sorter.discard();
+					return StaticHfqlExecutionResult.withError(
+							(String) nextRow.getRowValues().get(0));
+				}
+				sorter.add(nextRow);
+			}
+		} catch (RuntimeException e) {
+			sorter.discard();
+			throw e;
 		}
 
-		List<List<Object>> rowData =
-				rows.stream().map(IHfqlExecutionResult.Row::getRowValues).collect(Collectors.toList());
-		return new StaticHfqlExecutionResult(null, theStatement, rowData);
+		return sorter.toResult(theStatement);
 	}
 
 	@Override
@@ -389,7 +630,7 @@ public class HfqlExecutor implements IHfqlExecutor {
 			Integer theLimit,
 			RequestDetails theRequestDetails) {
 		IBundleProvider resultList = myPagingProvider.retrieveResultList(theRequestDetails, theSearchId);
-		HfqlExecutionContext executionContext = new HfqlExecutionContext(myFhirContext.newFhirPath());
+		HfqlExecutionContext executionContext = new HfqlExecutionContext(myFhirContext::newFhirPath);
 		Predicate<IBaseResource> whereClausePredicate = newWhereClausePredicate(executionContext, theStatement);
 		return new LocalSearchHfqlExecutionResult(
 				theStatement,
@@ -398,7 +639,8 @@ public class HfqlExecutor implements IHfqlExecutor {
 				theLimit,
 				theStartingOffset,
 				whereClausePredicate,
-				myFhirContext);
+				myFhirContext,
+				getRowEvaluationPool());
 	}
 
 	private IHfqlExecutionResult executeCountClause(
@@ -421,6 +663,13 @@ public class HfqlExecutor implements IHfqlExecutor {
 				.map(HfqlStatement.SelectClause::getClause)
 				.collect(Collectors.toSet());
 
+		if (isCountStarOnlyOnSearchMatch(theStatement) && theOutcome.size() != null) {
+			// The search was performed in count mode, so there are no resources to look at
+			List<Object> row = new ArrayList<>();
+			theStatement.getSelectClauses().forEach(t -> row.add(theOutcome.sizeOrThrowNpe()));
+			return new StaticHfqlExecutionResult(null, theStatement, List.of(row));
+		}
+
 		Map<GroupByKey, Map<String, AtomicInteger>> keyCounter = new HashMap<>();
 
 		int offset = 0;
@@ -1010,36 +1259,75 @@ public class HfqlExecutor implements IHfqlExecutor {
 		}
 	}
 
+	/**
+	 * Evaluates FHIRPath expressions for a single statement. FHIRPath engines and
+	 * parsed expressions are not shared between threads, so each evaluation borrows an
+	 * engine and expression cache that no other thread is using, and hands it back when
+	 * it is done. The context holds at most one of these per concurrent evaluation, and
+	 * they are released along with the context when the statement is finished, so nothing
+	 * is left behind on the threads of a shared pool.
+	 */
 	public static class HfqlExecutionContext {
 
-		private final Map<String, IFhirPath.IParsedExpression> myFhirPathExpressionMap = new HashMap<>();
-		private final IFhirPath myFhirPath;
+		private final Supplier<IFhirPath> myFhirPathFactory;
+		private final Queue<EvaluationState> myIdleStates = new ConcurrentLinkedQueue<>();
 
-		public HfqlExecutionContext(IFhirPath theFhirPath) {
-			myFhirPath = theFhirPath;
+		public HfqlExecutionContext(Supplier<IFhirPath> theFhirPathFactory) {
+			myFhirPathFactory = theFhirPathFactory;
 		}
 
 		public <T extends IBase> List<T> evaluate(IBase theInput, String thePath, Class<T> theReturnType) {
-			IFhirPath.IParsedExpression parsedExpression = getParsedExpression(thePath);
-			return myFhirPath.evaluate(theInput, parsedExpression, theReturnType);
+			EvaluationState state = borrowState();
+			try {
+				IFhirPath.IParsedExpression parsedExpression = state.getParsedExpression(thePath);
+				return state.getFhirPath().evaluate(theInput, parsedExpression, theReturnType);
+			} finally {
+				myIdleStates.offer(state);
+			}
 		}
 
 		<T extends IBase> Optional<T> evaluateFirst(IBase theInput, String thePath, Class<T> theReturnType) {
-			IFhirPath.IParsedExpression parsedExpression = getParsedExpression(thePath);
-			return myFhirPath.evaluateFirst(theInput, parsedExpression, theReturnType);
+			EvaluationState state = borrowState();
+			try {
+				IFhirPath.IParsedExpression parsedExpression = state.getParsedExpression(thePath);
+				return state.getFhirPath().evaluateFirst(theInput, parsedExpression, theReturnType);
+			} finally {
+				myIdleStates.offer(state);
+			}
 		}
 
-		private IFhirPath.IParsedExpression getParsedExpression(String thePath) {
-			IFhirPath.IParsedExpression parsedExpression = myFhirPathExpressionMap.get(thePath);
-			if (parsedExpression == null) {
-				try {
-					parsedExpression = myFhirPath.parse(thePath);
-				} catch (Exception e) {
-					throw new InvalidRequestException(Msg.code(2404) + e.getMessage(), e);
+		private EvaluationState borrowState() {
+			EvaluationState retVal = myIdleStates.poll();
+			if (retVal == null) {
+				retVal = new EvaluationState();
+			}
+			return retVal;
+		}
+
+		private class EvaluationState {
+
+			private final Map<String, IFhirPath.IParsedExpression> myFhirPathExpressionMap = new HashMap<>();
+			private IFhirPath myFhirPath;
+
+			private IFhirPath getFhirPath() {
+				if (myFhirPath == null) {
+					myFhirPath = myFhirPathFactory.get();
+				}
+				return myFhirPath;
+			}
+
+			private IFhirPath.IParsedExpression getParsedExpression(String thePath) {
+				IFhirPath.IParsedExpression parsedExpression = myFhirPathExpressionMap.get(thePath);
+				if (parsedExpression == null) {
+					try {
+						parsedExpression = getFhirPath().parse(thePath);
+					} catch (Exception e) {
+						throw new InvalidRequestException(Msg.code(2404) + e.getMessage(), e);
+					}
+					myFhirPathExpressionMap.put(thePath, parsedExpression);
 				}
-				myFhirPathExpressionMap.put(thePath, parsedExpression);
+				return parsedExpression;
 			}
-			return parsedExpression;
 		}
 	}
 }
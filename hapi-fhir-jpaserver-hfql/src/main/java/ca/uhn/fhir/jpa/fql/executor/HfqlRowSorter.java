@@ -0,0 +1,412 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - HFQL Driver
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.fql.executor;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows produced for an HFQL statement with an <code>ORDER BY</code> clause
+ * while keeping the amount of memory used bounded.
+ * <p>
+ * If the number of rows wanted is known and is no larger than the in-memory row limit,
+ * only the best rows seen so far are kept in a heap. Otherwise rows are sorted in runs
+ * of up to the in-memory row limit, each run is written to a temporary file, and the
+ * runs are merged as the sorted result is read. Either way the sort is stable, so rows
+ * which compare as equal keep the order in which they were added.
+ * </p>
+ */
+class HfqlRowSorter {
+	private static final Logger ourLog = LoggerFactory.getLogger(HfqlRowSorter.class);
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_INTEGER = 2;
+	private static final byte TYPE_LONG = 3;
+
+	private final Comparator<IHfqlExecutionResult.Row> myComparator;
+	private final Integer myLimit;
+	private final int myInMemoryRowLimit;
+	private final PriorityQueue<SequencedRow> myTopRows;
+	private final List<IHfqlExecutionResult.Row> myBuffer;
+	private final List<File> myRunFiles = new ArrayList<>();
+	private long myNextSequence;
+
+	/**
+	 * @param theComparator      The row ordering
+	 * @param theLimit           The maximum number of rows that will be read from the sorted result, or <code>null</code> if all rows are wanted
+	 * @param theInMemoryRowLimit The maximum number of rows to hold in memory at any given time
+	 */
+	HfqlRowSorter(
+			Comparator<IHfqlExecutionResult.Row> theComparator, @Nullable Integer theLimit, int theInMemoryRowLimit) {
+		Validate.isTrue(theInMemoryRowLimit > 0, "theInMemoryRowLimit must be positive");
+		myComparator = theComparator;
+		myLimit = theLimit;
+		myInMemoryRowLimit = theInMemoryRowLimit;
+		if (isTopRowsOnly()) {
+			Comparator<SequencedRow> sequencedComparator = newSequencedComparator();
+			myTopRows = new PriorityQueue<>(Math.max(theLimit, 1), sequencedComparator.reversed());
+			myBuffer = null;
+		} else {
+			myTopRows = null;
+			myBuffer = new ArrayList<>();
+		}
+	}
+
+	boolean isTopRowsOnly() {
+		return myLimit != null && myLimit <= myInMemoryRowLimit;
+	}
+
+	void add(IHfqlExecutionResult.Row theRow) {
+		if (myTopRows != null) {
+			if (myLimit == 0) {
+				return;
+			}
+			myTopRows.add(new SequencedRow(theRow, myNextSequence++));
+			if (myTopRows.size() > myLimit) {
+				myTopRows.poll();
+			}
+		} else {
+			myBuffer.add(theRow);
+			if (myBuffer.size() >= myInMemoryRowLimit) {
+				writeRun();
+			}
+		}
+	}
+
+	/**
+	 * Returns the sorted rows. The returned result must be closed in order to discard any
+	 * temporary files that were written, although they are also discarded once the result
+	 * has been fully read.
+	 */
+	IHfqlExecutionResult toResult(HfqlStatement theStatement) {
+		if (myTopRows != null) {
+			List<SequencedRow> rows = new ArrayList<>(myTopRows);
+			myTopRows.clear();
+			rows.sort(newSequencedComparator());
+			List<List<Object>> rowValues = new ArrayList<>(rows.size());
+			rows.forEach(t -> rowValues.add(t.myRow.getRowValues()));
+			return new StaticHfqlExecutionResult(null, theStatement, rowValues);
+		}
+
+		myBuffer.sort(myComparator);
+		if (myRunFiles.isEmpty()) {
+			List<IHfqlExecutionResult.Row> rows = myBuffer;
+			if (myLimit != null && rows.size() > myLimit) {
+				rows = rows.subList(0, myLimit);
+			}
+			List<List<Object>> rowValues = new ArrayList<>(rows.size());
+			rows.forEach(t -> rowValues.add(t.getRowValues()));
+			return new StaticHfqlExecutionResult(null, theStatement, rowValues);
+		}
+
+		ourLog.info("HFQL merging {} sorted runs written to temporary files", myRunFiles.size());
+		List<Iterator<List<Object>>> runs = new ArrayList<>();
+		try {
+			for (File next : myRunFiles) {
+				runs.add(new RunFileReader(next));
+			}
+		} catch (IOException e) {
+			runs.forEach(t -> ((RunFileReader) t).close());
+			discard();
+			throw newSortFailure(e);
+		}
+		List<List<Object>> remaining = new ArrayList<>(myBuffer.size());
+		myBuffer.forEach(t -> remaining.add(t.getRowValues()));
+		runs.add(remaining.iterator());
+		myBuffer.clear();
+
+		return new MergingExecutionResult(theStatement, runs, myComparator, myLimit, myRunFiles);
+	}
+
+	/**
+	 * Deletes any temporary files that have been written
+	 */
+	void discard() {
+		myRunFiles.forEach(HfqlRowSorter::deleteQuietly);
+		myRunFiles.clear();
+	}
+
+	int getRunCount() {
+		return myRunFiles.size();
+	}
+
+	private void writeRun() {
+		myBuffer.sort(myComparator);
+		File file = null;
+		try {
+			file = File.createTempFile("hapi-hfql-sort-", ".tmp");
+			myRunFiles.add(file);
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+				for (IHfqlExecutionResult.Row next : myBuffer) {
+					writeRow(output, next.getRowValues());
+				}
+			}
+		} catch (IOException e) {
+			discard();
+			throw newSortFailure(e);
+		}
+		ourLog.debug("HFQL wrote sorted run of {} rows to {}", myBuffer.size(), file);
+		myBuffer.clear();
+	}
+
+	private Comparator<SequencedRow> newSequencedComparator() {
+		Comparator<SequencedRow> retVal = (o1, o2) -> myComparator.compare(o1.myRow, o2.myRow);
+		return retVal.thenComparingLong(t -> t.mySequence);
+	}
+
+	private static void writeRow(DataOutputStream theOutput, List<Object> theRowValues) throws IOException {
+		theOutput.writeInt(theRowValues.size());
+		for (Object next : theRowValues) {
+			if (next == null) {
+				theOutput.writeByte(TYPE_NULL);
+			} else if (next instanceof Integer) {
+				theOutput.writeByte(TYPE_INTEGER);
+				theOutput.writeInt((Integer) next);
+			} else if (next instanceof Long) {
+				theOutput.writeByte(TYPE_LONG);
+				theOutput.writeLong((Long) next);
+			} else {
+				// Row values are otherwise always strings
+				byte[] bytes = next.toString().getBytes(StandardCharsets.UTF_8);
+				theOutput.writeByte(TYPE_STRING);
+				theOutput.writeInt(bytes.length);
+				theOutput.write(bytes);
+			}
+		}
+	}
+
+	private static List<Object> readRow(DataInputStream theInput, int theValueCount) throws IOException {
+		List<Object> retVal = new ArrayList<>(theValueCount);
+		for (int i = 0; i < theValueCount; i++) {
+			byte type = theInput.readByte();
+			switch (type) {
+				case TYPE_NULL:
+					retVal.add(null);
+					break;
+				case TYPE_INTEGER:
+					retVal.add(theInput.readInt());
+					break;
+				case TYPE_LONG:
+					retVal.add(theInput.readLong());
+					break;
+				case TYPE_STRING:
+				default:
+					byte[] bytes = new byte[theInput.readInt()];
+					theInput.readFully(bytes);
+					retVal.add(new String(bytes, StandardCharsets.UTF_8));
+					break;
+			}
+		}
+		return retVal;
+	}
+
+	private static void deleteQuietly(File theFile) {
+		try {
+			Files.deleteIfExists(theFile.toPath());
+		} catch (IOException e) {
+			ourLog.warn("Failed to delete HFQL sort file {}", theFile, e);
+		}
+	}
+
+	private static InternalErrorException newSortFailure(IOException theException) {
+		return new InternalErrorException(
+				Msg.code(2787) + "Failed to sort HFQL results: " + theException.getMessage(), theException);
+	}
+
+	private static class SequencedRow {
+		private final IHfqlExecutionResult.Row myRow;
+		private final long mySequence;
+
+		private SequencedRow(IHfqlExecutionResult.Row theRow, long theSequence) {
+			myRow = theRow;
+			mySequence = theSequence;
+		}
+	}
+
+	/**
+	 * Reads back the rows of a single sorted run
+	 */
+	private static class RunFileReader implements Iterator<List<Object>> {
+		private final DataInputStream myInput;
+		private List<Object> myNext;
+
+		private RunFileReader(File theFile) throws IOException {
+			myInput = new DataInputStream(new BufferedInputStream(new FileInputStream(theFile)));
+			advance();
+		}
+
+		private void advance() throws IOException {
+			int valueCount;
+			try {
+				valueCount = myInput.readInt();
+			} catch (EOFException e) {
+				myNext = null;
+				close();
+				return;
+			}
+			myNext = readRow(myInput, valueCount);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myNext != null;
+		}
+
+		@Override
+		public List<Object> next() {
+			List<Object> retVal = myNext;
+			try {
+				advance();
+			} catch (IOException e) {
+				close();
+				throw newSortFailure(e);
+			}
+			return retVal;
+		}
+
+		private void close() {
+			try {
+				myInput.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Merges the sorted runs. Ties are broken by run index, and the runs were written
+	 * in the order their rows were added, so the merge preserves the stability of the sort.
+	 */
+	private static class MergingExecutionResult implements IHfqlExecutionResult {
+		private final HfqlStatement myStatement;
+		private final List<Iterator<List<Object>>> myRuns;
+		private final PriorityQueue<Integer> myRunQueue;
+		private final List<Row> myRunHeads;
+		private final Integer myLimit;
+		private final List<File> myFiles;
+		private int myNextRowOffset;
+		private boolean myClosed;
+
+		private MergingExecutionResult(
+				HfqlStatement theStatement,
+				List<Iterator<List<Object>>> theRuns,
+				Comparator<Row> theComparator,
+				Integer theLimit,
+				List<File> theFiles) {
+			myStatement = theStatement;
+			myRuns = theRuns;
+			myLimit = theLimit;
+			myFiles = new ArrayList<>(theFiles);
+			myRunHeads = new ArrayList<>(theRuns.size());
+			Comparator<Integer> runComparator =
+					(o1, o2) -> theComparator.compare(myRunHeads.get(o1), myRunHeads.get(o2));
+			myRunQueue = new PriorityQueue<>(
+					Math.max(theRuns.size(), 1), runComparator.thenComparing(Comparator.naturalOrder()));
+			for (int i = 0; i < theRuns.size(); i++) {
+				myRunHeads.add(null);
+				advanceRun(i);
+			}
+		}
+
+		private void advanceRun(int theRunIndex) {
+			Iterator<List<Object>> run = myRuns.get(theRunIndex);
+			if (run.hasNext()) {
+				myRunHeads.set(theRunIndex, new Row(0, run.next()));
+				myRunQueue.add(theRunIndex);
+			} else {
+				myRunHeads.set(theRunIndex, null);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			boolean retVal = !myClosed && !myRunQueue.isEmpty() && (myLimit == null || myNextRowOffset < myLimit);
+			if (!retVal) {
+				close();
+			}
+			return retVal;
+		}
+
+		@Override
+		public Row getNextRow() {
+			Validate.isTrue(hasNext(), "No more results");
+			int runIndex = myRunQueue.poll();
+			Row retVal = myRunHeads.get(runIndex).toRowOffset(myNextRowOffset++);
+			advanceRun(runIndex);
+			return retVal;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return myClosed;
+		}
+
+		@Override
+		public void close() {
+			if (!myClosed) {
+				myClosed = true;
+				myRunQueue.clear();
+				for (Iterator<List<Object>> next : myRuns) {
+					if (next instanceof RunFileReader) {
+						((RunFileReader) next).close();
+					}
+				}
+				myFiles.forEach(HfqlRowSorter::deleteQuietly);
+			}
+		}
+
+		@Override
+		public String getSearchId() {
+			return null;
+		}
+
+		@Override
+		public int getLimit() {
+			return 0;
+		}
+
+		@Override
+		public HfqlStatement getStatement() {
+			return myStatement;
+		}
+	}
+}
@@ -23,6 +23,7 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -31,10 +32,18 @@ import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @see IHfqlExecutionResult for information about the purpose of this class
@@ -42,20 +51,30 @@ import java.util.function.Predicate;
 public class LocalSearchHfqlExecutionResult implements IHfqlExecutionResult {
 	private static final Logger ourLog = LoggerFactory.getLogger(LocalSearchHfqlExecutionResult.class);
 
+	/**
+	 * Pages smaller than this are evaluated on the calling thread, since the cost of
+	 * handing them to the pool outweighs the benefit
+	 */
+	static final int MIN_ROWS_FOR_PARALLEL_EVALUATION = 100;
+
 	private final IBundleProvider mySearchResult;
 	private final HfqlExecutor.HfqlExecutionContext myExecutionContext;
 	private final Integer myLimit;
 	private final HfqlStatement myStatement;
 	private final Predicate<IBaseResource> myWhereClausePredicate;
-	private final IParser myParser;
+	private final FhirContext myFhirContext;
+
+	/**
+	 * Parsers aren't thread safe, so each row being evaluated borrows one which no other
+	 * row is using
+	 */
+	private final Queue<IParser> myIdleParsers = new ConcurrentLinkedQueue<>();
+
+	private final ForkJoinPool myEvaluationPool;
+	private final Deque<Row> myNextRows = new ArrayDeque<>();
 	private int myTotalRowsFetched = 0;
 	private int myNextSearchResultRow;
-	private int myNextBatchRow = 0;
-	private List<IBaseResource> myNextBatch;
-	private IBaseResource myNextResource;
 	private boolean myExhausted = false;
-	private int myNextResourceSearchRow;
-	private Row myErrorRow;
 
 	public LocalSearchHfqlExecutionResult(
 			HfqlStatement theStatement,
@@ -65,77 +84,134 @@ public class LocalSearchHfqlExecutionResult implements IHfqlExecutionResult {
 			int theInitialOffset,
 			Predicate<IBaseResource> theWhereClausePredicate,
 			FhirContext theFhirContext) {
+		this(
+				theStatement,
+				theSearchResult,
+				theExecutionContext,
+				theLimit,
+				theInitialOffset,
+				theWhereClausePredicate,
+				theFhirContext,
+				null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theEvaluationPool If not <code>null</code>, the SELECT and WHERE expressions for each page of
+	 *                          search results are evaluated in parallel on this pool. Rows are still returned
+	 *                          in search result order.
+	 */
+	public LocalSearchHfqlExecutionResult(
+			HfqlStatement theStatement,
+			IBundleProvider theSearchResult,
+			HfqlExecutor.HfqlExecutionContext theExecutionContext,
+			Integer theLimit,
+			int theInitialOffset,
+			Predicate<IBaseResource> theWhereClausePredicate,
+			FhirContext theFhirContext,
+			@Nullable ForkJoinPool theEvaluationPool) {
 		myStatement = theStatement;
 		mySearchResult = theSearchResult;
 		myExecutionContext = theExecutionContext;
 		myLimit = theLimit;
 		myNextSearchResultRow = theInitialOffset;
 		myWhereClausePredicate = theWhereClausePredicate;
-		myParser = theFhirContext.newJsonParser();
+		myFhirContext = theFhirContext;
+		myEvaluationPool = theEvaluationPool;
 	}
 
 	@Override
 	public boolean hasNext() {
-		fetchNextResource();
-		return myNextResource != null;
+		fetchNextRows();
+		return !myNextRows.isEmpty();
 	}
 
-	private void fetchNextResource() {
-		if (myNextResource != null) {
-			return;
-		}
-		try {
-			while (myNextResource == null && !myExhausted) {
-				if (myNextBatch == null) {
-					int from = myNextSearchResultRow;
-					int to = myNextSearchResultRow + HfqlExecutor.BATCH_SIZE;
-					myNextBatch = mySearchResult.getResources(from, to);
-					ourLog.info(
-							"HFQL fetching resources {}-{} - Total {} fetched, {} retained and limit {}",
-							from,
-							to,
-							myNextSearchResultRow,
-							myTotalRowsFetched,
-							myLimit);
-					myNextBatchRow = 0;
-					myNextSearchResultRow += HfqlExecutor.BATCH_SIZE;
-				}
-				if (myNextBatch.isEmpty()) {
+	private void fetchNextRows() {
+		while (myNextRows.isEmpty() && !myExhausted) {
+			try {
+				int from = myNextSearchResultRow;
+				int to = myNextSearchResultRow + HfqlExecutor.BATCH_SIZE;
+				List<IBaseResource> nextBatch = mySearchResult.getResources(from, to);
+				ourLog.info(
+						"HFQL fetching resources {}-{} - Total {} fetched, {} retained and limit {}",
+						from,
+						to,
+						myNextSearchResultRow,
+						myTotalRowsFetched,
+						myLimit);
+				myNextSearchResultRow += HfqlExecutor.BATCH_SIZE;
+
+				if (nextBatch.isEmpty()) {
 					myExhausted = true;
-				} else if (myNextBatch.size() > myNextBatchRow) {
-					myNextResource = myNextBatch.get(myNextBatchRow);
-					myNextResourceSearchRow = (myNextSearchResultRow - HfqlExecutor.BATCH_SIZE) + myNextBatchRow;
-					myNextBatchRow++;
-				} else {
-					myNextBatch = null;
+					break;
 				}
 
-				if (myNextResource != null && !myWhereClausePredicate.test(myNextResource)) {
-					myNextResource = null;
+				for (Row nextRow : evaluateBatch(nextBatch, from)) {
+					if (nextRow == null) {
+						continue;
+					}
+					myNextRows.add(nextRow);
+					if (nextRow.getRowOffset() == ROW_OFFSET_ERROR) {
+						myExhausted = true;
+						break;
+					}
+					myTotalRowsFetched++;
+					if (myLimit != null && myTotalRowsFetched >= myLimit) {
+						myExhausted = true;
+						break;
+					}
 				}
+			} catch (Exception e) {
+				myNextRows.add(newErrorRow(e.getMessage()));
+				myExhausted = true;
 			}
+		}
+	}
 
-			if (myNextResource != null) {
-				myTotalRowsFetched++;
-				if (myLimit != null && myTotalRowsFetched >= myLimit) {
-					myExhausted = true;
-				}
-			}
-		} catch (Exception e) {
-			createAndStoreErrorRow(e.getMessage());
+	/**
+	 * Evaluates a page of search results, returning one entry per resource in the same
+	 * order as the resources. Entries are <code>null</code> for resources that don't
+	 * match the WHERE clauses.
+	 */
+	private List<Row> evaluateBatch(List<IBaseResource> theBatch, int theFirstSearchResultRow) {
+		IntFunction<Row> evaluator = i -> evaluateRow(theBatch.get(i), theFirstSearchResultRow + i);
+		if (myEvaluationPool == null || theBatch.size() < MIN_ROWS_FOR_PARALLEL_EVALUATION) {
+			return IntStream.range(0, theBatch.size()).mapToObj(evaluator).collect(Collectors.toList());
 		}
+
+		// A parallel stream started from within the pool runs on the pool's workers,
+		// and collecting it to a list preserves the order of the search results
+		return myEvaluationPool
+				.submit(() -> IntStream.range(0, theBatch.size())
+						.parallel()
+						.mapToObj(evaluator)
+						.collect(Collectors.toList()))
+				.join();
 	}
 
-	@Override
-	public Row getNextRow() {
-		fetchNextResource();
-		if (myErrorRow != null) {
-			Row errorRow = myErrorRow;
-			myErrorRow = null;
-			return errorRow;
+	@Nullable
+	private Row evaluateRow(IBaseResource theResource, int theSearchResultRow) {
+		IParser parser = myIdleParsers.poll();
+		if (parser == null) {
+			parser = myFhirContext.newJsonParser();
+		}
+		try {
+			return evaluateRow(theResource, theSearchResultRow, parser);
+		} finally {
+			myIdleParsers.offer(parser);
 		}
+	}
 
-		Validate.isTrue(myNextResource != null, "No more results");
+	@Nullable
+	private Row evaluateRow(IBaseResource theResource, int theSearchResultRow, IParser theParser) {
+		try {
+			if (!myWhereClausePredicate.test(theResource)) {
+				return null;
+			}
+		} catch (Exception e) {
+			return newErrorRow(e.getMessage());
+		}
 
 		List<Object> values = new ArrayList<>();
 		for (int columnIndex = 0; columnIndex < myStatement.getSelectClauses().size(); columnIndex++) {
@@ -145,11 +221,11 @@ public class LocalSearchHfqlExecutionResult implements IHfqlExecutionResult {
 			HfqlDataTypeEnum columnDataType = nextColumn.getDataType();
 			List<IBase> columnValues;
 			try {
-				columnValues = myExecutionContext.evaluate(myNextResource, clause, IBase.class);
+				columnValues = myExecutionContext.evaluate(theResource, clause, IBase.class);
 			} catch (Exception e) {
 				String errorMessage =
 						"Failed to evaluate FHIRPath expression \"" + clause + "\". Error: " + e.getMessage();
-				return createAndStoreErrorRow(errorMessage);
+				return newErrorRow(errorMessage);
 			}
 			String value = null;
 			if (columnDataType == HfqlDataTypeEnum.JSON) {
@@ -159,12 +235,12 @@ public class LocalSearchHfqlExecutionResult implements IHfqlExecutionResult {
 					IBase next = valueIter.next();
 					if (next instanceof IPrimitiveType) {
 						b.append('"');
-						String encodedValue = encodeValue(next);
+						String encodedValue = encodeValue(next, theParser);
 						encodedValue = encodedValue.replace("\\", "\\\\").replace("\"", "\\\"");
 						b.append(encodedValue);
 						b.append('"');
 					} else {
-						b.append(encodeValue(next));
+						b.append(encodeValue(next, theParser));
 					}
 					if (valueIter.hasNext()) {
 						b.append(", ");
@@ -175,32 +251,35 @@ public class LocalSearchHfqlExecutionResult implements IHfqlExecutionResult {
 			} else {
 				if (!columnValues.isEmpty()) {
 					IBase firstColumnValue = columnValues.get(0);
-					value = encodeValue(firstColumnValue);
+					value = encodeValue(firstColumnValue, theParser);
 				}
 			}
 
 			values.add(value);
 		}
 
-		myNextResource = null;
-		return new Row(myNextResourceSearchRow, values);
+		return new Row(theSearchResultRow, values);
+	}
+
+	@Override
+	public Row getNextRow() {
+		fetchNextRows();
+		Validate.isTrue(!myNextRows.isEmpty(), "No more results");
+		return myNextRows.removeFirst();
 	}
 
-	private String encodeValue(IBase firstColumnValue) {
+	private static String encodeValue(IBase firstColumnValue, IParser theParser) {
 		String value = null;
 		if (firstColumnValue instanceof IIdType) {
 			value = ((IIdType) firstColumnValue).getIdPart();
 		} else if (firstColumnValue != null) {
-			value = myParser.encodeToString(firstColumnValue);
+			value = theParser.encodeToString(firstColumnValue);
 		}
 		return value;
 	}
 
-	private Row createAndStoreErrorRow(String errorMessage) {
-		myExhausted = true;
-		myNextResource = null;
-		myErrorRow = new Row(IHfqlExecutionResult.ROW_OFFSET_ERROR, List.of(errorMessage));
-		return myErrorRow;
+	private static Row newErrorRow(String errorMessage) {
+		return new Row(IHfqlExecutionResult.ROW_OFFSET_ERROR, List.of(errorMessage));
 	}
 
 	@Override
@@ -0,0 +1,499 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - HFQL Driver
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.fql.jdbc;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.fql.executor.HfqlDataTypeEnum;
+import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutionResult;
+import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
+import jakarta.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ca.uhn.fhir.jpa.fql.util.HfqlConstants.PROTOCOL_VERSION;
+
+/**
+ * This class contains the reader and writer for the binary columnar format which can be
+ * used instead of CSV for the responses of the <code>$hfql-execute</code> operation. It
+ * is requested by the JDBC driver using the {@link ca.uhn.fhir.jpa.fql.util.HfqlConstants#PARAM_FORMAT}
+ * parameter, and servers that don't support it simply respond with CSV.
+ * <p>
+ * A response consists of a header (protocol version, server version, search ID, limit
+ * and the parsed statement) followed by blocks of up to {@link #BLOCK_SIZE} rows. Within
+ * a block, values are stored column by column along with a bitmap of null values.
+ * Integer, long and boolean columns are stored in binary form when every value in the
+ * block can be, and other columns are stored as strings which are dictionary encoded
+ * when they contain repeated values.
+ */
+public final class HfqlColumnarFormat {
+
+	public static final String CONTENT_TYPE = "application/x-hfql-columnar";
+	public static final int BLOCK_SIZE = 1000;
+
+	private static final byte BLOCK_TYPE_END = 0;
+	private static final byte BLOCK_TYPE_ROWS = 1;
+	private static final byte BLOCK_TYPE_ERROR = 2;
+
+	private static final byte ENCODING_STRING_PLAIN = 0;
+	private static final byte ENCODING_STRING_DICTIONARY = 1;
+	private static final byte ENCODING_INTEGER = 2;
+	private static final byte ENCODING_LONG = 3;
+	private static final byte ENCODING_BOOLEAN = 4;
+
+	private HfqlColumnarFormat() {}
+
+	private static void writeString(DataOutputStream theOutput, @Nullable String theValue) throws IOException {
+		if (theValue == null) {
+			theOutput.writeInt(-1);
+		} else {
+			byte[] bytes = theValue.getBytes(StandardCharsets.UTF_8);
+			theOutput.writeInt(bytes.length);
+			theOutput.write(bytes);
+		}
+	}
+
+	@Nullable
+	private static String readString(DataInputStream theInput) throws IOException {
+		int length = theInput.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		theInput.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a single response. Rows are buffered and written one block at a time.
+	 */
+	public static class PageWriter {
+
+		private final DataOutputStream myOutput;
+		private final List<HfqlDataTypeEnum> myColumnTypes = new ArrayList<>();
+		private final List<IHfqlExecutionResult.Row> myRows = new ArrayList<>();
+
+		/**
+		 * Constructor
+		 *
+		 * @param theStatement The statement the rows belong to. The declared data types of its
+		 *                     select clauses determine which columns can be stored in binary form.
+		 */
+		public PageWriter(OutputStream theOutput, @Nullable HfqlStatement theStatement) {
+			myOutput = new DataOutputStream(theOutput);
+			if (theStatement != null) {
+				for (HfqlStatement.SelectClause next : theStatement.getSelectClauses()) {
+					myColumnTypes.add(next.getDataType());
+				}
+			}
+		}
+
+		public void writeHeader(
+				String theServerVersion, @Nullable String theSearchId, int theLimit, @Nullable String theStatementJson)
+				throws IOException {
+			myOutput.writeUTF(PROTOCOL_VERSION);
+			myOutput.writeUTF(theServerVersion);
+			writeString(myOutput, theSearchId);
+			myOutput.writeInt(theLimit);
+			writeString(myOutput, theStatementJson);
+		}
+
+		public void writeRow(IHfqlExecutionResult.Row theRow) throws IOException {
+			if (theRow.getRowOffset() == IHfqlExecutionResult.ROW_OFFSET_ERROR) {
+				flushRows();
+				myOutput.writeByte(BLOCK_TYPE_ERROR);
+				Object message = theRow.getRowValues().isEmpty()
+						? null
+						: theRow.getRowValues().get(0);
+				writeString(myOutput, message != null ? message.toString() : null);
+				return;
+			}
+
+			if (!myRows.isEmpty()
+					&& myRows.get(0).getRowValues().size()
+							!= theRow.getRowValues().size()) {
+				flushRows();
+			}
+			myRows.add(theRow);
+			if (myRows.size() >= BLOCK_SIZE) {
+				flushRows();
+			}
+		}
+
+		/**
+		 * Writes any buffered rows followed by the end of response marker
+		 */
+		public void finish() throws IOException {
+			flushRows();
+			myOutput.writeByte(BLOCK_TYPE_END);
+			myOutput.flush();
+		}
+
+		private void flushRows() throws IOException {
+			if (myRows.isEmpty()) {
+				return;
+			}
+
+			int rowCount = myRows.size();
+			int columnCount = myRows.get(0).getRowValues().size();
+			myOutput.writeByte(BLOCK_TYPE_ROWS);
+			myOutput.writeInt(rowCount);
+			myOutput.writeInt(columnCount);
+			for (IHfqlExecutionResult.Row next : myRows) {
+				myOutput.writeInt(next.getRowOffset());
+			}
+
+			Object[] values = new Object[rowCount];
+			for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+				for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+					values[rowIndex] = myRows.get(rowIndex).getRowValues().get(columnIndex);
+				}
+				HfqlDataTypeEnum columnType =
+						columnIndex < myColumnTypes.size() ? myColumnTypes.get(columnIndex) : null;
+				writeColumn(values, columnType);
+			}
+
+			myRows.clear();
+		}
+
+		private void writeColumn(Object[] theValues, @Nullable HfqlDataTypeEnum theColumnType) throws IOException {
+			byte[] nullBitmap = new byte[(theValues.length + 7) / 8];
+			int nonNullCount = 0;
+			for (int i = 0; i < theValues.length; i++) {
+				if (theValues[i] == null) {
+					nullBitmap[i / 8] |= (byte) (1 << (i % 8));
+				} else {
+					nonNullCount++;
+				}
+			}
+
+			Object[] nonNullValues = new Object[nonNullCount];
+			int index = 0;
+			for (Object next : theValues) {
+				if (next != null) {
+					nonNullValues[index++] = next;
+				}
+			}
+
+			if (theColumnType == HfqlDataTypeEnum.INTEGER && toIntegers(nonNullValues)) {
+				writeColumnHeader(ENCODING_INTEGER, nullBitmap);
+				for (Object next : nonNullValues) {
+					myOutput.writeInt((Integer) next);
+				}
+			} else if (theColumnType == HfqlDataTypeEnum.LONGINT && toLongs(nonNullValues)) {
+				writeColumnHeader(ENCODING_LONG, nullBitmap);
+				for (Object next : nonNullValues) {
+					myOutput.writeLong((Long) next);
+				}
+			} else if (theColumnType == HfqlDataTypeEnum.BOOLEAN && toBooleans(nonNullValues)) {
+				writeColumnHeader(ENCODING_BOOLEAN, nullBitmap);
+				for (Object next : nonNullValues) {
+					myOutput.writeBoolean((Boolean) next);
+				}
+			} else {
+				writeStringColumn(nonNullValues, nullBitmap);
+			}
+		}
+
+		private void writeStringColumn(Object[] theNonNullValues, byte[] theNullBitmap) throws IOException {
+			Map<String, Integer> dictionary = new HashMap<>();
+			List<String> dictionaryValues = new ArrayList<>();
+			int[] indexes = new int[theNonNullValues.length];
+			for (int i = 0; i < theNonNullValues.length; i++) {
+				String value = theNonNullValues[i].toString();
+				theNonNullValues[i] = value;
+				Integer dictionaryIndex = dictionary.get(value);
+				if (dictionaryIndex == null) {
+					dictionaryIndex = dictionaryValues.size();
+					dictionary.put(value, dictionaryIndex);
+					dictionaryValues.add(value);
+				}
+				indexes[i] = dictionaryIndex;
+			}
+
+			// Only use a dictionary if values repeat often enough to make it worthwhile
+			if (dictionaryValues.size() * 2 > theNonNullValues.length) {
+				writeColumnHeader(ENCODING_STRING_PLAIN, theNullBitmap);
+				for (Object next : theNonNullValues) {
+					writeString(myOutput, (String) next);
+				}
+				return;
+			}
+
+			writeColumnHeader(ENCODING_STRING_DICTIONARY, theNullBitmap);
+			myOutput.writeInt(dictionaryValues.size());
+			for (String next : dictionaryValues) {
+				writeString(myOutput, next);
+			}
+			int dictionarySize = dictionaryValues.size();
+			for (int next : indexes) {
+				if (dictionarySize <= 0xFF) {
+					myOutput.writeByte(next);
+				} else if (dictionarySize <= 0xFFFF) {
+					myOutput.writeShort(next);
+				} else {
+					myOutput.writeInt(next);
+				}
+			}
+		}
+
+		private void writeColumnHeader(byte theEncoding, byte[] theNullBitmap) throws IOException {
+			myOutput.writeByte(theEncoding);
+			myOutput.write(theNullBitmap);
+		}
+
+		/**
+		 * Converts the values to {@link Integer} in place, returning <code>false</code> if any value can't be
+		 */
+		private static boolean toIntegers(Object[] theValues) {
+			Object[] converted = new Object[theValues.length];
+			for (int i = 0; i < theValues.length; i++) {
+				Object next = theValues[i];
+				if (next instanceof Integer) {
+					converted[i] = next;
+				} else if (next instanceof String) {
+					try {
+						converted[i] = Integer.parseInt((String) next);
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				} else {
+					return false;
+				}
+			}
+			System.arraycopy(converted, 0, theValues, 0, converted.length);
+			return true;
+		}
+
+		/**
+		 * Converts the values to {@link Long} in place, returning <code>false</code> if any value can't be
+		 */
+		private static boolean toLongs(Object[] theValues) {
+			Object[] converted = new Object[theValues.length];
+			for (int i = 0; i < theValues.length; i++) {
+				Object next = theValues[i];
+				if (next instanceof Long || next instanceof Integer) {
+					converted[i] = ((Number) next).longValue();
+				} else if (next instanceof String) {
+					try {
+						converted[i] = Long.parseLong((String) next);
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				} else {
+					return false;
+				}
+			}
+			System.arraycopy(converted, 0, theValues, 0, converted.length);
+			return true;
+		}
+
+		/**
+		 * Converts the values to {@link Boolean} in place, returning <code>false</code> if any value can't be
+		 */
+		private static boolean toBooleans(Object[] theValues) {
+			Object[] converted = new Object[theValues.length];
+			for (int i = 0; i < theValues.length; i++) {
+				Object next = theValues[i];
+				if (next instanceof Boolean) {
+					converted[i] = next;
+				} else if ("true".equals(next) || "false".equals(next)) {
+					converted[i] = Boolean.valueOf((String) next);
+				} else {
+					return false;
+				}
+			}
+			System.arraycopy(converted, 0, theValues, 0, converted.length);
+			return true;
+		}
+	}
+
+	/**
+	 * Reads a single response written by {@link PageWriter}
+	 */
+	public static class PageReader {
+
+		private final DataInputStream myInput;
+		private boolean myFinished;
+
+		public PageReader(InputStream theInput) {
+			myInput = new DataInputStream(theInput);
+		}
+
+		public Header readHeader() throws IOException {
+			String protocolVersion = myInput.readUTF();
+			if (!PROTOCOL_VERSION.equals(protocolVersion)) {
+				throw new IOException(Msg.code(2801) + "Wrong protocol version, expected " + PROTOCOL_VERSION
+						+ " but got " + protocolVersion);
+			}
+			String serverVersion = myInput.readUTF();
+			String searchId = readString(myInput);
+			int limit = myInput.readInt();
+			String statementJson = readString(myInput);
+			return new Header(serverVersion, searchId, limit, statementJson);
+		}
+
+		/**
+		 * Reads the next block of rows. An error is returned as a block containing a single
+		 * row with an offset of {@link IHfqlExecutionResult#ROW_OFFSET_ERROR}.
+		 *
+		 * @return The rows, or <code>null</code> if there are no more rows in this response
+		 */
+		@Nullable
+		public List<IHfqlExecutionResult.Row> readBlock() throws IOException {
+			if (myFinished) {
+				return null;
+			}
+
+			byte blockType = myInput.readByte();
+			switch (blockType) {
+				case BLOCK_TYPE_END:
+					myFinished = true;
+					return null;
+				case BLOCK_TYPE_ERROR:
+					List<Object> errorValues = new ArrayList<>(1);
+					errorValues.add(readString(myInput));
+					List<IHfqlExecutionResult.Row> errorBlock = new ArrayList<>(1);
+					errorBlock.add(new IHfqlExecutionResult.Row(IHfqlExecutionResult.ROW_OFFSET_ERROR, errorValues));
+					return errorBlock;
+				case BLOCK_TYPE_ROWS:
+					return readRows();
+				default:
+					throw new IOException(Msg.code(2802) + "Unknown block type: " + blockType);
+			}
+		}
+
+		private List<IHfqlExecutionResult.Row> readRows() throws IOException {
+			int rowCount = myInput.readInt();
+			int columnCount = myInput.readInt();
+			int[] offsets = new int[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				offsets[i] = myInput.readInt();
+			}
+
+			Object[][] columns = new Object[columnCount][];
+			for (int i = 0; i < columnCount; i++) {
+				columns[i] = readColumn(rowCount);
+			}
+
+			List<IHfqlExecutionResult.Row> retVal = new ArrayList<>(rowCount);
+			for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+				List<Object> values = new ArrayList<>(columnCount);
+				for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+					values.add(columns[columnIndex][rowIndex]);
+				}
+				retVal.add(new IHfqlExecutionResult.Row(offsets[rowIndex], values));
+			}
+			return retVal;
+		}
+
+		private Object[] readColumn(int theRowCount) throws IOException {
+			byte encoding = myInput.readByte();
+			byte[] nullBitmap = new byte[(theRowCount + 7) / 8];
+			myInput.readFully(nullBitmap);
+
+			String[] dictionary = null;
+			int dictionarySize = 0;
+			if (encoding == ENCODING_STRING_DICTIONARY) {
+				dictionarySize = myInput.readInt();
+				dictionary = new String[dictionarySize];
+				for (int i = 0; i < dictionarySize; i++) {
+					dictionary[i] = readString(myInput);
+				}
+			}
+
+			Object[] retVal = new Object[theRowCount];
+			for (int i = 0; i < theRowCount; i++) {
+				if ((nullBitmap[i / 8] & (1 << (i % 8))) != 0) {
+					continue;
+				}
+				switch (encoding) {
+					case ENCODING_STRING_PLAIN:
+						retVal[i] = readString(myInput);
+						break;
+					case ENCODING_STRING_DICTIONARY:
+						int index;
+						if (dictionarySize <= 0xFF) {
+							index = myInput.readUnsignedByte();
+						} else if (dictionarySize <= 0xFFFF) {
+							index = myInput.readUnsignedShort();
+						} else {
+							index = myInput.readInt();
+						}
+						retVal[i] = dictionary[index];
+						break;
+					case ENCODING_INTEGER:
+						retVal[i] = myInput.readInt();
+						break;
+					case ENCODING_LONG:
+						retVal[i] = myInput.readLong();
+						break;
+					case ENCODING_BOOLEAN:
+						retVal[i] = myInput.readBoolean();
+						break;
+					default:
+						throw new IOException(Msg.code(2803) + "Unknown column encoding: " + encoding);
+				}
+			}
+			return retVal;
+		}
+	}
+
+	public static class Header {
+
+		private final String myServerVersion;
+		private final String mySearchId;
+		private final int myLimit;
+		private final String myStatementJson;
+
+		public Header(String theServerVersion, String theSearchId, int theLimit, String theStatementJson) {
+			myServerVersion = theServerVersion;
+			mySearchId = theSearchId;
+			myLimit = theLimit;
+			myStatementJson = theStatementJson;
+		}
+
+		public String getServerVersion() {
+			return myServerVersion;
+		}
+
+		@Nullable
+		public String getSearchId() {
+			return mySearchId;
+		}
+
+		public int getLimit() {
+			return myLimit;
+		}
+
+		@Nullable
+		public String getStatementJson() {
+			return myStatementJson;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA Server - HFQL Driver
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.fql.jdbc;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutionResult;
+import ca.uhn.fhir.util.IoUtil;
+import jakarta.annotation.Nonnull;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads the blocks of rows in {@link HfqlColumnarFormat columnar} responses on a background
+ * thread, and requests the next page of results from the server as soon as the current
+ * page has been received. This means that the next page is usually already available
+ * by the time the client has consumed the current one.
+ */
+class HfqlColumnarPrefetcher implements Runnable {
+	private static final Logger ourLog = LoggerFactory.getLogger(HfqlColumnarPrefetcher.class);
+
+	/**
+	 * The number of blocks that can be read ahead of the client
+	 */
+	static final int PREFETCH_BLOCK_COUNT = 4;
+
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> myQueue = new ArrayBlockingQueue<>(PREFETCH_BLOCK_COUNT);
+	private final IContinuationRequester myContinuationRequester;
+	private final UnaryOperator<IHfqlExecutionResult.Row> myRowConverter;
+	private final int myFetchSize;
+	private final boolean mySupportsContinuations;
+	private volatile CloseableHttpResponse myResponse;
+	private HfqlColumnarFormat.PageReader myReader;
+	private volatile String mySearchId;
+	private volatile int myLimit;
+	private volatile boolean myCancelled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theResponse The initial response, whose header has already been read using <code>theReader</code>
+	 */
+	HfqlColumnarPrefetcher(
+			CloseableHttpResponse theResponse,
+			HfqlColumnarFormat.PageReader theReader,
+			HfqlColumnarFormat.Header theHeader,
+			IContinuationRequester theContinuationRequester,
+			UnaryOperator<IHfqlExecutionResult.Row> theRowConverter,
+			int theFetchSize,
+			boolean theSupportsContinuations) {
+		myResponse = theResponse;
+		myReader = theReader;
+		mySearchId = theHeader.getSearchId();
+		myLimit = theHeader.getLimit();
+		myContinuationRequester = theContinuationRequester;
+		myRowConverter = theRowConverter;
+		myFetchSize = theFetchSize;
+		mySupportsContinuations = theSupportsContinuations;
+	}
+
+	void start(Executor theExecutor) {
+		theExecutor.execute(this);
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!myCancelled) {
+				int rowCount = 0;
+				int lastRowOffset = -1;
+				boolean error = false;
+				for (List<IHfqlExecutionResult.Row> block = myReader.readBlock();
+						block != null;
+						block = myReader.readBlock()) {
+					block.replaceAll(myRowConverter);
+					rowCount += block.size();
+					IHfqlExecutionResult.Row lastRow = block.get(block.size() - 1);
+					error = lastRow.getRowOffset() == IHfqlExecutionResult.ROW_OFFSET_ERROR;
+					lastRowOffset = lastRow.getRowOffset();
+					put(block);
+					if (error) {
+						break;
+					}
+				}
+				closeResponse();
+
+				if (error || !mySupportsContinuations || rowCount < myFetchSize) {
+					break;
+				}
+
+				myResponse = myContinuationRequester.requestContinuation(mySearchId, lastRowOffset + 1, myLimit);
+				InputStream content = myResponse.getEntity().getContent();
+				myReader = new HfqlColumnarFormat.PageReader(content);
+				HfqlColumnarFormat.Header header = myReader.readHeader();
+				mySearchId = header.getSearchId();
+				myLimit = header.getLimit();
+			}
+			put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			if (!myCancelled) {
+				ourLog.debug("Failed to read HFQL results", e);
+				try {
+					put(e);
+				} catch (InterruptedException e2) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} finally {
+			closeResponse();
+		}
+	}
+
+	private void put(Object theItem) throws InterruptedException {
+		while (!myCancelled) {
+			if (myQueue.offer(theItem, 100, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the next block of rows, waiting for it to be read if necessary
+	 *
+	 * @return The rows, or an empty list if there are no more rows or reading has been cancelled
+	 * @throws IOException If reading or requesting the results failed
+	 */
+	@Nonnull
+	@SuppressWarnings("unchecked")
+	List<IHfqlExecutionResult.Row> takeBlock() throws IOException, InterruptedException {
+		Object next = null;
+		while (next == null) {
+			// Nothing will ever be queued once we are cancelled, so don't wait for it
+			if (myCancelled) {
+				return List.of();
+			}
+			next = myQueue.poll(100, TimeUnit.MILLISECONDS);
+		}
+
+		if (next == END) {
+			// Leave the marker in place so that subsequent calls also see the end
+			myQueue.offer(END);
+			return List.of();
+		}
+		if (next instanceof Exception) {
+			// Same for a failure, the reader thread has stopped so nothing else will follow it
+			myQueue.offer(next);
+			if (next instanceof IOException) {
+				throw (IOException) next;
+			}
+			throw new IOException(Msg.code(2804) + ((Exception) next).getMessage(), (Exception) next);
+		}
+		return (List<IHfqlExecutionResult.Row>) next;
+	}
+
+	String getSearchId() {
+		return mySearchId;
+	}
+
+	int getLimit() {
+		return myLimit;
+	}
+
+	/**
+	 * Stops reading. Any response currently being read is closed.
+	 */
+	void cancel() {
+		myCancelled = true;
+		closeResponse();
+		myQueue.clear();
+	}
+
+	private void closeResponse() {
+		CloseableHttpResponse response = myResponse;
+		if (response != null) {
+			IoUtil.closeQuietly(response);
+			myResponse = null;
+		}
+	}
+
+	@FunctionalInterface
+	interface IContinuationRequester {
+
+		/**
+		 * Requests the next page of results, returning a response which has already been
+		 * checked for a successful status
+		 */
+		CloseableHttpResponse requestContinuation(String theSearchId, int theOffset, int theLimit) throws IOException;
+	}
+}
@@ -26,6 +26,7 @@ import ca.uhn.fhir.util.IoUtil;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
@@ -35,6 +36,8 @@ import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.StringType;
 
 import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static ca.uhn.fhir.jpa.fql.util.HfqlConstants.DEFAULT_FETCH_SIZE;
@@ -50,14 +53,38 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  * Ideally in the future I'd like to explore using JDK primitives instead of even
  * using the Apache client or HAPI FHIR in order to reduce the dependencies required
  * in the JDBC driver, but that can be a problem for the future.
+ * <p>
+ * By default, the client requests results in the {@link HfqlColumnarFormat columnar format}
+ * with gzip compression, and reads them ahead of the caller on a background thread.
+ * Servers which don't support that format respond with CSV instead.
  */
 public class HfqlRestClient {
 	public static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.withRecordSeparator('\n');
 	private final String myBaseUrl;
 	private final CloseableHttpClient myClient;
+	private final boolean myColumnar;
+	private final ExecutorService myPrefetchExecutor;
 
 	public HfqlRestClient(String theBaseUrl, String theUsername, String thePassword) {
+		this(theBaseUrl, theUsername, thePassword, true, true);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theColumnar    Should results be requested in the {@link HfqlColumnarFormat columnar format}?
+	 *                       If <code>false</code>, CSV is requested.
+	 * @param theCompression Should the client accept compressed responses?
+	 * @since 7.6.0
+	 */
+	public HfqlRestClient(
+			String theBaseUrl, String theUsername, String thePassword, boolean theColumnar, boolean theCompression) {
 		myBaseUrl = theBaseUrl;
+		myColumnar = theColumnar;
+		myPrefetchExecutor = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+				.namingPattern("hfql-prefetch-%d")
+				.daemon(true)
+				.build());
 
 		PoolingHttpClientConnectionManager connectionManager =
 				new PoolingHttpClientConnectionManager(5000, TimeUnit.MILLISECONDS);
@@ -66,6 +93,9 @@ public class HfqlRestClient {
 		HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
 				.setConnectionManager(connectionManager)
 				.setMaxConnPerRoute(99);
+		if (!theCompression) {
+			httpClientBuilder.disableContentCompression();
+		}
 		if (isNotBlank(theUsername) && isNotBlank(thePassword)) {
 			httpClientBuilder.addInterceptorLast(new HttpBasicAuthInterceptor(theUsername, thePassword));
 		}
@@ -90,11 +120,18 @@ public class HfqlRestClient {
 		Integer fetchSize = theFetchSize;
 		fetchSize = defaultIfNull(fetchSize, DEFAULT_FETCH_SIZE);
 		Validate.isTrue(fetchSize > 0, "theFetchSize must be a positive integer, got: %s", fetchSize);
+		Parameters requestParameters = theRequestParameters;
+		if (myColumnar && requestParameters.getParameter(HfqlConstants.PARAM_FORMAT) == null) {
+			requestParameters = requestParameters.copy();
+			requestParameters.addParameter(
+					HfqlConstants.PARAM_FORMAT, new CodeType(HfqlConstants.PARAM_FORMAT_COLUMNAR));
+		}
 		return new RemoteHfqlExecutionResult(
-				theRequestParameters, myBaseUrl, myClient, fetchSize, theSupportsContinuations);
+				requestParameters, myBaseUrl, myClient, fetchSize, theSupportsContinuations, myPrefetchExecutor);
 	}
 
 	public void close() {
+		myPrefetchExecutor.shutdownNow();
 		IoUtil.closeQuietly(myClient);
 	}
 }
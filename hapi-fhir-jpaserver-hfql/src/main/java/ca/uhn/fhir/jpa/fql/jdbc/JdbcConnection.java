@@ -47,6 +47,8 @@ class JdbcConnection implements Connection {
 	private HfqlRestClient myClient;
 	private String myUsername;
 	private String myPassword;
+	private boolean myColumnarTransport = true;
+	private boolean myCompression = true;
 
 	public JdbcConnection(String theServerUrl) {
 		myServerUrl = theServerUrl;
@@ -95,6 +97,10 @@ class JdbcConnection implements Connection {
 	@Override
 	public void close() {
 		myClosed = true;
+		if (myClient != null) {
+			myClient.close();
+			myClient = null;
+		}
 	}
 
 	@Override
@@ -327,7 +333,7 @@ class JdbcConnection implements Connection {
 
 	public HfqlRestClient getClient() {
 		if (myClient == null) {
-			myClient = new HfqlRestClient(myServerUrl, myUsername, myPassword);
+			myClient = new HfqlRestClient(myServerUrl, myUsername, myPassword, myColumnarTransport, myCompression);
 		}
 		return myClient;
 	}
@@ -340,6 +346,14 @@ class JdbcConnection implements Connection {
 		myPassword = thePassword;
 	}
 
+	public void setColumnarTransport(boolean theColumnarTransport) {
+		myColumnarTransport = theColumnarTransport;
+	}
+
+	public void setCompression(boolean theCompression) {
+		myCompression = theCompression;
+	}
+
 	@Nonnull
 	static SQLException newSqlExceptionForUnsupportedOperation() {
 		return new SQLException(Msg.code(2394) + "This JDBC method is not yet supported by the HFQL JDBC Driver");
@@ -19,6 +19,9 @@
  */
 package ca.uhn.fhir.jpa.fql.jdbc;
 
+import ca.uhn.fhir.jpa.fql.util.HfqlConstants;
+import ca.uhn.fhir.rest.api.Constants;
+
 import java.io.PrintStream;
 import java.sql.Connection;
 import java.sql.Driver;
@@ -40,10 +43,21 @@ import java.util.logging.Logger;
  * a query is executed it is translated into a FHIR search (with further
  * processing on the search results happening in
  * {@link ca.uhn.fhir.jpa.fql.executor.HfqlExecutor}).
+ * <p>
+ * In addition to <code>user</code> and <code>password</code>, the following
+ * connection properties are supported:
+ * <ul>
+ *    <li><code>transport</code>: <code>columnar</code> (the default) to request results in the
+ *    binary {@link HfqlColumnarFormat columnar format}, or <code>csv</code> to request CSV</li>
+ *    <li><code>compression</code>: <code>gzip</code> (the default) to accept compressed results,
+ *    or <code>none</code></li>
+ * </ul>
  */
 public class JdbcDriver implements Driver {
 	private static final JdbcDriver INSTANCE = new JdbcDriver();
 	public static final String URL_PREFIX = "jdbc:hapifhirql:";
+	public static final String PROPERTY_TRANSPORT = "transport";
+	public static final String PROPERTY_COMPRESSION = "compression";
 	private static boolean ourRegistered;
 
 	static {
@@ -57,6 +71,10 @@ public class JdbcDriver implements Driver {
 		JdbcConnection connection = new JdbcConnection(serverUrl);
 		connection.setUsername(theProperties.getProperty("user", null));
 		connection.setPassword(theProperties.getProperty("password", null));
+		String transport = theProperties.getProperty(PROPERTY_TRANSPORT, HfqlConstants.PARAM_FORMAT_COLUMNAR);
+		connection.setColumnarTransport(!HfqlConstants.PARAM_FORMAT_CSV.equalsIgnoreCase(transport));
+		String compression = theProperties.getProperty(PROPERTY_COMPRESSION, Constants.ENCODING_GZIP);
+		connection.setCompression(!"none".equalsIgnoreCase(compression));
 		return connection;
 	}
 
@@ -32,10 +32,12 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.IoUtil;
 import ca.uhn.fhir.util.JsonUtil;
 import ca.uhn.fhir.util.ValidateUtil;
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.Validate;
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -57,6 +59,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static ca.uhn.fhir.jpa.fql.util.HfqlConstants.PROTOCOL_VERSION;
 import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
@@ -65,8 +68,12 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 /**
  * This implementation of {@link IHfqlExecutionResult} is intended to be used within
  * a remote client (ie a JDBC driver). It executes a call to a FHIR server, executing
- * the {@link ca.uhn.fhir.jpa.fql.provider.HfqlRestProvider#executeFql(IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, RequestDetails, HttpServletResponse)}
+ * the {@link ca.uhn.fhir.jpa.fql.provider.HfqlRestProvider#executeFql(IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, IPrimitiveType, RequestDetails, HttpServletResponse)}
  * operation, parses the response and returns it.
+ * <p>
+ * If the server responds using the {@link HfqlColumnarFormat columnar format}, the
+ * response is read by a {@link HfqlColumnarPrefetcher} which also requests subsequent
+ * pages in the background. Otherwise the response is read as CSV.
  *
  * @see IHfqlExecutionResult for more information about the purpose of this class
  */
@@ -84,6 +91,10 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 	private int myLastRowNumber;
 	private boolean myExhausted;
 	private HfqlStatement myStatement;
+	private HfqlColumnarPrefetcher myPrefetcher;
+	private List<Row> myCurrentBlock = List.of();
+	private int myCurrentBlockIndex;
+	private boolean myColumnarClosed;
 
 	public RemoteHfqlExecutionResult(
 			Parameters theRequestParameters,
@@ -92,6 +103,23 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 			int theFetchSize,
 			boolean theSupportsContinuations)
 			throws SQLException {
+		this(theRequestParameters, theBaseUrl, theClient, theFetchSize, theSupportsContinuations, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param thePrefetchExecutor The executor used to read {@link HfqlColumnarFormat columnar} responses in the
+	 *                            background. If <code>null</code>, a new thread is started for each result.
+	 */
+	public RemoteHfqlExecutionResult(
+			Parameters theRequestParameters,
+			String theBaseUrl,
+			CloseableHttpClient theClient,
+			int theFetchSize,
+			boolean theSupportsContinuations,
+			@Nullable Executor thePrefetchExecutor)
+			throws SQLException {
 		myBaseUrl = theBaseUrl;
 		myClient = theClient;
 		myFetchSize = theFetchSize;
@@ -102,11 +130,16 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 		try {
 			myRequest = myClient.execute(post);
 			validateResponse();
-			myReader = new InputStreamReader(myRequest.getEntity().getContent(), StandardCharsets.UTF_8);
-			CSVParser csvParser = new CSVParser(myReader, HfqlRestClient.CSV_FORMAT);
-			myIterator = csvParser.iterator();
-			readHeaderRows(true);
+			if (isColumnarResponse(myRequest)) {
+				startColumnarReader(thePrefetchExecutor);
+			} else {
+				myReader = new InputStreamReader(myRequest.getEntity().getContent(), StandardCharsets.UTF_8);
+				CSVParser csvParser = new CSVParser(myReader, HfqlRestClient.CSV_FORMAT);
+				myIterator = csvParser.iterator();
+				readHeaderRows(true);
+			}
 		} catch (IOException e) {
+			close();
 			throw new SQLException(Msg.code(2400) + e.getMessage(), e);
 		}
 	}
@@ -137,10 +170,65 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 	}
 
 	private void validateResponse() {
+		validateResponse(myRequest);
+	}
+
+	private static void validateResponse(CloseableHttpResponse theResponse) {
 		Validate.isTrue(
-				myRequest.getStatusLine().getStatusCode() == 200,
+				theResponse.getStatusLine().getStatusCode() == 200,
 				"Server returned wrong status: %d",
-				myRequest.getStatusLine().getStatusCode());
+				theResponse.getStatusLine().getStatusCode());
+	}
+
+	private static boolean isColumnarResponse(CloseableHttpResponse theResponse) {
+		Header contentType = theResponse.getEntity().getContentType();
+		return contentType != null && contentType.getValue().startsWith(HfqlColumnarFormat.CONTENT_TYPE);
+	}
+
+	private void startColumnarReader(@Nullable Executor thePrefetchExecutor) throws IOException {
+		HfqlColumnarFormat.PageReader reader =
+				new HfqlColumnarFormat.PageReader(myRequest.getEntity().getContent());
+		HfqlColumnarFormat.Header header = reader.readHeader();
+		mySearchId = header.getSearchId();
+		myLimit = header.getLimit();
+		if (isNotBlank(header.getStatementJson())) {
+			myStatement = JsonUtil.deserialize(header.getStatementJson(), HfqlStatement.class);
+		}
+
+		myPrefetcher = new HfqlColumnarPrefetcher(
+				myRequest,
+				reader,
+				header,
+				this::requestColumnarContinuation,
+				this::convertRowValues,
+				myFetchSize,
+				mySupportsContinuations);
+		// The prefetcher now owns the response
+		myRequest = null;
+
+		Executor executor = thePrefetchExecutor;
+		if (executor == null) {
+			executor = task -> {
+				Thread thread = new Thread(task, "hfql-prefetch");
+				thread.setDaemon(true);
+				thread.start();
+			};
+		}
+		myPrefetcher.start(executor);
+	}
+
+	private CloseableHttpResponse requestColumnarContinuation(String theSearchId, int theOffset, int theLimit)
+			throws IOException {
+		HttpPost post = newContinuationRequest(theSearchId, theOffset, theLimit);
+		CloseableHttpResponse retVal = myClient.execute(post);
+		try {
+			validateResponse(retVal);
+			Validate.isTrue(isColumnarResponse(retVal), "Server did not return a columnar response");
+		} catch (RuntimeException e) {
+			IoUtil.closeQuietly(retVal);
+			throw e;
+		}
+		return retVal;
 	}
 
 	private void readHeaderRows(boolean theFirstPage) {
@@ -169,6 +257,9 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 		if (myExhausted) {
 			return false;
 		}
+		if (myPrefetcher != null) {
+			return hasNextColumnar();
+		}
 
 		boolean hasNext = myIterator.hasNext();
 		if (!hasNext && myCurrentFetchCount < myFetchSize) {
@@ -178,16 +269,52 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 			close();
 			if (mySupportsContinuations) {
 				hasNext = executeContinuationSearch();
+				if (!hasNext) {
+					myExhausted = true;
+					close();
+				}
 			}
 		}
 
 		return hasNext;
 	}
 
+	private boolean hasNextColumnar() {
+		if (myCurrentBlockIndex < myCurrentBlock.size()) {
+			return true;
+		}
+		try {
+			myCurrentBlock = myPrefetcher.takeBlock();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			myExhausted = true;
+			close();
+			throw new InternalErrorException(Msg.code(2799) + e.getMessage(), e);
+		} catch (IOException e) {
+			myExhausted = true;
+			close();
+			throw new InternalErrorException(Msg.code(2800) + e.getMessage(), e);
+		}
+		myCurrentBlockIndex = 0;
+		if (myCurrentBlock.isEmpty()) {
+			myExhausted = true;
+			close();
+			return false;
+		}
+		return true;
+	}
+
 	@Override
 	public Row getNextRow() {
 		Validate.isTrue(!myExhausted, "Search is exhausted. This is a bug.");
 
+		if (myPrefetcher != null) {
+			Validate.isTrue(hasNextColumnar(), "Search is exhausted. This is a bug.");
+			Row retVal = myCurrentBlock.get(myCurrentBlockIndex++);
+			myLastRowNumber = retVal.getRowOffset();
+			return retVal;
+		}
+
 		List<Object> columnValues = new ArrayList<>();
 		boolean first = true;
 		CSVRecord nextRecord = myIterator.next();
@@ -203,62 +330,92 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 		}
 
 		for (int i = 0; i < columnValues.size(); i++) {
-			String existingValue = (String) columnValues.get(i);
-			if (isNotBlank(existingValue)) {
-				Object newValue = null;
-				switch (myStatement.getSelectClauses().get(i).getDataType()) {
-					case STRING:
-					case JSON:
-						// No action
-						break;
-					case TIME:
-						// No action (we represent times as strings internally)
-						break;
-					case INTEGER:
-						newValue = Integer.parseInt(existingValue);
-						break;
-					case BOOLEAN:
-						newValue = Boolean.parseBoolean(existingValue);
-						break;
-					case DATE:
-						DateType dateType = new DateType();
-						dateType.setValueAsString(existingValue);
-						newValue = dateType.getValue();
-						break;
-					case TIMESTAMP:
-						DateTimeType dateTimeType = new DateTimeType();
-						dateTimeType.setValueAsString(existingValue);
-						newValue = dateTimeType.getValue();
-						break;
-					case LONGINT:
-						newValue = Long.parseLong(existingValue);
-						break;
-					case DECIMAL:
-						newValue = new DecimalType(existingValue).getValue();
-						break;
-				}
-				if (newValue != null) {
-					columnValues.set(i, newValue);
+			columnValues.set(i, convertValue((String) columnValues.get(i), i));
+		}
+
+		return new Row(myLastRowNumber, columnValues);
+	}
+
+	/**
+	 * Converts the values in a row received in the columnar format. Values that were
+	 * transferred as strings are converted to the column data type.
+	 */
+	private Row convertRowValues(Row theRow) {
+		if (theRow.getRowOffset() != ROW_OFFSET_ERROR) {
+			List<Object> values = theRow.getRowValues();
+			for (int i = 0; i < values.size(); i++) {
+				Object value = values.get(i);
+				if (value instanceof String) {
+					values.set(i, convertValue((String) value, i));
 				}
-			} else {
-				columnValues.set(i, null);
 			}
 		}
+		return theRow;
+	}
 
-		return new Row(myLastRowNumber, columnValues);
+	/**
+	 * Converts a value received as a string to the data type of the column
+	 */
+	@Nullable
+	private Object convertValue(@Nullable String theValue, int theColumnIndex) {
+		if (!isNotBlank(theValue)) {
+			return null;
+		}
+
+		Object newValue = null;
+		switch (myStatement.getSelectClauses().get(theColumnIndex).getDataType()) {
+			case STRING:
+			case JSON:
+				// No action
+				break;
+			case TIME:
+				// No action (we represent times as strings internally)
+				break;
+			case INTEGER:
+				newValue = Integer.parseInt(theValue);
+				break;
+			case BOOLEAN:
+				newValue = Boolean.parseBoolean(theValue);
+				break;
+			case DATE:
+				DateType dateType = new DateType();
+				dateType.setValueAsString(theValue);
+				newValue = dateType.getValue();
+				break;
+			case TIMESTAMP:
+				DateTimeType dateTimeType = new DateTimeType();
+				dateTimeType.setValueAsString(theValue);
+				newValue = dateTimeType.getValue();
+				break;
+			case LONGINT:
+				newValue = Long.parseLong(theValue);
+				break;
+			case DECIMAL:
+				newValue = new DecimalType(theValue).getValue();
+				break;
+		}
+		return newValue != null ? newValue : theValue;
 	}
 
-	private boolean executeContinuationSearch() {
-		boolean hasNext;
+	private HttpPost newContinuationRequest(String theSearchId, int theOffset, int theLimit) {
 		HttpPost post = new HttpPost(myBaseUrl + "/" + HfqlConstants.HFQL_EXECUTE);
 		Parameters input = new Parameters();
 		input.addParameter(HfqlConstants.PARAM_ACTION, new CodeType(HfqlConstants.PARAM_ACTION_SEARCH_CONTINUATION));
-		input.addParameter(HfqlConstants.PARAM_CONTINUATION, new StringType(mySearchId));
-		input.addParameter(HfqlConstants.PARAM_OFFSET, new IntegerType(myLastRowNumber + 1));
-		input.addParameter(HfqlConstants.PARAM_LIMIT, new IntegerType(myLimit));
+		input.addParameter(HfqlConstants.PARAM_CONTINUATION, new StringType(theSearchId));
+		input.addParameter(HfqlConstants.PARAM_OFFSET, new IntegerType(theOffset));
+		input.addParameter(HfqlConstants.PARAM_LIMIT, new IntegerType(theLimit));
 		input.addParameter(HfqlConstants.PARAM_FETCH_SIZE, new IntegerType(myFetchSize));
 		input.addParameter(HfqlConstants.PARAM_STATEMENT, new StringType(JsonUtil.serialize(myStatement, false)));
+		if (myPrefetcher != null) {
+			input.addParameter(HfqlConstants.PARAM_FORMAT, new CodeType(HfqlConstants.PARAM_FORMAT_COLUMNAR));
+		}
 		post.setEntity(new ResourceEntity(FhirContext.forR4Cached(), input));
+		return post;
+	}
+
+	private boolean executeContinuationSearch() {
+		boolean hasNext;
+		HttpPost post = newContinuationRequest(mySearchId, myLastRowNumber + 1, myLimit);
 		try {
 			myRequest = myClient.execute(post);
 			validateResponse();
@@ -275,11 +432,18 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 
 	@Override
 	public boolean isClosed() {
+		if (myPrefetcher != null) {
+			return myColumnarClosed;
+		}
 		return myRequest == null;
 	}
 
 	@Override
 	public void close() {
+		if (myPrefetcher != null) {
+			myPrefetcher.cancel();
+			myColumnarClosed = true;
+		}
 		IoUtil.closeQuietly(myReader);
 		IoUtil.closeQuietly(myRequest);
 		myRequest = null;
@@ -287,11 +451,17 @@ public class RemoteHfqlExecutionResult implements IHfqlExecutionResult {
 
 	@Override
 	public String getSearchId() {
+		if (myPrefetcher != null) {
+			return myPrefetcher.getSearchId();
+		}
 		return mySearchId;
 	}
 
 	@Override
 	public int getLimit() {
+		if (myPrefetcher != null) {
+			return myPrefetcher.getLimit();
+		}
 		return myLimit;
 	}
 
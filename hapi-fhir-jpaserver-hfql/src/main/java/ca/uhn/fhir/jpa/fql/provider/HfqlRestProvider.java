@@ -21,10 +21,12 @@ package ca.uhn.fhir.jpa.fql.provider;
 
 import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutionResult;
 import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutor;
+import ca.uhn.fhir.jpa.fql.jdbc.HfqlColumnarFormat;
 import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
 import ca.uhn.fhir.jpa.fql.util.HfqlConstants;
 import ca.uhn.fhir.rest.annotation.Operation;
 import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.util.DatatypeUtil;
 import ca.uhn.fhir.util.JsonUtil;
@@ -37,16 +39,23 @@ import org.apache.commons.csv.CSVPrinter;
 import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.zip.GZIPOutputStream;
 
 import static ca.uhn.fhir.jpa.fql.jdbc.HfqlRestClient.CSV_FORMAT;
 import static ca.uhn.fhir.rest.api.Constants.CHARSET_UTF8_CTSUFFIX;
 import static ca.uhn.fhir.rest.api.Constants.CT_TEXT_CSV;
 import static ca.uhn.fhir.util.DatatypeUtil.toStringValue;
+import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 
 public class HfqlRestProvider {
 
+	private static final int COLUMNAR_BUFFER_SIZE = 64 * 1024;
+
 	@Autowired
 	private IHfqlExecutor myHfqlExecutor;
 
@@ -79,7 +88,9 @@ public class HfqlRestProvider {
 	 * response is not FHIR however: Responses from this operation are in CSV format using
 	 * a custom CSV format that is understood by the client. See
 	 * {@link #streamResponseCsv(HttpServletResponse, int, IHfqlExecutionResult, boolean, HfqlStatement)}
-	 * to see how that format works.
+	 * to see how that format works. Clients may instead request the binary
+	 * {@link HfqlColumnarFormat columnar format}, which is compressed if the client
+	 * accepts gzip content encoding.
 	 */
 	@Operation(name = HfqlConstants.HFQL_EXECUTE, manualResponse = true)
 	public void executeFql(
@@ -101,6 +112,8 @@ public class HfqlRestProvider {
 					IPrimitiveType<String> theIntrospectTableName,
 			@OperationParam(name = HfqlConstants.PARAM_INTROSPECT_COLUMN_NAME, typeName = "string", min = 0, max = 1)
 					IPrimitiveType<String> theIntrospectColumnName,
+			@OperationParam(name = HfqlConstants.PARAM_FORMAT, typeName = "code", min = 0, max = 1)
+					IPrimitiveType<String> theFormat,
 			RequestDetails theRequestDetails,
 			HttpServletResponse theServletResponse)
 			throws IOException {
@@ -108,11 +121,12 @@ public class HfqlRestProvider {
 
 		int fetchSize = parseFetchSize(theFetchSize);
 		Integer limit = parseLimit(theLimit);
+		ResponseWriter responseWriter = newResponseWriter(theFormat, theRequestDetails);
 		switch (action) {
 			case HfqlConstants.PARAM_ACTION_SEARCH: {
 				String query = toStringValue(theQuery);
 				IHfqlExecutionResult outcome = getHfqlExecutor().executeInitialSearch(query, limit, theRequestDetails);
-				streamResponseCsv(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
+				responseWriter.stream(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
 				break;
 			}
 			case HfqlConstants.PARAM_ACTION_SEARCH_CONTINUATION: {
@@ -128,19 +142,19 @@ public class HfqlRestProvider {
 
 				IHfqlExecutionResult outcome = myHfqlExecutor.executeContinuation(
 						statementJson, continuation, startingOffset, limit, theRequestDetails);
-				streamResponseCsv(theServletResponse, fetchSize, outcome, false, outcome.getStatement());
+				responseWriter.stream(theServletResponse, fetchSize, outcome, false, outcome.getStatement());
 				break;
 			}
 			case HfqlConstants.PARAM_ACTION_INTROSPECT_TABLES: {
 				IHfqlExecutionResult outcome = myHfqlExecutor.introspectTables();
-				streamResponseCsv(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
+				responseWriter.stream(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
 				break;
 			}
 			case HfqlConstants.PARAM_ACTION_INTROSPECT_COLUMNS: {
 				String tableName = toStringValue(theIntrospectTableName);
 				String columnName = toStringValue(theIntrospectColumnName);
 				IHfqlExecutionResult outcome = myHfqlExecutor.introspectColumns(tableName, columnName);
-				streamResponseCsv(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
+				responseWriter.stream(theServletResponse, fetchSize, outcome, true, outcome.getStatement());
 				break;
 			}
 			default:
@@ -174,6 +188,70 @@ public class HfqlRestProvider {
 		return fetchSize;
 	}
 
+	private static ResponseWriter newResponseWriter(
+			IPrimitiveType<String> theFormat, RequestDetails theRequestDetails) {
+		String format = defaultIfBlank(toStringValue(theFormat), HfqlConstants.PARAM_FORMAT_CSV);
+		switch (format) {
+			case HfqlConstants.PARAM_FORMAT_CSV:
+				return HfqlRestProvider::streamResponseCsv;
+			case HfqlConstants.PARAM_FORMAT_COLUMNAR: {
+				String acceptEncoding = theRequestDetails.getHeader(Constants.HEADER_ACCEPT_ENCODING);
+				boolean gzip = containsIgnoreCase(acceptEncoding, Constants.ENCODING_GZIP);
+				return (theServletResponse, theFetchSize, theResult, theInitialPage, theStatement) ->
+						streamResponseColumnar(
+								theServletResponse, theFetchSize, theResult, theInitialPage, theStatement, gzip);
+			}
+			default:
+				//noinspection DataFlowIssue
+				ValidateUtil.isTrueOrThrowInvalidRequest(false, "Unrecognized format: %s", format);
+				return null;
+		}
+	}
+
+	/**
+	 * Streams a response in the {@link HfqlColumnarFormat columnar format}, which carries
+	 * the same information as the CSV format described in
+	 * {@link #streamResponseCsv(HttpServletResponse, int, IHfqlExecutionResult, boolean, HfqlStatement)}.
+	 */
+	private static void streamResponseColumnar(
+			HttpServletResponse theServletResponse,
+			int theFetchSize,
+			IHfqlExecutionResult theResult,
+			boolean theInitialPage,
+			HfqlStatement theStatement,
+			boolean theGzip)
+			throws IOException {
+		theServletResponse.setStatus(200);
+		theServletResponse.setContentType(HfqlColumnarFormat.CONTENT_TYPE);
+		if (theGzip) {
+			theServletResponse.addHeader(Constants.HEADER_CONTENT_ENCODING, Constants.ENCODING_GZIP);
+		}
+		try (ServletOutputStream servletOutputStream = theServletResponse.getOutputStream();
+				OutputStream outputStream = theGzip
+						? new GZIPOutputStream(servletOutputStream, COLUMNAR_BUFFER_SIZE)
+						: new BufferedOutputStream(servletOutputStream, COLUMNAR_BUFFER_SIZE)) {
+			HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(outputStream, theStatement);
+
+			String parsedFqlStatement = null;
+			if (theInitialPage && theStatement != null) {
+				parsedFqlStatement = JsonUtil.serialize(theStatement, false);
+			}
+			writer.writeHeader(
+					"HAPI FHIR " + VersionUtil.getVersion(),
+					theResult.getSearchId(),
+					theResult.getLimit(),
+					parsedFqlStatement);
+
+			int recordCount = 0;
+			while (recordCount++ < theFetchSize && theResult.hasNext()) {
+				writer.writeRow(theResult.getNextRow());
+			}
+			writer.finish();
+		} finally {
+			theResult.close();
+		}
+	}
+
 	private static void streamResponseCsv(
 			HttpServletResponse theServletResponse,
 			int theFetchSize,
@@ -208,6 +286,20 @@ public class HfqlRestProvider {
 				}
 				csvWriter.flush();
 			}
+		} finally {
+			// Releases anything held by the result, such as temporary sort files
+			theResult.close();
 		}
 	}
+
+	@FunctionalInterface
+	private interface ResponseWriter {
+		void stream(
+				HttpServletResponse theServletResponse,
+				int theFetchSize,
+				IHfqlExecutionResult theResult,
+				boolean theInitialPage,
+				HfqlStatement theStatement)
+				throws IOException;
+	}
 }
@@ -28,6 +28,20 @@ public class HfqlConstants {
 	public static final String PARAM_LIMIT = "limit";
 	public static final String PARAM_OFFSET = "offset";
 	public static final String PARAM_FETCH_SIZE = "fetchSize";
+	/**
+	 * The response format requested by the client. If not supplied (or not
+	 * supported by the server), the response is in CSV format.
+	 *
+	 * @since 7.6.0
+	 */
+	public static final String PARAM_FORMAT = "format";
+
+	public static final String PARAM_FORMAT_CSV = "csv";
+	/**
+	 * @see ca.uhn.fhir.jpa.fql.jdbc.HfqlColumnarFormat
+	 */
+	public static final String PARAM_FORMAT_COLUMNAR = "columnar";
+
 	public static final String PROTOCOL_VERSION = "1";
 	public static final String PARAM_ACTION = "action";
 	public static final String PARAM_ACTION_SEARCH = "search";
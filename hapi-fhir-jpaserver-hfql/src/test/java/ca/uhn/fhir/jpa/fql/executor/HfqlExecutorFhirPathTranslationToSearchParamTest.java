@@ -6,11 +6,15 @@ import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.TokenParam;
 import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -98,5 +102,57 @@ public class HfqlExecutorFhirPathTranslationToSearchParamTest extends BaseHfqlEx
 		assertEquals(theExpectedParamPrefix, ((DateParam) map.get("_lastUpdated").get(0).get(0)).getPrefix());
 	}
 
+	@ParameterizedTest
+	@CsvSource(delimiter = ';', textBlock = """
+		gender = 'male'                ; gender ; male
+		Patient.gender = 'male'        ; gender ; male
+		gender in ('male' | 'female')  ; gender ; male,female
+		name.family = 'Simpson'        ; family ; Simpson
+		active = true                  ; active ; true
+		gender.exists()                ;        ;
+		birthDate = '2020-01-01'       ;        ;
+		gender.where(true) = 'male'    ;        ;
+		"""
+	)
+	public void testEqualsOnSearchParameterPath_AddsSearchPreFilter(String theExpression, String theExpectedParamName, String theExpectedParamValues) {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		when(patientDao.search(any(), any())).thenReturn(createProviderWithSomeSimpsonsAndFlanders());
+
+		String statement = "SELECT id FROM Patient WHERE " + theExpression;
+
+		myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		SearchParameterMap map = mySearchParameterMapCaptor.getValue();
+		if (theExpectedParamName != null) {
+			assertThat(map.keySet()).containsExactly(theExpectedParamName);
+			assertThat(map.get(theExpectedParamName)).hasSize(1);
+			String actualValues = map.get(theExpectedParamName).get(0).stream()
+				.map(t -> t.getValueAsQueryToken(myCtx))
+				.collect(Collectors.joining(","));
+			assertEquals(theExpectedParamValues, actualValues);
+		} else {
+			assertThat(map.keySet()).isEmpty();
+		}
+	}
+
+	@Test
+	public void testEqualsOnSearchParameterPath_ExpressionIsStillEvaluated() {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		// The search is mocked, so it returns every patient regardless of the parameters
+		when(patientDao.search(any(), any())).thenReturn(createProviderWithSomeSimpsonsAndFlanders());
+
+		String statement = """
+			SELECT name.family
+			FROM Patient
+			WHERE name.family = 'Flanders'
+			""";
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		assertThat(mySearchParameterMapCaptor.getValue().keySet()).containsExactly("family");
+		assertThat(readAllRowValues(result)).containsExactly(List.of("[\"Flanders\"]"));
+	}
 
 }
@@ -4,6 +4,9 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
+import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.ParamPrefixEnum;
 import ca.uhn.fhir.rest.param.QuantityParam;
@@ -12,6 +15,7 @@ import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import com.google.common.collect.Lists;
 import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
 import org.hl7.fhir.r4.model.Quantity;
@@ -105,6 +109,137 @@ public class HfqlExecutorTest extends BaseHfqlExecutorTest {
 	}
 
 
+	@Test
+	public void testSelect_OrderBy_WithLimit() {
+
+		// Setup
+
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		List<Patient> patients = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			Patient patient = new Patient();
+			patient.getMeta().setVersionId(Integer.toString(i));
+			patient.addName().setFamily("PT" + i);
+			patients.add(patient);
+		}
+		when(patientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(patients));
+		String statement = """
+					FROM Patient
+					SELECT
+						meta.versionId.toInteger() AS versionId,
+						name[0].family AS family
+					ORDER BY versionId DESC
+					LIMIT 10
+			""";
+
+		// Test
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		// Verify
+		List<List<Object>> rowValues = readAllRowValues(result);
+		assertThat(rowValues).hasSize(10);
+		for (int i = 0; i < 10; i++) {
+			assertThat(rowValues.get(i)).containsExactly(String.valueOf(4999 - i), "PT" + (4999 - i));
+		}
+	}
+
+	@Test
+	public void testSelect_OrderBy_MoreValuesThanFitInMemory() {
+
+		// Setup
+
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		int count = (ORDER_AND_GROUP_LIMIT * 2) + 5;
+		List<Patient> patients = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Patient patient = new Patient();
+			patient.getMeta().setVersionId(Integer.toString(i));
+			patients.add(patient);
+		}
+		when(patientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(patients));
+		String statement = """
+					FROM Patient
+					SELECT meta.versionId.toInteger() AS versionId
+					ORDER BY versionId DESC
+			""";
+
+		// Test
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		// Verify
+		for (int i = count - 1; i >= 0; i--) {
+			assertTrue(result.hasNext());
+			IHfqlExecutionResult.Row nextRow = result.getNextRow();
+			assertEquals(count - 1 - i, nextRow.getRowOffset());
+			assertThat(nextRow.getRowValues()).containsExactly(String.valueOf(i));
+		}
+		assertFalse(result.hasNext());
+		assertTrue(result.isClosed());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 4})
+	public void testSelect_ManyRows_EvaluatedInSearchResultOrder(int theThreadCount) {
+
+		// Setup
+
+		myHfqlExecutor.setRowEvaluationThreadCount(theThreadCount);
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		int count = (HfqlExecutor.BATCH_SIZE * 2) + 500;
+		List<Patient> patients = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Patient patient = new Patient();
+			patient.getMeta().setVersionId(Integer.toString(i));
+			patient.setGender(i % 3 == 0 ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+			patients.add(patient);
+		}
+		when(patientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(patients));
+		String statement = """
+					FROM Patient
+					WHERE gender = 'male'
+					SELECT meta.versionId, gender
+			""";
+
+		// Test
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		// Verify
+		for (int i = 0; i < count; i += 3) {
+			assertTrue(result.hasNext());
+			IHfqlExecutionResult.Row nextRow = result.getNextRow();
+			assertEquals(i, nextRow.getRowOffset());
+			assertThat(nextRow.getRowValues()).containsExactly(String.valueOf(i), "male");
+		}
+		assertFalse(result.hasNext());
+		myHfqlExecutor.stop();
+	}
+
+	@Test
+	public void testSelect_OrderBy_LastUpdated_PushedDownToSearch() {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		when(patientDao.search(any(), any())).thenReturn(createProviderWithSomeSimpsonsAndFlanders());
+
+		String statement = """
+					FROM Patient
+					SELECT name[0].family, meta.lastUpdated AS lastUpdated
+					ORDER BY lastUpdated DESC
+					LIMIT 3
+			""";
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		SearchParameterMap map = mySearchParameterMapCaptor.getValue();
+		assertEquals("_lastUpdated", map.getSort().getParamName());
+		assertEquals(SortOrderEnum.DESC, map.getSort().getOrder());
+		assertNull(map.getSort().getChain());
+		assertThat(result).isInstanceOf(LocalSearchHfqlExecutionResult.class);
+		assertEquals(3, result.getLimit());
+	}
+
 	@Test
 	public void testSelect_OrderBy_SparseValues_Date() {
 
@@ -345,6 +480,28 @@ public class HfqlExecutorTest extends BaseHfqlExecutorTest {
 		assertThat(rowValues).as(rowValues.toString()).containsExactly(Lists.newArrayList(3, 2));
 	}
 
+	@Test
+	public void testFromSelectCountStar_SearchMatchOnly_UsesCountMode() {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		when(patientDao.search(any(), any())).thenReturn(createProviderWithSomeSimpsonsAndFlanders());
+
+		String statement = """
+					select count(*)
+					from Patient
+					where id in search_match('_lastUpdated', 'gt2021')
+			""";
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		SearchParameterMap map = mySearchParameterMapCaptor.getValue();
+		assertEquals(SummaryEnum.COUNT, map.getSummaryMode());
+		assertEquals(SearchTotalModeEnum.ACCURATE, map.getSearchTotalMode());
+
+		List<List<Object>> rowValues = readAllRowValues(result);
+		assertThat(rowValues).containsExactly(Lists.newArrayList(5));
+	}
+
 	@Test
 	public void testFromSelectCountOrderBy() {
 		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
@@ -904,6 +1061,52 @@ public class HfqlExecutorTest extends BaseHfqlExecutorTest {
 		assertEquals("2023", ((DateParam) map.get("_lastUpdated").get(0).get(1)).getValueAsString());
 	}
 
+	@Test
+	public void testWhere_MetaProfile_Equals_NotPushedDownToSearch() {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		Patient patient = new Patient();
+		patient.getMeta().addProfile("http://foo/profile");
+		patient.addName().setFamily("Simpson");
+		when(patientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(patient));
+
+		String statement = """
+					from Patient
+					where meta.profile = 'http://foo/profile'
+					select name.family
+			""";
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		assertTrue(result.hasNext());
+		assertThat(result.getNextRow().getRowValues()).containsExactly("Simpson");
+		assertFalse(result.hasNext());
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		assertTrue(mySearchParameterMapCaptor.getValue().isEmpty());
+	}
+
+	@Test
+	public void testWhere_MetaSource_Equals_NotPushedDownToSearch() {
+		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
+		Patient patient = new Patient();
+		patient.getMeta().setSource("http://foo/source");
+		patient.addName().setFamily("Simpson");
+		when(patientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(patient));
+
+		String statement = """
+					from Patient
+					where meta.source = 'http://foo/source'
+					select name.family
+			""";
+
+		IHfqlExecutionResult result = myHfqlExecutor.executeInitialSearch(statement, null, mySrd);
+
+		assertTrue(result.hasNext());
+		assertThat(result.getNextRow().getRowValues()).containsExactly("Simpson");
+		assertFalse(result.hasNext());
+		verify(patientDao, times(1)).search(mySearchParameterMapCaptor.capture(), any());
+		assertTrue(mySearchParameterMapCaptor.getValue().isEmpty());
+	}
+
 	@Test
 	public void testWhere_Boolean() {
 		IFhirResourceDao<Patient> patientDao = initDao(Patient.class);
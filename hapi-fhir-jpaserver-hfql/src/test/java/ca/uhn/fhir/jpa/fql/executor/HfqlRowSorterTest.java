@@ -0,0 +1,79 @@
+package ca.uhn.fhir.jpa.fql.executor;
+
+import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HfqlRowSorterTest {
+
+	private static final Comparator<IHfqlExecutionResult.Row> BY_FIRST_COLUMN =
+		HfqlExecutor.newRowComparator(0, HfqlDataTypeEnum.INTEGER);
+
+	@Test
+	public void testTopRowsOnly_KeepsBestRowsInStableOrder() {
+		HfqlRowSorter sorter = new HfqlRowSorter(BY_FIRST_COLUMN.reversed(), 4, 100);
+		assertTrue(sorter.isTopRowsOnly());
+
+		addRows(sorter, List.of(1, "a"), List.of(5, "b"), List.of(3, "c"), List.of(5, "d"), List.of(4, "e"), List.of(5, "f"), List.of(2, "g"));
+
+		List<List<Object>> rows = readAll(sorter.toResult(new HfqlStatement()));
+		assertThat(rows).containsExactly(List.of(5, "b"), List.of(5, "d"), List.of(5, "f"), List.of(4, "e"));
+	}
+
+	@Test
+	public void testSpillsRunsToFilesAndMergesThem() {
+		HfqlRowSorter sorter = new HfqlRowSorter(BY_FIRST_COLUMN, null, 3);
+		assertEquals(false, sorter.isTopRowsOnly());
+
+		addRows(sorter,
+			Arrays.asList(9L, "a"), Arrays.asList(2L, null), Arrays.asList(7L, "c"),
+			Arrays.asList(2L, "d"), Arrays.asList(8L, "e"), Arrays.asList(1L, "f"),
+			Arrays.asList(5L, "g"), Arrays.asList(2L, "h"));
+		assertEquals(2, sorter.getRunCount());
+
+		IHfqlExecutionResult result = sorter.toResult(new HfqlStatement());
+		List<IHfqlExecutionResult.Row> rows = new ArrayList<>();
+		while (result.hasNext()) {
+			rows.add(result.getNextRow());
+		}
+
+		assertThat(rows).extracting(IHfqlExecutionResult.Row::getRowValues).containsExactly(
+			Arrays.asList(1L, "f"), Arrays.asList(2L, null), Arrays.asList(2L, "d"), Arrays.asList(2L, "h"),
+			Arrays.asList(5L, "g"), Arrays.asList(7L, "c"), Arrays.asList(8L, "e"), Arrays.asList(9L, "a"));
+		assertThat(rows).extracting(IHfqlExecutionResult.Row::getRowOffset).containsExactly(0, 1, 2, 3, 4, 5, 6, 7);
+		assertTrue(result.isClosed());
+	}
+
+	@Test
+	public void testLimitLargerThanMemoryIsAppliedWhileMerging() {
+		HfqlRowSorter sorter = new HfqlRowSorter(BY_FIRST_COLUMN, 5, 2);
+		for (int i = 10; i > 0; i--) {
+			sorter.add(new IHfqlExecutionResult.Row(0, List.of(i)));
+		}
+
+		List<List<Object>> rows = readAll(sorter.toResult(new HfqlStatement()));
+		assertThat(rows).containsExactly(List.of(1), List.of(2), List.of(3), List.of(4), List.of(5));
+	}
+
+	private static void addRows(HfqlRowSorter theSorter, List<?>... theRows) {
+		for (List<?> next : theRows) {
+			theSorter.add(new IHfqlExecutionResult.Row(0, new ArrayList<>(next)));
+		}
+	}
+
+	private static List<List<Object>> readAll(IHfqlExecutionResult theResult) {
+		List<List<Object>> retVal = new ArrayList<>();
+		while (theResult.hasNext()) {
+			retVal.add(theResult.getNextRow().getRowValues());
+		}
+		return retVal;
+	}
+}
@@ -0,0 +1,106 @@
+package ca.uhn.fhir.jpa.fql.jdbc;
+
+import ca.uhn.fhir.jpa.fql.executor.HfqlDataTypeEnum;
+import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutionResult;
+import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class HfqlColumnarFormatTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		HfqlStatement statement = new HfqlStatement();
+		statement.addSelectClauseAndAlias("string").setDataType(HfqlDataTypeEnum.STRING);
+		statement.addSelectClauseAndAlias("integer").setDataType(HfqlDataTypeEnum.INTEGER);
+		statement.addSelectClauseAndAlias("longint").setDataType(HfqlDataTypeEnum.LONGINT);
+		statement.addSelectClauseAndAlias("boolean").setDataType(HfqlDataTypeEnum.BOOLEAN);
+		statement.addSelectClauseAndAlias("date").setDataType(HfqlDataTypeEnum.DATE);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(output, statement);
+		writer.writeHeader("HAPI FHIR 1.0", "search-id", 123, "{}");
+		writer.writeRow(new IHfqlExecutionResult.Row(0, Arrays.asList("Homer", "1", 2L, "true", "2023-01-01")));
+		writer.writeRow(new IHfqlExecutionResult.Row(2, Arrays.asList(null, 3, null, false, "2023-01-01")));
+		writer.writeRow(new IHfqlExecutionResult.Row(5, Arrays.asList("Marge é", null, "4", null, null)));
+		writer.finish();
+
+		HfqlColumnarFormat.PageReader reader = new HfqlColumnarFormat.PageReader(new ByteArrayInputStream(output.toByteArray()));
+		HfqlColumnarFormat.Header header = reader.readHeader();
+		assertEquals("HAPI FHIR 1.0", header.getServerVersion());
+		assertEquals("search-id", header.getSearchId());
+		assertEquals(123, header.getLimit());
+		assertEquals("{}", header.getStatementJson());
+
+		List<IHfqlExecutionResult.Row> rows = reader.readBlock();
+		assertThat(rows).extracting(IHfqlExecutionResult.Row::getRowOffset).containsExactly(0, 2, 5);
+		assertThat(rows.get(0).getRowValues()).containsExactly("Homer", 1, 2L, true, "2023-01-01");
+		assertThat(rows.get(1).getRowValues()).containsExactly(null, 3, null, false, "2023-01-01");
+		assertThat(rows.get(2).getRowValues()).containsExactly("Marge é", null, 4L, null, null);
+		assertNull(reader.readBlock());
+	}
+
+	@Test
+	public void testValuesThatDontMatchTheColumnTypeAreSentAsStrings() throws IOException {
+		HfqlStatement statement = new HfqlStatement();
+		statement.addSelectClauseAndAlias("integer").setDataType(HfqlDataTypeEnum.INTEGER);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(output, statement);
+		writer.writeHeader("HAPI FHIR 1.0", null, 0, null);
+		writer.writeRow(new IHfqlExecutionResult.Row(0, List.of("1")));
+		writer.writeRow(new IHfqlExecutionResult.Row(1, List.of("1.5")));
+		writer.finish();
+
+		HfqlColumnarFormat.PageReader reader = new HfqlColumnarFormat.PageReader(new ByteArrayInputStream(output.toByteArray()));
+		HfqlColumnarFormat.Header header = reader.readHeader();
+		assertNull(header.getSearchId());
+		assertNull(header.getStatementJson());
+		List<IHfqlExecutionResult.Row> rows = reader.readBlock();
+		assertThat(rows.get(0).getRowValues()).containsExactly("1");
+		assertThat(rows.get(1).getRowValues()).containsExactly("1.5");
+	}
+
+	@Test
+	public void testManyRowsAreSplitIntoBlocksAndDictionaryEncoded() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(output, null);
+		writer.writeHeader("HAPI FHIR 1.0", "search-id", 0, null);
+		int count = HfqlColumnarFormat.BLOCK_SIZE + 10;
+		for (int i = 0; i < count; i++) {
+			// Few distinct values in the first column, all distinct in the second
+			writer.writeRow(new IHfqlExecutionResult.Row(i, List.of("value" + (i % 300), "unique" + i)));
+		}
+		writer.writeRow(new IHfqlExecutionResult.Row(IHfqlExecutionResult.ROW_OFFSET_ERROR, List.of("Failed!")));
+		writer.finish();
+
+		HfqlColumnarFormat.PageReader reader = new HfqlColumnarFormat.PageReader(new ByteArrayInputStream(output.toByteArray()));
+		reader.readHeader();
+		List<IHfqlExecutionResult.Row> rows = new ArrayList<>();
+		List<IHfqlExecutionResult.Row> block;
+		int blockCount = 0;
+		while ((block = reader.readBlock()) != null) {
+			rows.addAll(block);
+			blockCount++;
+		}
+
+		assertEquals(3, blockCount);
+		assertEquals(count + 1, rows.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, rows.get(i).getRowOffset());
+			assertThat(rows.get(i).getRowValues()).containsExactly("value" + (i % 300), "unique" + i);
+		}
+		assertEquals(IHfqlExecutionResult.ROW_OFFSET_ERROR, rows.get(count).getRowOffset());
+		assertThat(rows.get(count).getRowValues()).containsExactly("Failed!");
+	}
+}
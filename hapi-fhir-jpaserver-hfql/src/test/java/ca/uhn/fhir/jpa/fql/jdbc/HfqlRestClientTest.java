@@ -25,6 +25,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
@@ -86,8 +88,11 @@ public class HfqlRestClientTest {
 	}
 
 
-	@Test
-	public void testExecuteSearchAndContinuation() throws SQLException {
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testExecuteSearchAndContinuation(boolean theColumnar) throws SQLException {
+		myClient.close();
+		myClient = new HfqlRestClient(ourServer.getBaseUrl(), USERNAME, PASSWORD, theColumnar, true);
 		String sql = "from Patient select name.family, name.given where name.family = 'Simpson'";
 		String searchId = "my-search-id";
 		HfqlStatement statement = createFakeStatement();
@@ -148,6 +153,7 @@ public class HfqlRestClientTest {
 		String actual = ourHeaderCaptureInterceptor.getCapturedHeaders().get(0).get(Constants.HEADER_AUTHORIZATION).get(0);
 		assertEquals(expectedAuthHeader, actual);
 		assertEquals(123, myLimitCaptor.getValue().intValue());
+		assertTrue(result.isClosed());
 	}
 
 	@Nonnull
@@ -18,6 +18,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -146,9 +148,11 @@ public class JdbcDriverTest {
 		}
 	}
 
-	@Test
-	public void testDataTypes() throws SQLException {
+	@ParameterizedTest
+	@ValueSource(strings = {"columnar", "csv"})
+	public void testDataTypes(String theTransport) throws SQLException {
 		// Setup
+		myDs.addConnectionProperty(JdbcDriver.PROPERTY_TRANSPORT, theTransport);
 		HfqlStatement hfqlStatement = new HfqlStatement();
 		hfqlStatement.setFromResourceName("Patient");
 		hfqlStatement.addSelectClauseAndAlias("col.string").setDataType(HfqlDataTypeEnum.STRING);
@@ -0,0 +1,99 @@
+package ca.uhn.fhir.jpa.fql.jdbc;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.fql.executor.IHfqlExecutionResult;
+import ca.uhn.fhir.jpa.fql.parser.HfqlStatement;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.JsonUtil;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
+import org.hl7.fhir.r4.model.Parameters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RemoteHfqlExecutionResultTest {
+
+	@Mock
+	private CloseableHttpClient myClient;
+	@Mock
+	private CloseableHttpResponse myResponse;
+
+	@Test
+	public void testColumnar_ReadAgainAfterTransportError() throws Exception {
+		HfqlStatement statement = HfqlRestClientTest.createFakeStatement();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(output, statement);
+		writer.writeHeader("HAPI FHIR 1.0", "search-id", 123, JsonUtil.serialize(statement, false));
+		int count = HfqlColumnarFormat.BLOCK_SIZE + 10;
+		for (int i = 0; i < count; i++) {
+			writer.writeRow(new IHfqlExecutionResult.Row(i, Arrays.asList("Simpson", "Homer" + i)));
+		}
+		writer.finish();
+
+		// Cut the response off part way through the second block
+		byte[] bytes = output.toByteArray();
+		byte[] truncated = Arrays.copyOf(bytes, bytes.length - 20);
+
+		when(myResponse.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+		when(myResponse.getEntity()).thenReturn(new ByteArrayEntity(truncated, ContentType.create(HfqlColumnarFormat.CONTENT_TYPE)));
+		when(myClient.execute(any(HttpUriRequest.class))).thenReturn(myResponse);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			RemoteHfqlExecutionResult result = new RemoteHfqlExecutionResult(new Parameters(), "http://localhost", myClient, 2000, false);
+
+			for (int i = 0; i < HfqlColumnarFormat.BLOCK_SIZE; i++) {
+				assertTrue(result.hasNext());
+				assertThat(result.getNextRow().getRowValues()).containsExactly("Simpson", "Homer" + i);
+			}
+
+			InternalErrorException e = assertThrows(InternalErrorException.class, result::hasNext);
+			assertThat(e.getMessage()).startsWith(Msg.code(2800));
+
+			// Reading again must not wait for rows that will never arrive
+			assertFalse(result.hasNext());
+			assertFalse(result.hasNext());
+			assertTrue(result.isClosed());
+		});
+	}
+
+	@Test
+	public void testColumnar_ReadAfterClose() throws Exception {
+		HfqlStatement statement = HfqlRestClientTest.createFakeStatement();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		HfqlColumnarFormat.PageWriter writer = new HfqlColumnarFormat.PageWriter(output, statement);
+		writer.writeHeader("HAPI FHIR 1.0", "search-id", 123, JsonUtil.serialize(statement, false));
+		writer.writeRow(new IHfqlExecutionResult.Row(0, List.of("Simpson", "Homer")));
+		writer.finish();
+
+		when(myResponse.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+		when(myResponse.getEntity()).thenReturn(new ByteArrayEntity(output.toByteArray(), ContentType.create(HfqlColumnarFormat.CONTENT_TYPE)));
+		when(myClient.execute(any(HttpUriRequest.class))).thenReturn(myResponse);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			RemoteHfqlExecutionResult result = new RemoteHfqlExecutionResult(new Parameters(), "http://localhost", myClient, 2000, false);
+			result.close();
+			assertFalse(result.hasNext());
+		});
+	}
+}
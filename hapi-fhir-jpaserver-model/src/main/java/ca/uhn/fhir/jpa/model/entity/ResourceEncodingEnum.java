@@ -40,6 +40,14 @@ public enum ResourceEncodingEnum {
 	 */
 	JSONC,
 
+	/**
+	 * Json Compressed using LZ4, which is faster than {@link #JSONC} to compress
+	 * and decompress at the cost of a somewhat larger compressed size
+	 *
+	 * @since 7.6.0
+	 */
+	LZ4,
+
 	/**
 	 * Resource was deleted - No contents expected
 	 */
@@ -143,6 +143,11 @@ public class StorageSettings {
 	 */
 	private boolean myIndexStorageOptimized = false;
 
+	/**
+	 * @since 7.6.0
+	 */
+	private int myTransactionIndexingThreadCount = 0;
+
 	/**
 	 * Constructor
 	 */
@@ -239,6 +244,42 @@ public class StorageSettings {
 		this.myBundleBatchMaxPoolSize = theBundleBatchMaxPoolSize;
 	}
 
+	/**
+	 * If set to a value greater than zero, FHIR transactions extract the non-reference search indexes
+	 * (strings, tokens, dates, quantities, etc.) of the resources they create and update on this many
+	 * worker threads before the resources are saved. Placeholder and conditional reference resolution,
+	 * reference indexes, and all database writes still happen sequentially on the calling thread within
+	 * the single database transaction, so this mostly benefits large transactions whose cost is dominated
+	 * by index extraction.
+	 * <p>
+	 * Default is <code>0</code>, meaning that indexes are extracted on the calling thread as each
+	 * resource is saved.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getTransactionIndexingThreadCount() {
+		return myTransactionIndexingThreadCount;
+	}
+
+	/**
+	 * If set to a value greater than zero, FHIR transactions extract the non-reference search indexes
+	 * (strings, tokens, dates, quantities, etc.) of the resources they create and update on this many
+	 * worker threads before the resources are saved. Placeholder and conditional reference resolution,
+	 * reference indexes, and all database writes still happen sequentially on the calling thread within
+	 * the single database transaction, so this mostly benefits large transactions whose cost is dominated
+	 * by index extraction.
+	 * <p>
+	 * Default is <code>0</code>, meaning that indexes are extracted on the calling thread as each
+	 * resource is saved.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setTransactionIndexingThreadCount(int theTransactionIndexingThreadCount) {
+		myTransactionIndexingThreadCount = Math.max(theTransactionIndexingThreadCount, 0);
+	}
+
 	/**
 	 * If set to {@link IndexEnabledEnum#DISABLED} (default is {@link IndexEnabledEnum#DISABLED})
 	 * the server will not create search indexes for search parameters with no values in resources.
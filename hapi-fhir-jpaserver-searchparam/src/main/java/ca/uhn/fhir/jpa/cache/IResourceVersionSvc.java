@@ -22,8 +22,10 @@ package ca.uhn.fhir.jpa.cache;
 import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IIdType;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -40,5 +42,24 @@ public interface IResourceVersionSvc {
 		return getVersionMap(RequestPartitionId.allPartitions(), theResourceName, theSearchParamMap);
 	}
 
+	/**
+	 * Returns the resources of the given type which were created, updated or deleted at or after the given time,
+	 * along with the current versions of those which match the search parameter map. This is used to refresh a
+	 * resource version cache incrementally instead of reloading every matching resource.
+	 *
+	 * @return The changes, or <code>null</code> if they can not be determined cheaply (e.g. because too many
+	 * resources have changed), in which case the caller should fall back to {@link #getVersionMap(RequestPartitionId, String, SearchParameterMap)}.
+	 * The default implementation always returns <code>null</code>.
+	 * @since 7.6.0
+	 */
+	@Nullable
+	default ResourceVersionChanges getVersionChangesSince(
+			RequestPartitionId theRequestPartitionId,
+			String theResourceName,
+			SearchParameterMap theSearchParamMap,
+			Date theSince) {
+		return null;
+	}
+
 	ResourcePersistentIdMap getLatestVersionIdsForResourceIds(RequestPartitionId thePartition, List<IIdType> theIds);
 }
@@ -64,6 +64,8 @@ public class ResourceChangeListenerCache implements IResourceChangeListenerCache
 
 	private boolean myInitialized = false;
 	private Instant myNextRefreshTime = Instant.MIN;
+	private Instant myLastRefreshStartTime;
+	private Instant myLastFullRefreshStartTime;
 
 	public ResourceChangeListenerCache(
 			String theResourceName,
@@ -185,6 +187,35 @@ public class ResourceChangeListenerCache implements IResourceChangeListenerCache
 		return myResourceName;
 	}
 
+	/**
+	 * Returns the time at which the last successful refresh (full or incremental) started, or <code>null</code>
+	 * if the cache has not been refreshed. Changes made after this time may not be in the cache yet.
+	 */
+	public Instant getLastRefreshStartTime() {
+		return myLastRefreshStartTime;
+	}
+
+	/**
+	 * Returns the time at which the last successful full refresh started, or <code>null</code>
+	 * if the cache has not been fully refreshed
+	 */
+	public Instant getLastFullRefreshStartTime() {
+		return myLastFullRefreshStartTime;
+	}
+
+	/**
+	 * Records a successful refresh
+	 *
+	 * @param theStartTime The time at which the refresh started
+	 * @param theFull      Whether every matching resource was reloaded
+	 */
+	public void recordRefresh(Instant theStartTime, boolean theFull) {
+		myLastRefreshStartTime = theStartTime;
+		if (theFull) {
+			myLastFullRefreshStartTime = theStartTime;
+		}
+	}
+
 	public ResourceVersionCache getResourceVersionCache() {
 		return myResourceVersionCache;
 	}
@@ -216,6 +247,8 @@ public class ResourceChangeListenerCache implements IResourceChangeListenerCache
 	public void clearForUnitTest() {
 		requestRefresh();
 		myResourceVersionCache.clear();
+		myLastRefreshStartTime = null;
+		myLastFullRefreshStartTime = null;
 	}
 
 	@Override
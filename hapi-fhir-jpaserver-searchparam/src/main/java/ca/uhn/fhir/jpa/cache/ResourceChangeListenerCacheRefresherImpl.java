@@ -19,6 +19,7 @@
  */
 package ca.uhn.fhir.jpa.cache;
 
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.model.sched.HapiJob;
 import ca.uhn.fhir.jpa.model.sched.IHasScheduledJobs;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
@@ -37,7 +38,9 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
@@ -49,6 +52,11 @@ import java.util.List;
  * Every time a chair passes the bottom it checks to see if it's time to refresh that seat.  If so,
  * the Ferris Wheel stops, removes the riders, and loads a fresh cache for that chair, and calls the listener
  * if any entries in the new cache are different from the last time that cache was loaded.
+ *
+ * Once a cache has been loaded, it is refreshed incrementally: only the resources which have changed since
+ * shortly before the previous refresh started are read (see {@link IResourceVersionSvc#getVersionChangesSince}).
+ * Every {@link #setFullRefreshIntervalMs(long) full refresh interval}, or whenever the changes can not be read
+ * incrementally, every matching resource is reloaded and compared to the cache instead, as a safety net.
  */
 @Service
 public class ResourceChangeListenerCacheRefresherImpl
@@ -60,6 +68,9 @@ public class ResourceChangeListenerCacheRefresherImpl
 	 */
 	static final long LOCAL_REFRESH_INTERVAL_MS = 10 * DateUtils.MILLIS_PER_SECOND;
 
+	public static final long DEFAULT_FULL_REFRESH_INTERVAL_MS = 10 * DateUtils.MILLIS_PER_MINUTE;
+	public static final long DEFAULT_INCREMENTAL_REFRESH_OVERLAP_MS = DateUtils.MILLIS_PER_MINUTE;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -67,6 +78,50 @@ public class ResourceChangeListenerCacheRefresherImpl
 	private ResourceChangeListenerRegistryImpl myResourceChangeListenerRegistry;
 
 	private boolean myStopping = false;
+	private long myFullRefreshIntervalMs = DEFAULT_FULL_REFRESH_INTERVAL_MS;
+	private long myIncrementalRefreshOverlapMs = DEFAULT_INCREMENTAL_REFRESH_OVERLAP_MS;
+
+	/**
+	 * How often each cache is fully reloaded rather than refreshed incrementally. Set to 0 to
+	 * always fully reload. Default is {@link #DEFAULT_FULL_REFRESH_INTERVAL_MS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public long getFullRefreshIntervalMs() {
+		return myFullRefreshIntervalMs;
+	}
+
+	/**
+	 * How often each cache is fully reloaded rather than refreshed incrementally. Set to 0 to
+	 * always fully reload. Default is {@link #DEFAULT_FULL_REFRESH_INTERVAL_MS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setFullRefreshIntervalMs(long theFullRefreshIntervalMs) {
+		myFullRefreshIntervalMs = theFullRefreshIntervalMs;
+	}
+
+	/**
+	 * An incremental refresh reads the resources changed since this long before the previous refresh
+	 * started. This allows for transactions which committed late and for clock differences between
+	 * servers. Default is {@link #DEFAULT_INCREMENTAL_REFRESH_OVERLAP_MS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public long getIncrementalRefreshOverlapMs() {
+		return myIncrementalRefreshOverlapMs;
+	}
+
+	/**
+	 * An incremental refresh reads the resources changed since this long before the previous refresh
+	 * started. This allows for transactions which committed late and for clock differences between
+	 * servers. Default is {@link #DEFAULT_INCREMENTAL_REFRESH_OVERLAP_MS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setIncrementalRefreshOverlapMs(long theIncrementalRefreshOverlapMs) {
+		myIncrementalRefreshOverlapMs = theIncrementalRefreshOverlapMs;
+	}
 
 	@Override
 	public void scheduleJobs(ISchedulerService theSchedulerService) {
@@ -149,15 +204,80 @@ public class ResourceChangeListenerCacheRefresherImpl
 			return retVal;
 		}
 		SearchParameterMap searchParamMap = theCache.getSearchParameterMap();
+		ResourceChangeListenerCache cache = (ResourceChangeListenerCache) theCache;
+		Instant refreshStartTime = Instant.now();
+
+		if (isIncrementalRefreshPossible(cache, refreshStartTime)) {
+			Date since = Date.from(cache.getLastRefreshStartTime().minusMillis(myIncrementalRefreshOverlapMs));
+			ResourceVersionChanges changes = myResourceVersionSvc.getVersionChangesSince(
+					RequestPartitionId.allPartitions(), theCache.getResourceName(), searchParamMap, since);
+			if (changes != null) {
+				retVal = retVal.plus(notifyListenerOfChanges(cache, changes));
+				cache.recordRefresh(refreshStartTime, false);
+				return retVal;
+			}
+		}
 
 		ResourceVersionMap newResourceVersionMap =
 				myResourceVersionSvc.getVersionMap(theCache.getResourceName(), searchParamMap);
 
 		retVal = retVal.plus(notifyListener(theCache, newResourceVersionMap));
+		cache.recordRefresh(refreshStartTime, true);
 
 		return retVal;
 	}
 
+	private boolean isIncrementalRefreshPossible(ResourceChangeListenerCache theCache, Instant theNow) {
+		if (!theCache.isInitialized() || myFullRefreshIntervalMs <= 0) {
+			return false;
+		}
+		Instant lastFullRefresh = theCache.getLastFullRefreshStartTime();
+		return theCache.getLastRefreshStartTime() != null
+				&& lastFullRefresh != null
+				&& lastFullRefresh.plusMillis(myFullRefreshIntervalMs).isAfter(theNow);
+	}
+
+	/**
+	 * Apply the resources which have changed since the last refresh to an initialized cache, and notify its
+	 * listener if any of them were created, updated or deleted (or no longer match the cache's search parameters)
+	 * @param theCache the target
+	 * @param theChanges the resources which have changed
+	 * @return the list of created, updated and deleted ids
+	 */
+	ResourceChangeResult notifyListenerOfChanges(
+			ResourceChangeListenerCache theCache, ResourceVersionChanges theChanges) {
+		ResourceVersionCache versionCache = theCache.getResourceVersionCache();
+		ResourceVersionMap matchingVersions = theChanges.getMatchingVersions();
+
+		List<IIdType> createdIds = new ArrayList<>();
+		List<IIdType> updatedIds = new ArrayList<>();
+		List<IIdType> deletedIds = new ArrayList<>();
+
+		for (IIdType id : theChanges.getChangedIds()) {
+			Long newVersion = matchingVersions.get(id);
+			if (newVersion == null) {
+				if (versionCache.removeResourceId(id) != null) {
+					deletedIds.add(id);
+				}
+				continue;
+			}
+			Long previousVersion = versionCache.put(id, newVersion);
+			IIdType newId = id.withVersion(newVersion.toString());
+			if (previousVersion == null) {
+				createdIds.add(newId);
+			} else if (!newVersion.equals(previousVersion)) {
+				updatedIds.add(newId);
+			}
+		}
+
+		IResourceChangeEvent resourceChangeEvent =
+				ResourceChangeEvent.fromCreatedUpdatedDeletedResourceIds(createdIds, updatedIds, deletedIds);
+		if (!resourceChangeEvent.isEmpty()) {
+			theCache.getResourceChangeListener().handleChange(resourceChangeEvent);
+		}
+		return ResourceChangeResult.fromResourceChangeEvent(resourceChangeEvent);
+	}
+
 	/**
 	 * Notify a listener with all matching resources if it hasn't been initialized yet, otherwise only notify it if
 	 * any resources have changed
@@ -0,0 +1,71 @@
+/*-
+ * #%L
+ * HAPI FHIR JPA - Search Parameters
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.cache;
+
+import ca.uhn.fhir.model.primitive.IdDt;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * This immutable object holds the resources of one type which have changed since a given time, as read from
+ * the repository by {@link IResourceVersionSvc#getVersionChangesSince(ca.uhn.fhir.interceptor.model.RequestPartitionId, String, ca.uhn.fhir.jpa.searchparam.SearchParameterMap, java.util.Date)}.
+ * It is used to update a {@link ResourceVersionCache} without reloading every matching resource.
+ *
+ * @since 7.6.0
+ */
+public class ResourceVersionChanges {
+	private final Set<IIdType> myChangedIds;
+	private final ResourceVersionMap myMatchingVersions;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theChangedIds       The ids of every resource which was created, updated or deleted
+	 * @param theMatchingVersions The current versions of the changed resources which exist and match the search
+	 *                            parameter map. Changed resources which are not in this map were deleted or no
+	 *                            longer match.
+	 */
+	public ResourceVersionChanges(Collection<IIdType> theChangedIds, ResourceVersionMap theMatchingVersions) {
+		Set<IIdType> changedIds = new LinkedHashSet<>();
+		theChangedIds.forEach(t -> changedIds.add(new IdDt(t.toUnqualifiedVersionless())));
+		myChangedIds = Collections.unmodifiableSet(changedIds);
+		myMatchingVersions = theMatchingVersions;
+	}
+
+	public static ResourceVersionChanges empty() {
+		return new ResourceVersionChanges(Collections.emptyList(), ResourceVersionMap.empty());
+	}
+
+	public Set<IIdType> getChangedIds() {
+		return myChangedIds;
+	}
+
+	public ResourceVersionMap getMatchingVersions() {
+		return myMatchingVersions;
+	}
+
+	public boolean isEmpty() {
+		return myChangedIds.isEmpty();
+	}
+}
@@ -66,6 +66,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -80,6 +81,15 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public class SearchParamExtractorService {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorService.class);
 
+	/**
+	 * Transaction user data key holding the non-reference indexes that were extracted ahead of time
+	 * for resources in the current transaction.
+	 *
+	 * @see #addPreExtractedParams(TransactionDetails, IBaseResource, ResourceIndexedSearchParams)
+	 */
+	private static final String XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS =
+			SearchParamExtractorService.class.getName() + "_PRE_EXTRACTED_PARAMS";
+
 	@Autowired
 	private ISearchParamExtractor mySearchParamExtractor;
 
@@ -101,7 +111,11 @@ public class SearchParamExtractorService {
 	@Autowired(required = false)
 	private IResourceLinkResolver myResourceLinkResolver;
 
-	private SearchParamExtractionUtil mySearchParamExtractionUtil;
+	/**
+	 * Created lazily because the dependencies are injected after construction. The util is immutable, so
+	 * if two threads race to create it, either instance may be used.
+	 */
+	private volatile SearchParamExtractionUtil mySearchParamExtractionUtil;
 
 	@VisibleForTesting
 	public void setSearchParamExtractor(ISearchParamExtractor theSearchParamExtractor) {
@@ -125,9 +139,13 @@ public class SearchParamExtractorService {
 			boolean theFailOnInvalidReference,
 			@Nonnull ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
 		// All search parameter types except Reference
-		ResourceIndexedSearchParams normalParams = ResourceIndexedSearchParams.withSets();
-		getExtractionUtil()
-				.extractSearchIndexParameters(theRequestDetails, normalParams, theResource, theSearchParamFilter);
+		ResourceIndexedSearchParams normalParams = null;
+		if (theSearchParamFilter == ISearchParamExtractor.ALL_PARAMS) {
+			normalParams = consumePreExtractedParams(theTransactionDetails, theResource);
+		}
+		if (normalParams == null) {
+			normalParams = extractNonReferenceSearchParams(theRequestDetails, theResource, theSearchParamFilter);
+		}
 		mergeParams(normalParams, theNewParams);
 
 		boolean indexOnContainedResources = myStorageSettings.isIndexOnContainedResources();
@@ -211,12 +229,81 @@ public class SearchParamExtractorService {
 		theNewParams.setUpdatedTime(theTransactionDetails.getTransactionDate());
 	}
 
+	/**
+	 * Extracts the indexes for all search parameter types except Reference. This only reads the
+	 * resource, so it may be called on a worker thread ahead of {@link #extractFromResource} as
+	 * long as nothing else modifies the resource in the meantime. The result can be handed to
+	 * {@link #extractFromResource} using {@link #addPreExtractedParams(TransactionDetails, IBaseResource, ResourceIndexedSearchParams)}.
+	 * <p>
+	 * Hooks are not called from here, since they may expect to run on the request thread. Any extraction
+	 * warnings are added to <code>theWarnings</code> instead, and should be passed to
+	 * {@link #broadcastWarnings(RequestDetails, List)} on the calling thread.
+	 * </p>
+	 */
+	@Nonnull
+	public ResourceIndexedSearchParams extractNonReferenceSearchParams(
+			RequestDetails theRequestDetails, IBaseResource theResource, List<String> theWarnings) {
+		ResourceIndexedSearchParams retVal = ResourceIndexedSearchParams.withSets();
+		getExtractionUtil()
+				.extractSearchIndexParameters(
+						theRequestDetails, retVal, theResource, ISearchParamExtractor.ALL_PARAMS, theWarnings);
+		return retVal;
+	}
+
+	@Nonnull
+	private ResourceIndexedSearchParams extractNonReferenceSearchParams(
+			RequestDetails theRequestDetails,
+			IBaseResource theResource,
+			ISearchParamExtractor.ISearchParamFilter theSearchParamFilter) {
+		ResourceIndexedSearchParams retVal = ResourceIndexedSearchParams.withSets();
+		getExtractionUtil().extractSearchIndexParameters(theRequestDetails, retVal, theResource, theSearchParamFilter);
+		return retVal;
+	}
+
+	/**
+	 * Broadcasts warnings collected by {@link #extractNonReferenceSearchParams(RequestDetails, IBaseResource, List)}
+	 * to the {@link Pointcut#JPA_PERFTRACE_WARNING} hooks
+	 */
+	public void broadcastWarnings(RequestDetails theRequestDetails, List<String> theWarnings) {
+		callWarningHooks(theRequestDetails, myInterceptorBroadcaster, theWarnings);
+	}
+
+	/**
+	 * Registers indexes produced by {@link #extractNonReferenceSearchParams(RequestDetails, IBaseResource)}
+	 * so that the next {@link #extractFromResource} call for the same resource instance within the
+	 * transaction uses them instead of extracting them again. Each registration is used at most once.
+	 */
+	public static void addPreExtractedParams(
+			TransactionDetails theTransactionDetails,
+			IBaseResource theResource,
+			ResourceIndexedSearchParams theParams) {
+		Map<IBaseResource, ResourceIndexedSearchParams> preExtracted =
+				theTransactionDetails.getOrCreateUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS, IdentityHashMap::new);
+		preExtracted.put(theResource, theParams);
+	}
+
+	@Nullable
+	private static ResourceIndexedSearchParams consumePreExtractedParams(
+			@Nullable TransactionDetails theTransactionDetails, IBaseResource theResource) {
+		if (theTransactionDetails == null) {
+			return null;
+		}
+		Map<IBaseResource, ResourceIndexedSearchParams> preExtracted =
+				theTransactionDetails.getUserData(XACT_USERDATA_KEY_PRE_EXTRACTED_PARAMS);
+		if (preExtracted == null) {
+			return null;
+		}
+		return preExtracted.remove(theResource);
+	}
+
 	private SearchParamExtractionUtil getExtractionUtil() {
-		if (mySearchParamExtractionUtil == null) {
-			mySearchParamExtractionUtil = new SearchParamExtractionUtil(
+		SearchParamExtractionUtil retVal = mySearchParamExtractionUtil;
+		if (retVal == null) {
+			retVal = new SearchParamExtractionUtil(
 					myContext, myStorageSettings, mySearchParamExtractor, myInterceptorBroadcaster);
+			mySearchParamExtractionUtil = retVal;
 		}
-		return mySearchParamExtractionUtil;
+		return retVal;
 	}
 
 	@Nonnull
@@ -1079,14 +1166,21 @@ public class SearchParamExtractorService {
 			RequestDetails theRequestDetails,
 			IInterceptorBroadcaster theInterceptorBroadcaster,
 			ISearchParamExtractor.SearchParamSet<?> theSearchParamSet) {
-		if (theSearchParamSet.getWarnings().isEmpty()) {
+		callWarningHooks(theRequestDetails, theInterceptorBroadcaster, theSearchParamSet.getWarnings());
+	}
+
+	private static void callWarningHooks(
+			RequestDetails theRequestDetails,
+			IInterceptorBroadcaster theInterceptorBroadcaster,
+			Collection<String> theWarnings) {
+		if (theWarnings.isEmpty()) {
 			return;
 		}
 
 		// If extraction generated any warnings, broadcast an error
 		if (CompositeInterceptorBroadcaster.hasHooks(
 				Pointcut.JPA_PERFTRACE_WARNING, theInterceptorBroadcaster, theRequestDetails)) {
-			for (String next : theSearchParamSet.getWarnings()) {
+			for (String next : theWarnings) {
 				StorageProcessingMessage messageHolder = new StorageProcessingMessage();
 				messageHolder.setMessage(next);
 				HookParams params = new HookParams()
@@ -48,6 +48,8 @@ import ca.uhn.fhir.rest.param.TokenParamModifier;
 import ca.uhn.fhir.rest.param.UriParam;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
 import ca.uhn.fhir.util.MetaUtil;
 import ca.uhn.fhir.util.UrlUtil;
 import com.google.common.collect.Sets;
@@ -66,9 +68,12 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams.isMatchSearchParam;
@@ -101,6 +106,9 @@ public class InMemoryResourceMatcher {
 	@Autowired
 	private MatchUrlService myMatchUrlService;
 
+	private final Cache<String, ParsedCriteria> myParsedCriteriaCache =
+			CacheFactory.build(TimeUnit.MINUTES.toMillis(10), 10000);
+
 	private ValidationSupportInitializationState validationSupportState =
 			ValidationSupportInitializationState.NOT_INITIALIZED;
 	private IValidationSupport myValidationSupport = null;
@@ -171,13 +179,10 @@ public class InMemoryResourceMatcher {
 		} else {
 			resourceDefinition = myFhirContext.getResourceDefinition(theResource);
 		}
-		SearchParameterMap searchParameterMap;
-		try {
-			searchParameterMap = myMatchUrlService.translateMatchUrl(theCriteria, resourceDefinition);
-		} catch (UnsupportedOperationException e) {
+		SearchParameterMap searchParameterMap = getParsedCriteria(theCriteria, resourceDefinition);
+		if (searchParameterMap == null) {
 			return InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL);
 		}
-		searchParameterMap.clean();
 
 		ResourceIndexedSearchParams relevantSearchParams = null;
 		if (theIndexedSearchParams != null) {
@@ -194,6 +199,95 @@ public class InMemoryResourceMatcher {
 		return match(searchParameterMap, theResource, resourceDefinition, relevantSearchParams);
 	}
 
+	/**
+	 * Matches a single resource against a number of criteria at once. The search parameter indexes
+	 * required by all of the criteria are extracted from the resource in a single pass (instead of once
+	 * per criteria), which makes this much cheaper than calling
+	 * {@link #match(String, IBaseResource, ResourceIndexedSearchParams, RequestDetails)} repeatedly when a
+	 * resource needs to be tested against many subscriptions.
+	 *
+	 * @param theCriteria            The criteria to test, in the form <code>[resourceType]?[params]</code>
+	 * @param theResource            The resource to test
+	 * @param theIndexedSearchParams If the search params have already been calculated for the given resource,
+	 *                               they can be passed in, otherwise they will be calculated here
+	 * @return The results, in the same order as the criteria
+	 * @since 7.6.0
+	 */
+	@Nonnull
+	public List<InMemoryMatchResult> matchAll(
+			List<String> theCriteria,
+			@Nonnull IBaseResource theResource,
+			@Nullable ResourceIndexedSearchParams theIndexedSearchParams,
+			RequestDetails theRequestDetails) {
+		RuntimeResourceDefinition resourceDefinition = myFhirContext.getResourceDefinition(theResource);
+
+		List<SearchParameterMap> searchParameterMaps = new ArrayList<>(theCriteria.size());
+		Set<String> paramNames = new HashSet<>();
+		for (String nextCriteria : theCriteria) {
+			SearchParameterMap searchParameterMap = getParsedCriteria(nextCriteria, resourceDefinition);
+			searchParameterMaps.add(searchParameterMap);
+			if (searchParameterMap != null) {
+				paramNames.addAll(searchParameterMap.keySet());
+			}
+		}
+
+		ResourceIndexedSearchParams relevantSearchParams = theIndexedSearchParams;
+		if (relevantSearchParams == null && !paramNames.isEmpty()) {
+			ISearchParamExtractor.ISearchParamFilter filter = theSearchParams -> theSearchParams.stream()
+					.filter(t -> paramNames.contains(t.getName()))
+					.collect(Collectors.toList());
+			relevantSearchParams =
+					myIndexedSearchParamExtractor.extractIndexedSearchParams(theResource, theRequestDetails, filter);
+		}
+
+		List<InMemoryMatchResult> retVal = new ArrayList<>(theCriteria.size());
+		for (SearchParameterMap nextSearchParameterMap : searchParameterMaps) {
+			if (nextSearchParameterMap == null) {
+				retVal.add(InMemoryMatchResult.unsupportedFromReason(InMemoryMatchResult.PARSE_FAIL));
+			} else {
+				retVal.add(match(nextSearchParameterMap, theResource, resourceDefinition, relevantSearchParams));
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Parses the criteria into a {@link SearchParameterMap}. Parsed criteria are cached since the same
+	 * subscription criteria get parsed for every resource being matched. A cached entry is only reused if
+	 * the search parameter definitions it was parsed against are still the active ones. The returned map
+	 * is shared and must not be modified.
+	 *
+	 * @return The parsed criteria, or <code>null</code> if the criteria could not be parsed
+	 */
+	@Nullable
+	private SearchParameterMap getParsedCriteria(String theCriteria, RuntimeResourceDefinition theResourceDefinition) {
+		String resourceName = theResourceDefinition.getName();
+		String key = resourceName + " " + theCriteria;
+		ParsedCriteria parsedCriteria = myParsedCriteriaCache.getIfPresent(key);
+		if (parsedCriteria != null && parsedCriteria.isCurrent(mySearchParamRegistry, resourceName)) {
+			return parsedCriteria.getSearchParameterMap();
+		}
+
+		SearchParameterMap retVal;
+		try {
+			retVal = myMatchUrlService.translateMatchUrl(theCriteria, theResourceDefinition);
+		} catch (UnsupportedOperationException e) {
+			return null;
+		}
+		retVal.clean();
+		myParsedCriteriaCache.put(key, new ParsedCriteria(retVal, mySearchParamRegistry, resourceName));
+		return retVal;
+	}
+
+	/**
+	 * Discards any cached parsed criteria
+	 *
+	 * @since 7.6.0
+	 */
+	public void clearParsedCriteriaCache() {
+		myParsedCriteriaCache.invalidateAll();
+	}
+
 	/**
 	 * @param theCriteria
 	 * @return result.supported() will be true if theCriteria can be evaluated in-memory
@@ -701,4 +795,39 @@ public class InMemoryResourceMatcher {
 		INITIALIZED,
 		FAILED
 	}
+
+	private static class ParsedCriteria {
+		private final SearchParameterMap mySearchParameterMap;
+		private final String[] myParamNames;
+		private final RuntimeSearchParam[] myParamDefs;
+
+		ParsedCriteria(
+				SearchParameterMap theSearchParameterMap,
+				ISearchParamRegistry theSearchParamRegistry,
+				String theResourceName) {
+			mySearchParameterMap = theSearchParameterMap;
+			myParamNames = theSearchParameterMap.keySet().toArray(new String[0]);
+			myParamDefs = new RuntimeSearchParam[myParamNames.length];
+			for (int i = 0; i < myParamNames.length; i++) {
+				myParamDefs[i] = theSearchParamRegistry.getActiveSearchParam(theResourceName, myParamNames[i]);
+			}
+		}
+
+		SearchParameterMap getSearchParameterMap() {
+			return mySearchParameterMap;
+		}
+
+		/**
+		 * Returns false if any of the search parameters used by the criteria have been
+		 * added, removed or redefined since the criteria were parsed
+		 */
+		boolean isCurrent(ISearchParamRegistry theSearchParamRegistry, String theResourceName) {
+			for (int i = 0; i < myParamNames.length; i++) {
+				if (theSearchParamRegistry.getActiveSearchParam(theResourceName, myParamNames[i]) != myParamDefs[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
 }
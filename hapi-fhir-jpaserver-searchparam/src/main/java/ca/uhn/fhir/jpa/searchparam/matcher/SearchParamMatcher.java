@@ -29,6 +29,7 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
@@ -46,6 +47,18 @@ public class SearchParamMatcher {
 		return myInMemoryResourceMatcher.match(theCriteria, theResource, null, theRequest);
 	}
 
+	/**
+	 * Matches a resource against several criteria, extracting the resource's search parameter indexes only once.
+	 *
+	 * @return The results, in the same order as the criteria
+	 * @see InMemoryResourceMatcher#matchAll(List, IBaseResource, ResourceIndexedSearchParams, RequestDetails)
+	 * @since 7.6.0
+	 */
+	public List<InMemoryMatchResult> matchAll(
+			List<String> theCriteria, IBaseResource theResource, RequestDetails theRequest) {
+		return myInMemoryResourceMatcher.matchAll(theCriteria, theResource, null, theRequest);
+	}
+
 	public InMemoryMatchResult match(SearchParameterMap theSearchParameterMap, IBaseResource theResource) {
 		if (theSearchParameterMap.isEmpty()) {
 			return InMemoryMatchResult.successfulMatch();
@@ -3,9 +3,11 @@ package ca.uhn.fhir.jpa.cache;
 import ca.uhn.fhir.jpa.cache.config.RegisteredResourceListenerFactoryConfig;
 import ca.uhn.fhir.jpa.model.sched.ISchedulerService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.primitive.IdDt;
 import org.apache.commons.lang3.time.DateUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
@@ -14,11 +16,16 @@ import org.springframework.context.annotation.Import;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Collections;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -83,4 +90,70 @@ class ResourceChangeListenerCacheRefresherImplTest {
 		verify(myResourceVersionSvc, times(0)).getVersionMap(any(), any());
 	}
 
+	@Test
+	public void testIncrementalRefreshAfterFullRefresh() {
+		IResourceChangeListener listener = mock(IResourceChangeListener.class);
+		ResourceChangeListenerCache cache = new ResourceChangeListenerCache(PATIENT_RESOURCE_NAME, listener, ourMap, TEST_REFRESH_INTERVAL_MS);
+		when(myResourceChangeListenerRegistry.contains(cache)).thenReturn(true);
+		when(myResourceVersionSvc.getVersionMap(eq(PATIENT_RESOURCE_NAME), any())).thenReturn(ResourceVersionMap.fromIdsWithVersions(List.of(
+			new IdDt("Patient/1/_history/1"),
+			new IdDt("Patient/2/_history/1"))));
+
+		// First refresh loads everything
+		myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+		verify(listener, times(1)).handleInit(any());
+		assertNotNull(cache.getLastFullRefreshStartTime());
+
+		// Second refresh only reads the changes: 1 was updated, 2 was deleted and 3 was created
+		ResourceVersionChanges changes = new ResourceVersionChanges(
+			List.of(new IdDt("Patient/1"), new IdDt("Patient/2"), new IdDt("Patient/3")),
+			ResourceVersionMap.fromIdsWithVersions(List.of(new IdDt("Patient/1/_history/2"), new IdDt("Patient/3/_history/1"))));
+		when(myResourceVersionSvc.getVersionChangesSince(any(), eq(PATIENT_RESOURCE_NAME), any(), any())).thenReturn(changes);
+		ResourceChangeResult result = myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+
+		assertEquals(1, result.created);
+		assertEquals(1, result.updated);
+		assertEquals(1, result.deleted);
+		ArgumentCaptor<IResourceChangeEvent> eventCaptor = ArgumentCaptor.forClass(IResourceChangeEvent.class);
+		verify(listener, times(1)).handleChange(eventCaptor.capture());
+		assertEquals("Patient/3/_history/1", eventCaptor.getValue().getCreatedResourceIds().get(0).getValue());
+		assertEquals("Patient/1/_history/2", eventCaptor.getValue().getUpdatedResourceIds().get(0).getValue());
+		assertEquals("Patient/2", eventCaptor.getValue().getDeletedResourceIds().get(0).getValue());
+		assertEquals(2L, cache.getResourceVersionCache().getVersionForResourceId(new IdDt("Patient/1")));
+		verify(myResourceVersionSvc, times(1)).getVersionMap(any(), any());
+	}
+
+	@Test
+	public void testFullRefreshWhenChangesNotAvailable() {
+		IResourceChangeListener listener = mock(IResourceChangeListener.class);
+		ResourceChangeListenerCache cache = new ResourceChangeListenerCache(PATIENT_RESOURCE_NAME, listener, ourMap, TEST_REFRESH_INTERVAL_MS);
+		when(myResourceChangeListenerRegistry.contains(cache)).thenReturn(true);
+		when(myResourceVersionSvc.getVersionMap(eq(PATIENT_RESOURCE_NAME), any())).thenReturn(ResourceVersionMap.empty());
+		when(myResourceVersionSvc.getVersionChangesSince(any(), any(), any(), any())).thenReturn(null);
+
+		myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+		myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+
+		verify(myResourceVersionSvc, times(1)).getVersionChangesSince(any(), any(), any(), any());
+		verify(myResourceVersionSvc, times(2)).getVersionMap(any(), any());
+	}
+
+	@Test
+	public void testFullRefreshWhenIncrementalRefreshDisabled() {
+		myResourceChangeListenerCacheRefresher.setFullRefreshIntervalMs(0);
+		try {
+			IResourceChangeListener listener = mock(IResourceChangeListener.class);
+			ResourceChangeListenerCache cache = new ResourceChangeListenerCache(PATIENT_RESOURCE_NAME, listener, ourMap, TEST_REFRESH_INTERVAL_MS);
+			when(myResourceChangeListenerRegistry.contains(cache)).thenReturn(true);
+			when(myResourceVersionSvc.getVersionMap(eq(PATIENT_RESOURCE_NAME), any())).thenReturn(ResourceVersionMap.empty());
+
+			myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+			myResourceChangeListenerCacheRefresher.refreshCacheAndNotifyListener(cache);
+
+			verify(myResourceVersionSvc, never()).getVersionChangesSince(any(), any(), any(), any());
+			verify(myResourceVersionSvc, times(2)).getVersionMap(any(), any());
+		} finally {
+			myResourceChangeListenerCacheRefresher.setFullRefreshIntervalMs(ResourceChangeListenerCacheRefresherImpl.DEFAULT_FULL_REFRESH_INTERVAL_MS);
+		}
+	}
 }
@@ -1,18 +1,29 @@
 package ca.uhn.fhir.jpa.searchparam.extractor;
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -46,4 +57,31 @@ public class SearchParamExtractorServiceTest {
 		verify(myRequestInterceptorBroadcaster, times(2)).callHooks(eq(Pointcut.JPA_PERFTRACE_WARNING), any());
 	}
 
+	/**
+	 * Extraction may run on a worker thread, so the warnings are collected rather than
+	 * broadcast, and broadcast later on the calling thread
+	 */
+	@Test
+	public void testExtractSearchIndexParameters_CollectsWarnings() {
+		ISearchParamExtractor extractor = mock(ISearchParamExtractor.class, t -> new ISearchParamExtractor.SearchParamSet<>());
+		ISearchParamExtractor.SearchParamSet<ResourceIndexedSearchParamString> strings = new ISearchParamExtractor.SearchParamSet<>();
+		strings.addWarning("help i'm a bug");
+		doReturn(strings).when(extractor).extractSearchParamStrings(any(), any());
+		SearchParamExtractionUtil util = new SearchParamExtractionUtil(FhirContext.forR4Cached(), new StorageSettings(), extractor, myJpaInterceptorBroadcaster);
+
+		ServletRequestDetails requestDetails = new ServletRequestDetails(myRequestInterceptorBroadcaster);
+		List<String> warnings = new ArrayList<>();
+		util.extractSearchIndexParameters(requestDetails, ResourceIndexedSearchParams.withSets(), new Patient(), ISearchParamExtractor.ALL_PARAMS, warnings);
+
+		assertThat(warnings).containsExactly("help i'm a bug");
+		verifyNoInteractions(myJpaInterceptorBroadcaster, myRequestInterceptorBroadcaster);
+
+		when(myJpaInterceptorBroadcaster.hasHooks(any())).thenReturn(true);
+		when(myJpaInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+		mySvc.broadcastWarnings(requestDetails, warnings);
+
+		verify(myJpaInterceptorBroadcaster, times(1)).callHooks(eq(Pointcut.JPA_PERFTRACE_WARNING), any());
+		verify(myRequestInterceptorBroadcaster, times(1)).callHooks(eq(Pointcut.JPA_PERFTRACE_WARNING), any());
+	}
+
 }
@@ -32,6 +32,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
@@ -40,6 +41,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -48,6 +50,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -76,6 +79,8 @@ public class InMemoryResourceMatcherR5Test {
 	SearchParamExtractorService mySearchParamExtractorService;
 	@MockBean
 	IndexedSearchParamExtractor myIndexedSearchParamExtractor;
+	@SpyBean
+	MatchUrlService myMatchUrlService;
 	@Autowired
 	private InMemoryResourceMatcher myInMemoryResourceMatcher;
 	@Autowired
@@ -260,6 +265,46 @@ public class InMemoryResourceMatcherR5Test {
 		}
 	}
 
+	@Test
+	public void testMatchAll() {
+		when(myIndexedSearchParamExtractor.extractIndexedSearchParams(eq(myObservation), any(), any())).thenReturn(mySearchParams);
+
+		List<String> criteria = List.of(
+			"code=" + OBSERVATION_CODE_SYSTEM + "|" + OBSERVATION_CODE,
+			"code=" + OBSERVATION_CODE_SYSTEM + "|FOO",
+			"date=gt" + EARLY_DATETIME,
+			"date=gt" + LATE_DATETIME,
+			"date=" + ParamPrefixEnum.APPROXIMATE.getValue() + OBSERVATION_DATETIME);
+		List<InMemoryMatchResult> results = myInMemoryResourceMatcher.matchAll(criteria, myObservation, null, newRequest());
+
+		assertThat(results).hasSize(5);
+		assertTrue(results.get(0).matched());
+		assertFalse(results.get(1).matched());
+		assertTrue(results.get(1).supported());
+		assertTrue(results.get(2).matched());
+		assertFalse(results.get(3).matched());
+		assertFalse(results.get(4).supported());
+
+		// The resource is only indexed once, for all of the criteria
+		verify(myIndexedSearchParamExtractor, times(1)).extractIndexedSearchParams(eq(myObservation), any(), any());
+	}
+
+	@Test
+	public void testParsedCriteriaAreCached() {
+		String criteria = "code=" + OBSERVATION_CODE_SYSTEM + "|" + OBSERVATION_CODE + "&date=gt" + EARLY_DATETIME;
+		myInMemoryResourceMatcher.clearParsedCriteriaCache();
+
+		assertTrue(myInMemoryResourceMatcher.match(criteria, myObservation, mySearchParams, newRequest()).matched());
+		assertTrue(myInMemoryResourceMatcher.match(criteria, myObservation, mySearchParams, newRequest()).matched());
+		verify(myMatchUrlService, times(1)).translateMatchUrl(eq(criteria), any());
+
+		// Redefining one of the search parameters means the criteria need to be parsed again
+		RuntimeSearchParam codeSearchParam = new RuntimeSearchParam(null, null, null, null, "Observation.code", RestSearchParameterTypeEnum.TOKEN, null, null, RuntimeSearchParam.RuntimeSearchParamStatusEnum.ACTIVE, null, null, null);
+		when(mySearchParamRegistry.getActiveSearchParam("Observation", "code")).thenReturn(codeSearchParam);
+		assertTrue(myInMemoryResourceMatcher.match(criteria, myObservation, mySearchParams, newRequest()).matched());
+		verify(myMatchUrlService, times(2)).translateMatchUrl(eq(criteria), any());
+	}
+
 	@Test
 	public void testDateUnsupportedDateOps() {
 		testDateUnsupportedDateOp(ParamPrefixEnum.APPROXIMATE);
@@ -25,12 +25,15 @@ import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
 import ca.uhn.fhir.jpa.subscription.channel.models.ProducingChannelParameters;
 import ca.uhn.fhir.jpa.subscription.channel.models.ReceivingChannelParameters;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
+import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscriptionChannelType;
 import ca.uhn.fhir.jpa.subscription.model.ChannelRetryConfiguration;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
+import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -88,6 +91,7 @@ public class SubscriptionChannelRegistry {
 		// this sends to the hook (resthook/message/email/whatever)
 		ReceivingChannelParameters receivingParameters = new ReceivingChannelParameters(channelName);
 		receivingParameters.setRetryConfiguration(retryConfigParameters);
+		receivingParameters.setConcurrentConsumers(getConcurrentConsumers(theActiveSubscription));
 
 		IChannelReceiver channelReceiver = newReceivingChannel(receivingParameters);
 		Optional<MessageHandler> deliveryHandler =
@@ -102,14 +106,38 @@ public class SubscriptionChannelRegistry {
 		// channel used for sending to subscription matcher
 		ProducingChannelParameters producingChannelParameters = new ProducingChannelParameters(channelName);
 		producingChannelParameters.setRetryConfiguration(retryConfigParameters);
+		producingChannelParameters.setConcurrentConsumers(receivingParameters.getConcurrentConsumers());
 
 		IChannelProducer sendingChannel = newSendingChannel(producingChannelParameters);
 		myChannelNameToSender.put(channelName, sendingChannel);
 	}
 
+	/**
+	 * Batched rest-hook deliveries are assembled by the channel consumer threads, so a batched
+	 * subscription gets one consumer per notification in a batch, up to
+	 * {@link SubscriptionDeliveringRestHookSubscriber#BATCH_CONCURRENT_CONSUMERS_LIMIT}.
+	 */
+	@Nullable
+	private static Integer getConcurrentConsumers(ActiveSubscription theActiveSubscription) {
+		if (theActiveSubscription.getChannelType() != CanonicalSubscriptionChannelType.RESTHOOK) {
+			return null;
+		}
+		int maxBatchSize =
+				SubscriptionDeliveringRestHookSubscriber.getBatchMaxSize(theActiveSubscription.getSubscription());
+		int consumers =
+				Math.min(maxBatchSize, SubscriptionDeliveringRestHookSubscriber.BATCH_CONCURRENT_CONSUMERS_LIMIT);
+		if (consumers <= ChannelConsumerSettings.DEFAULT_CHANNEL_CONSUMERS) {
+			return null;
+		}
+		return consumers;
+	}
+
 	protected IChannelReceiver newReceivingChannel(ReceivingChannelParameters theParameters) {
 		ChannelConsumerSettings settings = new ChannelConsumerSettings();
 		settings.setRetryConfiguration(theParameters.getRetryConfiguration());
+		if (theParameters.getConcurrentConsumers() != null) {
+			settings.setConcurrentConsumers(theParameters.getConcurrentConsumers());
+		}
 		return mySubscriptionDeliveryChannelFactory.newDeliveryReceivingChannel(
 				theParameters.getChannelName(), settings);
 	}
@@ -117,6 +145,9 @@ public class SubscriptionChannelRegistry {
 	protected IChannelProducer newSendingChannel(ProducingChannelParameters theParameters) {
 		ChannelProducerSettings settings = new ChannelProducerSettings();
 		settings.setRetryConfiguration(theParameters.getRetryConfiguration());
+		if (theParameters.getConcurrentConsumers() != null) {
+			settings.setConcurrentConsumers(theParameters.getConcurrentConsumers());
+		}
 		return mySubscriptionDeliveryChannelFactory.newDeliverySendingChannel(theParameters.getChannelName(), settings);
 	}
 
@@ -129,9 +160,13 @@ public class SubscriptionChannelRegistry {
 			ourLog.warn("Failed to remove subscription {} from channel {}", theActiveSubscription.getId(), channelName);
 		}
 
+		SubscriptionChannelWithHandlers channel = myDeliveryReceiverChannels.get(channelName);
+		if (channel != null) {
+			channel.subscriptionRemoved(theActiveSubscription.getId());
+		}
+
 		// This was the last one.  Close and remove the channel
 		if (!myActiveSubscriptionByChannelName.containsKey(channelName)) {
-			SubscriptionChannelWithHandlers channel = myDeliveryReceiverChannels.get(channelName);
 			if (channel != null) {
 				channel.close();
 			}
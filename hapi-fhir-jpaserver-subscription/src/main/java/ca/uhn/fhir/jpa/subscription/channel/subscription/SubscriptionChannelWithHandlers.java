@@ -19,6 +19,7 @@
  */
 package ca.uhn.fhir.jpa.subscription.channel.subscription;
 
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import com.google.common.annotations.VisibleForTesting;
 import org.slf4j.Logger;
@@ -66,6 +67,18 @@ public class SubscriptionChannelWithHandlers implements Closeable {
 		}
 	}
 
+	/**
+	 * Discards any state held by the delivery handlers for a subscription which no longer
+	 * uses this channel
+	 */
+	public void subscriptionRemoved(String theSubscriptionId) {
+		for (MessageHandler next : myDeliveryHandlerSet) {
+			if (next instanceof SubscriptionDeliveringRestHookSubscriber) {
+				((SubscriptionDeliveringRestHookSubscriber) next).removeSubscriptionBatcher(theSubscriptionId);
+			}
+		}
+	}
+
 	@VisibleForTesting
 	public MessageHandler getDeliveryHandlerForUnitTest() {
 		return myDeliveryHandlerSet.iterator().next();
@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.FhirTerser;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Builds the single Bundle which is delivered for a batch of rest-hook notifications
+ */
+class RestHookBatchBundleFactory {
+	private static final Logger ourLog = LoggerFactory.getLogger(RestHookBatchBundleFactory.class);
+
+	private final FhirContext myFhirContext;
+
+	RestHookBatchBundleFactory(FhirContext theFhirContext) {
+		myFhirContext = theFhirContext;
+	}
+
+	/**
+	 * Combines the payloads of a batch of resource (i.e. non topic) notifications into a <code>history</code>
+	 * Bundle, with one entry per notification in the order they were received.
+	 *
+	 * @return The bundle, or <code>null</code> if none of the notifications had anything to deliver
+	 */
+	@Nullable
+	IBaseBundle buildHistoryBundle(List<SubscriptionDeliveringRestHookSubscriber.PendingDelivery> theDeliveries) {
+		BundleBuilder builder = new BundleBuilder(myFhirContext);
+		builder.setType("history");
+		FhirTerser terser = myFhirContext.newTerser();
+
+		int count = 0;
+		for (SubscriptionDeliveringRestHookSubscriber.PendingDelivery next : theDeliveries) {
+			ResourceDeliveryMessage msg = next.getMessage();
+			IBaseResource payload = next.getPayload();
+			String method;
+			String status;
+			IIdType id;
+			switch (msg.getOperationType()) {
+				case CREATE:
+				case UPDATE:
+					if (payload == null) {
+						continue;
+					}
+					method = "PUT";
+					status = msg.getOperationType() == ResourceDeliveryMessage.OperationTypeEnum.CREATE
+							? "201 Created"
+							: "200 OK";
+					id = payload.getIdElement();
+					break;
+				case DELETE:
+					method = "DELETE";
+					status = "204 No Content";
+					id = msg.getPayloadId(myFhirContext);
+					payload = null;
+					break;
+				default:
+					ourLog.warn("Ignoring delivery message of type: {}", msg.getOperationType());
+					continue;
+			}
+
+			IBase entry = builder.addEntry();
+			if (payload != null) {
+				terser.setElement(entry, "fullUrl", id.getValue());
+				builder.addToEntry(entry, "resource", payload);
+			}
+			terser.setElement(entry, "request.method", method);
+			terser.setElement(
+					entry, "request.url", id.toUnqualifiedVersionless().getValue());
+			terser.setElement(entry, "response.status", status);
+			count++;
+		}
+
+		return count > 0 ? builder.getBundle() : null;
+	}
+
+	/**
+	 * Combines a batch of topic <code>subscription-notification</code> Bundles into one. The result is a copy
+	 * of the first Bundle: the focus resources of the other Bundles are appended to it, and the
+	 * notification events of their status resources are appended to its status resource.
+	 * <p>
+	 * The given Bundles are the payloads of the individual messages, which are delivered again one
+	 * by one if the batch fails, so they are copied rather than modified or shared with the result.
+	 * </p>
+	 */
+	IBaseBundle mergeNotificationBundles(List<IBaseBundle> theBundles) {
+		FhirTerser terser = myFhirContext.newTerser();
+		IBaseBundle retVal = terser.clone(theBundles.get(0));
+		List<IBaseResource> resources = BundleUtil.toListOfResources(myFhirContext, retVal);
+		IBaseResource status = resources.isEmpty() ? null : resources.get(0);
+
+		BaseRuntimeChildDefinition entryChild =
+				myFhirContext.getResourceDefinition(retVal).getChildByName("entry");
+		for (IBaseBundle next : theBundles.subList(1, theBundles.size())) {
+			List<IBase> entries = entryChild.getAccessor().getValues(terser.clone(next));
+			for (int i = 0; i < entries.size(); i++) {
+				IBaseResource resource = terser.getSingleValueOrNull(entries.get(i), "resource", IBaseResource.class);
+				if (i == 0 && status != null && resource != null && isSameType(status, resource)) {
+					mergeStatus(status, resource, terser);
+				} else {
+					entryChild.getMutator().addValue(retVal, entries.get(i));
+				}
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Appends the notification events of one notification status to another. R4B/R5 use a
+	 * <code>SubscriptionStatus</code> resource, and R4 (the backport IG) uses a <code>Parameters</code>
+	 * resource with the same content.
+	 */
+	private void mergeStatus(IBaseResource theTarget, IBaseResource theSource, FhirTerser theTerser) {
+		RuntimeResourceDefinition resourceDef = myFhirContext.getResourceDefinition(theTarget);
+		if ("SubscriptionStatus".equals(resourceDef.getName())) {
+			BaseRuntimeChildDefinition eventChild = resourceDef.getChildByName("notificationEvent");
+			for (IBase next : eventChild.getAccessor().getValues(theSource)) {
+				eventChild.getMutator().addValue(theTarget, next);
+			}
+			copyValue(resourceDef.getChildByName("eventsSinceSubscriptionStart"), theTarget, theSource);
+		} else if ("Parameters".equals(resourceDef.getName())) {
+			BaseRuntimeChildDefinition parameterChild = resourceDef.getChildByName("parameter");
+			BaseRuntimeChildDefinition valueChild = ((BaseRuntimeElementCompositeDefinition<?>)
+							parameterChild.getChildByName("parameter"))
+					.getChildByName("value[x]");
+			List<IBase> existingParameters = parameterChild.getAccessor().getValues(theTarget);
+			for (IBase next : parameterChild.getAccessor().getValues(theSource)) {
+				String name = getParameterName(next, theTerser);
+				if ("notification-event".equals(name)) {
+					parameterChild.getMutator().addValue(theTarget, next);
+				} else if ("events-since-subscription-start".equals(name)) {
+					for (IBase existing : existingParameters) {
+						if (name.equals(getParameterName(existing, theTerser))) {
+							copyValue(valueChild, existing, next);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private boolean isSameType(IBaseResource theFirst, IBaseResource theSecond) {
+		return myFhirContext.getResourceType(theFirst).equals(myFhirContext.getResourceType(theSecond));
+	}
+
+	private static void copyValue(BaseRuntimeChildDefinition theChild, IBase theTarget, IBase theSource) {
+		theChild.getAccessor().getFirstValueOrNull(theSource).ifPresent(t -> theChild.getMutator()
+				.setValue(theTarget, t));
+	}
+
+	@Nullable
+	private static String getParameterName(IBase theParameter, FhirTerser theTerser) {
+		IPrimitiveType<?> name = theTerser.getSingleValueOrNull(theParameter, "name", IPrimitiveType.class);
+		return name != null ? name.getValueAsString() : null;
+	}
+}
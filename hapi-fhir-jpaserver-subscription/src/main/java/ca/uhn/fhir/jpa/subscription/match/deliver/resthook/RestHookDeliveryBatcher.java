@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Combines deliveries for a single subscription which arrive within a short window into
+ * one batch.
+ * <p>
+ * No additional threads are used: the channel consumer thread which opens a batch waits
+ * for the window to elapse (or the batch to fill up) and then delivers it, while the
+ * threads which join the batch block until the delivery has completed. Every caller
+ * therefore sees the outcome of its own delivery, so a failed batch is retried message
+ * by message by the channel, exactly as unbatched deliveries are.
+ * </p>
+ * <p>
+ * Batches are delivered one at a time, in the order they were opened: every batch is
+ * given a sequence number when it is opened, and its delivering thread waits until all
+ * batches with a lower sequence number have been delivered (successfully or not).
+ * </p>
+ *
+ * @param <T> The type of item being delivered
+ */
+class RestHookDeliveryBatcher<T> {
+
+	private Batch<T> myOpenBatch;
+	private long myNextBatchSequence;
+	private long myNextDeliverySequence;
+
+	/**
+	 * Adds an item to the currently open batch (opening a new one if needed) and blocks until
+	 * that batch has been delivered.
+	 *
+	 * @param theItem         The item to deliver
+	 * @param theMaxBatchSize The maximum number of items in a batch
+	 * @param theWindowMillis The maximum amount of time to wait for a batch to fill up
+	 * @param theDeliverer    Delivers a batch. Any exception thrown is rethrown to every caller whose item was in the batch.
+	 */
+	void deliver(T theItem, int theMaxBatchSize, long theWindowMillis, Consumer<List<T>> theDeliverer) {
+		Batch<T> batch;
+		boolean leader;
+		synchronized (this) {
+			leader = myOpenBatch == null;
+			if (leader) {
+				myOpenBatch = new Batch<>(myNextBatchSequence++, System.currentTimeMillis() + theWindowMillis);
+			}
+			batch = myOpenBatch;
+			batch.myItems.add(theItem);
+			if (batch.myItems.size() >= theMaxBatchSize) {
+				closeBatch(batch);
+			}
+		}
+
+		if (!leader) {
+			awaitDelivery(batch);
+			return;
+		}
+
+		waitForBatchToClose(batch);
+		waitForTurnToDeliver(batch);
+		try {
+			theDeliverer.accept(Collections.unmodifiableList(batch.myItems));
+			batch.myResult.complete(null);
+		} catch (RuntimeException | Error e) {
+			batch.myResult.completeExceptionally(e);
+			throw e;
+		} finally {
+			deliveryFinished();
+		}
+	}
+
+	private synchronized void waitForBatchToClose(Batch<T> theBatch) {
+		long remaining;
+		while (myOpenBatch == theBatch && (remaining = theBatch.myDeadline - System.currentTimeMillis()) > 0) {
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (myOpenBatch == theBatch) {
+			closeBatch(theBatch);
+		}
+	}
+
+	/**
+	 * Waits until every batch opened before this one has been delivered. An interrupt does not
+	 * end the wait, since skipping the turn would let a later batch overtake this one.
+	 */
+	private synchronized void waitForTurnToDeliver(Batch<T> theBatch) {
+		boolean interrupted = false;
+		while (myNextDeliverySequence != theBatch.mySequence) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized void deliveryFinished() {
+		myNextDeliverySequence++;
+		notifyAll();
+	}
+
+	private void closeBatch(Batch<T> theBatch) {
+		assert Thread.holdsLock(this);
+		if (myOpenBatch == theBatch) {
+			myOpenBatch = null;
+			notifyAll();
+		}
+	}
+
+	private static void awaitDelivery(Batch<?> theBatch) {
+		try {
+			theBatch.myResult.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static class Batch<T> {
+		private final long mySequence;
+		private final long myDeadline;
+		private final List<T> myItems = new ArrayList<>();
+		private final CompletableFuture<Void> myResult = new CompletableFuture<>();
+
+		private Batch(long theSequence, long theDeadline) {
+			mySequence = theSequence;
+			myDeadline = theDeadline;
+		}
+	}
+}
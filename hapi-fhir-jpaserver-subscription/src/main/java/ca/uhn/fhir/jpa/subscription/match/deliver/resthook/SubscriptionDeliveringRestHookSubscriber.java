@@ -44,9 +44,11 @@ import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.messaging.BaseResourceModifiedMessage;
 import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.HapiExtensions;
 import ca.uhn.fhir.util.Logs;
 import ca.uhn.fhir.util.StopWatch;
 import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -62,13 +64,36 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 @Scope("prototype")
 public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDeliverySubscriber {
+	/**
+	 * The largest batch size which may be configured using
+	 * {@link HapiExtensions#EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE}
+	 */
+	public static final int BATCH_MAX_SIZE_LIMIT = 100;
+
+	/**
+	 * The batch window used if {@link HapiExtensions#EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS} is not
+	 * specified
+	 */
+	public static final int DEFAULT_BATCH_WINDOW_MILLIS = 100;
+
+	/**
+	 * The largest number of delivery channel consumers which will be used for a batched subscription.
+	 * Each notification waiting in an open batch occupies a consumer thread, so this also bounds the
+	 * number of notifications that can actually be combined into one batch.
+	 */
+	public static final int BATCH_CONCURRENT_CONSUMERS_LIMIT = 10;
+
 	private static final Logger ourLog = LoggerFactory.getLogger(SubscriptionDeliveringRestHookSubscriber.class);
 
+	private final Map<String, RestHookDeliveryBatcher<PendingDelivery>> myBatchers = new ConcurrentHashMap<>();
+
 	@Autowired
 	private DaoRegistry myDaoRegistry;
 
@@ -139,6 +164,88 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		}
 	}
 
+	/**
+	 * Adds the payload to the open batch for the subscription and waits for that batch to be delivered.
+	 * See {@link RestHookDeliveryBatcher} for details.
+	 */
+	protected void deliverPayloadBatched(
+			ResourceDeliveryMessage theMsg,
+			CanonicalSubscription theSubscription,
+			EncodingEnum thePayloadType,
+			IGenericClient theClient,
+			int theBatchMaxSize) {
+		IBaseResource payloadResource = getAndMassagePayload(theMsg, theSubscription);
+
+		String subscriptionId = theSubscription.getIdPart();
+		RestHookDeliveryBatcher<PendingDelivery> batcher =
+				myBatchers.computeIfAbsent(subscriptionId, t -> new RestHookDeliveryBatcher<>());
+		batcher.deliver(
+				new PendingDelivery(theMsg, payloadResource),
+				theBatchMaxSize,
+				getBatchWindowMillis(theSubscription),
+				batch -> doBatchDelivery(batch, theSubscription, thePayloadType, theClient));
+	}
+
+	protected void doBatchDelivery(
+			List<PendingDelivery> theBatch,
+			CanonicalSubscription theSubscription,
+			EncodingEnum thePayloadType,
+			IGenericClient theClient) {
+		// A batch of one is still delivered as a Bundle so that the endpoint always receives the same format
+		PendingDelivery first = theBatch.get(0);
+		RestHookBatchBundleFactory bundleFactory = new RestHookBatchBundleFactory(myFhirContext);
+		IBaseBundle bundle;
+		if (theSubscription.isTopicSubscription()) {
+			List<IBaseBundle> bundles = new ArrayList<>(theBatch.size());
+			for (PendingDelivery next : theBatch) {
+				bundles.add((IBaseBundle) next.getPayload());
+			}
+			bundle = bundleFactory.mergeNotificationBundles(bundles);
+		} else if (thePayloadType == null) {
+			// Without a payload the endpoint is only told that something changed, so once is enough
+			sendNotification(first.getMessage());
+			return;
+		} else {
+			bundle = bundleFactory.buildHistoryBundle(theBatch);
+			if (bundle == null) {
+				return;
+			}
+		}
+
+		IClientExecutable<?, ?> operation = theClient.transaction().withBundle(bundle);
+		if (thePayloadType != null) {
+			operation.encoded(thePayloadType);
+		}
+
+		StopWatch sw = new StopWatch();
+		try {
+			operation.execute();
+		} catch (ResourceNotFoundException e) {
+			ourLog.error("Cannot reach {} ", theSubscription.getEndpointUrl());
+			ourLog.error("Exception: ", e);
+			throw e;
+		}
+
+		Logs.getSubscriptionTroubleshootingLog()
+				.debug(
+						"Delivered batch of {} rest-hook payloads for {} in {}",
+						theBatch.size(),
+						theSubscription
+								.getIdElement(myFhirContext)
+								.toUnqualifiedVersionless()
+								.getValue(),
+						sw);
+	}
+
+	/**
+	 * Discards the delivery batching state held for a subscription which has been unregistered
+	 *
+	 * @since 7.6.0
+	 */
+	public void removeSubscriptionBatcher(String theSubscriptionId) {
+		myBatchers.remove(theSubscriptionId);
+	}
+
 	@Nullable
 	private IClientExecutable<?, ?> createDeliveryRequestNormal(
 			ResourceDeliveryMessage theMsg, IGenericClient theClient, IBaseResource thePayloadResource) {
@@ -282,7 +389,12 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 			}
 		}
 
-		deliverPayload(theMessage, subscription, payloadType, client);
+		int batchMaxSize = getBatchMaxSize(subscription);
+		if (batchMaxSize > 1 && isBlank(subscription.getPayloadSearchCriteria())) {
+			deliverPayloadBatched(theMessage, subscription, payloadType, client, batchMaxSize);
+		} else {
+			deliverPayload(theMessage, subscription, payloadType, client);
+		}
 
 		// Interceptor call: SUBSCRIPTION_AFTER_REST_HOOK_DELIVERY
 		params = new HookParams()
@@ -317,6 +429,29 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		}
 	}
 
+	/**
+	 * Returns the maximum number of notifications which will be delivered in a single request
+	 * for the given subscription (a value of 1 means batching is disabled)
+	 *
+	 * @see HapiExtensions#EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE
+	 * @since 7.6.0
+	 */
+	public static int getBatchMaxSize(CanonicalSubscription theSubscription) {
+		String value = theSubscription.getChannelExtension(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE);
+		int retVal = NumberUtils.toInt(value, 1);
+		return Math.max(1, Math.min(retVal, BATCH_MAX_SIZE_LIMIT));
+	}
+
+	/**
+	 * @see HapiExtensions#EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS
+	 * @since 7.6.0
+	 */
+	public static int getBatchWindowMillis(CanonicalSubscription theSubscription) {
+		String value =
+				theSubscription.getChannelExtension(HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS);
+		return Math.max(0, NumberUtils.toInt(value, DEFAULT_BATCH_WINDOW_MILLIS));
+	}
+
 	public static List<Header> parseHeadersFromSubscription(CanonicalSubscription subscription) {
 		List<Header> headers = null;
 		if (subscription != null) {
@@ -343,4 +478,26 @@ public class SubscriptionDeliveringRestHookSubscriber extends BaseSubscriptionDe
 		}
 		return headers;
 	}
+
+	/**
+	 * A notification waiting to be delivered as part of a batch
+	 */
+	static class PendingDelivery {
+		private final ResourceDeliveryMessage myMessage;
+		private final IBaseResource myPayload;
+
+		PendingDelivery(ResourceDeliveryMessage theMessage, @Nullable IBaseResource thePayload) {
+			myMessage = theMessage;
+			myPayload = thePayload;
+		}
+
+		ResourceDeliveryMessage getMessage() {
+			return myMessage;
+		}
+
+		@Nullable
+		IBaseResource getPayload() {
+			return myPayload;
+		}
+	}
 }
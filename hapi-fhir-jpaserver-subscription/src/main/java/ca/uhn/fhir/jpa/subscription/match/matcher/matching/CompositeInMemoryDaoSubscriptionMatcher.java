@@ -27,6 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class CompositeInMemoryDaoSubscriptionMatcher implements ISubscriptionMatcher {
 	private Logger ourLog = LoggerFactory.getLogger(CompositeInMemoryDaoSubscriptionMatcher.class);
 
@@ -63,4 +66,30 @@ public class CompositeInMemoryDaoSubscriptionMatcher implements ISubscriptionMat
 		}
 		return result;
 	}
+
+	@Override
+	public List<InMemoryMatchResult> match(
+			List<CanonicalSubscription> theSubscriptions, ResourceModifiedMessage theMsg) {
+		if (!mySubscriptionSettings.isEnableInMemorySubscriptionMatching()) {
+			return ISubscriptionMatcher.super.match(theSubscriptions, theMsg);
+		}
+
+		List<InMemoryMatchResult> retVal =
+				new ArrayList<>(myInMemorySubscriptionMatcher.match(theSubscriptions, theMsg));
+		for (int i = 0; i < retVal.size(); i++) {
+			InMemoryMatchResult result = retVal.get(i);
+			if (result.supported()) {
+				result.setInMemory(true);
+			} else {
+				CanonicalSubscription subscription = theSubscriptions.get(i);
+				ourLog.info(
+						"Criteria {} for Subscription {} not supported by InMemoryMatcher: {}.  Reverting to DatabaseMatcher",
+						subscription.getCriteriaString(),
+						subscription.getIdElementString(),
+						result.getUnsupportedReason());
+				retVal.set(i, myDaoSubscriptionMatcher.match(subscription, theMsg));
+			}
+		}
+		return retVal;
+	}
 }
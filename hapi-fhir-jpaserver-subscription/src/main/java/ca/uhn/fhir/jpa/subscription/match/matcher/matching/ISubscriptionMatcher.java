@@ -23,6 +23,21 @@ import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public interface ISubscriptionMatcher {
 	InMemoryMatchResult match(CanonicalSubscription subscription, ResourceModifiedMessage msg);
+
+	/**
+	 * Matches several subscriptions against the same message. Implementations may override this in order to
+	 * share work (e.g. search parameter extraction) between the subscriptions.
+	 *
+	 * @return The results, in the same order as the subscriptions
+	 * @since 7.6.0
+	 */
+	default List<InMemoryMatchResult> match(
+			List<CanonicalSubscription> theSubscriptions, ResourceModifiedMessage theMsg) {
+		return theSubscriptions.stream().map(t -> match(t, theMsg)).collect(Collectors.toList());
+	}
 }
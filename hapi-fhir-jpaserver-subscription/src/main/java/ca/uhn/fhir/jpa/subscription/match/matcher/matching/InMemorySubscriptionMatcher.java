@@ -30,6 +30,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 	private static final Logger ourLog = LoggerFactory.getLogger(InMemorySubscriptionMatcher.class);
 
@@ -52,4 +56,28 @@ public class InMemorySubscriptionMatcher implements ISubscriptionMatcher {
 					e);
 		}
 	}
+
+	/**
+	 * Matches all of the subscriptions in one pass, so that the payload's search parameters are only
+	 * extracted once no matter how many subscriptions are being tested
+	 */
+	@Override
+	public List<InMemoryMatchResult> match(
+			List<CanonicalSubscription> theSubscriptions, ResourceModifiedMessage theMsg) {
+		if (theSubscriptions.size() == 1) {
+			return Collections.singletonList(match(theSubscriptions.get(0), theMsg));
+		}
+		try {
+			List<String> criteria = theSubscriptions.stream()
+					.map(CanonicalSubscription::getCriteriaString)
+					.collect(Collectors.toList());
+			return mySearchParamMatcher.matchAll(criteria, theMsg.getNewPayload(myContext), null);
+		} catch (Exception e) {
+			ourLog.error("Failure in in-memory matcher", e);
+			throw new InternalErrorException(
+					Msg.code(2778) + "Failure performing memory-match for resource ID[" + theMsg.getPayloadId(myContext)
+							+ "] for " + theSubscriptions.size() + " subscriptions: " + e.getMessage(),
+					e);
+		}
+	}
 }
@@ -20,9 +20,11 @@
 package ca.uhn.fhir.jpa.subscription.match.matcher.subscriber;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.interceptor.api.HookParams;
 import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
 import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.subscription.match.matcher.matching.ISubscriptionMatcher;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
@@ -30,8 +32,12 @@ import ca.uhn.fhir.jpa.subscription.match.registry.SubscriptionRegistry;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedJsonMessage;
 import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
+import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.subscription.api.IResourceModifiedMessagePersistenceSvc;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseReference;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.slf4j.Logger;
@@ -41,7 +47,10 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static ca.uhn.fhir.rest.server.messaging.BaseResourceMessage.OperationTypeEnum.DELETE;
@@ -69,6 +78,12 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	@Autowired
 	private IResourceModifiedMessagePersistenceSvc myResourceModifiedMessagePersistenceSvc;
 
+	@Autowired
+	private ISearchParamRegistry mySearchParamRegistry;
+
+	@Autowired
+	private ISearchParamExtractor mySearchParamExtractor;
+
 	/**
 	 * Constructor
 	 */
@@ -129,13 +144,36 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	private void doMatchActiveSubscriptionsAndDeliver(ResourceModifiedMessage theMsg) {
 		IIdType resourceId = theMsg.getPayloadId(myFhirContext);
 
-		Collection<ActiveSubscription> subscriptions = mySubscriptionRegistry.getAllNonTopicSubscriptions();
+		Collection<ActiveSubscription> subscriptions = getCandidateSubscriptions(theMsg, resourceId);
 
 		ourLog.trace("Testing {} subscriptions for applicability", subscriptions.size());
 		boolean anySubscriptionsMatchedResource = false;
 
+		// Criteria for all applicable search expression subscriptions are matched together so the
+		// matcher only needs to index the resource once
+		List<ActiveSubscription> applicableSubscriptions = new ArrayList<>();
+		List<CanonicalSubscription> subscriptionsToMatch = new ArrayList<>();
 		for (ActiveSubscription nextActiveSubscription : subscriptions) {
-			anySubscriptionsMatchedResource |= processSubscription(theMsg, resourceId, nextActiveSubscription);
+			if (isSubscriptionApplicable(theMsg, resourceId, nextActiveSubscription)) {
+				applicableSubscriptions.add(nextActiveSubscription);
+				if (isSearchExpression(nextActiveSubscription)) {
+					subscriptionsToMatch.add(nextActiveSubscription.getSubscription());
+				}
+			}
+		}
+
+		List<InMemoryMatchResult> matchResults = subscriptionsToMatch.isEmpty()
+				? Collections.emptyList()
+				: mySubscriptionMatcher.match(subscriptionsToMatch, theMsg);
+
+		int matchResultIndex = 0;
+		for (ActiveSubscription nextActiveSubscription : applicableSubscriptions) {
+			InMemoryMatchResult matchResult = null;
+			if (isSearchExpression(nextActiveSubscription)) {
+				matchResult = matchResults.get(matchResultIndex++);
+			}
+			anySubscriptionsMatchedResource |=
+					processSubscription(theMsg, resourceId, nextActiveSubscription, matchResult);
 		}
 
 		if (!anySubscriptionsMatchedResource) {
@@ -146,10 +184,79 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 	}
 
 	/**
-	 * Returns true if subscription matched, and processing completed successfully, and the message was sent to the delivery channel. False otherwise.
+	 * Narrows down the registered subscriptions to the ones that could possibly match the message, so that
+	 * we don't need to test every active subscription against every modified resource.
+	 */
+	private Collection<ActiveSubscription> getCandidateSubscriptions(
+			ResourceModifiedMessage theMsg, IIdType theResourceId) {
+		if (isNotBlank(theMsg.getSubscriptionId())) {
+			ActiveSubscription activeSubscription = mySubscriptionRegistry.get(theMsg.getSubscriptionId());
+			if (activeSubscription == null
+					|| activeSubscription.getSubscription().isTopicSubscription()) {
+				ourLog.debug("Subscription {} is not registered", theMsg.getSubscriptionId());
+				return Collections.emptyList();
+			}
+			return Collections.singletonList(activeSubscription);
+		}
+
+		if (theResourceId == null || theResourceId.getResourceType() == null) {
+			return mySubscriptionRegistry.getAllNonTopicSubscriptions();
+		}
+
+		String resourceType = theResourceId.getResourceType();
+		IBaseResource payload = theMsg.getNewPayload(myFhirContext);
+		return mySubscriptionRegistry.getNonTopicSubscriptionCandidates(
+				resourceType, paramName -> extractIndexableValues(payload, resourceType, paramName));
+	}
+
+	/**
+	 * Extracts the values of the given token or reference search parameter from the resource, for use
+	 * as keys against the subscription criteria index.
 	 *
+	 * @return The values in query token form, or <code>null</code> if they can't be reliably determined
 	 */
-	private boolean processSubscription(
+	@Nullable
+	private Collection<String> extractIndexableValues(
+			IBaseResource theResource, String theResourceType, String theParamName) {
+		if (theResource == null) {
+			return null;
+		}
+		RuntimeSearchParam searchParam = mySearchParamRegistry.getActiveSearchParam(theResourceType, theParamName);
+		if (searchParam == null) {
+			return null;
+		}
+
+		switch (searchParam.getParamType()) {
+			case TOKEN:
+				return mySearchParamExtractor.extractParamValuesAsStrings(searchParam, theResource);
+			case REFERENCE:
+				List<String> retVal = new ArrayList<>();
+				for (IBase nextValue : mySearchParamExtractor.extractValues(searchParam.getPath(), theResource)) {
+					// Only plain local references can be compared by ID. Anything else (canonicals,
+					// absolute URLs, contained or logical references) could still match, so give up.
+					if (!(nextValue instanceof IBaseReference)) {
+						return null;
+					}
+					IIdType referenceElement = ((IBaseReference) nextValue).getReferenceElement();
+					if (referenceElement == null
+							|| referenceElement.isLocal()
+							|| referenceElement.isAbsolute()
+							|| !referenceElement.hasResourceType()
+							|| !referenceElement.hasIdPart()) {
+						return null;
+					}
+					retVal.add(referenceElement.toUnqualifiedVersionless().getValue());
+				}
+				return retVal;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns true if the subscription should be tested against the message at all
+	 */
+	private boolean isSubscriptionApplicable(
 			ResourceModifiedMessage theMsg, IIdType theResourceId, ActiveSubscription theActiveSubscription) {
 
 		CanonicalSubscription subscription = theActiveSubscription.getSubscription();
@@ -166,7 +273,6 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 
 		if (isNotBlank(theMsg.getSubscriptionId())) {
 			if (!theMsg.getSubscriptionId().equals(nextSubscriptionId)) {
-				// TODO KHS we should use a hash to look it up instead of this full table scan
 				ourLog.debug(
 						"Ignoring subscription {} because it is not {}",
 						nextSubscriptionId,
@@ -186,9 +292,28 @@ public class SubscriptionMatchingSubscriber implements MessageHandler {
 			}
 		}
 
+		return true;
+	}
+
+	private static boolean isSearchExpression(ActiveSubscription theActiveSubscription) {
+		return theActiveSubscription.getCriteria().getType() == SubscriptionCriteriaParser.TypeEnum.SEARCH_EXPRESSION;
+	}
+
+	/**
+	 * Returns true if subscription matched, and processing completed successfully, and the message was sent to the delivery channel. False otherwise.
+	 *
+	 * @param theMatchResult The result of matching the subscription criteria against the message, or <code>null</code>
+	 *                       if the subscription doesn't have a search expression
+	 */
+	private boolean processSubscription(
+			ResourceModifiedMessage theMsg,
+			IIdType theResourceId,
+			ActiveSubscription theActiveSubscription,
+			@Nullable InMemoryMatchResult theMatchResult) {
+
 		InMemoryMatchResult matchResult;
-		if (theActiveSubscription.getCriteria().getType() == SubscriptionCriteriaParser.TypeEnum.SEARCH_EXPRESSION) {
-			matchResult = mySubscriptionMatcher.match(theActiveSubscription.getSubscription(), theMsg);
+		if (theMatchResult != null) {
+			matchResult = theMatchResult;
 			if (!matchResult.matched()) {
 				ourLog.trace(
 						"Subscription {} was not matched by resource {} {}",
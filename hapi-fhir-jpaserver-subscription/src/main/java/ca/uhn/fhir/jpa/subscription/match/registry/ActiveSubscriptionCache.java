@@ -26,57 +26,78 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+/**
+ * Holds the active subscriptions. Readers (i.e. the subscription matching threads) work against an
+ * immutable {@link Snapshot} which is replaced atomically whenever a subscription is added or removed,
+ * so lookups never take a lock. Writes are rare, so they are serialized and simply rebuild the snapshot.
+ */
 class ActiveSubscriptionCache {
 	private static final Logger ourLog = LoggerFactory.getLogger(ActiveSubscriptionCache.class);
 
-	private final Map<String, ActiveSubscription> myCache = new ConcurrentHashMap<>();
+	private final AtomicReference<Snapshot> mySnapshot = new AtomicReference<>(Snapshot.EMPTY);
+	private final SubscriptionCriteriaIndex myCriteriaIndex = new SubscriptionCriteriaIndex();
 
 	public ActiveSubscription get(String theIdPart) {
-		return myCache.get(theIdPart);
+		return mySnapshot.get().getById().get(theIdPart);
 	}
 
 	public Collection<ActiveSubscription> getAll() {
-		return Collections.unmodifiableCollection(myCache.values());
+		return mySnapshot.get().getById().values();
 	}
 
 	public int size() {
-		return myCache.size();
+		return mySnapshot.get().getById().size();
 	}
 
-	public void put(String theSubscriptionId, ActiveSubscription theActiveSubscription) {
-		myCache.put(theSubscriptionId, theActiveSubscription);
+	/**
+	 * Adds the subscription to the cache, or re-indexes it if it is already present (e.g. because its
+	 * criteria were updated in place)
+	 */
+	public synchronized void put(String theSubscriptionId, ActiveSubscription theActiveSubscription) {
+		Map<String, ActiveSubscription> byId =
+				new LinkedHashMap<>(mySnapshot.get().getById());
+		byId.put(theSubscriptionId, theActiveSubscription);
+		myCriteriaIndex.add(theActiveSubscription);
+		mySnapshot.set(new Snapshot(byId));
 	}
 
 	public synchronized ActiveSubscription remove(String theSubscriptionId) {
 		Validate.notBlank(theSubscriptionId);
 
-		ActiveSubscription activeSubscription = myCache.get(theSubscriptionId);
+		Snapshot snapshot = mySnapshot.get();
+		ActiveSubscription activeSubscription = snapshot.getById().get(theSubscriptionId);
 		if (activeSubscription == null) {
 			return null;
 		}
 
-		myCache.remove(theSubscriptionId);
+		Map<String, ActiveSubscription> byId = new LinkedHashMap<>(snapshot.getById());
+		byId.remove(theSubscriptionId);
+		myCriteriaIndex.remove(theSubscriptionId);
+		mySnapshot.set(new Snapshot(byId));
 		return activeSubscription;
 	}
 
 	List<String> markAllSubscriptionsNotInCollectionForDeletionAndReturnIdsToDelete(Collection<String> theAllIds) {
 		List<String> retval = new ArrayList<>();
-		for (String next : new ArrayList<>(myCache.keySet())) {
-			ActiveSubscription activeSubscription = myCache.get(next);
-			if (theAllIds.contains(next)) {
+		for (Map.Entry<String, ActiveSubscription> next :
+				mySnapshot.get().getById().entrySet()) {
+			ActiveSubscription activeSubscription = next.getValue();
+			if (theAllIds.contains(next.getKey())) {
 				// In case we got a false positive from a race condition on a previous sync, unset the flag.
 				activeSubscription.setFlagForDeletion(false);
 			} else {
 				if (activeSubscription.isFlagForDeletion()) {
-					ourLog.info("Unregistering Subscription/{}", next);
-					retval.add(next);
+					ourLog.info("Unregistering Subscription/{}", next.getKey());
+					retval.add(next.getKey());
 				} else {
 					activeSubscription.setFlagForDeletion(true);
 				}
@@ -92,15 +113,65 @@ class ActiveSubscriptionCache {
 	 */
 	public List<ActiveSubscription> getTopicSubscriptionsForTopic(String theTopic) {
 		assert !isBlank(theTopic);
-		return getAll().stream()
-				.filter(as -> as.getSubscription().isTopicSubscription())
-				.filter(as -> theTopic.equals(as.getSubscription().getTopic()))
-				.collect(Collectors.toList());
+		return mySnapshot.get().getTopicSubscriptionsByTopic().getOrDefault(theTopic, Collections.emptyList());
+	}
+
+	/**
+	 * Returns the non-topic subscriptions that could possibly match a resource of the given type. See
+	 * {@link SubscriptionCriteriaIndex#getCandidates(String, Function)} for the meaning of the value provider.
+	 */
+	public List<ActiveSubscription> getNonTopicSubscriptionCandidates(
+			String theResourceType, Function<String, Collection<String>> theValueProvider) {
+		return myCriteriaIndex.getCandidates(theResourceType, theValueProvider);
 	}
 
 	public List<ActiveSubscription> getAllNonTopicSubscriptions() {
-		return getAll().stream()
-				.filter(as -> !as.getSubscription().isTopicSubscription())
-				.collect(Collectors.toList());
+		return mySnapshot.get().getNonTopicSubscriptions();
+	}
+
+	/**
+	 * An immutable view of the active subscriptions, with the groupings needed by the matchers
+	 * computed up front
+	 */
+	private static class Snapshot {
+		static final Snapshot EMPTY = new Snapshot(Collections.emptyMap());
+
+		private final Map<String, ActiveSubscription> myById;
+		private final List<ActiveSubscription> myNonTopicSubscriptions;
+		private final Map<String, List<ActiveSubscription>> myTopicSubscriptionsByTopic;
+
+		Snapshot(Map<String, ActiveSubscription> theById) {
+			List<ActiveSubscription> nonTopicSubscriptions = new ArrayList<>();
+			Map<String, List<ActiveSubscription>> topicSubscriptionsByTopic = new HashMap<>();
+			for (ActiveSubscription next : theById.values()) {
+				if (next.getSubscription().isTopicSubscription()) {
+					String topic = next.getSubscription().getTopic();
+					if (topic != null) {
+						topicSubscriptionsByTopic
+								.computeIfAbsent(topic, t -> new ArrayList<>())
+								.add(next);
+					}
+				} else {
+					nonTopicSubscriptions.add(next);
+				}
+			}
+			topicSubscriptionsByTopic.replaceAll((topic, list) -> Collections.unmodifiableList(list));
+
+			myById = Collections.unmodifiableMap(theById);
+			myNonTopicSubscriptions = Collections.unmodifiableList(nonTopicSubscriptions);
+			myTopicSubscriptionsByTopic = Collections.unmodifiableMap(topicSubscriptionsByTopic);
+		}
+
+		Map<String, ActiveSubscription> getById() {
+			return myById;
+		}
+
+		List<ActiveSubscription> getNonTopicSubscriptions() {
+			return myNonTopicSubscriptions;
+		}
+
+		Map<String, List<ActiveSubscription>> getTopicSubscriptionsByTopic() {
+			return myTopicSubscriptionsByTopic;
+		}
 	}
 }
@@ -0,0 +1,304 @@
+/*-
+ * #%L
+ * HAPI FHIR Subscription Server
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+import ca.uhn.fhir.jpa.subscription.match.matcher.subscriber.SubscriptionCriteriaParser;
+import ca.uhn.fhir.util.UrlUtil;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Inverted index over the active (non-topic) subscriptions, used to narrow down the set of subscriptions
+ * that need to be tested against a modified resource.
+ * <p>
+ * Subscriptions are indexed by the resource type(s) their criteria apply to. In addition, search expression
+ * criteria containing a simple single-valued parameter (e.g. <code>Observation?code=http://loinc.org|1234-5</code>
+ * or <code>Observation?subject=Patient/123</code>) are keyed by that value, so they are only returned as
+ * candidates for resources carrying a matching value. Anything that can't be keyed safely (modifiers, chains,
+ * OR lists, escaped values, etc.) is indexed by resource type only.
+ * </p>
+ * <p>
+ * Candidate lookups never take a lock, only index maintenance is synchronized.
+ * </p>
+ */
+class SubscriptionCriteriaIndex {
+
+	private final Map<String, ActiveSubscription> myAllTypeSubscriptions = new ConcurrentHashMap<>();
+	private final Map<String, Map<String, ActiveSubscription>> myUnkeyedSubscriptionsByResourceType =
+			new ConcurrentHashMap<>();
+	private final Map<String, Map<String, Map<String, ActiveSubscription>>> myKeyedSubscriptionsByResourceType =
+			new ConcurrentHashMap<>();
+	private final Map<String, Map<String, ActiveSubscription>> myKeyedSubscriptions = new ConcurrentHashMap<>();
+	private final Map<String, IndexEntry> myEntries = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds the given subscription to the index, replacing any previous entry with the same ID
+	 */
+	synchronized void add(ActiveSubscription theActiveSubscription) {
+		remove(theActiveSubscription.getId());
+
+		if (theActiveSubscription.getSubscription().isTopicSubscription()) {
+			return;
+		}
+		SubscriptionCriteriaParser.SubscriptionCriteria criteria = theActiveSubscription.getCriteria();
+		if (criteria == null) {
+			return;
+		}
+
+		IndexEntry entry = toIndexEntry(criteria);
+		String id = theActiveSubscription.getId();
+		if (entry.isAllTypes()) {
+			myAllTypeSubscriptions.put(id, theActiveSubscription);
+		} else if (entry.getParamName() == null) {
+			for (String nextResourceType : entry.getResourceTypes()) {
+				myUnkeyedSubscriptionsByResourceType
+						.computeIfAbsent(nextResourceType, t -> new ConcurrentHashMap<>())
+						.put(id, theActiveSubscription);
+			}
+		} else {
+			String resourceType = entry.getResourceTypes().iterator().next();
+			myKeyedSubscriptions
+					.computeIfAbsent(
+							toKey(resourceType, entry.getParamName(), entry.getValueKey()),
+							t -> new ConcurrentHashMap<>())
+					.put(id, theActiveSubscription);
+			myKeyedSubscriptionsByResourceType
+					.computeIfAbsent(resourceType, t -> new ConcurrentHashMap<>())
+					.computeIfAbsent(entry.getParamName(), t -> new ConcurrentHashMap<>())
+					.put(id, theActiveSubscription);
+		}
+		myEntries.put(id, entry);
+	}
+
+	synchronized void remove(String theSubscriptionId) {
+		IndexEntry entry = myEntries.remove(theSubscriptionId);
+		if (entry == null) {
+			return;
+		}
+
+		if (entry.isAllTypes()) {
+			myAllTypeSubscriptions.remove(theSubscriptionId);
+		} else if (entry.getParamName() == null) {
+			for (String nextResourceType : entry.getResourceTypes()) {
+				removeFromMap(myUnkeyedSubscriptionsByResourceType, nextResourceType, theSubscriptionId);
+			}
+		} else {
+			String resourceType = entry.getResourceTypes().iterator().next();
+			removeFromMap(
+					myKeyedSubscriptions,
+					toKey(resourceType, entry.getParamName(), entry.getValueKey()),
+					theSubscriptionId);
+			Map<String, Map<String, ActiveSubscription>> params = myKeyedSubscriptionsByResourceType.get(resourceType);
+			if (params != null) {
+				removeFromMap(params, entry.getParamName(), theSubscriptionId);
+				if (params.isEmpty()) {
+					myKeyedSubscriptionsByResourceType.remove(resourceType);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns every indexed subscription that could possibly match a resource of the given type.
+	 *
+	 * @param theResourceType  The resource type
+	 * @param theValueProvider Given the name of a search parameter, returns the values of that parameter
+	 *                         (in query token form, e.g. <code>system|code</code> or <code>Patient/123</code>)
+	 *                         found on the resource, or <code>null</code> if the values can't be determined,
+	 *                         in which case every subscription keyed on that parameter is returned
+	 */
+	List<ActiveSubscription> getCandidates(
+			String theResourceType, Function<String, Collection<String>> theValueProvider) {
+		List<ActiveSubscription> retVal = new ArrayList<>(myAllTypeSubscriptions.values());
+
+		Map<String, ActiveSubscription> unkeyed = myUnkeyedSubscriptionsByResourceType.get(theResourceType);
+		if (unkeyed != null) {
+			retVal.addAll(unkeyed.values());
+		}
+
+		Map<String, Map<String, ActiveSubscription>> keyed = myKeyedSubscriptionsByResourceType.get(theResourceType);
+		if (keyed != null) {
+			for (Map.Entry<String, Map<String, ActiveSubscription>> nextParam : keyed.entrySet()) {
+				Collection<String> values = theValueProvider.apply(nextParam.getKey());
+				if (values == null) {
+					retVal.addAll(nextParam.getValue().values());
+					continue;
+				}
+
+				Set<String> seen = values.size() > 1 ? new HashSet<>() : null;
+				for (String nextValue : values) {
+					String valueKey = normalizeValue(nextValue);
+					if (valueKey == null || (seen != null && !seen.add(valueKey))) {
+						continue;
+					}
+					Map<String, ActiveSubscription> matches =
+							myKeyedSubscriptions.get(toKey(theResourceType, nextParam.getKey(), valueKey));
+					if (matches != null) {
+						retVal.addAll(matches.values());
+					}
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	private static void removeFromMap(
+			Map<String, Map<String, ActiveSubscription>> theMap, String theKey, String theSubscriptionId) {
+		Map<String, ActiveSubscription> subscriptions = theMap.get(theKey);
+		if (subscriptions != null) {
+			subscriptions.remove(theSubscriptionId);
+			if (subscriptions.isEmpty()) {
+				theMap.remove(theKey);
+			}
+		}
+	}
+
+	private static String toKey(String theResourceType, String theParamName, String theValueKey) {
+		return theResourceType + '?' + theParamName + '=' + theValueKey;
+	}
+
+	static IndexEntry toIndexEntry(SubscriptionCriteriaParser.SubscriptionCriteria theCriteria) {
+		switch (theCriteria.getType()) {
+			case STARTYPE_EXPRESSION:
+				return new IndexEntry(null, null, null);
+			case MULTITYPE_EXPRESSION:
+				return new IndexEntry(theCriteria.getApplicableResourceTypes(), null, null);
+			case SEARCH_EXPRESSION:
+			default:
+				Pair<String, String> keyedParam = findKeyableParam(theCriteria.getCriteria());
+				if (keyedParam == null) {
+					return new IndexEntry(theCriteria.getApplicableResourceTypes(), null, null);
+				}
+				return new IndexEntry(
+						theCriteria.getApplicableResourceTypes(), keyedParam.getLeft(), keyedParam.getRight());
+		}
+	}
+
+	/**
+	 * Finds a parameter in the criteria which every matching resource must carry exactly. The
+	 * first suitable parameter (by name) is used.
+	 *
+	 * @return A pair containing the parameter name and the normalized value key, or <code>null</code>
+	 */
+	@Nullable
+	static Pair<String, String> findKeyableParam(@Nullable String theCriteria) {
+		if (theCriteria == null) {
+			return null;
+		}
+		int questionMarkIdx = theCriteria.indexOf('?');
+		if (questionMarkIdx == -1) {
+			return null;
+		}
+
+		Map<String, String[]> params =
+				new TreeMap<>(UrlUtil.parseQueryString(theCriteria.substring(questionMarkIdx + 1)));
+		for (Map.Entry<String, String[]> nextParam : params.entrySet()) {
+			String paramName = nextParam.getKey();
+			if (isBlank(paramName)
+					|| paramName.startsWith("_")
+					|| paramName.indexOf(':') != -1
+					|| paramName.indexOf('.') != -1
+					|| nextParam.getValue().length != 1) {
+				continue;
+			}
+			String value = nextParam.getValue()[0];
+			if (isBlank(value)
+					|| value.indexOf(',') != -1
+					|| value.indexOf('\\') != -1
+					|| value.contains("/_history/")) {
+				continue;
+			}
+			String valueKey = normalizeValue(value);
+			if (valueKey != null) {
+				return Pair.of(paramName, valueKey);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reduces a token (<code>[system|]code</code>) or reference (<code>[[base/]Type/]id</code>) value to the
+	 * part that has to be equal for a resource value to match a criteria value. Token codes match
+	 * case-insensitively so the key is lowercased.
+	 */
+	@Nullable
+	static String normalizeValue(@Nullable String theValue) {
+		if (theValue == null) {
+			return null;
+		}
+		String retVal = theValue;
+		int barIdx = retVal.indexOf('|');
+		if (barIdx != -1) {
+			retVal = retVal.substring(barIdx + 1);
+		}
+		int slashIdx = retVal.lastIndexOf('/');
+		if (slashIdx != -1) {
+			retVal = retVal.substring(slashIdx + 1);
+		}
+		if (isBlank(retVal)) {
+			return null;
+		}
+		return retVal.toLowerCase(Locale.ROOT);
+	}
+
+	static class IndexEntry {
+		private final Set<String> myResourceTypes;
+		private final String myParamName;
+		private final String myValueKey;
+
+		IndexEntry(
+				@Nullable Set<String> theResourceTypes, @Nullable String theParamName, @Nullable String theValueKey) {
+			myResourceTypes = theResourceTypes;
+			myParamName = theParamName;
+			myValueKey = theValueKey;
+		}
+
+		boolean isAllTypes() {
+			return myResourceTypes == null;
+		}
+
+		Set<String> getResourceTypes() {
+			return myResourceTypes != null ? myResourceTypes : Collections.emptySet();
+		}
+
+		String getParamName() {
+			return myParamName;
+		}
+
+		String getValueKey() {
+			return myValueKey;
+		}
+	}
+}
@@ -40,6 +40,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Cache of active subscriptions.  When a new subscription is added to the cache, a new Spring Channel is created
@@ -69,15 +70,15 @@ public class SubscriptionRegistry {
 		super();
 	}
 
-	public synchronized ActiveSubscription get(String theIdPart) {
+	public ActiveSubscription get(String theIdPart) {
 		return myActiveSubscriptionCache.get(theIdPart);
 	}
 
-	public synchronized Collection<ActiveSubscription> getAll() {
+	public Collection<ActiveSubscription> getAll() {
 		return myActiveSubscriptionCache.getAll();
 	}
 
-	public synchronized List<ActiveSubscription> getTopicSubscriptionsByTopic(String theTopic) {
+	public List<ActiveSubscription> getTopicSubscriptionsByTopic(String theTopic) {
 		return myActiveSubscriptionCache.getTopicSubscriptionsForTopic(theTopic);
 	}
 
@@ -214,6 +215,8 @@ public class SubscriptionRegistry {
 		Validate.notNull(activeSubscription);
 		CanonicalSubscription canonicalized = mySubscriptionCanonicalizer.canonicalize(theSubscription);
 		activeSubscription.setSubscription(canonicalized);
+		// the criteria may have changed, so re-index
+		myActiveSubscriptionCache.put(theId.getIdPart(), activeSubscription);
 
 		// Interceptor call: SUBSCRIPTION_AFTER_ACTIVE_SUBSCRIPTION_REGISTERED
 		HookParams params = new HookParams().add(CanonicalSubscription.class, canonicalized);
@@ -229,7 +232,23 @@ public class SubscriptionRegistry {
 		return myActiveSubscriptionCache.size();
 	}
 
-	public synchronized List<ActiveSubscription> getAllNonTopicSubscriptions() {
+	public List<ActiveSubscription> getAllNonTopicSubscriptions() {
 		return myActiveSubscriptionCache.getAllNonTopicSubscriptions();
 	}
+
+	/**
+	 * Returns the non-topic subscriptions which could possibly match a resource of the given type, using
+	 * an index on the subscription criteria instead of scanning every registered subscription. Callers must
+	 * still test each returned subscription against the resource.
+	 *
+	 * @param theResourceType  The type of the modified resource
+	 * @param theValueProvider Given the name of a search parameter, returns the values of that parameter
+	 *                         on the modified resource in query token form (e.g. <code>system|code</code> or
+	 *                         <code>Patient/123</code>), or <code>null</code> if they can't be determined
+	 * @since 7.6.0
+	 */
+	public List<ActiveSubscription> getNonTopicSubscriptionCandidates(
+			String theResourceType, Function<String, Collection<String>> theValueProvider) {
+		return myActiveSubscriptionCache.getNonTopicSubscriptionCandidates(theResourceType, theValueProvider);
+	}
 }
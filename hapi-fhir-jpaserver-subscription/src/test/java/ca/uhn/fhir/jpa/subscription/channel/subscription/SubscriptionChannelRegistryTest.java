@@ -5,10 +5,13 @@ import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
 import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.subscription.match.deliver.resthook.SubscriptionDeliveringRestHookSubscriber;
 import ca.uhn.fhir.jpa.subscription.match.registry.ActiveSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
 import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscriptionChannelType;
 import ca.uhn.fhir.jpa.subscription.model.ChannelRetryConfiguration;
+import ca.uhn.fhir.util.HapiExtensions;
+import org.hl7.fhir.r4.model.IdType;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -18,6 +21,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -25,6 +30,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -41,7 +47,14 @@ public class SubscriptionChannelRegistryTest {
 	private SubscriptionChannelRegistry mySubscriptionChannelRegistry;
 
 	private ActiveSubscription createActiveSubscription(String theChannelName, int theRetryCount) {
+		return createActiveSubscription(theChannelName, theRetryCount, null);
+	}
+
+	private ActiveSubscription createActiveSubscription(String theChannelName, int theRetryCount, String theSubscriptionId) {
 		CanonicalSubscription subscription = new CanonicalSubscription();
+		if (theSubscriptionId != null) {
+			subscription.setIdElement(new IdType(theSubscriptionId));
+		}
 		subscription.setChannelType(CanonicalSubscriptionChannelType.RESTHOOK);
 		ChannelRetryConfiguration configuration = new ChannelRetryConfiguration();
 		configuration.setRetryCount(theRetryCount);
@@ -100,6 +113,72 @@ public class SubscriptionChannelRegistryTest {
 		verifySettingsHaveRetryConfig(producerCaptor.getValue(), retryCount);
 	}
 
+	@Test
+	public void add_batchedRestHookSubscription_createsChannelsWithOneConsumerPerBatchEntry() {
+		ActiveSubscription activeSubscription = createActiveSubscription("test", 5);
+		activeSubscription.getSubscription().setChannelExtensions(Map.of(
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE, List.of("5")));
+
+		when(mySubscriptionChannelFactory.newDeliveryReceivingChannel(anyString(), any(ChannelConsumerSettings.class)))
+			.thenReturn(mock(IChannelReceiver.class));
+		when(mySubscriptionChannelFactory.newDeliverySendingChannel(anyString(), any(ChannelProducerSettings.class)))
+			.thenReturn(mock(IChannelProducer.class));
+
+		mySubscriptionChannelRegistry.add(activeSubscription);
+
+		ArgumentCaptor<ChannelConsumerSettings> consumerCaptor = ArgumentCaptor.forClass(ChannelConsumerSettings.class);
+		verify(mySubscriptionChannelFactory).newDeliveryReceivingChannel(anyString(), consumerCaptor.capture());
+		assertEquals(5, consumerCaptor.getValue().getConcurrentConsumers());
+
+		ArgumentCaptor<ChannelProducerSettings> producerCaptor = ArgumentCaptor.forClass(ChannelProducerSettings.class);
+		verify(mySubscriptionChannelFactory).newDeliverySendingChannel(anyString(), producerCaptor.capture());
+		assertEquals(5, producerCaptor.getValue().getConcurrentConsumers());
+	}
+
+	@Test
+	public void add_batchedRestHookSubscriptionWithLargeBatch_limitsConcurrentConsumers() {
+		ActiveSubscription activeSubscription = createActiveSubscription("test", 5);
+		activeSubscription.getSubscription().setChannelExtensions(Map.of(
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE, List.of("100")));
+
+		when(mySubscriptionChannelFactory.newDeliveryReceivingChannel(anyString(), any(ChannelConsumerSettings.class)))
+			.thenReturn(mock(IChannelReceiver.class));
+		when(mySubscriptionChannelFactory.newDeliverySendingChannel(anyString(), any(ChannelProducerSettings.class)))
+			.thenReturn(mock(IChannelProducer.class));
+
+		mySubscriptionChannelRegistry.add(activeSubscription);
+
+		ArgumentCaptor<ChannelConsumerSettings> consumerCaptor = ArgumentCaptor.forClass(ChannelConsumerSettings.class);
+		verify(mySubscriptionChannelFactory).newDeliveryReceivingChannel(anyString(), consumerCaptor.capture());
+		assertEquals(SubscriptionDeliveringRestHookSubscriber.BATCH_CONCURRENT_CONSUMERS_LIMIT, consumerCaptor.getValue().getConcurrentConsumers());
+	}
+
+	@Test
+	public void remove_restHookSubscription_discardsDeliveryBatcher() {
+		ActiveSubscription activeSubscription = createActiveSubscription("test", 5, "Subscription/123");
+		ActiveSubscription otherSubscription = createActiveSubscription("test", 5, "Subscription/456");
+
+		SubscriptionDeliveringRestHookSubscriber handler = mock(SubscriptionDeliveringRestHookSubscriber.class);
+		when(mySubscriptionChannelFactory.newDeliveryReceivingChannel(anyString(), any(ChannelConsumerSettings.class)))
+			.thenReturn(mock(IChannelReceiver.class));
+		when(mySubscriptionChannelFactory.newDeliverySendingChannel(anyString(), any(ChannelProducerSettings.class)))
+			.thenReturn(mock(IChannelProducer.class));
+		when(mySubscriptionDeliveryHandlerFactory.createDeliveryHandler(any(CanonicalSubscriptionChannelType.class)))
+			.thenReturn(Optional.of(handler));
+
+		mySubscriptionChannelRegistry.add(activeSubscription);
+		mySubscriptionChannelRegistry.add(otherSubscription);
+
+		// The channel is still used by the other subscription
+		mySubscriptionChannelRegistry.remove(activeSubscription);
+		verify(handler).removeSubscriptionBatcher("123");
+		verify(handler, never()).removeSubscriptionBatcher("456");
+		assertNotNull(mySubscriptionChannelRegistry.getDeliveryReceiverChannel("test"));
+
+		mySubscriptionChannelRegistry.remove(otherSubscription);
+		verify(handler).removeSubscriptionBatcher("456");
+	}
+
 	/**
 	 * Verifies the retry configs for the channel
 	 * @param theSettings
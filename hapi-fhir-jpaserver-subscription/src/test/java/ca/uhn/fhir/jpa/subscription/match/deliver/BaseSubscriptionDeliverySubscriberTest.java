@@ -29,8 +29,10 @@ import ca.uhn.fhir.rest.client.api.IRestfulClientFactory;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.subscription.api.IResourceModifiedMessagePersistenceSvc;
+import ca.uhn.fhir.util.HapiExtensions;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.annotation.Nonnull;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Patient;
@@ -52,8 +54,14 @@ import org.springframework.messaging.support.GenericMessage;
 
 import java.net.URISyntaxException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -64,6 +72,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -164,6 +173,73 @@ public class BaseSubscriptionDeliverySubscriberTest {
 		verify(myGenericClient, times(1)).update();
 	}
 
+	@Test
+	public void testRestHookDeliveryBatched() throws Exception {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+
+		CanonicalSubscription subscription = generateSubscription();
+		subscription.setChannelExtensions(Map.of(
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE, List.of("3"),
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS, List.of("60000")));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				Patient patient = generatePatient();
+				patient.setId("Patient/" + i);
+				ResourceDeliveryMessage payload = new ResourceDeliveryMessage();
+				payload.setSubscription(subscription);
+				payload.setPayload(myCtx, patient, EncodingEnum.JSON);
+				payload.setOperationType(ResourceModifiedMessage.OperationTypeEnum.UPDATE);
+				futures.add(executor.submit(() -> mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(payload))));
+			}
+			for (Future<?> next : futures) {
+				next.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// All three notifications are delivered in a single history bundle
+		ArgumentCaptor<IBaseBundle> bundleCaptor = ArgumentCaptor.forClass(IBaseBundle.class);
+		verify(myGenericClient.transaction(), times(1)).withBundle(bundleCaptor.capture());
+		verify(myGenericClient, never()).update();
+		Bundle bundle = (Bundle) bundleCaptor.getValue();
+		assertEquals(Bundle.BundleType.HISTORY, bundle.getType());
+		assertThat(bundle.getEntry())
+			.extracting(t -> t.getRequest().getUrl())
+			.containsExactlyInAnyOrder("Patient/0", "Patient/1", "Patient/2");
+		assertThat(bundle.getEntry()).allMatch(t -> t.getRequest().getMethod() == Bundle.HTTPVerb.PUT);
+	}
+
+	@Test
+	public void testRestHookDeliveryBatched_SingleNotificationIsStillDeliveredAsBundle() {
+		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
+
+		CanonicalSubscription subscription = generateSubscription();
+		subscription.setChannelExtensions(Map.of(
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_MAX_SIZE, List.of("3"),
+			HapiExtensions.EXT_SUBSCRIPTION_RESTHOOK_BATCH_WINDOW_MILLIS, List.of("0")));
+
+		Patient patient = generatePatient();
+		patient.setId("Patient/0");
+		ResourceDeliveryMessage payload = new ResourceDeliveryMessage();
+		payload.setSubscription(subscription);
+		payload.setPayload(myCtx, patient, EncodingEnum.JSON);
+		payload.setOperationType(ResourceModifiedMessage.OperationTypeEnum.CREATE);
+		mySubscriber.handleMessage(new ResourceDeliveryJsonMessage(payload));
+
+		ArgumentCaptor<IBaseBundle> bundleCaptor = ArgumentCaptor.forClass(IBaseBundle.class);
+		verify(myGenericClient.transaction(), times(1)).withBundle(bundleCaptor.capture());
+		verify(myGenericClient, never()).update();
+		Bundle bundle = (Bundle) bundleCaptor.getValue();
+		assertEquals(Bundle.BundleType.HISTORY, bundle.getType());
+		assertThat(bundle.getEntry())
+			.extracting(t -> t.getRequest().getUrl())
+			.containsExactly("Patient/0");
+	}
+
 	@Test
 	public void testRestHookDeliveryFails_ShouldRollBack() {
 		when(myInterceptorBroadcaster.callHooks(any(), any())).thenReturn(true);
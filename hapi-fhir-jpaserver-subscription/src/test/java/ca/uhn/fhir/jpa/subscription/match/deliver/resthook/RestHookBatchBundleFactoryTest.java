@@ -0,0 +1,152 @@
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.subscription.model.ResourceDeliveryMessage;
+import ca.uhn.fhir.jpa.subscription.model.ResourceModifiedMessage;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r5.model.SubscriptionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RestHookBatchBundleFactoryTest {
+
+	private final FhirContext myCtx = FhirContext.forR4Cached();
+
+	@Test
+	public void testBuildHistoryBundle() {
+		Patient patient = new Patient();
+		patient.setId("Patient/1/_history/2");
+		patient.setActive(true);
+
+		ResourceDeliveryMessage create = newMessage(ResourceModifiedMessage.OperationTypeEnum.CREATE, patient);
+		ResourceDeliveryMessage delete = newMessage(ResourceModifiedMessage.OperationTypeEnum.DELETE, newPatient("Patient/2/_history/3"));
+
+		RestHookBatchBundleFactory svc = new RestHookBatchBundleFactory(myCtx);
+		Bundle bundle = (Bundle) svc.buildHistoryBundle(List.of(
+			new SubscriptionDeliveringRestHookSubscriber.PendingDelivery(create, patient),
+			new SubscriptionDeliveringRestHookSubscriber.PendingDelivery(delete, null)));
+
+		assertEquals(Bundle.BundleType.HISTORY, bundle.getType());
+		assertThat(bundle.getEntry()).hasSize(2);
+		assertEquals(Bundle.HTTPVerb.PUT, bundle.getEntry().get(0).getRequest().getMethod());
+		assertEquals("Patient/1", bundle.getEntry().get(0).getRequest().getUrl());
+		assertEquals("201 Created", bundle.getEntry().get(0).getResponse().getStatus());
+		assertEquals(patient, bundle.getEntry().get(0).getResource());
+		assertEquals(Bundle.HTTPVerb.DELETE, bundle.getEntry().get(1).getRequest().getMethod());
+		assertEquals("Patient/2", bundle.getEntry().get(1).getRequest().getUrl());
+		assertNull(bundle.getEntry().get(1).getResource());
+	}
+
+	@Test
+	public void testBuildHistoryBundle_NothingToDeliver() {
+		ResourceDeliveryMessage update = newMessage(ResourceModifiedMessage.OperationTypeEnum.UPDATE, newPatient("Patient/1"));
+
+		RestHookBatchBundleFactory svc = new RestHookBatchBundleFactory(myCtx);
+		assertNull(svc.buildHistoryBundle(List.of(new SubscriptionDeliveringRestHookSubscriber.PendingDelivery(update, null))));
+	}
+
+	@Test
+	public void testMergeNotificationBundles_R5() {
+		FhirContext ctx = FhirContext.forR5Cached();
+		List<org.hl7.fhir.r5.model.Bundle> bundles = List.of(newR5NotificationBundle(1), newR5NotificationBundle(2));
+
+		RestHookBatchBundleFactory svc = new RestHookBatchBundleFactory(ctx);
+		org.hl7.fhir.r5.model.Bundle merged = (org.hl7.fhir.r5.model.Bundle) svc.mergeNotificationBundles(List.copyOf(bundles));
+
+		assertThat(merged.getEntry()).hasSize(3);
+		SubscriptionStatus status = (SubscriptionStatus) merged.getEntry().get(0).getResource();
+		assertThat(status.getNotificationEvent()).extracting(t -> t.getEventNumber()).containsExactly(1L, 2L);
+		assertEquals(2L, status.getEventsSinceSubscriptionStart());
+		assertEquals("Patient/1", merged.getEntry().get(1).getResource().getIdElement().getValue());
+		assertEquals("Patient/2", merged.getEntry().get(2).getResource().getIdElement().getValue());
+	}
+
+	@Test
+	public void testMergeNotificationBundles_R4() {
+		List<Bundle> bundles = List.of(newR4NotificationBundle(1), newR4NotificationBundle(2));
+
+		RestHookBatchBundleFactory svc = new RestHookBatchBundleFactory(myCtx);
+		Bundle merged = (Bundle) svc.mergeNotificationBundles(List.copyOf(bundles));
+
+		assertThat(merged.getEntry()).hasSize(3);
+		Parameters status = (Parameters) merged.getEntry().get(0).getResource();
+		assertThat(status.getParameters("notification-event")).hasSize(2);
+		assertEquals("2", status.getParameter("events-since-subscription-start").getValue().primitiveValue());
+	}
+
+	/**
+	 * If the batch fails, each message is delivered again with its own payload, so merging
+	 * must not leave anything from the other messages in it
+	 */
+	@Test
+	public void testMergeNotificationBundles_PayloadsUnchanged() {
+		FhirContext ctx = FhirContext.forR5Cached();
+		org.hl7.fhir.r5.model.Bundle first = newR5NotificationBundle(1);
+		org.hl7.fhir.r5.model.Bundle second = newR5NotificationBundle(2);
+		String firstEncoded = ctx.newJsonParser().encodeResourceToString(first);
+		String secondEncoded = ctx.newJsonParser().encodeResourceToString(second);
+
+		RestHookBatchBundleFactory svc = new RestHookBatchBundleFactory(ctx);
+		org.hl7.fhir.r5.model.Bundle merged = (org.hl7.fhir.r5.model.Bundle) svc.mergeNotificationBundles(List.of(first, second));
+		assertThat(merged.getEntry()).hasSize(3);
+
+		assertEquals(firstEncoded, ctx.newJsonParser().encodeResourceToString(first));
+		assertEquals(secondEncoded, ctx.newJsonParser().encodeResourceToString(second));
+		assertThat(first.getEntry()).hasSize(2);
+		assertThat(((SubscriptionStatus) first.getEntry().get(0).getResource()).getNotificationEvent()).hasSize(1);
+
+		// Nothing in the merged bundle is shared with the payloads
+		assertNotSame(first, merged);
+		assertNotSame(second.getEntry().get(1), merged.getEntry().get(2));
+		assertNotSame(second.getEntry().get(1).getResource(), merged.getEntry().get(2).getResource());
+	}
+
+	private ResourceDeliveryMessage newMessage(ResourceModifiedMessage.OperationTypeEnum theOperationType, Patient thePatient) {
+		ResourceDeliveryMessage retVal = new ResourceDeliveryMessage();
+		retVal.setPayload(myCtx, thePatient, EncodingEnum.JSON);
+		retVal.setOperationType(theOperationType);
+		return retVal;
+	}
+
+	private static org.hl7.fhir.r5.model.Bundle newR5NotificationBundle(int theEventNumber) {
+		SubscriptionStatus status = new SubscriptionStatus();
+		status.setEventsSinceSubscriptionStart(theEventNumber);
+		status.addNotificationEvent().setEventNumber(theEventNumber);
+
+		org.hl7.fhir.r5.model.Bundle retVal = new org.hl7.fhir.r5.model.Bundle();
+		retVal.setType(org.hl7.fhir.r5.model.Bundle.BundleType.SUBSCRIPTIONNOTIFICATION);
+		retVal.addEntry().setResource(status);
+		org.hl7.fhir.r5.model.Patient patient = new org.hl7.fhir.r5.model.Patient();
+		patient.setId("Patient/" + theEventNumber);
+		retVal.addEntry().setResource(patient);
+		return retVal;
+	}
+
+	private static Patient newPatient(String theId) {
+		Patient retVal = new Patient();
+		retVal.setId(theId);
+		return retVal;
+	}
+
+	private static Bundle newR4NotificationBundle(int theEventNumber) {
+		Parameters status = new Parameters();
+		status.addParameter("events-since-subscription-start", Integer.toString(theEventNumber));
+		status.addParameter().setName("notification-event").addPart().setName("event-number").setValue(new StringType(Integer.toString(theEventNumber)));
+
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.HISTORY);
+		retVal.addEntry().setResource(status);
+		retVal.addEntry().setResource(newPatient("Patient/" + theEventNumber));
+		return retVal;
+	}
+}
@@ -0,0 +1,117 @@
+package ca.uhn.fhir.jpa.subscription.match.deliver.resthook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RestHookDeliveryBatcherTest {
+
+	private final RestHookDeliveryBatcher<String> mySvc = new RestHookDeliveryBatcher<>();
+	private final List<List<String>> myDeliveredBatches = new CopyOnWriteArrayList<>();
+	private final ExecutorService myExecutor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	public void after() {
+		myExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testBatchIsDeliveredWhenFull() throws Exception {
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String item = "item" + i;
+			futures.add(myExecutor.submit(() -> mySvc.deliver(item, 4, 60000, t -> myDeliveredBatches.add(new ArrayList<>(t)))));
+		}
+		for (Future<?> next : futures) {
+			next.get(60, TimeUnit.SECONDS);
+		}
+
+		assertEquals(1, myDeliveredBatches.size());
+		assertThat(myDeliveredBatches.get(0)).containsExactlyInAnyOrder("item0", "item1", "item2", "item3");
+	}
+
+	@Test
+	public void testBatchIsDeliveredWhenWindowElapses() {
+		mySvc.deliver("item0", 10, 10, t -> myDeliveredBatches.add(new ArrayList<>(t)));
+		mySvc.deliver("item1", 10, 10, t -> myDeliveredBatches.add(new ArrayList<>(t)));
+
+		assertThat(myDeliveredBatches).containsExactly(List.of("item0"), List.of("item1"));
+	}
+
+	@Test
+	public void testBatchesAreDeliveredInTheOrderTheyWereOpened() throws Exception {
+		CountDownLatch firstDeliveryStarted = new CountDownLatch(1);
+		CountDownLatch releaseFirstDelivery = new CountDownLatch(1);
+		Consumer<List<String>> deliverer = t -> {
+			if (t.contains("item0")) {
+				firstDeliveryStarted.countDown();
+				try {
+					releaseFirstDelivery.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			myDeliveredBatches.add(new ArrayList<>(t));
+		};
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			String item = "item" + i;
+			Thread thread = new Thread(() -> mySvc.deliver(item, 1, 0, deliverer));
+			thread.start();
+			threads.add(thread);
+			if (i == 0) {
+				assertTrue(firstDeliveryStarted.await(60, TimeUnit.SECONDS));
+			} else {
+				// Wait for the batch to be opened and its thread to be waiting for its turn
+				await().until(() -> thread.getState() == Thread.State.WAITING);
+			}
+		}
+
+		releaseFirstDelivery.countDown();
+		for (Thread next : threads) {
+			next.join(60000);
+		}
+
+		assertThat(myDeliveredBatches).containsExactly(List.of("item0"), List.of("item1"), List.of("item2"));
+	}
+
+	@Test
+	public void testFailureIsReportedToEveryCaller() throws Exception {
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			String item = "item" + i;
+			futures.add(myExecutor.submit(() -> mySvc.deliver(item, 3, 60000, t -> {
+				myDeliveredBatches.add(Collections.unmodifiableList(t));
+				throw new IllegalStateException("FAILED");
+			})));
+		}
+
+		for (Future<?> next : futures) {
+			ExecutionException e = assertThrows(ExecutionException.class, () -> next.get(60, TimeUnit.SECONDS));
+			assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("FAILED");
+		}
+		assertEquals(1, myDeliveredBatches.size());
+
+		// The next delivery starts a new batch
+		mySvc.deliver("item3", 3, 0, t -> myDeliveredBatches.add(new ArrayList<>(t)));
+		assertThat(myDeliveredBatches.get(1)).containsExactly("item3");
+	}
+}
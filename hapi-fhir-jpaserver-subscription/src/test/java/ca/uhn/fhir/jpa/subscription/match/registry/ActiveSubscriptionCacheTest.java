@@ -6,6 +6,7 @@ import jakarta.annotation.Nonnull;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -138,4 +139,54 @@ public class ActiveSubscriptionCacheTest {
 		return activeSub2;
 	}
 
+
+	@Test
+	public void getAllNonTopicSubscriptions() {
+		ActiveSubscriptionCache activeSubscriptionCache = new ActiveSubscriptionCache();
+		activeSubscriptionCache.put(ID1, buildActiveSubscription(ID1));
+		activeSubscriptionCache.put(ID2, buildTopicSubscription(ID2, TEST_TOPIC_URL));
+		activeSubscriptionCache.put(ID3, buildActiveSubscription(ID3));
+
+		assertThat(activeSubscriptionCache.getAllNonTopicSubscriptions())
+			.extracting(ActiveSubscription::getId)
+			.containsExactly(ID1, ID3);
+
+		activeSubscriptionCache.remove(ID1);
+		assertThat(activeSubscriptionCache.getAllNonTopicSubscriptions())
+			.extracting(ActiveSubscription::getId)
+			.containsExactly(ID3);
+		assertThat(activeSubscriptionCache.getAll()).hasSize(2);
+	}
+
+	@Test
+	public void readsAreUnaffectedByLaterWrites() {
+		ActiveSubscriptionCache activeSubscriptionCache = new ActiveSubscriptionCache();
+		activeSubscriptionCache.put(ID1, buildTopicSubscription(ID1, TEST_TOPIC_URL));
+
+		Collection<ActiveSubscription> all = activeSubscriptionCache.getAll();
+		List<ActiveSubscription> topicSubscriptions = activeSubscriptionCache.getTopicSubscriptionsForTopic(TEST_TOPIC_URL);
+
+		activeSubscriptionCache.put(ID2, buildTopicSubscription(ID2, TEST_TOPIC_URL));
+		activeSubscriptionCache.remove(ID1);
+
+		// Previously returned collections are immutable snapshots
+		assertThat(all).extracting(ActiveSubscription::getId).containsExactly(ID1);
+		assertThat(topicSubscriptions).extracting(ActiveSubscription::getId).containsExactly(ID1);
+		assertThat(activeSubscriptionCache.getTopicSubscriptionsForTopic(TEST_TOPIC_URL))
+			.extracting(ActiveSubscription::getId)
+			.containsExactly(ID2);
+	}
+
+	@Test
+	public void putRegroupsSubscriptionWhenTopicChanges() {
+		ActiveSubscriptionCache activeSubscriptionCache = new ActiveSubscriptionCache();
+		ActiveSubscription activeSub1 = buildTopicSubscription(ID1, TEST_TOPIC_URL);
+		activeSubscriptionCache.put(ID1, activeSub1);
+
+		activeSub1.getSubscription().getTopicSubscription().setTopic(TEST_TOPIC_URL_OTHER);
+		activeSubscriptionCache.put(ID1, activeSub1);
+
+		assertThat(activeSubscriptionCache.getTopicSubscriptionsForTopic(TEST_TOPIC_URL)).isEmpty();
+		assertThat(activeSubscriptionCache.getTopicSubscriptionsForTopic(TEST_TOPIC_URL_OTHER)).containsExactly(activeSub1);
+	}
 }
@@ -0,0 +1,133 @@
+package ca.uhn.fhir.jpa.subscription.match.registry;
+
+import ca.uhn.fhir.jpa.subscription.model.CanonicalSubscription;
+import ca.uhn.fhir.model.primitive.IdDt;
+import jakarta.annotation.Nonnull;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SubscriptionCriteriaIndexTest {
+
+	private final SubscriptionCriteriaIndex mySvc = new SubscriptionCriteriaIndex();
+
+	@ParameterizedTest
+	@CsvSource(value = {
+		"Observation?code=http://loinc.org|1234-5     , code    , 1234-5",
+		"Observation?code=http://loinc.org%7C1234-5   , code    , 1234-5",
+		"Observation?code=ABC                         , code    , abc",
+		"Observation?subject=Patient/123              , subject , 123",
+		"Observation?subject=http://foo/Patient/123   , subject , 123",
+		"Observation?status=final&_format=xml         , status  , final",
+		"Observation?code:not=ABC&status=final        , status  , final",
+	})
+	public void testFindKeyableParam(String theCriteria, String theExpectedParam, String theExpectedKey) {
+		Pair<String, String> param = SubscriptionCriteriaIndex.findKeyableParam(theCriteria);
+		assertEquals(Pair.of(theExpectedParam, theExpectedKey), param);
+	}
+
+	@ParameterizedTest
+	@CsvSource(value = {
+		"Observation",
+		"Observation?",
+		"Observation?_id=123",
+		"Observation?code:not=ABC",
+		"Observation?code=ABC,DEF",
+		"Observation?code=http://loinc.org|",
+		"Observation?code=A\\,B",
+		"Observation?subject.name=smith",
+		"Observation?subject=Patient/123/_history/2",
+		"Observation?code=A&code=B",
+	}, delimiter = ';')
+	public void testFindKeyableParam_NotKeyable(String theCriteria) {
+		assertNull(SubscriptionCriteriaIndex.findKeyableParam(theCriteria));
+	}
+
+	@Test
+	public void testCandidatesByResourceType() {
+		mySvc.add(buildActiveSubscription("obs", "Observation?status=final&code:not=ABC"));
+		mySvc.add(buildActiveSubscription("multi", "[Observation,Patient]"));
+		mySvc.add(buildActiveSubscription("star", "[*]"));
+		mySvc.add(buildActiveSubscription("pat", "Patient?"));
+
+		assertThat(candidateIds("Observation", p -> null)).containsExactlyInAnyOrder("obs", "multi", "star");
+		assertThat(candidateIds("Patient", p -> null)).containsExactlyInAnyOrder("multi", "star", "pat");
+		assertThat(candidateIds("Encounter", p -> null)).containsExactlyInAnyOrder("star");
+	}
+
+	@Test
+	public void testCandidatesByValue() {
+		mySvc.add(buildActiveSubscription("code1", "Observation?code=http://loinc.org|1234-5"));
+		mySvc.add(buildActiveSubscription("code2", "Observation?code=9999-9"));
+		mySvc.add(buildActiveSubscription("subject", "Observation?subject=Patient/123"));
+		mySvc.add(buildActiveSubscription("unkeyed", "Observation?code:in=http://foo"));
+
+		Map<String, Collection<String>> values = Map.of(
+			"code", List.of("http://loinc.org|1234-5", "http://other|1234-5"),
+			"subject", List.of("Patient/456"));
+		assertThat(candidateIds("Observation", values::get)).containsExactlyInAnyOrder("code1", "unkeyed");
+
+		values = Map.of(
+			"code", List.of("http://loinc.org|9999-9"),
+			"subject", List.of("Patient/123"));
+		assertThat(candidateIds("Observation", values::get)).containsExactlyInAnyOrder("code2", "subject", "unkeyed");
+
+		// Values which can't be determined fall back to every subscription keyed on that param
+		values = Map.of("code", List.of());
+		assertThat(candidateIds("Observation", values::get)).containsExactlyInAnyOrder("subject", "unkeyed");
+	}
+
+	@Test
+	public void testRemoveAndReindex() {
+		ActiveSubscription activeSubscription = buildActiveSubscription("code1", "Observation?code=ABC");
+		mySvc.add(activeSubscription);
+		assertThat(candidateIds("Observation", p -> List.of("abc"))).containsExactly("code1");
+
+		CanonicalSubscription updated = buildCanonicalSubscription("code1", "Observation?code=DEF");
+		activeSubscription.setSubscription(updated);
+		mySvc.add(activeSubscription);
+		assertThat(candidateIds("Observation", p -> List.of("abc"))).isEmpty();
+		assertThat(candidateIds("Observation", p -> List.of("def"))).containsExactly("code1");
+
+		mySvc.remove("code1");
+		assertThat(candidateIds("Observation", p -> null)).isEmpty();
+	}
+
+	@Test
+	public void testTopicSubscriptionsAreNotIndexed() {
+		ActiveSubscription activeSubscription = buildActiveSubscription("topic", "Observation?");
+		activeSubscription.getSubscription().setTopicSubscription(true);
+		mySvc.add(activeSubscription);
+
+		assertThat(candidateIds("Observation", p -> null)).isEmpty();
+	}
+
+	private List<String> candidateIds(String theResourceType, Function<String, Collection<String>> theValues) {
+		return mySvc.getCandidates(theResourceType, theValues).stream()
+			.map(ActiveSubscription::getId)
+			.toList();
+	}
+
+	@Nonnull
+	private static ActiveSubscription buildActiveSubscription(String theId, String theCriteria) {
+		return new ActiveSubscription(buildCanonicalSubscription(theId, theCriteria), null);
+	}
+
+	@Nonnull
+	private static CanonicalSubscription buildCanonicalSubscription(String theId, String theCriteria) {
+		CanonicalSubscription canonicalSubscription = new CanonicalSubscription();
+		canonicalSubscription.setIdElement(new IdDt(theId));
+		canonicalSubscription.setCriteriaString(theCriteria);
+		return canonicalSubscription;
+	}
+}
@@ -1,15 +1,25 @@
 package ca.uhn.fhir.jpa.cache;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.BundleBuilder;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Enumerations;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Date;
+
+import static ca.uhn.fhir.util.TestUtil.sleepAtLeast;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ResourceVersionCacheSvcTest extends BaseJpaR4Test {
 	@Autowired
@@ -30,4 +40,89 @@ public class ResourceVersionCacheSvcTest extends BaseJpaR4Test {
 		assertEquals(1, versionMap.size());
 		assertEquals(2L, versionMap.getVersion(patientId));
 	}
+
+	@Test
+	public void testGetVersionChangesSince() {
+		IIdType unchangedId = createFemalePatient();
+		IIdType updatedId = createFemalePatient();
+		IIdType deletedId = createFemalePatient();
+		IIdType noLongerMatchingId = createFemalePatient();
+
+		Date since = markTime();
+
+		Patient updated = myPatientDao.read(updatedId, mySrd);
+		updated.setActive(false);
+		myPatientDao.update(updated, mySrd);
+		myPatientDao.delete(deletedId, mySrd);
+		Patient noLongerMatching = myPatientDao.read(noLongerMatchingId, mySrd);
+		noLongerMatching.setGender(Enumerations.AdministrativeGender.MALE);
+		myPatientDao.update(noLongerMatching, mySrd);
+		IIdType createdId = createFemalePatient();
+
+		ResourceVersionChanges changes = myResourceVersionCacheSvc.getVersionChangesSince(RequestPartitionId.allPartitions(), "Patient", newFemaleMap(), since);
+
+		assertNotNull(changes);
+		assertThat(changes.getChangedIds()).extracting(IIdType::getValue).containsExactlyInAnyOrder(
+			updatedId.toUnqualifiedVersionless().getValue(),
+			deletedId.toUnqualifiedVersionless().getValue(),
+			noLongerMatchingId.toUnqualifiedVersionless().getValue(),
+			createdId.toUnqualifiedVersionless().getValue());
+		assertThat(changes.getChangedIds()).extracting(IIdType::getValue).doesNotContain(unchangedId.toUnqualifiedVersionless().getValue());
+
+		// Only the changed resources which still exist and match are in the versions
+		ResourceVersionMap matching = changes.getMatchingVersions();
+		assertEquals(2, matching.size());
+		assertEquals(2L, matching.getVersion(updatedId));
+		assertEquals(1L, matching.getVersion(createdId));
+		assertTrue(!matching.containsKey(deletedId) && !matching.containsKey(noLongerMatchingId));
+	}
+
+	@Test
+	public void testGetVersionChangesSince_NothingChanged() {
+		createFemalePatient();
+		Date since = markTime();
+
+		ResourceVersionChanges changes = myResourceVersionCacheSvc.getVersionChangesSince(RequestPartitionId.allPartitions(), "Patient", newFemaleMap(), since);
+
+		assertNotNull(changes);
+		assertTrue(changes.isEmpty());
+		assertTrue(changes.getMatchingVersions().isEmpty());
+	}
+
+	@Test
+	public void testGetVersionChangesSince_TooManyChanges() {
+		Date since = markTime();
+
+		BundleBuilder bb = new BundleBuilder(myFhirContext);
+		for (int i = 0; i < ResourceVersionSvcDaoImpl.MAX_INCREMENTAL_CHANGES + 1; i++) {
+			Patient patient = new Patient();
+			patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+			bb.addTransactionCreateEntry(patient);
+		}
+		mySystemDao.transaction(mySrd, (Bundle) bb.getBundle());
+
+		// The caller falls back to reloading the full version map
+		assertNull(myResourceVersionCacheSvc.getVersionChangesSince(RequestPartitionId.allPartitions(), "Patient", newFemaleMap(), since));
+	}
+
+	private IIdType createFemalePatient() {
+		Patient patient = new Patient();
+		patient.setActive(true);
+		patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+		return myPatientDao.create(patient, mySrd).getId().toUnqualified();
+	}
+
+	/**
+	 * Returns a time which is strictly after every resource written so far and before any written later
+	 */
+	private static Date markTime() {
+		sleepAtLeast(10);
+		Date retVal = new Date();
+		sleepAtLeast(10);
+		return retVal;
+	}
+
+	private static SearchParameterMap newFemaleMap() {
+		return SearchParameterMap.newSynchronous(Patient.SP_GENDER, new TokenParam("female"));
+	}
 }
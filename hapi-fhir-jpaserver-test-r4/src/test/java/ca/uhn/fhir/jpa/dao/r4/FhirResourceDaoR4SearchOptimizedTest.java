@@ -1,21 +1,28 @@
 package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.interceptor.api.IAnonymousInterceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
 import ca.uhn.fhir.jpa.entity.Search;
 import ca.uhn.fhir.jpa.model.entity.ResourceTable;
 import ca.uhn.fhir.jpa.model.search.SearchStatusEnum;
+import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.PersistedJpaSearchFirstPageBundleProvider;
 import ca.uhn.fhir.jpa.search.SearchCoordinatorSvcImpl;
+import ca.uhn.fhir.jpa.search.builder.SearchBuilder;
 import ca.uhn.fhir.jpa.search.builder.tasks.SearchTask;
 import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.jpa.util.QueryParameterUtils;
+import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
+import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.SortOrderEnum;
 import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.SummaryEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -32,6 +39,7 @@ import ca.uhn.fhir.test.utilities.ProxyUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.BodyStructure;
 import org.hl7.fhir.r4.model.CodeableConcept;
@@ -1549,6 +1557,47 @@ public class FhirResourceDaoR4SearchOptimizedTest extends BaseJpaR4Test {
 		assertEquals(5, search.size().intValue());
 	}
 
+	@Test
+	public void testLoadResourcesInParallel() {
+		create200Patients();
+		runInTransaction(() -> {
+			for (int i = 0; i < 200; i += 3) {
+				Patient p = new Patient();
+				p.setId("PT" + leftPad(Integer.toString(i), 5, '0'));
+				p.setActive(true);
+				p.addName().setFamily("FAM" + leftPad(Integer.toString(i), 5, '0'));
+				p.getMeta().addTag("http://tags", "tag" + i, null);
+				myPatientDao.update(p);
+			}
+		});
 
+		List<String> messages = new ArrayList<>();
+		IAnonymousInterceptor interceptor = (thePointcut, theArgs) -> messages.add(theArgs.get(StorageProcessingMessage.class).getMessage());
+		myInterceptorRegistry.registerAnonymousInterceptor(Pointcut.JPA_PERFTRACE_INFO, interceptor);
+		myStorageSettings.setSearchResourceLoadingThreadCount(4);
+		SearchBuilder.setMaxPageSize50ForTest(true);
+		try {
+			SearchParameterMap params = SearchParameterMap.newSynchronous();
+			params.setSort(new SortSpec(Patient.SP_FAMILY).setOrder(SortOrderEnum.DESC));
+			IBundleProvider results = myPatientDao.search(params, mySrd);
+
+			List<IBaseResource> resources = results.getResources(0, 200);
+			assertThat(resources).hasSize(200);
+			for (int i = 0; i < 200; i++) {
+				Patient patient = (Patient) resources.get(i);
+				String expectedId = "PT" + leftPad(Integer.toString(199 - i), 5, '0');
+				assertEquals(expectedId, patient.getIdElement().getIdPart());
+				assertEquals((199 - i) % 3 == 0 ? 1 : 0, patient.getMeta().getTag().size());
+				assertEquals(BundleEntrySearchModeEnum.MATCH, ResourceMetadataKeyEnum.ENTRY_SEARCH_MODE.get(patient));
+			}
+
+			assertThat(messages).anyMatch(t -> t.startsWith("Loaded page 1/4 with 50 resources"));
+			assertThat(messages).anyMatch(t -> t.startsWith("Loaded page 4/4 with 50 resources"));
+		} finally {
+			SearchBuilder.setMaxPageSize50ForTest(false);
+			myStorageSettings.setSearchResourceLoadingThreadCount(new JpaStorageSettings().getSearchResourceLoadingThreadCount());
+			myInterceptorRegistry.unregisterInterceptor(interceptor);
+		}
+	}
 
 }
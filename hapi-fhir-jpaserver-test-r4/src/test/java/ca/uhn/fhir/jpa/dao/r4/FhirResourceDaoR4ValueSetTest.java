@@ -12,7 +12,10 @@ import ca.uhn.fhir.i18n.Msg;
 import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.entity.TermConcept;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
+import ca.uhn.fhir.jpa.entity.TermValueSet;
 import ca.uhn.fhir.jpa.term.TermReadSvcImpl;
+import ca.uhn.fhir.jpa.term.ValueSetCodeIndex;
+import ca.uhn.fhir.jpa.term.ValueSetCodeIndexSvc;
 import ca.uhn.fhir.jpa.term.custom.CustomTerminologySet;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
@@ -32,9 +35,15 @@ import org.hl7.fhir.r4.model.ValueSet;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -45,11 +54,18 @@ public class FhirResourceDaoR4ValueSetTest extends BaseJpaR4Test {
 
 	private IIdType myExtensionalVsId;
 
+	@Autowired
+	private ValueSetCodeIndexSvc myValueSetCodeIndexSvc;
+
+	@TempDir
+	private Path myCodeIndexDirectory;
+
 	@AfterEach
 	public void after() {
 		TermReadSvcImpl.setForceDisableHibernateSearchForUnitTest(false);
 		myStorageSettings.setPreExpandValueSets(new JpaStorageSettings().isPreExpandValueSets());
 		myStorageSettings.setMaximumExpansionSize(new JpaStorageSettings().getMaximumExpansionSize());
+		myStorageSettings.setValueSetCodeIndexDirectory(new JpaStorageSettings().getValueSetCodeIndexDirectory());
 	}
 
 
@@ -96,6 +112,70 @@ public class FhirResourceDaoR4ValueSetTest extends BaseJpaR4Test {
 	}
 
 
+	@Test
+	public void testValidateCodeInValueSet_UsesCodeIndex() throws IOException {
+		myStorageSettings.setValueSetCodeIndexDirectory(myCodeIndexDirectory.toString());
+		myCodeSystemDao.update(loadResourceFromClasspath(CodeSystem.class, "r4/adi-cs.json"));
+		myValueSetDao.update(loadResourceFromClasspath(ValueSet.class, "r4/adi-vs.json"));
+
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		// Pre-expansion builds the index right away
+		ValueSetCodeIndex index = runInTransaction(() -> myValueSetCodeIndexSvc.getIndex(fetchAdiTermValueSet()));
+		assertNotNull(index);
+		assertEquals(3, index.getEntryCount());
+		assertThat(listCodeIndexFiles()).hasSize(1);
+		long firstExpansionTimestamp = index.getExpansionTimestamp();
+
+		ValidationSupportContext context = new ValidationSupportContext(myValidationSupport);
+		ConceptValidationOptions options = new ConceptValidationOptions();
+		String valueSetUrl = "http://payer-to-payer-exchange/fhir/ValueSet/mental-health/ndc";
+
+		// Match
+		IValidationSupport.CodeValidationResult outcome = myValidationSupport.validateCode(context, options, "http://payer-to-payer-exchange/fhir/CodeSystem/ndc-codes", "378351391", null, valueSetUrl);
+		assertTrue(outcome.isOk());
+		assertEquals("risperidone-3-mg-tablet", outcome.getDisplay());
+
+		// Non-match
+		outcome = myValidationSupport.validateCode(context, options, "http://payer-to-payer-exchange/fhir/CodeSystem/ndc-codes", "378381501", null, valueSetUrl);
+		assertFalse(outcome.isOk());
+
+		// System that appears nowhere in the ValueSet
+		outcome = myValidationSupport.validateCode(context, options, "http://payer-to-payer-exchange/fhir/CodeSystem/ndc", "378397893", null, valueSetUrl);
+		assertFalse(outcome.isOk());
+		assertEquals("Unable to validate code http://payer-to-payer-exchange/fhir/CodeSystem/ndc#378397893 - No codes in ValueSet belong to CodeSystem with URL http://payer-to-payer-exchange/fhir/CodeSystem/ndc", outcome.getMessage());
+
+		// Re-expanding rebuilds the index against the new expansion timestamp
+		sleepUntilTimeChange();
+		myTermSvc.invalidatePreCalculatedExpansion(new IdType("ValueSet/vs"), mySrd);
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		index = runInTransaction(() -> myValueSetCodeIndexSvc.getIndex(fetchAdiTermValueSet()));
+		assertNotNull(index);
+		assertThat(index.getExpansionTimestamp()).isNotEqualTo(firstExpansionTimestamp);
+		assertEquals(runInTransaction(() -> fetchAdiTermValueSet().getExpansionTimestamp().getTime()), index.getExpansionTimestamp());
+		assertThat(listCodeIndexFiles()).hasSize(1);
+
+		outcome = myValidationSupport.validateCode(context, options, "http://payer-to-payer-exchange/fhir/CodeSystem/ndc-codes", "378351391", null, valueSetUrl);
+		assertTrue(outcome.isOk());
+
+		// Deleting the ValueSet removes its index
+		myValueSetDao.delete(new IdType("ValueSet/vs"), mySrd);
+		assertThat(listCodeIndexFiles()).isEmpty();
+	}
+
+	private TermValueSet fetchAdiTermValueSet() {
+		return myTermValueSetDao
+			.findTermValueSetByUrlAndVersion("http://payer-to-payer-exchange/fhir/ValueSet/mental-health/ndc", "20220214")
+			.orElseThrow();
+	}
+
+	private List<Path> listCodeIndexFiles() throws IOException {
+		try (Stream<Path> files = Files.list(myCodeIndexDirectory)) {
+			return files.filter(t -> t.getFileName().toString().endsWith(".idx")).toList();
+		}
+	}
+
 	@Test
 	public void testValidateCodeInValueSet_HierarchicalAndEnumeratedValueset() {
 		myValueSetDao.delete(myExtensionalVsId);
@@ -0,0 +1,182 @@
+package ca.uhn.fhir.jpa.dao.r4;
+
+import ca.uhn.fhir.interceptor.model.RequestPartitionId;
+import ca.uhn.fhir.jpa.model.entity.ResourceIndexedSearchParamString;
+import ca.uhn.fhir.jpa.model.entity.ResourceLink;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.searchparam.extractor.ISearchParamExtractor;
+import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.rest.api.server.storage.TransactionDetails;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FhirSystemDaoTransactionParallelIndexingR4Test extends BaseJpaR4Test {
+
+	private static final int PATIENT_COUNT = 25;
+
+	@Autowired
+	private SearchParamExtractorService mySearchParamExtractorService;
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setTransactionIndexingThreadCount(new StorageSettings().getTransactionIndexingThreadCount());
+	}
+
+	@Test
+	public void testParallelIndexingProducesSameIndexesAsSerial() {
+		myStorageSettings.setTransactionIndexingThreadCount(0);
+		Bundle serialResponse = mySystemDao.transaction(mySrd, createTransaction());
+		List<Map<String, Set<Object>>> serialIndexes = loadIndexes(serialResponse);
+
+		myStorageSettings.setTransactionIndexingThreadCount(4);
+		Bundle parallelResponse = mySystemDao.transaction(mySrd, createTransaction());
+		List<Map<String, Set<Object>>> parallelIndexes = loadIndexes(parallelResponse);
+
+		assertEquals(PATIENT_COUNT * 2, serialIndexes.size());
+		assertEquals(serialIndexes.size(), parallelIndexes.size());
+		for (int i = 0; i < serialIndexes.size(); i++) {
+			Map<String, Set<Object>> serial = serialIndexes.get(i);
+			Map<String, Set<Object>> parallel = parallelIndexes.get(i);
+			assertThat(serial.get("string")).isNotEmpty();
+			assertThat(serial.get("token")).isNotEmpty();
+			assertEquals(serial, parallel, "Indexes for entry " + i);
+		}
+	}
+
+	@Test
+	public void testPreExtractedParamsAreUsedOnce() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("Simpson");
+
+		TransactionDetails transactionDetails = new TransactionDetails();
+		ResourceIndexedSearchParams preExtracted = ResourceIndexedSearchParams.withSets();
+		preExtracted.myStringParams.add(new ResourceIndexedSearchParamString(
+				myPartitionSettings, myStorageSettings, "Patient", "family", "PREEXTRACTED", "PREEXTRACTED"));
+		SearchParamExtractorService.addPreExtractedParams(transactionDetails, patient, preExtracted);
+
+		// The first extraction uses the params handed over for this resource instance
+		ResourceIndexedSearchParams first = extract(patient, transactionDetails);
+		assertThat(getStringValues(first)).contains("PREEXTRACTED").doesNotContain("Simpson");
+
+		// Each hand-off is only used once, so the next extraction reads the resource again
+		ResourceIndexedSearchParams second = extract(patient, transactionDetails);
+		assertThat(getStringValues(second)).contains("Simpson").doesNotContain("PREEXTRACTED");
+
+		// Params handed over for another instance are never used
+		SearchParamExtractorService.addPreExtractedParams(transactionDetails, new Patient(), preExtracted);
+		ResourceIndexedSearchParams third = extract(patient, transactionDetails);
+		assertThat(getStringValues(third)).contains("Simpson").doesNotContain("PREEXTRACTED");
+	}
+
+	private ResourceIndexedSearchParams extract(Patient thePatient, TransactionDetails theTransactionDetails) {
+		ResourceTable entity = new ResourceTable();
+		entity.setResourceType("Patient");
+		ResourceIndexedSearchParams retVal = ResourceIndexedSearchParams.withSets();
+		runInTransaction(() -> mySearchParamExtractorService.extractFromResource(
+				RequestPartitionId.allPartitions(),
+				mySrd,
+				retVal,
+				ResourceIndexedSearchParams.empty(),
+				entity,
+				thePatient,
+				theTransactionDetails,
+				false,
+				ISearchParamExtractor.ALL_PARAMS));
+		return retVal;
+	}
+
+	private static Set<String> getStringValues(ResourceIndexedSearchParams theParams) {
+		return theParams.myStringParams.stream()
+				.map(ResourceIndexedSearchParamString::getValueExact)
+				.collect(Collectors.toSet());
+	}
+
+	private static Bundle createTransaction() {
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.TRANSACTION);
+		for (int i = 0; i < PATIENT_COUNT; i++) {
+			String patientFullUrl = IdType.newRandomUuid().getValue();
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://identifiers").setValue("PT" + i);
+			patient.addName().setFamily("Family" + i).addGiven("Given" + i);
+			patient.setGender(i % 2 == 0 ? Enumerations.AdministrativeGender.MALE : Enumerations.AdministrativeGender.FEMALE);
+			patient.setBirthDateElement(new DateType("1970-01-" + String.format("%02d", (i % 28) + 1)));
+			patient.addTelecom().setValue("555-" + i);
+			retVal.addEntry()
+					.setFullUrl(patientFullUrl)
+					.setResource(patient)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Patient");
+
+			Observation observation = new Observation();
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			observation.getCode().addCoding().setSystem("http://loinc.org").setCode("1234-" + i);
+			observation.setValue(new Quantity().setValue(i * 1.5).setSystem("http://unitsofmeasure.org").setCode("mg"));
+			observation.setEffective(new DateTimeType("2024-02-" + String.format("%02d", (i % 28) + 1) + "T10:00:00Z"));
+			observation.setSubject(new Reference(patientFullUrl));
+			retVal.addEntry()
+					.setResource(observation)
+					.getRequest()
+					.setMethod(Bundle.HTTPVerb.POST)
+					.setUrl("Observation");
+		}
+		return retVal;
+	}
+
+	/**
+	 * Loads the indexes stored for each entry of a transaction response, in entry order. Index entities
+	 * compare by value and hash rather than by PID, so the indexes of two resources with the same
+	 * content are equal.
+	 */
+	private List<Map<String, Set<Object>>> loadIndexes(Bundle theResponse) {
+		return runInTransaction(() -> {
+			List<Map<String, Set<Object>>> retVal = new ArrayList<>();
+			for (Bundle.BundleEntryComponent next : theResponse.getEntry()) {
+				Long pid = new IdType(next.getResponse().getLocation()).getIdPartAsLong();
+				ResourceTable entity = myResourceTableDao.findById(pid).orElseThrow();
+				ResourceIndexedSearchParams params = ResourceIndexedSearchParams.withLists(entity);
+
+				Map<String, Set<Object>> indexes = new HashMap<>();
+				indexes.put("string", new HashSet<>(params.myStringParams));
+				indexes.put("token", new HashSet<>(params.myTokenParams));
+				indexes.put("number", new HashSet<>(params.myNumberParams));
+				indexes.put("quantity", new HashSet<>(params.myQuantityParams));
+				indexes.put("quantityNormalized", new HashSet<>(params.myQuantityNormalizedParams));
+				indexes.put("date", new HashSet<>(params.myDateParams));
+				indexes.put("uri", new HashSet<>(params.myUriParams));
+				indexes.put("coords", new HashSet<>(params.myCoordsParams));
+				// Link targets get different PIDs in each run, so only compare what the links point at
+				indexes.put("link", new HashSet<>(params.myLinks.stream()
+						.map(ResourceLink::getSourcePath)
+						.collect(Collectors.toList())));
+				retVal.add(indexes);
+			}
+			return retVal;
+		});
+	}
+}
@@ -52,6 +52,7 @@ import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
 import ca.uhn.fhir.util.BundleBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.CodeSystem;
@@ -81,8 +82,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -127,6 +130,7 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		JpaStorageSettings defaults = new JpaStorageSettings();
 		myStorageSettings.setMarkResourcesForReindexingUponSearchParameterChange(defaults.isMarkResourcesForReindexingUponSearchParameterChange());
 		myStorageSettings.setMatchUrlCacheEnabled(defaults.isMatchUrlCacheEnabled());
+		myStorageSettings.setSearchResourceLoadingThreadCount(defaults.getSearchResourceLoadingThreadCount());
 	}
 
 	@Test
@@ -1249,6 +1253,33 @@ public class PartitioningSqlR4Test extends BasePartitioningR4Test {
 		}
 	}
 
+	@Test
+	public void testSearch_LoadResourcesInParallel_AllPartitions() {
+		myStorageSettings.setSearchResourceLoadingThreadCount(4);
+		Map<String, RequestPartitionId> expectedPartitions = new HashMap<>();
+		for (int i = 0; i < 30; i++) {
+			IIdType nullPartitionId = createPatient(withPartition(null), withActiveTrue());
+			expectedPartitions.put(nullPartitionId.getIdPart(), RequestPartitionId.defaultPartition());
+			IIdType partition1Id = createPatient(withPartition(1), withActiveTrue());
+			expectedPartitions.put(partition1Id.getIdPart(), myPartitionConfigSvc.getPartitionById(1).toRequestPartitionId());
+			IIdType partition2Id = createPatient(withPartition(2), withActiveTrue());
+			expectedPartitions.put(partition2Id.getIdPart(), myPartitionConfigSvc.getPartitionById(2).toRequestPartitionId());
+		}
+
+		// Force the partitions to be looked up again while the resources are loaded
+		myPartitionConfigSvc.invalidateCaches();
+
+		addReadAllPartitions();
+		IBundleProvider searchOutcome = myPatientDao.search(SearchParameterMap.newSynchronous(), mySrd);
+		List<IBaseResource> resources = searchOutcome.getResources(0, 100);
+
+		assertThat(resources).hasSize(90);
+		for (IBaseResource next : resources) {
+			RequestPartitionId actual = (RequestPartitionId) next.getUserData(Constants.RESOURCE_PARTITION_ID);
+			assertEquals(expectedPartitions.get(next.getIdElement().getIdPart()), actual, next.getIdElement().getValue());
+		}
+	}
+
 	@Test
 	public void testSearch_IdParamOnly_PidId_SpecificPartition() {
 		IIdType patientIdNull = createPatient(withPartition(null), withActiveTrue());
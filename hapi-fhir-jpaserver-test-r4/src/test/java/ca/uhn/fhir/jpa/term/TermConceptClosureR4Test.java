@@ -0,0 +1,299 @@
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
+import ca.uhn.fhir.jpa.entity.TermConcept;
+import ca.uhn.fhir.jpa.entity.TermConceptClosure;
+import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
+import ca.uhn.fhir.jpa.term.api.ITermReindexingSvc;
+import ca.uhn.fhir.jpa.term.custom.CustomTerminologySet;
+import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
+import ca.uhn.fhir.util.FhirVersionIndependentConcept;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.UriType;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.hl7.fhir.r4.model.codesystems.ConceptSubsumptionOutcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ca.uhn.fhir.batch2.jobs.termcodesystem.TermCodeSystemJobConfig.TERM_CODE_SYSTEM_DELETE_JOB_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Covers the TRM_CONCEPT_CLOSURE table, which holds the transitive closure of the
+ * concept hierarchy and is used for subsumption, codes above/below and is-a expansion
+ */
+public class TermConceptClosureR4Test extends BaseJpaR4Test {
+
+	private static final String CS_URL = "http://example.com/cs";
+
+	@Autowired
+	private ITermConceptClosureDao myTermConceptClosureDao;
+
+	@Autowired
+	private ITermReindexingSvc myTermReindexingSvc;
+
+	@Test
+	public void testStoreCompleteCodeSystem_CreatesClosureRows() {
+		createCompleteCodeSystem();
+
+		assertThat(getAncestorDepths("A")).containsExactlyInAnyOrderEntriesOf(Map.of("A", 0));
+		assertThat(getAncestorDepths("B")).containsExactlyInAnyOrderEntriesOf(Map.of("B", 0, "A", 1));
+		assertThat(getAncestorDepths("C")).containsExactlyInAnyOrderEntriesOf(Map.of("C", 0, "B", 1, "A", 2));
+		assertThat(getAncestorDepths("D")).containsExactlyInAnyOrderEntriesOf(Map.of("D", 0));
+	}
+
+	@Test
+	public void testSubsumes_UsesClosure() {
+		createCompleteCodeSystem();
+
+		myCaptureQueriesListener.clear();
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMES, subsumes("A", "C"));
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMEDBY, subsumes("C", "A"));
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMES, subsumes("B", "C"));
+		assertEquals(ConceptSubsumptionOutcome.NOTSUBSUMED, subsumes("B", "D"));
+		assertThat(countClosureSelectQueries()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testFindCodesAboveAndBelow_UsesClosure() {
+		createCompleteCodeSystem();
+
+		myCaptureQueriesListener.clear();
+		assertThat(toCodes(myTermSvc.findCodesBelow(CS_URL, "A"))).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(toCodes(myTermSvc.findCodesBelow(CS_URL, "C"))).containsExactlyInAnyOrder("C");
+		assertThat(toCodes(myTermSvc.findCodesAbove(CS_URL, "C"))).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(toCodes(myTermSvc.findCodesAbove(CS_URL, "D"))).containsExactlyInAnyOrder("D");
+		assertThat(countClosureSelectQueries()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testExpandIsAAndDescendentOf_UsesClosure() {
+		createCompleteCodeSystem();
+
+		myCaptureQueriesListener.clear();
+		// is-a includes the concept itself through its depth 0 row
+		assertThat(expand(ValueSet.FilterOperator.ISA, "A")).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(expand(ValueSet.FilterOperator.DESCENDENTOF, "A")).containsExactlyInAnyOrder("B", "C");
+		assertThat(expand(ValueSet.FilterOperator.ISA, "C")).containsExactlyInAnyOrder("C");
+		assertThat(expand(ValueSet.FilterOperator.DESCENDENTOF, "C")).isEmpty();
+		assertThat(countClosureSelectQueries()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testDeltaAddParent_RefreshesClosureOfSubtree() {
+		createNotPresentCodeSystem();
+
+		CustomTerminologySet delta = new CustomTerminologySet();
+		delta.addRootConcept("RootA", "Root A")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAA").setDisplay("Child AA")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAA").setDisplay("Child AAA");
+		delta.addRootConcept("RootB", "Root B");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd(CS_URL, delta);
+
+		assertThat(getAncestorDepths("ChildAAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAAA", 0, "ChildAA", 1, "RootA", 2));
+		assertEquals(ConceptSubsumptionOutcome.NOTSUBSUMED, subsumes("RootB", "ChildAAA"));
+
+		// Give the existing ChildAA a second parent, which is a new ancestor of ChildAAA too
+		delta = new CustomTerminologySet();
+		delta.addRootConcept("RootB", "Root B")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAA").setDisplay("Child AA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd(CS_URL, delta);
+
+		assertThat(getAncestorDepths("ChildAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAA", 0, "RootA", 1, "RootB", 1));
+		assertThat(getAncestorDepths("ChildAAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAAA", 0, "ChildAA", 1, "RootA", 2, "RootB", 2));
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMES, subsumes("RootB", "ChildAAA"));
+		assertThat(expand(ValueSet.FilterOperator.DESCENDENTOF, "RootB")).containsExactlyInAnyOrder("ChildAA", "ChildAAA");
+	}
+
+	@Test
+	public void testDeltaAddParent_ShortensClosureDepthsOfSubtree() {
+		createNotPresentCodeSystem();
+
+		CustomTerminologySet delta = new CustomTerminologySet();
+		delta.addRootConcept("RootA", "Root A")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAA").setDisplay("Child AA")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAA").setDisplay("Child AAA")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAAA").setDisplay("Child AAAA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd(CS_URL, delta);
+		assertThat(getAncestorDepths("ChildAAAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAAAA", 0, "ChildAAA", 1, "ChildAA", 2, "RootA", 3));
+		long rowCount = runInTransaction(() -> myTermConceptClosureDao.count());
+
+		// Link ChildAAA directly to RootA, which is already an ancestor of it through ChildAA
+		delta = new CustomTerminologySet();
+		delta.addRootConcept("RootA", "Root A")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAA").setDisplay("Child AAA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd(CS_URL, delta);
+
+		assertThat(getAncestorDepths("ChildAAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAAA", 0, "ChildAA", 1, "RootA", 1));
+		assertThat(getAncestorDepths("ChildAAAA")).containsExactlyInAnyOrderEntriesOf(Map.of("ChildAAAA", 0, "ChildAAA", 1, "ChildAA", 2, "RootA", 2));
+		runInTransaction(() -> assertEquals(rowCount, myTermConceptClosureDao.count()));
+	}
+
+	@Test
+	public void testDeltaRemoveConcept_DeletesClosureRows() {
+		createNotPresentCodeSystem();
+
+		CustomTerminologySet delta = new CustomTerminologySet();
+		delta.addRootConcept("RootA", "Root A")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAA").setDisplay("Child AA")
+			.addChild(TermConceptParentChildLink.RelationshipTypeEnum.ISA).setCode("ChildAAA").setDisplay("Child AAA");
+		myTermCodeSystemStorageSvc.applyDeltaCodeSystemsAdd(CS_URL, delta);
+		Long childAAPid = getConceptPid("ChildAA");
+		Long childAAAPid = getConceptPid("ChildAAA");
+
+		runInTransaction(() -> {
+			CustomTerminologySet delta2 = new CustomTerminologySet();
+			delta2.addRootConcept("ChildAA");
+			myTermCodeSystemStorageSvc.applyDeltaCodeSystemsRemove(CS_URL, delta2);
+		});
+
+		runInTransaction(() -> {
+			List<TermConceptClosure> rows = myTermConceptClosureDao.findAll();
+			assertThat(rows).noneMatch(t -> t.getAncestorPid().equals(childAAPid) || t.getDescendantPid().equals(childAAPid));
+			assertThat(rows).noneMatch(t -> t.getAncestorPid().equals(childAAAPid) || t.getDescendantPid().equals(childAAAPid));
+		});
+		assertThat(getAncestorDepths("RootA")).containsExactlyInAnyOrderEntriesOf(Map.of("RootA", 0));
+	}
+
+	@Test
+	public void testDeleteCodeSystem_DeletesClosureRows() {
+		CodeSystem cs = createCompleteCodeSystem();
+		runInTransaction(() -> assertEquals(7, myTermConceptClosureDao.count()));
+
+		myCodeSystemDao.delete(cs.getIdElement().toUnqualifiedVersionless(), mySrd);
+		myTerminologyDeferredStorageSvc.saveDeferred();
+		myBatch2JobHelper.awaitAllJobsOfJobDefinitionIdToComplete(TERM_CODE_SYSTEM_DELETE_JOB_NAME);
+
+		runInTransaction(() -> {
+			assertEquals(0, myTermConceptDao.count());
+			assertEquals(0, myTermConceptClosureDao.count());
+		});
+	}
+
+	@Test
+	public void testReindex_RebuildsClosureRows() {
+		createCompleteCodeSystem();
+		Long pidC = getConceptPid("C");
+
+		// Simulate a concept which needs reindexing and has lost its closure rows
+		runInTransaction(() -> {
+			myTermConceptClosureDao.deleteByDescendant(pidC);
+			TermConcept concept = myTermConceptDao.findById(pidC).orElseThrow();
+			concept.setIndexStatus(null);
+			myTermConceptDao.save(concept);
+		});
+		assertThat(getAncestorDepths("C")).isEmpty();
+
+		myTermReindexingSvc.processReindexing();
+
+		assertThat(getAncestorDepths("C")).containsExactlyInAnyOrderEntriesOf(Map.of("C", 0, "B", 1, "A", 2));
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMES, subsumes("A", "C"));
+	}
+
+	/**
+	 * Concepts stored before the closure table existed have no rows in it, not even the
+	 * one linking them to themselves, and must keep working through the previous code paths
+	 */
+	@Test
+	public void testConceptsWithoutSelfRow_FallBackToHierarchy() {
+		CodeSystem cs = createCompleteCodeSystem();
+		runInTransaction(() -> {
+			Long csvPid = myTermCodeSystemVersionDao
+				.findCurrentVersionForCodeSystemResourcePid(cs.getIdElement().getIdPartAsLong())
+				.getPid();
+			myTermConceptClosureDao.deleteByCodeSystemVersion(csvPid);
+		});
+		runInTransaction(() -> assertEquals(0, myTermConceptClosureDao.count()));
+
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMES, subsumes("A", "C"));
+		assertEquals(ConceptSubsumptionOutcome.SUBSUMEDBY, subsumes("C", "A"));
+		assertEquals(ConceptSubsumptionOutcome.NOTSUBSUMED, subsumes("B", "D"));
+		assertThat(toCodes(myTermSvc.findCodesBelow(CS_URL, "A"))).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(toCodes(myTermSvc.findCodesAbove(CS_URL, "C"))).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(expand(ValueSet.FilterOperator.ISA, "A")).containsExactlyInAnyOrder("A", "B", "C");
+		assertThat(expand(ValueSet.FilterOperator.DESCENDENTOF, "A")).containsExactlyInAnyOrder("B", "C");
+
+		// Nothing is backfilled by reading
+		runInTransaction(() -> assertEquals(0, myTermConceptClosureDao.count()));
+	}
+
+	/**
+	 * Creates A > B > C, plus a separate root D
+	 */
+	private CodeSystem createCompleteCodeSystem() {
+		CodeSystem cs = new CodeSystem();
+		cs.setUrl(CS_URL);
+		cs.setContent(CodeSystem.CodeSystemContentMode.COMPLETE);
+		cs.addConcept().setCode("A").setDisplay("Code A")
+			.addConcept().setCode("B").setDisplay("Code B")
+			.addConcept().setCode("C").setDisplay("Code C");
+		cs.addConcept().setCode("D").setDisplay("Code D");
+		cs.setId(myCodeSystemDao.create(cs, mySrd).getId().toUnqualifiedVersionless());
+		return cs;
+	}
+
+	private void createNotPresentCodeSystem() {
+		CodeSystem cs = new CodeSystem();
+		cs.setUrl(CS_URL);
+		cs.setContent(CodeSystem.CodeSystemContentMode.NOTPRESENT);
+		myCodeSystemDao.create(cs, mySrd);
+	}
+
+	private ConceptSubsumptionOutcome subsumes(String theCodeA, String theCodeB) {
+		return myTermSvc
+			.subsumes(new CodeType(theCodeA), new CodeType(theCodeB), new UriType(CS_URL), null, null)
+			.getOutcome();
+	}
+
+	private List<String> expand(ValueSet.FilterOperator theOp, String theCode) {
+		ValueSet vs = new ValueSet();
+		vs.setUrl("http://example.com/vs");
+		vs.getCompose()
+			.addInclude()
+			.setSystem(CS_URL)
+			.addFilter()
+			.setProperty("concept")
+			.setOp(theOp)
+			.setValue(theCode);
+		ValueSet expansion = myValueSetDao.expand(vs, null);
+		return expansion.getExpansion().getContains().stream().map(ValueSet.ValueSetExpansionContainsComponent::getCode).toList();
+	}
+
+	private Long getConceptPid(String theCode) {
+		return runInTransaction(() -> myTermSvc.findCode(CS_URL, theCode).orElseThrow().getId());
+	}
+
+	/**
+	 * Returns the code of every ancestor of the given code according to the closure table,
+	 * along with its depth
+	 */
+	private Map<String, Integer> getAncestorDepths(String theCode) {
+		Long pid = getConceptPid(theCode);
+		return runInTransaction(() -> {
+			Map<String, Integer> retVal = new HashMap<>();
+			for (TermConceptClosure next : myTermConceptClosureDao.findAll()) {
+				if (next.getDescendantPid().equals(pid)) {
+					String ancestorCode = myTermConceptDao.findById(next.getAncestorPid()).orElseThrow().getCode();
+					retVal.put(ancestorCode, next.getDepth());
+				}
+			}
+			return retVal;
+		});
+	}
+
+	private long countClosureSelectQueries() {
+		return myCaptureQueriesListener.getSelectQueries().stream()
+			.filter(t -> t.getSql(false, false).toUpperCase().contains("TRM_CONCEPT_CLOSURE"))
+			.count();
+	}
+
+	private static List<String> toCodes(List<FhirVersionIndependentConcept> theConcepts) {
+		return theConcepts.stream().map(FhirVersionIndependentConcept::getCode).toList();
+	}
+}
@@ -0,0 +1,120 @@
+package ca.uhn.fhir.jpa.term;
+
+import ca.uhn.fhir.batch2.model.JobInstance;
+import ca.uhn.fhir.batch2.model.StatusEnum;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.entity.TermValueSet;
+import ca.uhn.fhir.jpa.entity.TermValueSetPreExpansionStatusEnum;
+import org.hl7.fhir.r4.model.codesystems.HttpVerb;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TermValueSetPreExpansionJobR4Test extends BaseTermR4Test {
+
+	@Override
+	@BeforeEach
+	public void before() throws Exception {
+		super.before();
+		myStorageSettings.setPreExpandValueSets(true);
+		myStorageSettings.setPreExpandValueSetsUsingBatch2Job(true);
+	}
+
+	@AfterEach
+	public void afterEach() {
+		myStorageSettings.setPreExpandValueSetsUsingBatch2Job(new JpaStorageSettings().isPreExpandValueSetsUsingBatch2Job());
+		myTerminologyDeferredStorageSvc.setProcessDeferred(true);
+		myBatch2JobHelper.enableMaintenanceRunner(true);
+	}
+
+	@Test
+	public void testPreExpandValueSetsWithJob() throws Exception {
+		loadAndPersistCodeSystemAndValueSetWithDesignations(HttpVerb.POST);
+		assertEquals(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, getExpansionStatus());
+
+		String jobId = myTermSvc.startValueSetPreExpansionJob();
+		assertNotNull(jobId);
+		JobInstance instance = myBatch2JobHelper.awaitJobCompletion(jobId);
+
+		assertEquals(StatusEnum.COMPLETED, instance.getStatus());
+		assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, getExpansionStatus());
+		runInTransaction(() -> {
+			TermValueSet termValueSet = myTermValueSetDao.findByResourcePid(myExtensionalVsIdOnResourceTable).orElseThrow();
+			assertEquals(myCodeSystemDao.read(myExtensionalCsId).getConcept().size(), termValueSet.getConcepts().size());
+		});
+
+		// Nothing is left to expand, so no new job is started
+		assertNull(myTermSvc.startValueSetPreExpansionJob());
+	}
+
+	@Test
+	public void testCancelledJobReleasesClaimedValueSets() throws Exception {
+		loadAndPersistCodeSystemAndValueSetWithDesignations(HttpVerb.POST);
+
+		// Without maintenance passes the chunks emitted by the claim step are never processed
+		myBatch2JobHelper.enableMaintenanceRunner(false);
+		String jobId = myTermSvc.startValueSetPreExpansionJob();
+		assertNotNull(jobId);
+		await().until(() -> getExpansionStatus() == TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS);
+
+		myJobCoordinator.cancelInstance(jobId);
+		myBatch2JobHelper.enableMaintenanceRunner(true);
+		myBatch2JobHelper.awaitJobCancelled(jobId);
+
+		assertEquals(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, getExpansionStatus());
+
+		// A later job picks the released ValueSet up again
+		String retryJobId = myTermSvc.startValueSetPreExpansionJob();
+		assertNotNull(retryJobId);
+		myBatch2JobHelper.awaitJobCompletion(retryJobId);
+		assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, getExpansionStatus());
+	}
+
+	@Test
+	public void testReleaseOnlyAffectsValueSetsClaimedByTheJob() throws Exception {
+		loadAndPersistCodeSystemAndValueSetWithDesignations(HttpVerb.POST);
+
+		// Claimed by another job or node
+		List<Long> claimed = myTermSvc.claimValueSetsForPreExpansion(10);
+		assertThat(claimed).hasSize(1);
+
+		assertEquals(0, myTermSvc.releaseValueSetsClaimedForPreExpansion(List.of(claimed.get(0) + 1)));
+		assertEquals(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, getExpansionStatus());
+
+		assertEquals(1, myTermSvc.releaseValueSetsClaimedForPreExpansion(claimed));
+		assertEquals(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, getExpansionStatus());
+	}
+
+	@Test
+	public void testPreExpandValueSetSkippedWhileDeferredEntitiesAreLoading() throws Exception {
+		loadAndPersistCodeSystemAndValueSetWithDesignations(HttpVerb.POST);
+
+		List<Long> claimed = myTermSvc.claimValueSetsForPreExpansion(10);
+		assertThat(claimed).hasSize(1);
+		assertEquals(TermValueSetPreExpansionStatusEnum.EXPANSION_IN_PROGRESS, getExpansionStatus());
+
+		// Deferred entities start loading after the ValueSet was claimed
+		myTerminologyDeferredStorageSvc.setProcessDeferred(false);
+		assertNull(myTermSvc.preExpandValueSet(claimed.get(0)));
+		assertEquals(TermValueSetPreExpansionStatusEnum.NOT_EXPANDED, getExpansionStatus());
+
+		myTerminologyDeferredStorageSvc.setProcessDeferred(true);
+		myTermSvc.preExpandValueSet(myTermSvc.claimValueSetsForPreExpansion(10).get(0));
+		assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, getExpansionStatus());
+	}
+
+	private TermValueSetPreExpansionStatusEnum getExpansionStatus() {
+		return runInTransaction(() -> myTermValueSetDao
+				.findByResourcePid(myExtensionalVsIdOnResourceTable)
+				.orElseThrow()
+				.getExpansionStatus());
+	}
+}
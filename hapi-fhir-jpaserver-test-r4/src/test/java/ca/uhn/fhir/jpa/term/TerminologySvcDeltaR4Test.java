@@ -10,6 +10,7 @@ import ca.uhn.fhir.jpa.entity.TermConcept;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.term.api.ITermDeferredStorageSvc;
+import ca.uhn.fhir.jpa.util.SqlQuery;
 import ca.uhn.fhir.jpa.term.custom.CustomTerminologySet;
 import ca.uhn.fhir.jpa.test.BaseJpaR4Test;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -214,8 +215,9 @@ public class TerminologySvcDeltaR4Test extends BaseJpaR4Test {
 		myCaptureQueriesListener.logDeleteQueries();
 		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
 		myCaptureQueriesListener.logInsertQueries();
-		// 2 concepts, 1 link
-		assertEquals(3, myCaptureQueriesListener.countInsertQueries());
+		// 2 concepts, 1 link, 3 closure rows (a self row for each concept, plus RootA above ChildAA)
+		assertEquals(6, myCaptureQueriesListener.countInsertQueries());
+		assertEquals(3, countClosureQueries(myCaptureQueriesListener.getInsertQueries()));
 		myCaptureQueriesListener.clear();
 
 		delta = new CustomTerminologySet();
@@ -230,10 +232,13 @@ public class TerminologySvcDeltaR4Test extends BaseJpaR4Test {
 		);
 
 		myCaptureQueriesListener.logDeleteQueries();
-		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
+		// The closure rows of the 2 existing concepts are replaced when they are saved again
+		assertEquals(2, myCaptureQueriesListener.countDeleteQueries());
+		assertEquals(2, countClosureQueries(myCaptureQueriesListener.getDeleteQueries()));
 		myCaptureQueriesListener.logInsertQueries();
-		// 1 concept, 1 link
-		assertEquals(2, myCaptureQueriesListener.countInsertQueries());
+		// 1 concept, 1 link, 6 closure rows (1 for RootA, 2 for ChildAA, 3 for ChildAAA)
+		assertEquals(8, myCaptureQueriesListener.countInsertQueries());
+		assertEquals(6, countClosureQueries(myCaptureQueriesListener.getInsertQueries()));
 		myCaptureQueriesListener.clear();
 
 		delta = new CustomTerminologySet();
@@ -250,10 +255,13 @@ public class TerminologySvcDeltaR4Test extends BaseJpaR4Test {
 		);
 
 		myCaptureQueriesListener.logDeleteQueries();
-		assertEquals(0, myCaptureQueriesListener.countDeleteQueries());
+		// The closure rows of the 3 existing concepts are replaced when they are saved again
+		assertEquals(3, myCaptureQueriesListener.countDeleteQueries());
+		assertEquals(3, countClosureQueries(myCaptureQueriesListener.getDeleteQueries()));
 		myCaptureQueriesListener.logInsertQueries();
-		// 1 concept, 1 link
-		assertEquals(2, myCaptureQueriesListener.countInsertQueries());
+		// 1 concept, 1 link, 10 closure rows (1 for RootA, 2 for ChildAA, 3 for ChildAAA, 4 for ChildAAAA)
+		assertEquals(12, myCaptureQueriesListener.countInsertQueries());
+		assertEquals(10, countClosureQueries(myCaptureQueriesListener.getInsertQueries()));
 		myCaptureQueriesListener.clear();
 
 	}
@@ -600,6 +608,16 @@ public class TerminologySvcDeltaR4Test extends BaseJpaR4Test {
 	}
 
 
+	/**
+	 * Counts the statements (including each row of a batch) against the hierarchy closure table
+	 */
+	private static int countClosureQueries(List<SqlQuery> theQueries) {
+		return theQueries.stream()
+			.filter(t -> t.getSql(false, false).toUpperCase().contains("TRM_CONCEPT_CLOSURE"))
+			.mapToInt(SqlQuery::getSize)
+			.sum();
+	}
+
 	private ValueSet expandNotPresentCodeSystem() {
 		ValueSet vs = new ValueSet();
 		vs.setUrl("http://foo/vs");
@@ -88,6 +88,7 @@ public class ValueSetExpansionR4Test extends BaseTermR4Test implements IValueSet
 	@AfterEach
 	public void afterEach() {
 		SearchBuilder.setMaxPageSize50ForTest(false);
+		myStorageSettings.setPreExpandValueSetsInsertBatchSize(JpaStorageSettings.DEFAULT_PRE_EXPAND_VALUE_SETS_INSERT_BATCH_SIZE);
 	}
 
 	@Override
@@ -1430,6 +1431,37 @@ public class ValueSetExpansionR4Test extends BaseTermR4Test implements IValueSet
 		});
 	}
 
+	/**
+	 * Concepts and designations are inserted in batches, so make sure that an expansion
+	 * spanning several batches is stored completely and keeps its declared order
+	 */
+	@Test
+	public void testStoreTermValueSetAndChildren_SeveralInsertBatches() throws Exception {
+		myStorageSettings.setPreExpandValueSets(true);
+		myStorageSettings.setPreExpandValueSetsInsertBatchSize(3);
+
+		loadAndPersistCodeSystemAndValueSetWithDesignations(HttpVerb.POST);
+		CodeSystem codeSystem = myCodeSystemDao.read(myExtensionalCsId);
+		long expectedDesignations = codeSystem.getConcept().stream().mapToLong(t -> t.getDesignation().size()).sum();
+
+		myTermSvc.preExpandDeferredValueSetsToTerminologyTables();
+
+		runInTransaction(() -> {
+			TermValueSet termValueSet = myTermValueSetDao.findByResourcePid(myExtensionalVsIdOnResourceTable).orElseThrow();
+			assertEquals(TermValueSetPreExpansionStatusEnum.EXPANDED, termValueSet.getExpansionStatus());
+			assertEquals(codeSystem.getConcept().size(), termValueSet.getConcepts().size());
+			assertEquals((long) codeSystem.getConcept().size(), termValueSet.getTotalConcepts());
+			assertEquals(expectedDesignations, termValueSet.getTotalConceptDesignations());
+			assertEquals(expectedDesignations, termValueSet.getConcepts().stream().mapToLong(t -> t.getDesignations().size()).sum());
+
+			TermValueSetConcept concept = assertTermValueSetContainsConceptAndIsInDeclaredOrder(termValueSet, "http://acme.org", "8450-9", "Systolic blood pressure--expiration", 2);
+			assertTermConceptContainsDesignation(concept, "nl", "http://snomed.info/sct", "900000000000013009", "Synonym", "Systolische bloeddruk - expiratie");
+			assertTermConceptContainsDesignation(concept, "sv", "http://snomed.info/sct", "900000000000013009", "Synonym", "Systoliskt blodtryck - utgång");
+			assertTermValueSetContainsConceptAndIsInDeclaredOrder(termValueSet, "http://acme.org", "11378-7", "Systolic blood pressure at First encounter", 0);
+			assertTermValueSetContainsConceptAndIsInDeclaredOrder(termValueSet, "http://acme.org", "8492-1", "Systolic blood pressure 8 hour minimum", 0);
+		});
+	}
+
 	@Test
 	public void testStoreTermValueSetAndChildrenWithClientAssignedId() throws Exception {
 		myStorageSettings.setPreExpandValueSets(true);
@@ -1,7 +1,10 @@
 package ca.uhn.fhir.jpa.term;
 
+import ca.uhn.fhir.jpa.dao.data.ITermConceptClosureDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.entity.TermConcept;
+import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink.RelationshipTypeEnum;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -10,6 +13,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
@@ -22,6 +27,9 @@ public class TermConceptDaoSvcTest {
 	@Mock
 	private ITermConceptDao myConceptDao;
 
+	@Mock
+	private ITermConceptClosureDao myConceptClosureDao;
+
 	@InjectMocks
 	private TermConceptDaoSvc myTermConceptDaoSvc;
 
@@ -53,4 +61,23 @@ public class TermConceptDaoSvcTest {
 		assertEquals(parentPids, capturedTermConcept.getParentPidsAsString());
 	}
 
+	@Test
+	public void testGetAncestorDepths_polyhierarchyUsesShortestPath() {
+		// given
+		TermConcept root = new TermConcept().setId(1L);
+		TermConcept middle = new TermConcept().setId(2L);
+		TermConcept leaf = new TermConcept().setId(3L);
+		root.addChild(middle, RelationshipTypeEnum.ISA);
+		middle.addChild(leaf, RelationshipTypeEnum.ISA);
+		root.addChild(leaf, RelationshipTypeEnum.ISA);
+
+		// when
+		Map<Long, Integer> depths = TermConceptDaoSvc.getAncestorDepths(leaf);
+
+		// then
+		assertEquals(Map.of(1L, 1, 2L, 1), depths);
+		assertEquals(Map.of(1L, 1), TermConceptDaoSvc.getAncestorDepths(middle));
+		assertEquals(Map.of(), TermConceptDaoSvc.getAncestorDepths(root));
+	}
+
 }
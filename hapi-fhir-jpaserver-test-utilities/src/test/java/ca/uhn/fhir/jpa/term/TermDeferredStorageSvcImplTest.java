@@ -3,8 +3,10 @@ package ca.uhn.fhir.jpa.term;
 import ca.uhn.fhir.batch2.api.IJobCoordinator;
 import ca.uhn.fhir.batch2.model.JobInstance;
 import ca.uhn.fhir.batch2.model.StatusEnum;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.dao.data.ITermCodeSystemVersionDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
+import ca.uhn.fhir.jpa.dao.data.ITermConceptParentChildLinkDao;
 import ca.uhn.fhir.jpa.entity.TermCodeSystemVersion;
 import ca.uhn.fhir.jpa.entity.TermConcept;
 import ca.uhn.fhir.jpa.entity.TermConceptParentChildLink;
@@ -17,13 +19,17 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static ca.uhn.fhir.batch2.jobs.termcodesystem.TermCodeSystemJobConfig.TERM_CODE_SYSTEM_DELETE_JOB_NAME;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -44,6 +50,8 @@ public class TermDeferredStorageSvcImplTest {
 	private ITermConceptDao myConceptDao;
 	@Mock
 	private ITermCodeSystemVersionDao myTermCodeSystemVersionDao;
+	@Mock
+	private ITermConceptParentChildLinkDao myConceptParentChildLinkDao;
 
 	@Mock
 	private IJobCoordinator myJobCoordinator;
@@ -97,6 +105,7 @@ public class TermDeferredStorageSvcImplTest {
 
 		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
 		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(new JpaStorageSettings());
 		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
 
 		when(myTermCodeSystemVersionDao.findById(anyLong())).thenReturn(Optional.of(myTermCodeSystemVersion));
@@ -120,6 +129,7 @@ public class TermDeferredStorageSvcImplTest {
 
 		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
 		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(new JpaStorageSettings());
 		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
 
 		when(myTermCodeSystemVersionDao.findById(anyLong())).thenReturn(Optional.empty());
@@ -145,6 +155,7 @@ public class TermDeferredStorageSvcImplTest {
 
 		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
 		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(new JpaStorageSettings());
 		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
 
 		// Simulate the case where an exception is thrown despite a valid code system version.
@@ -168,6 +179,7 @@ public class TermDeferredStorageSvcImplTest {
 
 		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
 		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(new JpaStorageSettings());
 		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
 		svc.setConceptDaoForUnitTest(myConceptDao);
 		svc.setProcessDeferred(true);
@@ -177,4 +189,137 @@ public class TermDeferredStorageSvcImplTest {
 		verifyNoMoreInteractions(myTermConceptDaoSvc);
 	}
 
+	@Test
+	public void testSaveDeferred_Concepts_MultipleThreads() {
+		TermCodeSystemVersion termCodeSystemVersion = new TermCodeSystemVersion();
+		termCodeSystemVersion.setId(1L);
+
+		TermConcept parent = new TermConcept(termCodeSystemVersion, "PARENT").setId(1L);
+		List<TermConcept> children = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			TermConcept child = new TermConcept(termCodeSystemVersion, "CHILD-" + i);
+			parent.addChild(child, TermConceptParentChildLink.RelationshipTypeEnum.ISA);
+			children.add(child);
+		}
+		// A grandchild can only be saved once its parent has been, so it is saved in a later round
+		TermConcept grandchild = new TermConcept(termCodeSystemVersion, "GRANDCHILD");
+		children.get(0).addChild(grandchild, TermConceptParentChildLink.RelationshipTypeEnum.ISA);
+
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setDeferredTerminologyStorageThreadCount(4);
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(storageSettings);
+		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
+		svc.setCodeSystemVersionDaoForUnitTest(myTermCodeSystemVersionDao);
+		when(myTermCodeSystemVersionDao.findById(anyLong())).thenReturn(Optional.of(termCodeSystemVersion));
+		when(myTermConceptDaoSvc.saveConcept(any())).thenAnswer(t -> {
+			TermConcept concept = t.getArgument(0);
+			concept.setId((long) concept.getCode().hashCode());
+			return 1;
+		});
+
+		try {
+			svc.setProcessDeferred(true);
+			svc.addConceptToStorageQueue(grandchild);
+			children.forEach(svc::addConceptToStorageQueue);
+			svc.saveDeferred();
+
+			for (TermConcept next : children) {
+				verify(myTermConceptDaoSvc, times(1)).saveConcept(same(next));
+			}
+			verify(myTermConceptDaoSvc, times(1)).saveConcept(same(grandchild));
+			verifyNoMoreInteractions(myTermConceptDaoSvc);
+			assertTrue(svc.isStorageQueueEmpty(false));
+		} finally {
+			svc.stop();
+		}
+	}
+
+	@Test
+	public void testSaveDeferred_Concepts_MultipleThreads_NoConceptReady() {
+		TermCodeSystemVersion termCodeSystemVersion = new TermCodeSystemVersion();
+		termCodeSystemVersion.setId(1L);
+
+		// The parent is not stored and not in the queue, so the child is never ready for a concurrent save
+		TermConcept parent = new TermConcept(termCodeSystemVersion, "PARENT");
+		TermConcept child = new TermConcept(termCodeSystemVersion, "CHILD");
+		parent.addChild(child, TermConceptParentChildLink.RelationshipTypeEnum.ISA);
+
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setDeferredTerminologyStorageThreadCount(4);
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(storageSettings);
+		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
+		svc.setCodeSystemVersionDaoForUnitTest(myTermCodeSystemVersionDao);
+		when(myTermCodeSystemVersionDao.findById(anyLong())).thenReturn(Optional.of(termCodeSystemVersion));
+		when(myTermConceptDaoSvc.saveConcept(any())).thenAnswer(t -> {
+			TermConcept concept = t.getArgument(0);
+			concept.setId(2L);
+			return 1;
+		});
+
+		try {
+			svc.setProcessDeferred(true);
+			svc.addConceptToStorageQueue(child);
+			svc.saveDeferred();
+
+			// The concept is saved on its own, exactly as it would be on a single thread
+			verify(myTermConceptDaoSvc, times(1)).saveConcept(same(child));
+			verifyNoMoreInteractions(myTermConceptDaoSvc);
+			assertTrue(svc.isStorageQueueEmpty(false));
+		} finally {
+			svc.stop();
+		}
+	}
+
+	@Test
+	public void testSaveDeferred_ConceptParentChildLinks_MultipleThreads() {
+		TermConcept parent = new TermConcept().setId(100000L);
+		List<TermConceptParentChildLink> links = new ArrayList<>();
+		Set<Long> deletedPids = new HashSet<>();
+		for (long i = 1; i <= 2500; i++) {
+			TermConceptParentChildLink link = new TermConceptParentChildLink();
+			link.setParent(parent);
+			link.setChild(new TermConcept().setId(i));
+			links.add(link);
+			if (i % 10 == 0) {
+				deletedPids.add(i);
+			}
+		}
+
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setDeferredTerminologyStorageThreadCount(4);
+
+		TermDeferredStorageSvcImpl svc = new TermDeferredStorageSvcImpl();
+		svc.setTransactionManagerForUnitTest(myTxManager);
+		svc.setStorageSettingsForUnitTest(storageSettings);
+		svc.setTermConceptDaoSvc(myTermConceptDaoSvc);
+		svc.setConceptDaoForUnitTest(myConceptDao);
+		svc.setConceptParentChildLinkDaoForUnitTest(myConceptParentChildLinkDao);
+		when(myConceptDao.findExistingPids(anyList())).thenAnswer(t -> {
+			List<Long> pids = t.getArgument(0);
+			return pids.stream().filter(pid -> !deletedPids.contains(pid)).toList();
+		});
+
+		try {
+			svc.setProcessDeferred(true);
+			links.forEach(svc::addConceptLinkToStorageQueue);
+			svc.saveDeferred();
+
+			for (TermConceptParentChildLink next : links) {
+				boolean deleted = deletedPids.contains(next.getChild().getId());
+				verify(myConceptParentChildLinkDao, times(deleted ? 0 : 1)).save(same(next));
+			}
+			verifyNoMoreInteractions(myConceptParentChildLinkDao);
+			verifyNoMoreInteractions(myTermConceptDaoSvc);
+			assertTrue(svc.isStorageQueueEmpty(false));
+		} finally {
+			svc.stop();
+		}
+	}
+
 }
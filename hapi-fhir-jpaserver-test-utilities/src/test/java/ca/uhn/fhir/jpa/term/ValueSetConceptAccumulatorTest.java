@@ -20,6 +20,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -51,6 +52,21 @@ public class ValueSetConceptAccumulatorTest {
 		verify(myValueSetConceptDao, times(1000)).save(any());
 	}
 
+	@Test
+	public void testIncludeConcept_WithFlushBatchSize() {
+		myAccumulator.setFlushBatchSize(300);
+		for (int i = 0; i < 1000; i++) {
+			myAccumulator.includeConcept("sys", "code" + i, "display", null, null, null);
+		}
+		verify(myValueSetConceptDao, times(3)).saveAll(any());
+		verify(myValueSetDao, times(3)).save(any());
+
+		myAccumulator.flush();
+		verify(myValueSetConceptDao, times(4)).saveAll(any());
+		verify(myValueSetConceptDao, never()).save(any());
+		assertEquals(1000L, myValueSet.getTotalConcepts());
+	}
+
 	@Test
 	public void testExcludeBlankConcept() {
 		myAccumulator.excludeConcept("", "");
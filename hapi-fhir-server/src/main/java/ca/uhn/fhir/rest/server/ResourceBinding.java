@@ -23,8 +23,15 @@ import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
 import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.defaultString;
 
 /**
  * Holds all method bindings for an individual resource type
@@ -34,7 +41,8 @@ public class ResourceBinding {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(ResourceBinding.class);
 
 	private String myResourceName;
-	private final LinkedList<BaseMethodBinding> myMethodBindings = new LinkedList<>();
+	private final MethodBindingList myMethodBindings = new MethodBindingList();
+	private volatile RoutingIndex myRoutingIndex;
 
 	/**
 	 * Constructor
@@ -58,7 +66,13 @@ public class ResourceBinding {
 		BaseMethodBinding matchedMethod = null;
 		MethodMatchEnum matchedMethodStrength = null;
 
-		for (BaseMethodBinding rm : myMethodBindings) {
+		List<BaseMethodBinding> candidates = getRoutingIndex().getCandidates(theRequest);
+		//noinspection ForLoopReplaceableByForEach - avoid allocating an iterator on this hot path
+		for (int i = 0; i < candidates.size(); i++) {
+			BaseMethodBinding rm = candidates.get(i);
+			if (!hasRoutingRequiredParameters(rm, theRequest)) {
+				continue;
+			}
 			MethodMatchEnum nextMethodMatch = rm.incomingServerRequestMatchesMethod(theRequest);
 			if (nextMethodMatch != MethodMatchEnum.NONE) {
 				if (matchedMethodStrength == null || matchedMethodStrength.ordinal() < nextMethodMatch.ordinal()) {
@@ -74,6 +88,38 @@ public class ResourceBinding {
 		return matchedMethod;
 	}
 
+	private static boolean hasRoutingRequiredParameters(BaseMethodBinding theMethod, RequestDetails theRequest) {
+		Set<String> requiredParameterNames = theMethod.getRoutingRequiredParameterNames();
+		if (requiredParameterNames.isEmpty()) {
+			return true;
+		}
+		Set<String> qualifiedNames = theRequest.getParameters().keySet();
+		for (String next : requiredParameterNames) {
+			if (!qualifiedNames.contains(next)
+					&& !theRequest.getUnqualifiedToQualifiedNames().containsKey(next)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the routing index, rebuilding it if the method bindings have been modified since it was built
+	 */
+	private RoutingIndex getRoutingIndex() {
+		RoutingIndex retVal = myRoutingIndex;
+		if (retVal == null || retVal.myModCount != myMethodBindings.getModCount()) {
+			synchronized (this) {
+				retVal = myRoutingIndex;
+				if (retVal == null || retVal.myModCount != myMethodBindings.getModCount()) {
+					retVal = new RoutingIndex(myMethodBindings);
+					myRoutingIndex = retVal;
+				}
+			}
+		}
+		return retVal;
+	}
+
 	public String getResourceName() {
 		return myResourceName;
 	}
@@ -97,6 +143,63 @@ public class ResourceBinding {
 		this.myMethodBindings.push(method);
 	}
 
+	/**
+	 * Candidate method bindings for each operation name, built from
+	 * {@link BaseMethodBinding#getRoutingOperationNames()}. Each list preserves the order of
+	 * the method bindings, so that the best match is the same as it would be if every
+	 * method binding was tried.
+	 */
+	private static class RoutingIndex {
+
+		private final int myModCount;
+		private final Map<String, List<BaseMethodBinding>> myOperationNameToCandidates = new HashMap<>();
+		private final List<BaseMethodBinding> myAnyOperationCandidates;
+
+		private RoutingIndex(MethodBindingList theMethodBindings) {
+			myModCount = theMethodBindings.getModCount();
+
+			for (BaseMethodBinding next : theMethodBindings) {
+				Set<String> operationNames = next.getRoutingOperationNames();
+				if (operationNames != null) {
+					for (String nextOperationName : operationNames) {
+						myOperationNameToCandidates.put(nextOperationName, new ArrayList<>());
+					}
+				}
+			}
+
+			List<BaseMethodBinding> anyOperationCandidates = new ArrayList<>();
+			for (BaseMethodBinding next : theMethodBindings) {
+				Set<String> operationNames = next.getRoutingOperationNames();
+				if (operationNames == null) {
+					anyOperationCandidates.add(next);
+					myOperationNameToCandidates.values().forEach(t -> t.add(next));
+				} else {
+					for (String nextOperationName : operationNames) {
+						myOperationNameToCandidates.get(nextOperationName).add(next);
+					}
+				}
+			}
+			myAnyOperationCandidates = Collections.unmodifiableList(anyOperationCandidates);
+			myOperationNameToCandidates.replaceAll((k, v) -> Collections.unmodifiableList(v));
+		}
+
+		private List<BaseMethodBinding> getCandidates(RequestDetails theRequest) {
+			List<BaseMethodBinding> retVal = myOperationNameToCandidates.get(defaultString(theRequest.getOperation()));
+			return retVal != null ? retVal : myAnyOperationCandidates;
+		}
+	}
+
+	/**
+	 * Exposes the modification count of the list, so that the routing index can be rebuilt
+	 * when the list is modified, including through {@link #getMethodBindings()}
+	 */
+	private static class MethodBindingList extends LinkedList<BaseMethodBinding> {
+
+		private int getModCount() {
+			return modCount;
+		}
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (!(o instanceof ResourceBinding)) return false;
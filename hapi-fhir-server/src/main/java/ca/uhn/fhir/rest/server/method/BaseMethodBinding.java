@@ -51,6 +51,7 @@ import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.ReflectionUtil;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.hl7.fhir.instance.model.api.IAnyResource;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
@@ -60,6 +61,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -244,6 +246,33 @@ public abstract class BaseMethodBinding {
 
 	public abstract MethodMatchEnum incomingServerRequestMatchesMethod(RequestDetails theRequest);
 
+	/**
+	 * Returns the operation names (e.g. <code>$everything</code> or <code>_history</code>, or an
+	 * empty string for requests with no operation) of every request this method could possibly
+	 * match. This is used to build a routing index when the method is registered, so that
+	 * {@link #incomingServerRequestMatchesMethod(RequestDetails)} only needs to be called for
+	 * a few candidate methods. It must never exclude a request which
+	 * {@link #incomingServerRequestMatchesMethod(RequestDetails)} would match.
+	 *
+	 * @return The operation names, or <code>null</code> (the default) if this method could match requests for any operation
+	 */
+	@Nullable
+	public Set<String> getRoutingOperationNames() {
+		return null;
+	}
+
+	/**
+	 * Returns the names of request parameters which must all be present in a request (qualified
+	 * or unqualified) for this method to match it. Like {@link #getRoutingOperationNames()}, this
+	 * is only used to narrow down the candidate methods for a request.
+	 *
+	 * @return The required parameter names, or an empty set (the default) if there aren't any
+	 */
+	@Nonnull
+	public Set<String> getRoutingRequiredParameterNames() {
+		return Collections.emptySet();
+	}
+
 	public abstract Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest)
 			throws BaseServerResponseException, IOException;
 
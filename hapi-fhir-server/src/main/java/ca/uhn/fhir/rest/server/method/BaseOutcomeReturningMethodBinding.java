@@ -50,6 +50,7 @@ import java.util.Date;
 import java.util.Set;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+import static org.apache.commons.lang3.StringUtils.defaultString;
 
 abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding {
 	static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseOutcomeReturningMethodBinding.class);
@@ -159,6 +160,11 @@ abstract class BaseOutcomeReturningMethodBinding extends BaseMethodBinding {
 		return MethodMatchEnum.EXACT;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Collections.singleton(defaultString(getMatchingOperation()));
+	}
+
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest)
 			throws BaseServerResponseException, IOException {
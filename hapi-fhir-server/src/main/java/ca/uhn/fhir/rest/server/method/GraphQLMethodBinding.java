@@ -121,6 +121,11 @@ public class GraphQLMethodBinding extends OperationMethodBinding {
 		return MethodMatchEnum.NONE;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Collections.singleton(Constants.OPERATION_NAME_GRAPHQL);
+	}
+
 	private String getQueryValue(Object[] methodParams) {
 		switch (myMethodRequestType) {
 			case POST:
@@ -51,6 +51,7 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -311,6 +312,14 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 		return myCanOperateAtServerLevel ? MethodMatchEnum.EXACT : MethodMatchEnum.NONE;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		if (myName.equals(WILDCARD_NAME)) {
+			return null;
+		}
+		return Collections.singleton(myName);
+	}
+
 	@Override
 	public RestOperationTypeEnum getRestOperationType(RequestDetails theRequestDetails) {
 		RestOperationTypeEnum retVal = super.getRestOperationType(theRequestDetails);
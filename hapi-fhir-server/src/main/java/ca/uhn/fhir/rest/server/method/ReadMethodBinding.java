@@ -160,6 +160,11 @@ public class ReadMethodBinding extends BaseResourceReturningMethodBinding {
 		return MethodMatchEnum.EXACT;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Set.of("", Constants.PARAM_HISTORY);
+	}
+
 	@Override
 	public IBundleProvider invokeServer(
 			IRestfulServer<?> theServer, RequestDetails theRequest, Object[] theMethodParams)
@@ -66,6 +66,7 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 	private final String myResourceProviderResourceName;
 	private final List<String> myRequiredParamNames;
 	private final List<String> myOptionalParamNames;
+	private final Set<String> myRoutingRequiredParamNames;
 	private final String myCompartmentName;
 	private String myDescription;
 	private final Integer myIdParamIndex;
@@ -113,6 +114,7 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 				.filter(t -> !t.isRequired())
 				.map(t -> t.getName())
 				.collect(Collectors.toList());
+		myRoutingRequiredParamNames = Set.copyOf(myRequiredParamNames);
 	}
 
 	public String getDescription() {
@@ -265,6 +267,16 @@ public class SearchMethodBinding extends BaseResourceReturningMethodBinding {
 		return retVal;
 	}
 
+	@Override
+	public Set<String> getRoutingOperationNames() {
+		return Set.of("", Constants.PARAM_SEARCH);
+	}
+
+	@Override
+	public Set<String> getRoutingRequiredParameterNames() {
+		return myRoutingRequiredParamNames;
+	}
+
 	/**
 	 * Is this request a request for a normal search - Ie. not a named search, nor a compartment
 	 * search, just a plain old search.
@@ -1,7 +1,9 @@
 package ca.uhn.fhir.rest.server;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.method.BaseMethodBinding;
+import ca.uhn.fhir.rest.server.method.MethodMatchEnum;
 import ca.uhn.fhir.rest.server.method.PageMethodBinding;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,10 +11,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class ResourceBindingTest {
@@ -38,4 +51,66 @@ class ResourceBindingTest {
 		assertEquals(second, list.get(0));
 		assertEquals(first, list.get(1));
 	}
+
+	@Test
+	public void testOnlyCandidatesForOperationAreMatched() throws NoSuchMethodException {
+		BaseMethodBinding foo = newMethodBinding(Set.of("$foo"), Collections.emptySet(), MethodMatchEnum.EXACT);
+		BaseMethodBinding bar = newMethodBinding(Set.of("$bar"), Collections.emptySet(), MethodMatchEnum.EXACT);
+		BaseMethodBinding any = newMethodBinding(null, Collections.emptySet(), MethodMatchEnum.APPROXIMATE);
+		myResourceBinding.addMethod(foo);
+		myResourceBinding.addMethod(bar);
+		myResourceBinding.addMethod(any);
+
+		assertSame(bar, myResourceBinding.getMethod(newRequest("$bar", Map.of())));
+		verify(foo, never()).incomingServerRequestMatchesMethod(any());
+
+		// Operations nobody declared only go to the methods which accept any operation
+		assertSame(any, myResourceBinding.getMethod(newRequest("$baz", Map.of())));
+		verify(foo, never()).incomingServerRequestMatchesMethod(any());
+		verify(bar).incomingServerRequestMatchesMethod(any());
+	}
+
+	@Test
+	public void testRequiredParametersAreChecked() throws NoSuchMethodException {
+		BaseMethodBinding byName = newMethodBinding(Set.of(""), Set.of("name"), MethodMatchEnum.EXACT);
+		BaseMethodBinding byIdentifier = newMethodBinding(Set.of(""), Set.of("identifier"), MethodMatchEnum.EXACT);
+		myResourceBinding.addMethod(byName);
+		myResourceBinding.addMethod(byIdentifier);
+
+		assertSame(byName, myResourceBinding.getMethod(newRequest(null, Map.of("name:exact", new String[] {"smith"}))));
+		assertSame(byIdentifier, myResourceBinding.getMethod(newRequest(null, Map.of("identifier", new String[] {"123"}))));
+		assertNull(myResourceBinding.getMethod(newRequest(null, Map.of("family", new String[] {"smith"}))));
+	}
+
+	@Test
+	public void testRoutingIndexIsRebuiltWhenBindingsAreRemoved() throws NoSuchMethodException {
+		BaseMethodBinding first = newMethodBinding(Set.of("$foo"), Collections.emptySet(), MethodMatchEnum.EXACT);
+		BaseMethodBinding second = newMethodBinding(Set.of("$foo"), Collections.emptySet(), MethodMatchEnum.EXACT);
+		myResourceBinding.addMethod(first);
+		myResourceBinding.addMethod(second);
+		assertSame(second, myResourceBinding.getMethod(newRequest("$foo", Map.of())));
+
+		myResourceBinding.getMethodBindings().removeIf(t -> t == second);
+		assertSame(first, myResourceBinding.getMethod(newRequest("$foo", Map.of())));
+	}
+
+	private static BaseMethodBinding newMethodBinding(Set<String> theOperationNames, Set<String> theRequiredParameterNames, MethodMatchEnum theMatch) throws NoSuchMethodException {
+		BaseMethodBinding retVal = mock(BaseMethodBinding.class);
+		lenient().when(retVal.getMethod()).thenReturn(ResourceBindingTest.class.getMethod("testFILO"));
+		lenient().when(retVal.getRoutingOperationNames()).thenReturn(theOperationNames);
+		lenient().when(retVal.getRoutingRequiredParameterNames()).thenReturn(theRequiredParameterNames);
+		lenient().when(retVal.incomingServerRequestMatchesMethod(any())).thenReturn(theMatch);
+		return retVal;
+	}
+
+	private static RequestDetails newRequest(String theOperation, Map<String, String[]> theParameters) {
+		RequestDetails retVal = mock(RequestDetails.class);
+		lenient().when(retVal.getOperation()).thenReturn(theOperation);
+		lenient().when(retVal.getParameters()).thenReturn(theParameters);
+		Map<String, List<String>> unqualifiedToQualifiedNames = theParameters.keySet().stream()
+			.filter(t -> t.contains(":"))
+			.collect(Collectors.groupingBy(t -> t.substring(0, t.indexOf(':'))));
+		lenient().when(retVal.getUnqualifiedToQualifiedNames()).thenReturn(unqualifiedToQualifiedNames);
+		return retVal;
+	}
 }
@@ -50,4 +50,26 @@ public interface Cache<K, V> {
 	long estimatedSize();
 
 	void cleanUp();
+
+	/**
+	 * Returns the statistics recorded by this cache. Statistics are only recorded for caches
+	 * created with statistics recording enabled, see {@link CacheFactory#build(long, long, boolean)}.
+	 *
+	 * @since 7.6.0
+	 */
+	default CacheStats stats() {
+		return CacheStats.EMPTY;
+	}
+
+	/**
+	 * Returns the total weight of the entries in this cache if it is bounded by weight,
+	 * see {@link CacheFactory#buildWeighted(long, long, Weigher, boolean)}.
+	 *
+	 * @return The total weight, or <code>-1</code> if this cache is not bounded by weight
+	 * or the provider cannot report it
+	 * @since 7.6.0
+	 */
+	default long weightedSize() {
+		return -1;
+	}
 }
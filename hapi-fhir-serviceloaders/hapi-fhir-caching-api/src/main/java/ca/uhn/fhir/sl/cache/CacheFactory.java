@@ -57,6 +57,28 @@ public class CacheFactory {
 		return cacheProvider.create(theTimeoutMillis, theMaximumSize);
 	}
 
+	/**
+	 * @param theRecordStats Should the cache record statistics, see {@link Cache#stats()}
+	 * @since 7.6.0
+	 */
+	public static <K, V> Cache<K, V> build(long theTimeoutMillis, long theMaximumSize, boolean theRecordStats) {
+		CacheProvider<Object, Object> cacheProvider = getCacheProvider();
+		return cacheProvider.create(theTimeoutMillis, theMaximumSize, theRecordStats);
+	}
+
+	/**
+	 * Builds a cache which is bounded by the total weight of its entries instead of their number
+	 *
+	 * @param theMaximumWeight The maximum total weight of the entries, as calculated by theWeigher
+	 * @param theRecordStats   Should the cache record statistics, see {@link Cache#stats()}
+	 * @since 7.6.0
+	 */
+	public static <K, V> Cache<K, V> buildWeighted(
+			long theTimeoutMillis, long theMaximumWeight, Weigher<K, V> theWeigher, boolean theRecordStats) {
+		CacheProvider<K, V> cacheProvider = getCacheProvider();
+		return cacheProvider.createWeighted(theTimeoutMillis, theMaximumWeight, theWeigher, theRecordStats);
+	}
+
 	public static <K, V> LoadingCache<K, V> build(
 			long theTimeoutMillis, long theMaximumSize, CacheLoader<K, V> cacheLoader) {
 		CacheProvider<K, V> cacheProvider = getCacheProvider();
@@ -20,6 +20,8 @@ package ca.uhn.fhir.sl.cache;
  * #L%
  */
 
+import ca.uhn.fhir.i18n.Msg;
+
 public interface CacheProvider<K, V> {
 	Cache create(long timeoutMillis);
 
@@ -28,4 +30,24 @@ public interface CacheProvider<K, V> {
 	LoadingCache create(long timeoutMillis, CacheLoader<K, V> cacheLoader);
 
 	LoadingCache create(long timeoutMillis, long maximumSize, CacheLoader<K, V> cacheLoader);
+
+	/**
+	 * Creates a cache bounded by a maximum number of entries, optionally recording statistics
+	 *
+	 * @since 7.6.0
+	 */
+	default Cache create(long timeoutMillis, long maximumSize, boolean recordStats) {
+		return create(timeoutMillis, maximumSize);
+	}
+
+	/**
+	 * Creates a cache bounded by the total weight of its entries, as calculated by the given
+	 * weigher, optionally recording statistics
+	 *
+	 * @since 7.6.0
+	 */
+	default Cache createWeighted(long timeoutMillis, long maximumWeight, Weigher<K, V> weigher, boolean recordStats) {
+		throw new UnsupportedOperationException(
+				Msg.code(2783) + "Cache provider " + getClass().getName() + " does not support weighted caches");
+	}
 }
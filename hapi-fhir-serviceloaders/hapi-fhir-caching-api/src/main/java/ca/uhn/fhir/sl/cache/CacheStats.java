@@ -0,0 +1,113 @@
+package ca.uhn.fhir.sl.cache;
+
+/*-
+ * #%L
+ * HAPI FHIR - ServiceLoaders - Caching API
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Immutable snapshot of the statistics recorded by a {@link Cache}, modelled on the
+ * statistics provided by Caffeine and Guava. All counters are zero unless the cache was
+ * created with statistics recording enabled.
+ *
+ * @since 7.6.0
+ */
+public class CacheStats {
+
+	public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0);
+
+	private final long myHitCount;
+	private final long myMissCount;
+	private final long myLoadSuccessCount;
+	private final long myLoadFailureCount;
+	private final long myTotalLoadTimeNanos;
+	private final long myEvictionCount;
+	private final long myEvictionWeight;
+
+	public CacheStats(
+			long theHitCount,
+			long theMissCount,
+			long theLoadSuccessCount,
+			long theLoadFailureCount,
+			long theTotalLoadTimeNanos,
+			long theEvictionCount,
+			long theEvictionWeight) {
+		myHitCount = theHitCount;
+		myMissCount = theMissCount;
+		myLoadSuccessCount = theLoadSuccessCount;
+		myLoadFailureCount = theLoadFailureCount;
+		myTotalLoadTimeNanos = theTotalLoadTimeNanos;
+		myEvictionCount = theEvictionCount;
+		myEvictionWeight = theEvictionWeight;
+	}
+
+	public long getHitCount() {
+		return myHitCount;
+	}
+
+	public long getMissCount() {
+		return myMissCount;
+	}
+
+	public long getRequestCount() {
+		return myHitCount + myMissCount;
+	}
+
+	/**
+	 * @return The ratio of requests which were hits, or <code>1.0</code> if there have been no requests
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : (double) myHitCount / requestCount;
+	}
+
+	public long getLoadSuccessCount() {
+		return myLoadSuccessCount;
+	}
+
+	public long getLoadFailureCount() {
+		return myLoadFailureCount;
+	}
+
+	public long getLoadCount() {
+		return myLoadSuccessCount + myLoadFailureCount;
+	}
+
+	public long getTotalLoadTimeNanos() {
+		return myTotalLoadTimeNanos;
+	}
+
+	/**
+	 * @return The average time spent loading a new value, in nanoseconds
+	 */
+	public double getAverageLoadPenaltyNanos() {
+		long loadCount = getLoadCount();
+		return loadCount == 0 ? 0.0 : (double) myTotalLoadTimeNanos / loadCount;
+	}
+
+	public long getEvictionCount() {
+		return myEvictionCount;
+	}
+
+	/**
+	 * @return The sum of the weights of evicted entries, or <code>0</code> if the provider does not track it
+	 */
+	public long getEvictionWeight() {
+		return myEvictionWeight;
+	}
+}
@@ -20,6 +20,8 @@ package ca.uhn.fhir.sl.cache.caffeine;
  * #L%
  */
 
+import ca.uhn.fhir.sl.cache.CacheStats;
+
 import java.util.Map;
 import java.util.function.Function;
 
@@ -80,4 +82,26 @@ public class CacheDelegator<K, V> implements ca.uhn.fhir.sl.cache.Cache<K, V> {
 	public void cleanUp() {
 		cache.cleanUp();
 	}
+
+	@Override
+	public CacheStats stats() {
+		com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+		return new CacheStats(
+				stats.hitCount(),
+				stats.missCount(),
+				stats.loadSuccessCount(),
+				stats.loadFailureCount(),
+				stats.totalLoadTime(),
+				stats.evictionCount(),
+				stats.evictionWeight());
+	}
+
+	@Override
+	public long weightedSize() {
+		return cache.policy()
+				.eviction()
+				.filter(com.github.benmanes.caffeine.cache.Policy.Eviction::isWeighted)
+				.map(t -> t.weightedSize().orElse(-1))
+				.orElse(-1L);
+	}
 }
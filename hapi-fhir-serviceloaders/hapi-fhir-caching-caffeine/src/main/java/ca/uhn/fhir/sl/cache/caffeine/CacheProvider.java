@@ -23,6 +23,7 @@ package ca.uhn.fhir.sl.cache.caffeine;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheLoader;
 import ca.uhn.fhir.sl.cache.LoadingCache;
+import ca.uhn.fhir.sl.cache.Weigher;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
 import java.util.concurrent.TimeUnit;
@@ -60,4 +61,31 @@ public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K
 				.maximumSize(maximumSize)
 				.build(loading::load));
 	}
+
+	@Override
+	public Cache<K, V> create(long timeoutMillis, long maximumSize, boolean recordStats) {
+		Caffeine<Object, Object> builder = Caffeine.newBuilder()
+				.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+				// Caffeine locks the whole array when growing the hash table.
+				// Set initial capacity to max to avoid this.  All our caches are <1M entries.
+				.initialCapacity((int) maximumSize)
+				.maximumSize(maximumSize);
+		if (recordStats) {
+			builder.recordStats();
+		}
+		return new CacheDelegator<K, V>(builder.build());
+	}
+
+	@Override
+	public Cache<K, V> createWeighted(
+			long timeoutMillis, long maximumWeight, Weigher<K, V> weigher, boolean recordStats) {
+		Caffeine<K, V> builder = Caffeine.newBuilder()
+				.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+				.maximumWeight(maximumWeight)
+				.weigher(weigher::weigh);
+		if (recordStats) {
+			builder.recordStats();
+		}
+		return new CacheDelegator<K, V>(builder.build());
+	}
 }
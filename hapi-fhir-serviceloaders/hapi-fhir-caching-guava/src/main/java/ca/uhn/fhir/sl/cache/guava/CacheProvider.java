@@ -23,6 +23,7 @@ package ca.uhn.fhir.sl.cache.guava;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheLoader;
 import ca.uhn.fhir.sl.cache.LoadingCache;
+import ca.uhn.fhir.sl.cache.Weigher;
 import com.google.common.cache.CacheBuilder;
 
 import java.util.concurrent.TimeUnit;
@@ -64,4 +65,28 @@ public class CacheProvider<K, V> implements ca.uhn.fhir.sl.cache.CacheProvider<K
 					}
 				}));
 	}
+
+	@Override
+	public Cache<K, V> create(long timeoutMillis, long maximumSize, boolean recordStats) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+				.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+				.maximumSize(maximumSize);
+		if (recordStats) {
+			builder.recordStats();
+		}
+		return new CacheDelegator<K, V>(builder.build());
+	}
+
+	@Override
+	public Cache<K, V> createWeighted(
+			long timeoutMillis, long maximumWeight, Weigher<K, V> weigher, boolean recordStats) {
+		CacheBuilder<K, V> builder = CacheBuilder.newBuilder()
+				.expireAfterWrite(timeoutMillis, TimeUnit.MILLISECONDS)
+				.maximumWeight(maximumWeight)
+				.weigher(weigher::weigh);
+		if (recordStats) {
+			builder.recordStats();
+		}
+		return new CacheDelegator<K, V>(builder.build());
+	}
 }
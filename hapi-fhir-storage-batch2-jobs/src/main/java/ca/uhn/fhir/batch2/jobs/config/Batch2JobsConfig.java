@@ -25,6 +25,7 @@ import ca.uhn.fhir.batch2.jobs.importpull.BulkImportPullConfig;
 import ca.uhn.fhir.batch2.jobs.imprt.BulkImportAppCtx;
 import ca.uhn.fhir.batch2.jobs.reindex.ReindexAppCtx;
 import ca.uhn.fhir.batch2.jobs.termcodesystem.TermCodeSystemJobConfig;
+import ca.uhn.fhir.batch2.jobs.termvalueset.TermValueSetPreExpansionJobConfig;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
@@ -37,6 +38,7 @@ import org.springframework.context.annotation.Import;
 	DeleteExpungeAppCtx.class,
 	BulkExportAppCtx.class,
 	TermCodeSystemJobConfig.class,
+	TermValueSetPreExpansionJobConfig.class,
 	BulkImportPullConfig.class,
 })
 public class Batch2JobsConfig {}
@@ -0,0 +1,157 @@
+/*-
+ * #%L
+ * hapi-fhir-storage-batch2-jobs
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.batch2.jobs.export;
+
+import ca.uhn.fhir.jpa.binary.api.IBinaryStorageSvc;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A single NDJSON output file that is being written by a bulk export job. Encoded resources
+ * are streamed (optionally through a gzip stage) into a buffer that is held in memory until
+ * it reaches {@link #IN_MEMORY_THRESHOLD} bytes, after which it is spilled to a temporary
+ * file. Once {@link #finish() finished}, the contents can be read back as a stream, which
+ * allows them to be passed to {@link IBinaryStorageSvc} without ever holding the complete
+ * file on the heap.
+ * <p>
+ * Callers must always {@link #close()} the buffer, which discards any temporary file.
+ * </p>
+ */
+class BulkExportFileBuffer implements Closeable {
+	static final int IN_MEMORY_THRESHOLD = (int) FileUtils.ONE_MB;
+	private static final Logger ourLog = getLogger(BulkExportFileBuffer.class);
+
+	private final String myResourceType;
+	private final boolean myGzip;
+	private final DeferredFileOutputStream myBufferStream;
+	private final Writer myWriter;
+	private int myResourceCount;
+	private long myContentLength;
+	private boolean myFinished;
+
+	BulkExportFileBuffer(
+			String theResourceType, boolean theGzip, Function<OutputStream, ? extends Writer> theWriterFactory)
+			throws IOException {
+		myResourceType = theResourceType;
+		myGzip = theGzip;
+		myBufferStream = new DeferredFileOutputStream(IN_MEMORY_THRESHOLD, "hapi-bulk-export-", ".ndjson", null);
+		OutputStream outputStream = theGzip ? new GZIPOutputStream(myBufferStream) : myBufferStream;
+		myWriter = theWriterFactory.apply(outputStream);
+	}
+
+	/**
+	 * Appends a single encoded resource, followed by a newline
+	 */
+	void append(String theEncodedResource) throws IOException {
+		Validate.isTrue(!myFinished, "File has already been finished");
+		myWriter.append(theEncodedResource);
+		myWriter.append("\n");
+		myResourceCount++;
+		myContentLength += theEncodedResource.length();
+	}
+
+	/**
+	 * Flushes and closes the writer. No further resources may be appended after this is called.
+	 */
+	void finish() throws IOException {
+		if (!myFinished) {
+			myFinished = true;
+			myWriter.close();
+			myBufferStream.close();
+		}
+	}
+
+	String getResourceType() {
+		return myResourceType;
+	}
+
+	boolean isGzip() {
+		return myGzip;
+	}
+
+	int getResourceCount() {
+		return myResourceCount;
+	}
+
+	/**
+	 * @return The total length of the encoded resources appended so far, before any compression is applied
+	 */
+	long getContentLength() {
+		return myContentLength;
+	}
+
+	/**
+	 * @return The number of bytes held in the buffer, after any compression is applied
+	 */
+	long getStoredSize() {
+		return myBufferStream.getByteCount();
+	}
+
+	boolean isInMemory() {
+		return myBufferStream.isInMemory();
+	}
+
+	/**
+	 * Opens a stream over the buffered file contents. May only be called after {@link #finish()}.
+	 */
+	InputStream newInputStream() throws IOException {
+		Validate.isTrue(myFinished, "File has not been finished");
+		return myBufferStream.toInputStream();
+	}
+
+	/**
+	 * Reads the buffered file contents into a byte array. May only be called after {@link #finish()}.
+	 */
+	byte[] toByteArray() throws IOException {
+		try (InputStream inputStream = newInputStream()) {
+			return IOUtils.toByteArray(inputStream);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!myFinished) {
+			myFinished = true;
+			IOUtils.closeQuietly(myWriter);
+			IOUtils.closeQuietly(myBufferStream);
+		}
+		if (!myBufferStream.isInMemory()) {
+			try {
+				Files.deleteIfExists(myBufferStream.getFile().toPath());
+			} catch (IOException e) {
+				ourLog.warn("Failed to delete temporary bulk export file {}", myBufferStream.getFile(), e);
+			}
+		}
+	}
+}
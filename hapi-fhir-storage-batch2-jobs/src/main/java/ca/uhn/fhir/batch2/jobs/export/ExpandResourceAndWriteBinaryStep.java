@@ -25,7 +25,6 @@ import ca.uhn.fhir.batch2.api.JobExecutionFailedException;
 import ca.uhn.fhir.batch2.api.RunOutcome;
 import ca.uhn.fhir.batch2.api.StepExecutionDetails;
 import ca.uhn.fhir.batch2.jobs.export.models.BulkExportBinaryFileId;
-import ca.uhn.fhir.batch2.jobs.export.models.ExpandedResourcesList;
 import ca.uhn.fhir.batch2.jobs.export.models.ResourceIdList;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.FhirVersionEnum;
@@ -40,6 +39,9 @@ import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.model.PersistentIdToForcedIdMap;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.binary.api.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.binary.api.StoredDetails;
+import ca.uhn.fhir.jpa.binary.interceptor.BinaryStorageInterceptor;
 import ca.uhn.fhir.jpa.bulk.export.api.IBulkExportProcessor;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.model.util.JpaConstants;
@@ -50,6 +52,7 @@ import ca.uhn.fhir.jpa.util.RandomTextUtils;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.api.server.bulk.BulkExportJobParameters;
 import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
@@ -58,9 +61,9 @@ import ca.uhn.fhir.rest.server.exceptions.ResourceNotFoundException;
 import ca.uhn.fhir.rest.server.interceptor.ResponseTerminologyTranslationSvc;
 import ca.uhn.fhir.util.BinaryUtil;
 import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.HapiExtensions;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import jakarta.annotation.Nonnull;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
@@ -68,15 +71,19 @@ import org.hl7.fhir.instance.model.api.IBaseExtension;
 import org.hl7.fhir.instance.model.api.IBaseHasExtensions;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -119,6 +126,9 @@ public class ExpandResourceAndWriteBinaryStep
 	@Autowired
 	private IHapiTransactionService myTransactionService;
 
+	@Autowired(required = false)
+	private IBinaryStorageSvc myBinaryStorageSvc;
+
 	private volatile ResponseTerminologyTranslationSvc myResponseTerminologyTranslationSvc;
 
 	/**
@@ -136,7 +146,9 @@ public class ExpandResourceAndWriteBinaryStep
 	 * The {@link #fetchResourcesByIdAndConsumeThem(ResourceIdList, RequestPartitionId, Consumer)}
 	 * method loads the resources by ID, {@link ExpandResourcesConsumer} handles
 	 * the filtering and whatnot, then the {@link NdJsonResourceWriter}
-	 * ultimately writes them.
+	 * streams each encoded resource into a {@link BulkExportFileBuffer} for
+	 * its resource type. A file is stored as a Binary when it reaches the
+	 * maximum file size, or when all resources in the chunk have been written.
 	 */
 	@Nonnull
 	@Override
@@ -147,16 +159,18 @@ public class ExpandResourceAndWriteBinaryStep
 
 		// Currently only NDJSON output format is supported, but we could add other
 		// kinds of writers here for other formats if needed
-		NdJsonResourceWriter resourceWriter = new NdJsonResourceWriter(theStepExecutionDetails, theDataSink);
+		try (NdJsonResourceWriter resourceWriter = new NdJsonResourceWriter(theStepExecutionDetails, theDataSink)) {
 
-		expandResourcesFromList(theStepExecutionDetails, resourceWriter);
+			expandResourcesFromList(theStepExecutionDetails, resourceWriter);
+			resourceWriter.storeOpenFiles();
 
-		return new RunOutcome(resourceWriter.getNumResourcesProcessed());
+			return new RunOutcome(resourceWriter.getNumResourcesProcessed());
+		}
 	}
 
 	private void expandResourcesFromList(
 			StepExecutionDetails<BulkExportJobParameters, ResourceIdList> theStepExecutionDetails,
-			Consumer<ExpandedResourcesList> theResourceWriter) {
+			NdJsonResourceWriter theResourceWriter) {
 
 		ResourceIdList idList = theStepExecutionDetails.getData();
 		BulkExportJobParameters parameters = theStepExecutionDetails.getParameters();
@@ -217,7 +231,7 @@ public class ExpandResourceAndWriteBinaryStep
 	 */
 	private void addMetadataExtensionsToBinary(
 			@Nonnull StepExecutionDetails<BulkExportJobParameters, ResourceIdList> theStepExecutionDetails,
-			ExpandedResourcesList expandedResources,
+			String theResourceType,
 			IBaseBinary binary) {
 		// Note that this applies only to hl7.org structures, so these extensions will not be added
 		// to DSTU2 structures
@@ -241,7 +255,7 @@ public class ExpandResourceAndWriteBinaryStep
 			// resource type
 			IBaseExtension<?, ?> typeExtension = meta.addExtension();
 			typeExtension.setUrl(JpaConstants.BULK_META_EXTENSION_RESOURCE_TYPE);
-			typeExtension.setValue(myFhirContext.newPrimitiveString(expandedResources.getResourceType()));
+			typeExtension.setValue(myFhirContext.newPrimitiveString(theResourceType));
 		} else {
 			ourLog.warn(
 					"Could not attach metadata extensions to binary resource, as this binary metadata does not support extensions");
@@ -252,7 +266,7 @@ public class ExpandResourceAndWriteBinaryStep
 	 * Returns an output stream writer
 	 * (exposed for testing)
 	 */
-	protected OutputStreamWriter getStreamWriter(ByteArrayOutputStream theOutputStream) {
+	protected OutputStreamWriter getStreamWriter(OutputStream theOutputStream) {
 		return new OutputStreamWriter(theOutputStream, Constants.CHARSET_UTF8);
 	}
 
@@ -263,22 +277,17 @@ public class ExpandResourceAndWriteBinaryStep
 
 	/**
 	 * This class takes a collection of lists of resources read from the
-	 * repository, and processes them, then converts them into
-	 * {@link ExpandedResourcesList} instances, each one of which corresponds
-	 * to a single output file. We try to avoid exceeding the maximum file
-	 * size defined in
-	 * {@link JpaStorageSettings#getBulkExportFileMaximumSize()}
-	 * so we will do our best to emit multiple lists in favour of emitting
-	 * a list that exceeds that threshold.
+	 * repository, processes them, and then hands each encoded resource to
+	 * the {@link NdJsonResourceWriter}.
 	 */
 	private class ExpandResourcesConsumer implements Consumer<List<IBaseResource>> {
 
-		private final Consumer<ExpandedResourcesList> myResourceWriter;
+		private final NdJsonResourceWriter myResourceWriter;
 		private final StepExecutionDetails<BulkExportJobParameters, ResourceIdList> myStepExecutionDetails;
 
 		public ExpandResourcesConsumer(
 				StepExecutionDetails<BulkExportJobParameters, ResourceIdList> theStepExecutionDetails,
-				Consumer<ExpandedResourcesList> theResourceWriter) {
+				NdJsonResourceWriter theResourceWriter) {
 			myStepExecutionDetails = theStepExecutionDetails;
 			myResourceWriter = theResourceWriter;
 		}
@@ -335,65 +344,19 @@ public class ExpandResourceAndWriteBinaryStep
 				}
 			}
 
-			// encode them - Key is resource type, Value is a collection of serialized resources of that type
+			// encode them and stream them into the output file for their resource type
 			IParser parser = getParser(parameters);
-
-			ListMultimap<String, String> resourceTypeToStringifiedResources = ArrayListMultimap.create();
-			Map<String, Integer> resourceTypeToTotalSize = new HashMap<>();
 			for (IBaseResource resource : theResources) {
 				String type = myFhirContext.getResourceType(resource);
-				int existingSize = resourceTypeToTotalSize.getOrDefault(type, 0);
-
 				String jsonResource = parser.encodeResourceToString(resource);
-				int newSize = existingSize + jsonResource.length();
-
-				// If adding another stringified resource to the list for the given type
-				// would exceed the configured maximum allowed, then let's send the current
-				// list and flush it. Note that if a single resource exceeds the configurable
-				// maximum then we have no choice but to send it
-				long bulkExportFileMaximumSize = myStorageSettings.getBulkExportFileMaximumSize();
-				if (newSize > bulkExportFileMaximumSize) {
-					if (existingSize == 0) {
-						// If no files are already in the collection, then this one file
-						// is bigger than the maximum allowable. We'll allow it in that
-						// case
-						ourLog.warn(
-								"Single resource size {} exceeds allowable maximum of {}, so will ignore maximum",
-								newSize,
-								bulkExportFileMaximumSize);
-					} else {
-						// Otherwise, flush the contents now before adding the next file
-						List<String> stringifiedResources = resourceTypeToStringifiedResources.get(type);
-						writeStringifiedResources(type, stringifiedResources);
-
-						resourceTypeToStringifiedResources.removeAll(type);
-						newSize = jsonResource.length();
-					}
-				}
-
-				resourceTypeToStringifiedResources.put(type, jsonResource);
-				resourceTypeToTotalSize.put(type, newSize);
+				myResourceWriter.write(type, jsonResource);
 			}
 
-			for (String nextResourceType : resourceTypeToStringifiedResources.keySet()) {
-				List<String> stringifiedResources = resourceTypeToStringifiedResources.get(nextResourceType);
-				writeStringifiedResources(nextResourceType, stringifiedResources);
-			}
-		}
-
-		private void writeStringifiedResources(String theResourceType, List<String> theStringifiedResources) {
-			if (!theStringifiedResources.isEmpty()) {
-
-				ExpandedResourcesList output = new ExpandedResourcesList();
-				output.setStringifiedResources(theStringifiedResources);
-				output.setResourceType(theResourceType);
-				myResourceWriter.accept(output);
-
-				ourLog.info(
-						"Expanding of {} resources of type {} completed",
-						theStringifiedResources.size(),
-						theResourceType);
-			}
+			ourLog.info(
+					"Bulk export instance[{}] chunk[{}] - Expanded and wrote {} resources",
+					instanceId,
+					chunkId,
+					theResources.size());
 		}
 
 		private void applyPostFetchFiltering(
@@ -449,13 +412,18 @@ public class ExpandResourceAndWriteBinaryStep
 	}
 
 	/**
-	 * This class takes a collection of expanded resources, and expands it to
-	 * an NDJSON file, which is written to a Binary resource.
+	 * This class takes encoded resources and streams them into one open
+	 * NDJSON file per resource type, storing each file as a Binary resource.
+	 * We try to avoid exceeding the maximum file size defined in
+	 * {@link JpaStorageSettings#getBulkExportFileMaximumSize()}, so a file
+	 * is stored and a new one is started whenever the next resource would
+	 * take it over that threshold.
 	 */
-	private class NdJsonResourceWriter implements Consumer<ExpandedResourcesList> {
+	private class NdJsonResourceWriter implements Closeable {
 
 		private final StepExecutionDetails<BulkExportJobParameters, ResourceIdList> myStepExecutionDetails;
 		private final IJobDataSink<BulkExportBinaryFileId> myDataSink;
+		private final Map<String, BulkExportFileBuffer> myOpenFiles = new LinkedHashMap<>();
 		private int myNumResourcesProcessed = 0;
 
 		public NdJsonResourceWriter(
@@ -469,42 +437,91 @@ public class ExpandResourceAndWriteBinaryStep
 			return myNumResourcesProcessed;
 		}
 
+		public void write(String theResourceType, String theEncodedResource) throws JobExecutionFailedException {
+			BulkExportFileBuffer file = myOpenFiles.get(theResourceType);
+			long existingSize = file != null ? file.getContentLength() : 0;
+			long newSize = existingSize + theEncodedResource.length();
+
+			// If adding another resource to the file for the given type would exceed
+			// the configured maximum allowed, then let's store the current file and
+			// start a new one. Note that if a single resource exceeds the configurable
+			// maximum then we have no choice but to send it
+			long bulkExportFileMaximumSize = myStorageSettings.getBulkExportFileMaximumSize();
+			if (newSize > bulkExportFileMaximumSize) {
+				if (existingSize == 0) {
+					// If nothing has been written to the file yet, then this one resource
+					// is bigger than the maximum allowable. We'll allow it in that case
+					ourLog.warn(
+							"Single resource size {} exceeds allowable maximum of {}, so will ignore maximum",
+							newSize,
+							bulkExportFileMaximumSize);
+				} else {
+					// Otherwise, store the contents now before adding the next resource
+					storeFile(file);
+					file = null;
+				}
+			}
+
+			try {
+				if (file == null) {
+					file = new BulkExportFileBuffer(
+							theResourceType,
+							myStorageSettings.isBulkExportFileGzipEnabled(),
+							ExpandResourceAndWriteBinaryStep.this::getStreamWriter);
+					myOpenFiles.put(theResourceType, file);
+				}
+				file.append(theEncodedResource);
+			} catch (IOException ex) {
+				throw newWriteFailure(theResourceType, ex);
+			}
+		}
+
+		/**
+		 * Stores every file that is still open
+		 */
+		public void storeOpenFiles() throws JobExecutionFailedException {
+			for (BulkExportFileBuffer next : new ArrayList<>(myOpenFiles.values())) {
+				storeFile(next);
+			}
+		}
+
+		/**
+		 * Discards any files that were not stored, e.g. because of a failure
+		 */
 		@Override
-		public void accept(ExpandedResourcesList theExpandedResourcesList) throws JobExecutionFailedException {
-			int batchSize = theExpandedResourcesList.getStringifiedResources().size();
+		public void close() {
+			myOpenFiles.values().forEach(BulkExportFileBuffer::close);
+			myOpenFiles.clear();
+		}
+
+		private void storeFile(BulkExportFileBuffer theFile) throws JobExecutionFailedException {
+			myOpenFiles.remove(theFile.getResourceType());
+			try {
+				doStoreFile(theFile);
+			} finally {
+				theFile.close();
+			}
+		}
+
+		private void doStoreFile(BulkExportFileBuffer theFile) throws JobExecutionFailedException {
+			String resourceType = theFile.getResourceType();
+			int batchSize = theFile.getResourceCount();
 			ourLog.info("Writing {} resources to binary file", batchSize);
 
-			myNumResourcesProcessed += batchSize;
+			try {
+				theFile.finish();
+			} catch (IOException ex) {
+				throw newWriteFailure(resourceType, ex);
+			}
 
 			@SuppressWarnings("unchecked")
 			IFhirResourceDao<IBaseBinary> binaryDao = myDaoRegistry.getResourceDao("Binary");
 
 			IBaseBinary binary = BinaryUtil.newBinary(myFhirContext);
 
-			addMetadataExtensionsToBinary(myStepExecutionDetails, theExpandedResourcesList, binary);
+			addMetadataExtensionsToBinary(myStepExecutionDetails, resourceType, binary);
 
-			binary.setContentType(Constants.CT_FHIR_NDJSON);
-
-			int processedRecordsCount = 0;
-			try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-				try (OutputStreamWriter streamWriter = getStreamWriter(outputStream)) {
-					for (String stringified : theExpandedResourcesList.getStringifiedResources()) {
-						streamWriter.append(stringified);
-						streamWriter.append("\n");
-						processedRecordsCount++;
-					}
-					streamWriter.flush();
-					outputStream.flush();
-				}
-				binary.setContent(outputStream.toByteArray());
-			} catch (IOException ex) {
-				String errorMsg = String.format(
-						"Failure to process resource of type %s : %s",
-						theExpandedResourcesList.getResourceType(), ex.getMessage());
-				ourLog.error(errorMsg);
-
-				throw new JobExecutionFailedException(Msg.code(2431) + errorMsg);
-			}
+			binary.setContentType(theFile.isGzip() ? Constants.CT_APPLICATION_GZIP : Constants.CT_FHIR_NDJSON);
 
 			SystemRequestDetails srd = new SystemRequestDetails();
 			BulkExportJobParameters jobParameters = myStepExecutionDetails.getParameters();
@@ -552,18 +569,70 @@ public class ExpandResourceAndWriteBinaryStep
 				}
 			}
 
+			try {
+				writeContentToBinary(theFile, binary, srd);
+			} catch (IOException ex) {
+				throw newWriteFailure(resourceType, ex);
+			}
+
 			DaoMethodOutcome outcome = binaryDao.update(binary, srd);
 			IIdType id = outcome.getId();
 
 			BulkExportBinaryFileId bulkExportBinaryFileId = new BulkExportBinaryFileId();
 			bulkExportBinaryFileId.setBinaryId(id.getValueAsString());
-			bulkExportBinaryFileId.setResourceType(theExpandedResourcesList.getResourceType());
+			bulkExportBinaryFileId.setResourceType(resourceType);
 			myDataSink.accept(bulkExportBinaryFileId);
 
-			ourLog.info(
-					"Binary writing complete for {} resources of type {}.",
-					processedRecordsCount,
-					theExpandedResourcesList.getResourceType());
+			myNumResourcesProcessed += batchSize;
+
+			ourLog.info("Binary writing complete for {} resources of type {}.", batchSize, resourceType);
+		}
+
+		/**
+		 * If a {@link BinaryStorageInterceptor} is registered and the binary storage service is
+		 * willing to accept the file, the contents are streamed directly into it and the Binary
+		 * only carries a reference to the stored content (the same form the interceptor produces
+		 * when it externalizes large Binary payloads, and which it inflates on read and cleans up
+		 * on expunge). Otherwise the contents are inlined in the Binary.
+		 */
+		private void writeContentToBinary(
+				BulkExportFileBuffer theFile, IBaseBinary theBinary, RequestDetails theRequestDetails)
+				throws IOException {
+			if (myBinaryStorageSvc != null && isBinaryStorageInterceptorRegistered()) {
+				IIdType binaryId = theBinary.getIdElement().withResourceType("Binary");
+				String contentType = theBinary.getContentType();
+				IPrimitiveType<byte[]> data = BinaryUtil.getOrCreateData(myFhirContext, theBinary);
+				if (data instanceof IBaseHasExtensions
+						&& myBinaryStorageSvc.shouldStoreBinaryContent(
+								theFile.getStoredSize(), binaryId, contentType)) {
+					StoredDetails storedDetails;
+					try (InputStream inputStream = theFile.newInputStream()) {
+						storedDetails = myBinaryStorageSvc.storeBinaryContent(
+								binaryId, null, contentType, inputStream, theRequestDetails);
+					}
+
+					IBaseExtension<?, ?> ext = ((IBaseHasExtensions) data).addExtension();
+					ext.setUrl(HapiExtensions.EXT_EXTERNALIZED_BINARY_ID);
+					ext.setUserData(JpaConstants.EXTENSION_EXT_SYSTEMDEFINED, Boolean.TRUE);
+					ext.setValue(myFhirContext.newPrimitiveString(storedDetails.getBinaryContentId()));
+					return;
+				}
+			}
+
+			theBinary.setContent(theFile.toByteArray());
+		}
+
+		private boolean isBinaryStorageInterceptorRegistered() {
+			return myInterceptorService.getAllRegisteredInterceptors().stream()
+					.anyMatch(t -> t instanceof BinaryStorageInterceptor);
+		}
+
+		private JobExecutionFailedException newWriteFailure(String theResourceType, IOException theException) {
+			String errorMsg = String.format(
+					"Failure to process resource of type %s : %s", theResourceType, theException.getMessage());
+			ourLog.error(errorMsg);
+
+			return new JobExecutionFailedException(Msg.code(2431) + errorMsg);
 		}
 	}
 }
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * hapi-fhir-storage-batch2-jobs
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.batch2.jobs.termvalueset;
+
+import ca.uhn.fhir.batch2.api.IFirstJobStepWorker;
+import ca.uhn.fhir.batch2.api.IJobDataSink;
+import ca.uhn.fhir.batch2.api.JobExecutionFailedException;
+import ca.uhn.fhir.batch2.api.RunOutcome;
+import ca.uhn.fhir.batch2.api.StepExecutionDetails;
+import ca.uhn.fhir.batch2.api.VoidModel;
+import ca.uhn.fhir.jpa.term.api.ITermValueSetPreExpansionJobSvc;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPIDResult;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPreExpansionJobParameters;
+import jakarta.annotation.Nonnull;
+
+import java.util.List;
+
+public class ClaimValueSetsForPreExpansionStep
+		implements IFirstJobStepWorker<TermValueSetPreExpansionJobParameters, TermValueSetPIDResult> {
+
+	static final int CLAIM_PAGE_SIZE = 100;
+
+	private final ITermValueSetPreExpansionJobSvc myTermValueSetPreExpansionJobSvc;
+
+	public ClaimValueSetsForPreExpansionStep(ITermValueSetPreExpansionJobSvc theTermValueSetPreExpansionJobSvc) {
+		myTermValueSetPreExpansionJobSvc = theTermValueSetPreExpansionJobSvc;
+	}
+
+	@Nonnull
+	@Override
+	public RunOutcome run(
+			@Nonnull StepExecutionDetails<TermValueSetPreExpansionJobParameters, VoidModel> theStepExecutionDetails,
+			@Nonnull IJobDataSink<TermValueSetPIDResult> theDataSink)
+			throws JobExecutionFailedException {
+		int maxValueSets = theStepExecutionDetails.getParameters().getMaxValueSets();
+		int remaining = maxValueSets > 0 ? maxValueSets : Integer.MAX_VALUE;
+
+		int claimed = 0;
+		while (remaining > 0) {
+			List<Long> pids = myTermValueSetPreExpansionJobSvc.claimValueSetsForPreExpansion(
+					Math.min(remaining, CLAIM_PAGE_SIZE));
+			if (pids.isEmpty()) {
+				break;
+			}
+
+			for (Long next : pids) {
+				TermValueSetPIDResult pidResult = new TermValueSetPIDResult();
+				pidResult.setTermValueSetPID(next);
+				theDataSink.accept(pidResult);
+			}
+			claimed += pids.size();
+			remaining -= pids.size();
+		}
+
+		return new RunOutcome(claimed);
+	}
+}
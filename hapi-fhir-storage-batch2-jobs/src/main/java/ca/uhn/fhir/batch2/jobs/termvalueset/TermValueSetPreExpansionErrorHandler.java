@@ -0,0 +1,69 @@
+/*-
+ * #%L
+ * hapi-fhir-storage-batch2-jobs
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.batch2.jobs.termvalueset;
+
+import ca.uhn.fhir.batch2.api.IJobCompletionHandler;
+import ca.uhn.fhir.batch2.api.IJobPersistence;
+import ca.uhn.fhir.batch2.api.JobCompletionDetails;
+import ca.uhn.fhir.batch2.model.WorkChunk;
+import ca.uhn.fhir.jpa.term.api.ITermValueSetPreExpansionJobSvc;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPIDResult;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPreExpansionJobParameters;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static ca.uhn.fhir.batch2.jobs.termvalueset.TermValueSetPreExpansionJobConfig.PRE_EXPAND_VALUE_SET_STEP_ID;
+
+public class TermValueSetPreExpansionErrorHandler
+		implements IJobCompletionHandler<TermValueSetPreExpansionJobParameters> {
+
+	private final ITermValueSetPreExpansionJobSvc myTermValueSetPreExpansionJobSvc;
+	private final IJobPersistence myJobPersistence;
+
+	public TermValueSetPreExpansionErrorHandler(
+			ITermValueSetPreExpansionJobSvc theTermValueSetPreExpansionJobSvc, IJobPersistence theJobPersistence) {
+		myTermValueSetPreExpansionJobSvc = theTermValueSetPreExpansionJobSvc;
+		myJobPersistence = theJobPersistence;
+	}
+
+	@Override
+	public void jobComplete(JobCompletionDetails<TermValueSetPreExpansionJobParameters> theDetails) {
+		String instanceId = theDetails.getInstance().getInstanceId();
+		myTermValueSetPreExpansionJobSvc.notifyJobFailed(instanceId, getClaimedTermValueSetPids(instanceId));
+	}
+
+	/**
+	 * Every ValueSet claimed by the first step of this job instance was emitted as a work chunk
+	 * for the pre-expansion step, so the chunks tell us which ValueSets belong to this job
+	 */
+	private List<Long> getClaimedTermValueSetPids(String theInstanceId) {
+		List<Long> retVal = new ArrayList<>();
+		Iterator<WorkChunk> iterator = myJobPersistence.fetchAllWorkChunksIterator(theInstanceId, true);
+		while (iterator.hasNext()) {
+			WorkChunk next = iterator.next();
+			if (PRE_EXPAND_VALUE_SET_STEP_ID.equals(next.getTargetStepId()) && next.getData() != null) {
+				retVal.add(next.getData(TermValueSetPIDResult.class).getTermValueSetPID());
+			}
+		}
+		return retVal;
+	}
+}
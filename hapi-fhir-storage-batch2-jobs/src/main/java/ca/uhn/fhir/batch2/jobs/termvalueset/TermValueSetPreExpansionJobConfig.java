@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * hapi-fhir-storage-batch2-jobs
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.batch2.jobs.termvalueset;
+
+import ca.uhn.fhir.batch2.api.IJobPersistence;
+import ca.uhn.fhir.batch2.model.JobDefinition;
+import ca.uhn.fhir.jpa.term.api.ITermValueSetPreExpansionJobSvc;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPIDResult;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPreExpansionJobParameters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TermValueSetPreExpansionJobConfig {
+	/**
+	 * TermValueSet pre-expansion
+	 */
+	public static final String TERM_VALUE_SET_PRE_EXPANSION_JOB_NAME = "termValueSetPreExpansionJob";
+
+	static final String PRE_EXPAND_VALUE_SET_STEP_ID = "PreExpandValueSetStep";
+
+	@Autowired
+	private ITermValueSetPreExpansionJobSvc myTermValueSetPreExpansionJobSvc;
+
+	@Autowired
+	private IJobPersistence myJobPersistence;
+
+	/**
+	 * Pre-expand ValueSets job.
+	 * Claims every ValueSet waiting to be pre-expanded and expands each one in its own work chunk,
+	 * so that ValueSets are expanded concurrently by all available batch2 workers
+	 */
+	@Bean
+	public JobDefinition<TermValueSetPreExpansionJobParameters> termValueSetPreExpansionJobDefinition() {
+		return JobDefinition.newBuilder()
+				.setJobDefinitionId(TERM_VALUE_SET_PRE_EXPANSION_JOB_NAME)
+				.setJobDescription("Term ValueSet pre-expansion job")
+				.setJobDefinitionVersion(1)
+				.setParametersType(TermValueSetPreExpansionJobParameters.class)
+				.setParametersValidator(termValueSetPreExpansionParameterValidator())
+				.addFirstStep(
+						"ClaimValueSetsStep",
+						"Claims the ValueSets which are waiting to be pre-expanded and emits one chunk per ValueSet",
+						TermValueSetPIDResult.class,
+						claimValueSetsForPreExpansionStep())
+				.addLastStep(
+						PRE_EXPAND_VALUE_SET_STEP_ID,
+						"Pre-expands a single ValueSet into the terminology tables",
+						preExpandValueSetStep())
+				.completionHandler(termValueSetPreExpansionCompletionHandler())
+				.errorHandler(termValueSetPreExpansionErrorHandler())
+				.build();
+	}
+
+	@Bean
+	public TermValueSetPreExpansionParameterValidator termValueSetPreExpansionParameterValidator() {
+		return new TermValueSetPreExpansionParameterValidator();
+	}
+
+	@Bean
+	public ClaimValueSetsForPreExpansionStep claimValueSetsForPreExpansionStep() {
+		return new ClaimValueSetsForPreExpansionStep(myTermValueSetPreExpansionJobSvc);
+	}
+
+	@Bean
+	public PreExpandValueSetStep preExpandValueSetStep() {
+		return new PreExpandValueSetStep(myTermValueSetPreExpansionJobSvc);
+	}
+
+	@Bean
+	public TermValueSetPreExpansionCompletionHandler termValueSetPreExpansionCompletionHandler() {
+		return new TermValueSetPreExpansionCompletionHandler(myTermValueSetPreExpansionJobSvc);
+	}
+
+	@Bean
+	public TermValueSetPreExpansionErrorHandler termValueSetPreExpansionErrorHandler() {
+		return new TermValueSetPreExpansionErrorHandler(myTermValueSetPreExpansionJobSvc, myJobPersistence);
+	}
+}
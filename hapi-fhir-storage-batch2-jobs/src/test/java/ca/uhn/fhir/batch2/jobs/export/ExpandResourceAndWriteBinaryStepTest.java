@@ -20,14 +20,19 @@ import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
 import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.api.model.PersistentIdToForcedIdMap;
 import ca.uhn.fhir.jpa.api.svc.IIdHelperService;
+import ca.uhn.fhir.jpa.binary.api.IBinaryStorageSvc;
+import ca.uhn.fhir.jpa.binary.interceptor.BinaryStorageInterceptor;
+import ca.uhn.fhir.jpa.binary.api.StoredDetails;
 import ca.uhn.fhir.jpa.dao.tx.IHapiTransactionService;
 import ca.uhn.fhir.jpa.dao.tx.NonTransactionalHapiTransactionService;
 import ca.uhn.fhir.jpa.model.dao.JpaPid;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
 import ca.uhn.fhir.rest.api.server.bulk.BulkExportJobParameters;
 import ca.uhn.fhir.rest.api.server.storage.IResourcePersistentId;
 import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import ca.uhn.fhir.util.HapiExtensions;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -35,6 +40,7 @@ import ch.qos.logback.core.read.ListAppender;
 import org.hl7.fhir.instance.model.api.IBaseBinary;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Binary;
 import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Patient;
 import jakarta.annotation.Nonnull;
@@ -52,27 +58,37 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -89,7 +105,7 @@ public class ExpandResourceAndWriteBinaryStepTest {
 		}
 
 		@Override
-		protected OutputStreamWriter getStreamWriter(ByteArrayOutputStream theOutputStream) {
+		protected OutputStreamWriter getStreamWriter(OutputStream theOutputStream) {
 			if (myWriter == null) {
 				return super.getStreamWriter(theOutputStream);
 			}
@@ -105,6 +121,9 @@ public class ExpandResourceAndWriteBinaryStepTest {
 	@Mock
 	private DaoRegistry myDaoRegistry;
 
+	@Mock
+	private IBinaryStorageSvc myBinaryStorageSvc;
+
 	@Mock
 	IIdHelperService<JpaPid> myIdHelperService;
 
@@ -262,7 +281,6 @@ public class ExpandResourceAndWriteBinaryStepTest {
 		instance.setInstanceId("1");
 		ResourceIdList idList = new ResourceIdList();
 		ArrayList<IBaseResource> resources = createResourceList(idList);
-		IFhirResourceDao<IBaseBinary> binaryDao = mock(IFhirResourceDao.class);
 		IFhirResourceDao<?> patientDao = mockOutDaoRegistry();
 		IJobDataSink<BulkExportBinaryFileId> sink = mock(IJobDataSink.class);
 
@@ -284,10 +302,10 @@ public class ExpandResourceAndWriteBinaryStepTest {
 			}
 			return new PersistentIdToForcedIdMap<>(map);
 		});
-		when(myDaoRegistry.getResourceDao(eq("Binary")))
-			.thenReturn(binaryDao);
 
-		// we're gong to mock the writer
+		// we're gong to mock the writer - resources are streamed into it
+		// as they are encoded, so the failure happens before any Binary
+		// is created
 		OutputStreamWriter writer = mock(OutputStreamWriter.class);
 		when(writer.append(anyString())).thenThrow(new IOException(testException));
 		myFinalStep.setWriter(writer);
@@ -311,4 +329,147 @@ public class ExpandResourceAndWriteBinaryStepTest {
 		verify(sink, never())
 			.accept(any(BulkExportBinaryFileId.class));
 	}
+
+	@Test
+	public void run_filesExceedMaximumSize_rollsOverToNewFile() {
+		// setup
+		JobInstance instance = new JobInstance();
+		instance.setInstanceId("1");
+		IFhirResourceDao<IBaseBinary> binaryDao = mock(IFhirResourceDao.class);
+		IFhirResourceDao<?> patientDao = mockOutDaoRegistry();
+		IJobDataSink<BulkExportBinaryFileId> sink = mock(IJobDataSink.class);
+
+		ResourceIdList idList = new ResourceIdList();
+		ArrayList<IBaseResource> resources = createResourceList(idList);
+		StepExecutionDetails<BulkExportJobParameters, ResourceIdList> input = createInput(idList, createParameters(false), instance);
+
+		DaoMethodOutcome methodOutcome = new DaoMethodOutcome();
+		methodOutcome.setId(new IdType("Binary/123"));
+
+		// Each encoded Patient is around 40 characters long
+		myStorageSettings.setBulkExportFileMaximumSize(500);
+
+		mockOutResourceFetching(patientDao, resources);
+		when(myDaoRegistry.getResourceDao(eq("Binary"))).thenReturn(binaryDao);
+		when(binaryDao.update(any(IBaseBinary.class), any(RequestDetails.class))).thenReturn(methodOutcome);
+
+		// test
+		RunOutcome outcome = myFinalStep.run(input, sink);
+
+		// verify
+		assertEquals(resources.size(), outcome.getRecordsProcessed());
+
+		ArgumentCaptor<IBaseBinary> binaryCaptor = ArgumentCaptor.forClass(IBaseBinary.class);
+		verify(binaryDao, atLeast(2)).update(binaryCaptor.capture(), any(RequestDetails.class));
+		int totalLines = 0;
+		for (IBaseBinary next : binaryCaptor.getAllValues()) {
+			String outputString = new String(next.getContent(), StandardCharsets.UTF_8);
+			assertThat(outputString.length()).isLessThanOrEqualTo(500 + StringUtils.countOccurrencesOf(outputString, "\n"));
+			totalLines += StringUtils.countOccurrencesOf(outputString, "\n");
+		}
+		assertEquals(resources.size(), totalLines);
+		verify(sink, times(binaryCaptor.getAllValues().size())).accept(any(BulkExportBinaryFileId.class));
+	}
+
+	@Test
+	public void run_withBinaryStorageAndGzip_streamsCompressedFileIntoStorage() throws IOException {
+		// setup
+		JobInstance instance = new JobInstance();
+		instance.setInstanceId("1");
+		IFhirResourceDao<IBaseBinary> binaryDao = mock(IFhirResourceDao.class);
+		IFhirResourceDao<?> patientDao = mockOutDaoRegistry();
+		IJobDataSink<BulkExportBinaryFileId> sink = mock(IJobDataSink.class);
+
+		ResourceIdList idList = new ResourceIdList();
+		ArrayList<IBaseResource> resources = createResourceList(idList);
+		StepExecutionDetails<BulkExportJobParameters, ResourceIdList> input = createInput(idList, createParameters(false), instance);
+
+		DaoMethodOutcome methodOutcome = new DaoMethodOutcome();
+		methodOutcome.setId(new IdType("Binary/123"));
+
+		myStorageSettings.setBulkExportFileGzipEnabled(true);
+		myInterceptorService.registerInterceptor(new BinaryStorageInterceptor<>(myFhirContext));
+
+		mockOutResourceFetching(patientDao, resources);
+		when(myDaoRegistry.getResourceDao(eq("Binary"))).thenReturn(binaryDao);
+		when(binaryDao.update(any(IBaseBinary.class), any(RequestDetails.class))).thenReturn(methodOutcome);
+		when(myBinaryStorageSvc.shouldStoreBinaryContent(anyLong(), any(), eq(Constants.CT_APPLICATION_GZIP))).thenReturn(true);
+		ByteArrayOutputStream storedBytes = new ByteArrayOutputStream();
+		when(myBinaryStorageSvc.storeBinaryContent(any(), any(), eq(Constants.CT_APPLICATION_GZIP), any(), any())).thenAnswer(t -> {
+			t.getArgument(3, InputStream.class).transferTo(storedBytes);
+			return new StoredDetails().setBinaryContentId("stored-content-id");
+		});
+
+		// test
+		RunOutcome outcome = myFinalStep.run(input, sink);
+
+		// verify
+		assertEquals(resources.size(), outcome.getRecordsProcessed());
+
+		ArgumentCaptor<IBaseBinary> binaryCaptor = ArgumentCaptor.forClass(IBaseBinary.class);
+		verify(binaryDao).update(binaryCaptor.capture(), any(RequestDetails.class));
+		Binary binary = (Binary) binaryCaptor.getValue();
+		assertEquals(Constants.CT_APPLICATION_GZIP, binary.getContentType());
+		assertNull(binary.getData());
+		assertEquals("stored-content-id", binary.getDataElement().getExtensionString(HapiExtensions.EXT_EXTERNALIZED_BINARY_ID));
+
+		String outputString;
+		try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(storedBytes.toByteArray()))) {
+			outputString = new String(gzipInputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		assertEquals(resources.size(), StringUtils.countOccurrencesOf(outputString, "\n"));
+		verify(sink).accept(any(BulkExportBinaryFileId.class));
+	}
+
+	/**
+	 * Externalized content is only inflated on read and cleaned up on expunge by the
+	 * {@link BinaryStorageInterceptor}, so without it the file must be inlined
+	 */
+	@Test
+	public void run_withBinaryStorageButNoInterceptor_inlinesFile() {
+		// setup
+		JobInstance instance = new JobInstance();
+		instance.setInstanceId("1");
+		IFhirResourceDao<IBaseBinary> binaryDao = mock(IFhirResourceDao.class);
+		IFhirResourceDao<?> patientDao = mockOutDaoRegistry();
+		IJobDataSink<BulkExportBinaryFileId> sink = mock(IJobDataSink.class);
+
+		ResourceIdList idList = new ResourceIdList();
+		ArrayList<IBaseResource> resources = createResourceList(idList);
+		StepExecutionDetails<BulkExportJobParameters, ResourceIdList> input = createInput(idList, createParameters(false), instance);
+
+		DaoMethodOutcome methodOutcome = new DaoMethodOutcome();
+		methodOutcome.setId(new IdType("Binary/123"));
+
+		mockOutResourceFetching(patientDao, resources);
+		when(myDaoRegistry.getResourceDao(eq("Binary"))).thenReturn(binaryDao);
+		when(binaryDao.update(any(IBaseBinary.class), any(RequestDetails.class))).thenReturn(methodOutcome);
+
+		// test
+		RunOutcome outcome = myFinalStep.run(input, sink);
+
+		// verify
+		assertEquals(resources.size(), outcome.getRecordsProcessed());
+		verifyNoInteractions(myBinaryStorageSvc);
+
+		ArgumentCaptor<IBaseBinary> binaryCaptor = ArgumentCaptor.forClass(IBaseBinary.class);
+		verify(binaryDao).update(binaryCaptor.capture(), any(RequestDetails.class));
+		Binary binary = (Binary) binaryCaptor.getValue();
+		assertNull(binary.getDataElement().getExtensionString(HapiExtensions.EXT_EXTERNALIZED_BINARY_ID));
+		String outputString = new String(binary.getContent(), StandardCharsets.UTF_8);
+		assertEquals(resources.size(), StringUtils.countOccurrencesOf(outputString, "\n"));
+	}
+
+	private void mockOutResourceFetching(IFhirResourceDao<?> thePatientDao, List<IBaseResource> theResources) {
+		when(thePatientDao.search(any(), any())).thenReturn(new SimpleBundleProvider(theResources));
+		when(myIdHelperService.newPidFromStringIdAndResourceName(anyString(), anyString())).thenReturn(JpaPid.fromId(1L));
+		when(myIdHelperService.translatePidsToForcedIds(any())).thenAnswer(t -> {
+			Set<IResourcePersistentId<JpaPid>> inputSet = t.getArgument(0, Set.class);
+			Map<IResourcePersistentId<?>, Optional<String>> map = new HashMap<>();
+			for (var next : inputSet) {
+				map.put(next, Optional.empty());
+			}
+			return new PersistentIdToForcedIdMap<>(map);
+		});
+	}
 }
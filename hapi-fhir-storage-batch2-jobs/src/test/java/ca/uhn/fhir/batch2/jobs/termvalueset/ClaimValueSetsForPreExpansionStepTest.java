@@ -0,0 +1,78 @@
+package ca.uhn.fhir.batch2.jobs.termvalueset;
+
+import ca.uhn.fhir.batch2.api.IJobDataSink;
+import ca.uhn.fhir.batch2.api.RunOutcome;
+import ca.uhn.fhir.batch2.api.StepExecutionDetails;
+import ca.uhn.fhir.batch2.api.VoidModel;
+import ca.uhn.fhir.batch2.model.JobInstance;
+import ca.uhn.fhir.batch2.model.WorkChunk;
+import ca.uhn.fhir.jpa.term.api.ITermValueSetPreExpansionJobSvc;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPIDResult;
+import ca.uhn.fhir.jpa.term.models.TermValueSetPreExpansionJobParameters;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ClaimValueSetsForPreExpansionStepTest {
+
+	@Mock
+	private ITermValueSetPreExpansionJobSvc myJobSvc;
+	@Mock
+	private IJobDataSink<TermValueSetPIDResult> myDataSink;
+	@InjectMocks
+	private ClaimValueSetsForPreExpansionStep myStep;
+
+	@Test
+	public void testClaimAllPages() {
+		// Setup
+		when(myJobSvc.claimValueSetsForPreExpansion(ClaimValueSetsForPreExpansionStep.CLAIM_PAGE_SIZE))
+				.thenReturn(pids(1, 100), pids(101, 150), List.of());
+
+		// Test
+		RunOutcome outcome = myStep.run(details(0), myDataSink);
+
+		// Verify
+		assertThat(outcome.getRecordsProcessed()).isEqualTo(150);
+		ArgumentCaptor<TermValueSetPIDResult> captor = ArgumentCaptor.forClass(TermValueSetPIDResult.class);
+		verify(myDataSink, times(150)).accept(captor.capture());
+		assertThat(captor.getAllValues().get(149).getTermValueSetPID()).isEqualTo(150L);
+	}
+
+	@Test
+	public void testClaimStopsAtMaximum() {
+		// Setup
+		when(myJobSvc.claimValueSetsForPreExpansion(5)).thenReturn(pids(1, 5));
+
+		// Test
+		RunOutcome outcome = myStep.run(details(5), myDataSink);
+
+		// Verify
+		assertThat(outcome.getRecordsProcessed()).isEqualTo(5);
+		verify(myJobSvc, times(1)).claimValueSetsForPreExpansion(any(Integer.class));
+		verify(myDataSink, times(5)).accept(any(TermValueSetPIDResult.class));
+	}
+
+	private static StepExecutionDetails<TermValueSetPreExpansionJobParameters, VoidModel> details(int theMaxValueSets) {
+		TermValueSetPreExpansionJobParameters parameters = new TermValueSetPreExpansionJobParameters();
+		parameters.setMaxValueSets(theMaxValueSets);
+		return new StepExecutionDetails<>(parameters, null, new JobInstance(), new WorkChunk().setId("chunk-id"));
+	}
+
+	private static List<Long> pids(long theFrom, long theTo) {
+		return LongStream.rangeClosed(theFrom, theTo).boxed().collect(Collectors.toList());
+	}
+}
@@ -24,6 +24,7 @@ import ca.uhn.fhir.jpa.api.model.HistoryCountModeEnum;
 import ca.uhn.fhir.jpa.api.model.WarmCacheEntry;
 import ca.uhn.fhir.jpa.model.entity.ResourceEncodingEnum;
 import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.jpa.util.MemoryCacheService;
 import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
 import ca.uhn.fhir.system.HapiSystemProperties;
 import ca.uhn.fhir.util.HapiExtensions;
@@ -42,7 +43,9 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -97,6 +100,14 @@ public class JpaStorageSettings extends StorageSettings {
 
 	public static final int DEFAULT_EXPUNGE_BATCH_SIZE = 800;
 	public static final int DEFAULT_BUNDLE_BATCH_QUEUE_CAPACITY = 200;
+	/**
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_TRANSACTION_FLUSH_JDBC_BATCH_SIZE = 500;
+	/**
+	 * @since 7.6.0
+	 */
+	public static final int DEFAULT_PRE_EXPAND_VALUE_SETS_INSERT_BATCH_SIZE = 1000;
 
 	public static final int DEFAULT_BULK_EXPORT_FILE_MAXIMUM_CAPACITY = 1_000;
 	/**
@@ -321,6 +332,10 @@ public class JpaStorageSettings extends StorageSettings {
 	 * Since 7.2.0
 	 */
 	private long myBulkExportFileMaximumSize = DEFAULT_BULK_EXPORT_MAXIMUM_WORK_CHUNK_SIZE;
+	/**
+	 * Since 7.6.0
+	 */
+	private boolean myBulkExportFileGzipEnabled = false;
 	/**
 	 * Since 6.4.0
 	 */
@@ -368,6 +383,50 @@ public class JpaStorageSettings extends StorageSettings {
 	 */
 	private boolean myWriteToLegacyLobColumns = false;
 
+	/**
+	 * Number of threads used to decode resources loaded by searches. A value of
+	 * <code>0</code> means that resources are decoded on the calling thread.
+	 *
+	 * @since 7.6.0
+	 */
+	private int mySearchResourceLoadingThreadCount = 0;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myMemoryCacheStatisticsEnabled = true;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private final Map<MemoryCacheService.CacheEnum, Long> myMemoryCacheMaximumBytes =
+			new EnumMap<>(MemoryCacheService.CacheEnum.class);
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myTransactionFlushJdbcBatchSize = DEFAULT_TRANSACTION_FLUSH_JDBC_BATCH_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private boolean myPreExpandValueSetsUsingBatch2Job = false;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myPreExpandValueSetsInsertBatchSize = DEFAULT_PRE_EXPAND_VALUE_SETS_INSERT_BATCH_SIZE;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private String myValueSetCodeIndexDirectory;
+
+	/**
+	 * @since 7.6.0
+	 */
+	private int myDeferredTerminologyStorageThreadCount = 1;
+
 	/**
 	 * Constructor
 	 */
@@ -1000,10 +1059,32 @@ public class JpaStorageSettings extends StorageSettings {
 		myExpungeThreadCount = Math.max(myExpungeThreadCount, 1); // Minimum of 1
 	}
 
+	/**
+	 * The encoding used to store the body of new resource versions when they are stored
+	 * as binary content (currently only on Oracle, other platforms store resource bodies
+	 * as inline text and rely on the database for compression).
+	 * <p>
+	 * The default is {@link ResourceEncodingEnum#JSONC} (GZip). {@link ResourceEncodingEnum#LZ4}
+	 * is considerably cheaper to compress and decompress at the cost of a somewhat larger
+	 * stored size. Changing this setting only affects new writes, existing versions remain
+	 * readable in whatever encoding they were stored with.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * The encoding used to store the body of new resource versions when they are stored
+	 * as binary content (currently only on Oracle, other platforms store resource bodies
+	 * as inline text and rely on the database for compression).
+	 * <p>
+	 * The default is {@link ResourceEncodingEnum#JSONC} (GZip). {@link ResourceEncodingEnum#LZ4}
+	 * is considerably cheaper to compress and decompress at the cost of a somewhat larger
+	 * stored size. Changing this setting only affects new writes, existing versions remain
+	 * readable in whatever encoding they were stored with.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
 		myResourceEncoding = theResourceEncoding;
 	}
@@ -2008,6 +2089,122 @@ public class JpaStorageSettings extends StorageSettings {
 		myEnableTaskPreExpandValueSets = theEnableTaskPreExpandValueSets;
 	}
 
+	/**
+	 * If enabled, the scheduled ValueSet pre-expansion task will not expand ValueSets itself, but
+	 * will instead start a batch2 job which expands each pending ValueSet as a separate work chunk.
+	 * This allows several ValueSets to be pre-expanded concurrently, and across all nodes in a
+	 * cluster, and makes the progress of the pre-expansion visible through the batch2 job APIs.
+	 * This setting has no effect unless {@link #isEnableTaskPreExpandValueSets()} is also enabled.
+	 * Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isPreExpandValueSetsUsingBatch2Job() {
+		return myPreExpandValueSetsUsingBatch2Job;
+	}
+
+	/**
+	 * If enabled, the scheduled ValueSet pre-expansion task will not expand ValueSets itself, but
+	 * will instead start a batch2 job which expands each pending ValueSet as a separate work chunk.
+	 * This allows several ValueSets to be pre-expanded concurrently, and across all nodes in a
+	 * cluster, and makes the progress of the pre-expansion visible through the batch2 job APIs.
+	 * This setting has no effect unless {@link #isEnableTaskPreExpandValueSets()} is also enabled.
+	 * Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setPreExpandValueSetsUsingBatch2Job(boolean thePreExpandValueSetsUsingBatch2Job) {
+		myPreExpandValueSetsUsingBatch2Job = thePreExpandValueSetsUsingBatch2Job;
+	}
+
+	/**
+	 * When a ValueSet is pre-expanded, the expanded concepts and designations are buffered and
+	 * inserted in batches of this size, and the running totals on the ValueSet are only updated
+	 * once per batch. A value of <code>1</code> inserts every concept individually.
+	 * Default is {@value #DEFAULT_PRE_EXPAND_VALUE_SETS_INSERT_BATCH_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getPreExpandValueSetsInsertBatchSize() {
+		return myPreExpandValueSetsInsertBatchSize;
+	}
+
+	/**
+	 * When a ValueSet is pre-expanded, the expanded concepts and designations are buffered and
+	 * inserted in batches of this size, and the running totals on the ValueSet are only updated
+	 * once per batch. A value of <code>1</code> inserts every concept individually.
+	 * Default is {@value #DEFAULT_PRE_EXPAND_VALUE_SETS_INSERT_BATCH_SIZE}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setPreExpandValueSetsInsertBatchSize(int thePreExpandValueSetsInsertBatchSize) {
+		Validate.isTrue(thePreExpandValueSetsInsertBatchSize > 0, "Batch size must be greater than 0");
+		myPreExpandValueSetsInsertBatchSize = thePreExpandValueSetsInsertBatchSize;
+	}
+
+	/**
+	 * If set, every time a ValueSet finishes pre-expanding a compact, read-only index of the
+	 * expanded codes is written to this directory, and code validation against pre-expanded
+	 * ValueSets is answered by memory-mapping that index instead of querying the expanded
+	 * concepts table. The index holds a sorted list of every system and code in the expansion
+	 * along with a Bloom filter, so that most codes which are not in the ValueSet can be
+	 * rejected without a search. Indexes are rebuilt on demand if they are missing or older
+	 * than the current expansion. Default is <code>null</code>, meaning that no index is
+	 * built and all validation against pre-expanded ValueSets uses the database.
+	 *
+	 * @since 7.6.0
+	 */
+	public String getValueSetCodeIndexDirectory() {
+		return myValueSetCodeIndexDirectory;
+	}
+
+	/**
+	 * If set, every time a ValueSet finishes pre-expanding a compact, read-only index of the
+	 * expanded codes is written to this directory, and code validation against pre-expanded
+	 * ValueSets is answered by memory-mapping that index instead of querying the expanded
+	 * concepts table. The index holds a sorted list of every system and code in the expansion
+	 * along with a Bloom filter, so that most codes which are not in the ValueSet can be
+	 * rejected without a search. Indexes are rebuilt on demand if they are missing or older
+	 * than the current expansion. Default is <code>null</code>, meaning that no index is
+	 * built and all validation against pre-expanded ValueSets uses the database.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setValueSetCodeIndexDirectory(String theValueSetCodeIndexDirectory) {
+		myValueSetCodeIndexDirectory = theValueSetCodeIndexDirectory;
+	}
+
+	/**
+	 * The number of threads used to save deferred terminology concepts and parent/child
+	 * relationships when a large CodeSystem (e.g. SNOMED CT or LOINC) is uploaded. Each thread
+	 * saves its own batch of concepts in a separate database transaction. Concepts are only
+	 * saved concurrently once all of their parents have been stored, so the hierarchy is
+	 * always written top-down. A value of <code>1</code> saves everything on the scheduler
+	 * thread, one batch at a time.
+	 * Default is <code>1</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getDeferredTerminologyStorageThreadCount() {
+		return myDeferredTerminologyStorageThreadCount;
+	}
+
+	/**
+	 * The number of threads used to save deferred terminology concepts and parent/child
+	 * relationships when a large CodeSystem (e.g. SNOMED CT or LOINC) is uploaded. Each thread
+	 * saves its own batch of concepts in a separate database transaction. Concepts are only
+	 * saved concurrently once all of their parents have been stored, so the hierarchy is
+	 * always written top-down. A value of <code>1</code> saves everything on the scheduler
+	 * thread, one batch at a time.
+	 * Default is <code>1</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setDeferredTerminologyStorageThreadCount(int theDeferredTerminologyStorageThreadCount) {
+		Validate.isTrue(theDeferredTerminologyStorageThreadCount > 0, "Thread count must be greater than 0");
+		myDeferredTerminologyStorageThreadCount = theDeferredTerminologyStorageThreadCount;
+	}
+
 	/**
 	 * If this is enabled (this is the default), this server will periodically scan for and try to delete
 	 * stale searches in the database. Otherwise, this server will not.
@@ -2353,6 +2550,32 @@ public class JpaStorageSettings extends StorageSettings {
 		myBulkExportFileMaximumSize = theBulkExportFileMaximumSize;
 	}
 
+	/**
+	 * If enabled, the NDJSON files produced by bulk export jobs are gzip-compressed as they
+	 * are written, and the resulting Binary resources have a content type of
+	 * <code>application/gzip</code>. Clients must then decompress the downloaded files
+	 * themselves. The {@link #getBulkExportFileMaximumSize() maximum file size} continues
+	 * to apply to the uncompressed content. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isBulkExportFileGzipEnabled() {
+		return myBulkExportFileGzipEnabled;
+	}
+
+	/**
+	 * If enabled, the NDJSON files produced by bulk export jobs are gzip-compressed as they
+	 * are written, and the resulting Binary resources have a content type of
+	 * <code>application/gzip</code>. Clients must then decompress the downloaded files
+	 * themselves. The {@link #getBulkExportFileMaximumSize() maximum file size} continues
+	 * to apply to the uncompressed content. Default is <code>false</code>.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setBulkExportFileGzipEnabled(boolean theBulkExportFileGzipEnabled) {
+		myBulkExportFileGzipEnabled = theBulkExportFileGzipEnabled;
+	}
+
 	/**
 	 * If this setting is enabled, then gated batch jobs that produce only one chunk will immediately trigger a batch
 	 * maintenance job.  This may be useful for testing, but is not recommended for production use.
@@ -2489,6 +2712,152 @@ public class JpaStorageSettings extends StorageSettings {
 		myWriteToLegacyLobColumns = theWriteToLegacyLobColumns;
 	}
 
+	/**
+	 * This setting controls the number of threads used to decode (decompress, parse and
+	 * populate metadata for) the resources returned by a search page. When enabled, the
+	 * database fetch for each chunk of resource IDs still happens on the calling thread
+	 * (so that it participates in the current transaction), but the decoding of each chunk
+	 * is handed to a shared, bounded thread pool while the next chunk is being fetched.
+	 * The order of the loaded resources is preserved. Per-page fetch and decode timings
+	 * are reported through the {@link ca.uhn.fhir.interceptor.api.Pointcut#JPA_PERFTRACE_INFO}
+	 * pointcut when this mode is enabled.
+	 * <p>
+	 * The default value is <code>0</code>, meaning that resources are decoded sequentially
+	 * on the calling thread.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getSearchResourceLoadingThreadCount() {
+		return mySearchResourceLoadingThreadCount;
+	}
+
+	/**
+	 * This setting controls the number of threads used to decode (decompress, parse and
+	 * populate metadata for) the resources returned by a search page. When enabled, the
+	 * database fetch for each chunk of resource IDs still happens on the calling thread
+	 * (so that it participates in the current transaction), but the decoding of each chunk
+	 * is handed to a shared, bounded thread pool while the next chunk is being fetched.
+	 * The order of the loaded resources is preserved. Per-page fetch and decode timings
+	 * are reported through the {@link ca.uhn.fhir.interceptor.api.Pointcut#JPA_PERFTRACE_INFO}
+	 * pointcut when this mode is enabled.
+	 * <p>
+	 * The default value is <code>0</code>, meaning that resources are decoded sequentially
+	 * on the calling thread.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setSearchResourceLoadingThreadCount(int theSearchResourceLoadingThreadCount) {
+		mySearchResourceLoadingThreadCount = Math.max(theSearchResourceLoadingThreadCount, 0);
+	}
+
+	/**
+	 * If enabled (which is the default), the caches held by {@link MemoryCacheService} record
+	 * hit, miss, load and eviction statistics, which can be retrieved using
+	 * {@link MemoryCacheService#getStatistics(MemoryCacheService.CacheEnum)} or the
+	 * <code>$cache-stats</code> operation. Recording statistics has a small cost on
+	 * every cache access. This setting is read when the caches are created.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isMemoryCacheStatisticsEnabled() {
+		return myMemoryCacheStatisticsEnabled;
+	}
+
+	/**
+	 * If enabled (which is the default), the caches held by {@link MemoryCacheService} record
+	 * hit, miss, load and eviction statistics, which can be retrieved using
+	 * {@link MemoryCacheService#getStatistics(MemoryCacheService.CacheEnum)} or the
+	 * <code>$cache-stats</code> operation. Recording statistics has a small cost on
+	 * every cache access. This setting is read when the caches are created.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setMemoryCacheStatisticsEnabled(boolean theMemoryCacheStatisticsEnabled) {
+		myMemoryCacheStatisticsEnabled = theMemoryCacheStatisticsEnabled;
+	}
+
+	/**
+	 * Returns the approximate maximum number of bytes the given {@link MemoryCacheService} cache
+	 * may hold, or <code>null</code> (the default) if the cache is bounded by its number of entries.
+	 *
+	 * @see #setMemoryCacheMaximumBytes(MemoryCacheService.CacheEnum, Long)
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public Long getMemoryCacheMaximumBytes(MemoryCacheService.CacheEnum theCache) {
+		return myMemoryCacheMaximumBytes.get(theCache);
+	}
+
+	/**
+	 * Bounds the given {@link MemoryCacheService} cache by the approximate size of its entries
+	 * instead of by their number. This is useful for caches whose values vary a lot in size, such
+	 * as {@link MemoryCacheService.CacheEnum#CONCEPT_TRANSLATION}. The size of each entry is
+	 * estimated when it is added, so the limit is approximate. When a byte limit is set, the
+	 * estimated number of bytes held by the cache is also reported in its statistics.
+	 * This setting is read when the caches are created.
+	 *
+	 * @param theMaximumBytes The maximum number of bytes, or <code>null</code> to bound the cache by its
+	 *                        number of entries (which is the default)
+	 * @since 7.6.0
+	 */
+	public void setMemoryCacheMaximumBytes(MemoryCacheService.CacheEnum theCache, @Nullable Long theMaximumBytes) {
+		Validate.notNull(theCache, "theCache must not be null");
+		if (theMaximumBytes == null) {
+			myMemoryCacheMaximumBytes.remove(theCache);
+		} else {
+			Validate.isTrue(theMaximumBytes > 0, "theMaximumBytes must be greater than 0");
+			myMemoryCacheMaximumBytes.put(theCache, theMaximumBytes);
+		}
+	}
+
+	/**
+	 * When a FHIR transaction is flushed to the database, the rows it writes (resources, history
+	 * entries, and the HFJ_SPIDX_* and HFJ_RES_LINK index rows) are grouped by table by Hibernate
+	 * and sent to the database as JDBC batches. This setting controls the size of those batches
+	 * for transactions which write more rows than this number, overriding the
+	 * <code>hibernate.jdbc.batch_size</code> configured for the persistence unit (30 by default)
+	 * for the duration of the flush. Larger batches mean far fewer database round trips when
+	 * ingesting large transactions.
+	 * <p>
+	 * On PostgreSQL, adding <code>reWriteBatchedInserts=true</code> to the JDBC URL additionally
+	 * lets the driver send each batch as multi-row <code>INSERT</code> statements.
+	 * </p>
+	 * <p>
+	 * The default value is {@value #DEFAULT_TRANSACTION_FLUSH_JDBC_BATCH_SIZE}. Set to <code>0</code>
+	 * to always use the batch size configured for the persistence unit.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public int getTransactionFlushJdbcBatchSize() {
+		return myTransactionFlushJdbcBatchSize;
+	}
+
+	/**
+	 * When a FHIR transaction is flushed to the database, the rows it writes (resources, history
+	 * entries, and the HFJ_SPIDX_* and HFJ_RES_LINK index rows) are grouped by table by Hibernate
+	 * and sent to the database as JDBC batches. This setting controls the size of those batches
+	 * for transactions which write more rows than this number, overriding the
+	 * <code>hibernate.jdbc.batch_size</code> configured for the persistence unit (30 by default)
+	 * for the duration of the flush. Larger batches mean far fewer database round trips when
+	 * ingesting large transactions.
+	 * <p>
+	 * On PostgreSQL, adding <code>reWriteBatchedInserts=true</code> to the JDBC URL additionally
+	 * lets the driver send each batch as multi-row <code>INSERT</code> statements.
+	 * </p>
+	 * <p>
+	 * The default value is {@value #DEFAULT_TRANSACTION_FLUSH_JDBC_BATCH_SIZE}. Set to <code>0</code>
+	 * to always use the batch size configured for the persistence unit.
+	 * </p>
+	 *
+	 * @since 7.6.0
+	 */
+	public void setTransactionFlushJdbcBatchSize(int theTransactionFlushJdbcBatchSize) {
+		myTransactionFlushJdbcBatchSize = Math.max(theTransactionFlushJdbcBatchSize, 0);
+	}
+
 	/**
 	 * This setting controls whether MdmLink and other non-resource DB history is enabled.
 	 * <p/>
@@ -49,6 +49,7 @@ import ca.uhn.fhir.jpa.model.entity.StorageSettings;
 import ca.uhn.fhir.jpa.model.search.StorageProcessingMessage;
 import ca.uhn.fhir.jpa.partition.IRequestPartitionHelperSvc;
 import ca.uhn.fhir.jpa.searchparam.extractor.ResourceIndexedSearchParams;
+import ca.uhn.fhir.jpa.searchparam.extractor.SearchParamExtractorService;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryMatchResult;
 import ca.uhn.fhir.jpa.searchparam.matcher.InMemoryResourceMatcher;
 import ca.uhn.fhir.jpa.searchparam.matcher.SearchParamMatcher;
@@ -91,8 +92,10 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hl7.fhir.dstu3.model.Bundle;
 import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.IBase;
@@ -115,6 +118,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -186,6 +190,11 @@ public abstract class BaseTransactionProcessor {
 
 	private TaskExecutor myExecutor;
 
+	@Autowired(required = false)
+	private SearchParamExtractorService mySearchParamExtractorService;
+
+	private TransactionIndexingExecutor myIndexingExecutor;
+
 	@Autowired
 	private IResourceVersionSvc myResourceVersionSvc;
 
@@ -213,6 +222,21 @@ public abstract class BaseTransactionProcessor {
 		return myExecutor;
 	}
 
+	private synchronized TransactionIndexingExecutor getIndexingExecutor() {
+		if (myIndexingExecutor == null) {
+			myIndexingExecutor = new TransactionIndexingExecutor(myStorageSettings);
+		}
+		return myIndexingExecutor;
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (myIndexingExecutor != null) {
+			myIndexingExecutor.stop();
+			myIndexingExecutor = null;
+		}
+	}
+
 	public <BUNDLE extends IBaseBundle> BUNDLE transaction(
 			RequestDetails theRequestDetails, BUNDLE theRequest, boolean theNestedMode) {
 		String actionName = "Transaction";
@@ -1653,6 +1677,11 @@ public abstract class BaseTransactionProcessor {
 	 * Then we do a second pass for any resources that have auto-versioned references. These happen in a separate
 	 * pass because it's too complex to try and insert the auto-versioned references and still
 	 * account for NOPs, so we block NOPs in that pass.
+	 * <p>
+	 * If {@link StorageSettings#getTransactionIndexingThreadCount() parallel indexing} is enabled, the
+	 * first pass is itself split up: references are resolved for all of its resources, then the
+	 * non-reference search indexes of the resources are extracted in parallel, and then the resources
+	 * are saved one at a time in their original order.
 	 */
 	private void resolveReferencesThenSaveAndIndexResources(
 			RequestDetails theRequest,
@@ -1666,6 +1695,11 @@ public abstract class BaseTransactionProcessor {
 		FhirTerser terser = myContext.newTerser();
 		theTransactionStopWatch.startTask("Index " + theIdToPersistedOutcome.size() + " resources");
 		IdentityHashMap<DaoMethodOutcome, Set<IBaseReference>> deferredIndexesForAutoVersioning = null;
+		List<DaoMethodOutcome> resolvedOutcomes = null;
+		if (mySearchParamExtractorService != null
+				&& getIndexingExecutor().isEnabledFor(theIdToPersistedOutcome.size())) {
+			resolvedOutcomes = new ArrayList<>(theIdToPersistedOutcome.size());
+		}
 		int i = 0;
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 
@@ -1687,7 +1721,17 @@ public abstract class BaseTransactionProcessor {
 
 			Set<IBaseReference> referencesToAutoVersion =
 					BaseStorageDao.extractReferencesToAutoVersion(myContext, myStorageSettings, nextResource);
-			if (referencesToAutoVersion.isEmpty()) {
+			if (referencesToAutoVersion.isEmpty() && resolvedOutcomes != null) {
+				// no references to autoversion - resolve now, and save once the indexes have been extracted
+				resolveReferences(
+						theTransactionDetails,
+						theIdSubstitutions,
+						theIdToPersistedOutcome,
+						terser,
+						nextResource,
+						referencesToAutoVersion); // this is empty
+				resolvedOutcomes.add(nextOutcome);
+			} else if (referencesToAutoVersion.isEmpty()) {
 				// no references to autoversion - we can do the resolve and save now
 				resolveReferencesThenSaveAndIndexResource(
 						theRequest,
@@ -1710,6 +1754,29 @@ public abstract class BaseTransactionProcessor {
 			}
 		}
 
+		if (resolvedOutcomes != null) {
+			preExtractSearchParams(
+					theRequest,
+					theTransactionDetails,
+					theTransactionStopWatch,
+					resolvedOutcomes,
+					nonUpdatedEntities,
+					updatedEntities);
+			theTransactionStopWatch.startTask("Save " + resolvedOutcomes.size() + " resources");
+			for (DaoMethodOutcome nextOutcome : resolvedOutcomes) {
+				saveAndIndexResource(
+						theRequest,
+						theTransactionDetails,
+						theIdSubstitutions,
+						entriesToProcess,
+						nonUpdatedEntities,
+						updatedEntities,
+						nextOutcome,
+						nextOutcome.getResource(),
+						Collections.emptySet());
+			}
+		}
+
 		// If we have any resources we'll be auto-versioning, index these next
 		if (deferredIndexesForAutoVersioning != null) {
 			for (Map.Entry<DaoMethodOutcome, Set<IBaseReference>> nextEntry :
@@ -1746,6 +1813,78 @@ public abstract class BaseTransactionProcessor {
 			DaoMethodOutcome theDaoMethodOutcome,
 			IBaseResource theResource,
 			Set<IBaseReference> theReferencesToAutoVersion) {
+		resolveReferences(
+				theTransactionDetails,
+				theIdSubstitutions,
+				theIdToPersistedOutcome,
+				terser,
+				theResource,
+				theReferencesToAutoVersion);
+
+		saveAndIndexResource(
+				theRequest,
+				theTransactionDetails,
+				theIdSubstitutions,
+				entriesToProcess,
+				nonUpdatedEntities,
+				updatedEntities,
+				theDaoMethodOutcome,
+				theResource,
+				theReferencesToAutoVersion);
+	}
+
+	/**
+	 * Extracts the non-reference search indexes for the given resources in parallel, and stashes
+	 * them in the transaction details so that {@link SearchParamExtractorService#extractFromResource}
+	 * picks them up when each resource is saved. Only resources which will actually be indexed by
+	 * {@link #saveAndIndexResource} are included. This method blocks until all of them are done,
+	 * so nothing touches the resources while the workers read them.
+	 */
+	private void preExtractSearchParams(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			StopWatch theTransactionStopWatch,
+			List<DaoMethodOutcome> theOutcomes,
+			Set<IIdType> theNonUpdatedEntities,
+			Set<IBasePersistedResource> theUpdatedEntities) {
+		List<IBaseResource> resources = new ArrayList<>(theOutcomes.size());
+		for (DaoMethodOutcome nextOutcome : theOutcomes) {
+			IBaseResource nextResource = nextOutcome.getResource();
+			if (theUpdatedEntities.contains(nextOutcome.getEntity())
+					|| theNonUpdatedEntities.contains(nextOutcome.getId())
+					|| ResourceMetadataKeyEnum.DELETED_AT.get(nextResource) != null) {
+				continue;
+			}
+			resources.add(nextResource);
+		}
+		if (!getIndexingExecutor().isEnabledFor(resources.size())) {
+			return;
+		}
+
+		theTransactionStopWatch.startTask("Extract indexes for " + resources.size() + " resources");
+		List<Pair<ResourceIndexedSearchParams, List<String>>> params = getIndexingExecutor()
+				.map(resources, t -> {
+					List<String> warnings = new ArrayList<>();
+					return Pair.of(
+							mySearchParamExtractorService.extractNonReferenceSearchParams(theRequest, t, warnings),
+							warnings);
+				});
+
+		// Warning hooks are called here rather than on the workers, so they run on the request thread
+		for (int i = 0; i < resources.size(); i++) {
+			Pair<ResourceIndexedSearchParams, List<String>> next = params.get(i);
+			mySearchParamExtractorService.broadcastWarnings(theRequest, next.getRight());
+			SearchParamExtractorService.addPreExtractedParams(theTransactionDetails, resources.get(i), next.getLeft());
+		}
+	}
+
+	private void resolveReferences(
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			Map<IIdType, DaoMethodOutcome> theIdToPersistedOutcome,
+			FhirTerser terser,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		// References
 		List<ResourceReferenceInfo> allRefs = terser.getAllResourceReferences(theResource);
 		for (ResourceReferenceInfo nextRef : allRefs) {
@@ -1853,7 +1992,18 @@ public abstract class BaseTransactionProcessor {
 				}
 			}
 		}
+	}
 
+	private void saveAndIndexResource(
+			RequestDetails theRequest,
+			TransactionDetails theTransactionDetails,
+			IdSubstitutionMap theIdSubstitutions,
+			EntriesToProcessMap entriesToProcess,
+			Set<IIdType> nonUpdatedEntities,
+			Set<IBasePersistedResource> updatedEntities,
+			DaoMethodOutcome theDaoMethodOutcome,
+			IBaseResource theResource,
+			Set<IBaseReference> theReferencesToAutoVersion) {
 		IPrimitiveType<Date> deletedInstantOrNull = ResourceMetadataKeyEnum.DELETED_AT.get(theResource);
 		Date deletedTimestampOrNull = deletedInstantOrNull != null ? deletedInstantOrNull.getValue() : null;
 
@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compresses resource text using LZ4, which is considerably cheaper than GZip to
+ * both compress and decompress at the cost of a somewhat lower compression ratio.
+ * <p>
+ * The stored format is the UTF-8 length of the text as a 4 byte big-endian integer,
+ * followed by a single LZ4 block.
+ * </p>
+ */
+public class Lz4Util {
+
+	private static final int HEADER_LENGTH = Integer.BYTES;
+
+	/**
+	 * A single LZ4 block can not expand to more than 255 times its compressed size, so a length
+	 * header claiming more than that is corrupt and must not be used to size the output buffer
+	 */
+	static final int MAX_COMPRESSION_RATIO = 255;
+
+	private static final LZ4Compressor ourCompressor =
+			LZ4Factory.fastestInstance().fastCompressor();
+
+	/**
+	 * Stored contents are not trusted, so they are always decompressed by the pure Java
+	 * implementation instead of the JNI or Unsafe based ones
+	 */
+	private static final LZ4SafeDecompressor ourDecompressor =
+			LZ4Factory.safeInstance().safeDecompressor();
+
+	public static String decompress(byte[] theResource) {
+		try {
+			if (theResource.length < HEADER_LENGTH) {
+				throw new LZ4Exception(Msg.code(2797) + "Missing length header");
+			}
+			int length = ByteBuffer.wrap(theResource).getInt();
+			long maxLength = (long) (theResource.length - HEADER_LENGTH) * MAX_COMPRESSION_RATIO;
+			if (length < 0 || length > maxLength) {
+				throw new DataFormatException(Msg.code(2796) + "Failed to decompress contents: length header " + length
+						+ " is invalid for " + theResource.length + " bytes of compressed contents");
+			}
+			byte[] retVal = new byte[length];
+			int decompressedLength = ourDecompressor.decompress(
+					theResource, HEADER_LENGTH, theResource.length - HEADER_LENGTH, retVal, 0);
+			if (decompressedLength != length) {
+				throw new LZ4Exception(Msg.code(2798) + "Expected " + length + " bytes but got " + decompressedLength);
+			}
+			return new String(retVal, StandardCharsets.UTF_8);
+		} catch (LZ4Exception e) {
+			throw new DataFormatException(Msg.code(2781) + "Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		try {
+			byte[] bytes = theEncoded.getBytes(StandardCharsets.UTF_8);
+			byte[] retVal = new byte[HEADER_LENGTH + ourCompressor.maxCompressedLength(bytes.length)];
+			ByteBuffer.wrap(retVal).putInt(bytes.length);
+			int compressedLength = ourCompressor.compress(bytes, 0, bytes.length, retVal, HEADER_LENGTH);
+			byte[] trimmed = new byte[HEADER_LENGTH + compressedLength];
+			System.arraycopy(retVal, 0, trimmed, 0, trimmed.length);
+			return trimmed;
+		} catch (LZ4Exception e) {
+			throw new DataFormatException(Msg.code(2782) + "Failed to compress contents", e);
+		}
+	}
+}
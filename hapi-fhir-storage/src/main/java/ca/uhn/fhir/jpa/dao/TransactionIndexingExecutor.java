@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.ResizableThreadPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Bounded thread pool used by {@link BaseTransactionProcessor} to extract search indexes for
+ * the resources in a transaction in parallel when
+ * {@link StorageSettings#getTransactionIndexingThreadCount()} is greater than zero. The pool is
+ * created lazily and resized if the setting changes at runtime (see {@link ResizableThreadPool}).
+ */
+public class TransactionIndexingExecutor {
+
+	/**
+	 * Below this size it isn't worth splitting a batch any further
+	 */
+	static final int MIN_BATCH_SIZE = 10;
+
+	private final StorageSettings myStorageSettings;
+	private final ResizableThreadPool myThreadPool;
+
+	public TransactionIndexingExecutor(StorageSettings theStorageSettings) {
+		myStorageSettings = theStorageSettings;
+		myThreadPool = new ResizableThreadPool("transaction-indexing-", this::getThreadCount);
+	}
+
+	/**
+	 * @return Returns the number of threads available for indexing, or <code>0</code> if parallel indexing is disabled
+	 */
+	public int getThreadCount() {
+		return myStorageSettings.getTransactionIndexingThreadCount();
+	}
+
+	/**
+	 * @return Returns <code>true</code> if parallel indexing is enabled and a transaction with the given number of resources is worth splitting
+	 */
+	public boolean isEnabledFor(int theResourceCount) {
+		return getThreadCount() > 0 && theResourceCount >= MIN_BATCH_SIZE;
+	}
+
+	/**
+	 * Applies the given function to every input, splitting the inputs into up to one batch per
+	 * thread, and blocks until all of them have been processed.
+	 *
+	 * @return The outputs, in the same order as the inputs
+	 */
+	public <I, O> List<O> map(List<I> theInputs, Function<I, O> theFunction) {
+		int size = theInputs.size();
+		int threadCount = Math.max(getThreadCount(), 1);
+		int batchSize = Math.max((size + threadCount - 1) / threadCount, MIN_BATCH_SIZE);
+
+		List<Future<List<O>>> futures = new ArrayList<>();
+		for (int from = 0; from < size; from += batchSize) {
+			List<I> batch = theInputs.subList(from, Math.min(from + batchSize, size));
+			futures.add(myThreadPool.submit(() -> {
+				List<O> retVal = new ArrayList<>(batch.size());
+				for (I next : batch) {
+					retVal.add(theFunction.apply(next));
+				}
+				return retVal;
+			}));
+		}
+
+		List<O> retVal = new ArrayList<>(size);
+		try {
+			for (Future<List<O>> next : futures) {
+				retVal.addAll(next.get());
+			}
+		} catch (InterruptedException e) {
+			futures.forEach(t -> t.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(Msg.code(2785) + "Interrupted while indexing resources", e);
+		} catch (ExecutionException e) {
+			futures.forEach(t -> t.cancel(true));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(
+					Msg.code(2786) + "Failed to index resources: "
+							+ e.getCause().getMessage(),
+					e.getCause());
+		}
+		return retVal;
+	}
+
+	public void stop() {
+		myThreadPool.stop();
+	}
+}
@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Adjusts the number of consumers of an in-memory channel between a lower and an upper bound, using
+ * an additive-increase/multiplicative-decrease (AIMD) rule driven by the channel's {@link ChannelMetrics}.
+ * {@link #adjust()} is called periodically, and on each call:
+ * <ul>
+ *    <li>If the average handling time of the messages completed since the last call has risen above
+ *    {@link #LATENCY_TOLERANCE} times the best recently observed average, the consumers are assumed to be
+ *    overloading whatever they call, and the concurrency is reduced by {@link #DECREASE_FACTOR}.</li>
+ *    <li>Otherwise, if messages are waiting for a consumer, one consumer is added.</li>
+ *    <li>Otherwise, if consumers are idle, one consumer is removed.</li>
+ * </ul>
+ */
+class AdaptiveConcurrencyController {
+	static final double LATENCY_TOLERANCE = 2.0;
+	static final double DECREASE_FACTOR = 0.75;
+	/**
+	 * How much the baseline handling time is allowed to rise on each call, so that a permanent change
+	 * in handling time is eventually accepted as the new normal
+	 */
+	static final double BASELINE_DRIFT = 0.05;
+
+	private static final Logger ourLog = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+	private final String myChannelName;
+	private final ChannelMetrics myMetrics;
+	private final int myMinConcurrency;
+	private final int myMaxConcurrency;
+	private final IntConsumer myConcurrencySetter;
+	private volatile int myConcurrency;
+	private long myLastFinishedCount;
+	private long myLastProcessingNanos;
+	private double myBaselineLatencyNanos;
+
+	AdaptiveConcurrencyController(
+			String theChannelName,
+			ChannelMetrics theMetrics,
+			int theMinConcurrency,
+			int theMaxConcurrency,
+			IntConsumer theConcurrencySetter) {
+		Validate.isTrue(theMinConcurrency > 0, "Min concurrency must be positive");
+		Validate.isTrue(theMaxConcurrency >= theMinConcurrency, "Max concurrency must not be less than min");
+		myChannelName = theChannelName;
+		myMetrics = theMetrics;
+		myMinConcurrency = theMinConcurrency;
+		myMaxConcurrency = theMaxConcurrency;
+		myConcurrencySetter = theConcurrencySetter;
+		myConcurrency = theMinConcurrency;
+	}
+
+	int getConcurrency() {
+		return myConcurrency;
+	}
+
+	synchronized void adjust() {
+		long finishedCount = myMetrics.getCompletedCount() + myMetrics.getFailedCount();
+		long processingNanos = myMetrics.getTotalProcessingNanos();
+		long finishedDelta = finishedCount - myLastFinishedCount;
+		long processingDelta = processingNanos - myLastProcessingNanos;
+		myLastFinishedCount = finishedCount;
+		myLastProcessingNanos = processingNanos;
+
+		boolean overloaded = false;
+		if (finishedDelta > 0) {
+			double latency = (double) processingDelta / finishedDelta;
+			overloaded = myBaselineLatencyNanos > 0 && latency > myBaselineLatencyNanos * LATENCY_TOLERANCE;
+			myBaselineLatencyNanos = myBaselineLatencyNanos > 0
+					? Math.min(latency, myBaselineLatencyNanos * (1 + BASELINE_DRIFT))
+					: latency;
+		}
+
+		int current = myConcurrency;
+		int target = current;
+		if (overloaded) {
+			target = Math.max(myMinConcurrency, Math.min(current - 1, (int) (current * DECREASE_FACTOR)));
+		} else if (myMetrics.getQueueDepth() > 0) {
+			target = Math.min(myMaxConcurrency, current + 1);
+		} else if (myMetrics.getActiveCount() < current) {
+			target = Math.max(myMinConcurrency, current - 1);
+		}
+
+		if (target != current) {
+			ourLog.debug(
+					"Changing concurrency of channel[{}] from {} to {} (queue depth {}, baseline handling time {}ms)",
+					myChannelName,
+					current,
+					target,
+					myMetrics.getQueueDepth(),
+					Math.round(myBaselineLatencyNanos / 1_000_000));
+			myConcurrencySetter.accept(target);
+			myConcurrency = target;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics for the consumer tasks of a single in-memory channel. It is installed as the
+ * {@link TaskDecorator} of the channel's consumer executor, so it sees each task when it is submitted
+ * (i.e. when a message is sent), when it starts running and when it finishes.
+ * <p>
+ * All values are cumulative since the channel was created and may be read at any time from any thread.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class ChannelMetrics implements TaskDecorator {
+
+	private final LongAdder mySubmittedCount = new LongAdder();
+	private final LongAdder myStartedCount = new LongAdder();
+	private final LongAdder myCompletedCount = new LongAdder();
+	private final LongAdder myFailedCount = new LongAdder();
+	private final LongAdder myTotalWaitNanos = new LongAdder();
+	private final LongAdder myTotalProcessingNanos = new LongAdder();
+	private final AtomicInteger myActiveCount = new AtomicInteger();
+
+	@Nonnull
+	@Override
+	public Runnable decorate(@Nonnull Runnable theTask) {
+		long submitted = System.nanoTime();
+		mySubmittedCount.increment();
+		return () -> {
+			long started = System.nanoTime();
+			myStartedCount.increment();
+			myTotalWaitNanos.add(started - submitted);
+			myActiveCount.incrementAndGet();
+			boolean success = false;
+			try {
+				theTask.run();
+				success = true;
+			} finally {
+				myActiveCount.decrementAndGet();
+				myTotalProcessingNanos.add(System.nanoTime() - started);
+				if (success) {
+					myCompletedCount.increment();
+				} else {
+					myFailedCount.increment();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of messages which have been sent but have not yet been picked up by a consumer
+	 */
+	public long getQueueDepth() {
+		return Math.max(0, mySubmittedCount.sum() - myStartedCount.sum());
+	}
+
+	/**
+	 * Returns the number of messages currently being handled
+	 */
+	public int getActiveCount() {
+		return myActiveCount.get();
+	}
+
+	/**
+	 * Returns the number of messages which were handled successfully
+	 */
+	public long getCompletedCount() {
+		return myCompletedCount.sum();
+	}
+
+	/**
+	 * Returns the number of messages whose handling failed (after any retries)
+	 */
+	public long getFailedCount() {
+		return myFailedCount.sum();
+	}
+
+	/**
+	 * Returns the total time messages spent waiting for a consumer, in nanoseconds
+	 */
+	public long getTotalWaitNanos() {
+		return myTotalWaitNanos.sum();
+	}
+
+	/**
+	 * Returns the total time consumers spent handling messages, in nanoseconds
+	 */
+	public long getTotalProcessingNanos() {
+		return myTotalProcessingNanos.sum();
+	}
+}
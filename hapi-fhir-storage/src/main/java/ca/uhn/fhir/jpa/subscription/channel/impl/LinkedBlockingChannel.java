@@ -22,6 +22,7 @@ package ca.uhn.fhir.jpa.subscription.channel.impl;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.support.ExecutorSubscribableChannel;
 
@@ -36,17 +37,43 @@ public class LinkedBlockingChannel extends ExecutorSubscribableChannel implement
 
 	private final String myName;
 	private final Supplier<Integer> myQueueSizeSupplier;
+	private final ChannelMetrics myMetrics;
 
 	public LinkedBlockingChannel(String theName, Executor theExecutor, Supplier<Integer> theQueueSizeSupplier) {
+		this(theName, theExecutor, theQueueSizeSupplier, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theMetrics The statistics collected by the executor for this channel, or <code>null</code>
+	 * @since 7.6.0
+	 */
+	public LinkedBlockingChannel(
+			String theName,
+			Executor theExecutor,
+			Supplier<Integer> theQueueSizeSupplier,
+			@Nullable ChannelMetrics theMetrics) {
 		super(theExecutor);
 		myName = theName;
 		myQueueSizeSupplier = theQueueSizeSupplier;
+		myMetrics = theMetrics;
 	}
 
 	public int getQueueSizeForUnitTest() {
 		return defaultIfNull(myQueueSizeSupplier.get(), 0);
 	}
 
+	/**
+	 * Returns the statistics for this channel's consumers, or <code>null</code> if they are not collected
+	 *
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public ChannelMetrics getMetrics() {
+		return myMetrics;
+	}
+
 	public void clearInterceptorsForUnitTest() {
 		setInterceptors(new ArrayList<>());
 	}
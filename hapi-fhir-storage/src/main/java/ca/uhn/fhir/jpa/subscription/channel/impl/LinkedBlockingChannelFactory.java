@@ -26,25 +26,192 @@ import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
 import ca.uhn.fhir.jpa.subscription.channel.api.IChannelSettings;
 import ca.uhn.fhir.jpa.subscription.channel.subscription.IChannelNamer;
+import ca.uhn.fhir.jpa.util.IMeterRegistry;
 import ca.uhn.fhir.subscription.SubscriptionConstants;
 import ca.uhn.fhir.util.ThreadPoolUtil;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
+/**
+ * An {@link IChannelFactory} which creates in-memory channels, each of which hands messages to its
+ * subscribers on its own pool of consumer threads.
+ * <p>
+ * By default each channel has a fixed number of consumers (the concurrent consumers of the channel settings).
+ * The following can optionally be enabled:
+ * </p>
+ * <ul>
+ *    <li>{@link #setAdaptiveConcurrency(boolean) Adaptive concurrency}, which periodically grows or shrinks the
+ *    number of consumers of each channel between the configured number and
+ *    {@link #setMaxConcurrentConsumers(int) a maximum}, based on its queue depth and handling time.</li>
+ *    <li>{@link #setUseVirtualThreads(boolean) Virtual thread consumers} (Java 21+), where each message is
+ *    handled on a new virtual thread and the number of consumers only limits how many run at once.</li>
+ *    <li>{@link #setMeterRegistry(IMeterRegistry) Metrics} for the queue depth, wait time and handling
+ *    time of each channel (see {@link ChannelMetrics}).</li>
+ * </ul>
+ * <p>
+ * In all modes, a sender blocks when the channel's queue is full (or, for virtual threads, when
+ * the maximum number of messages are being handled).
+ * </p>
+ */
 public class LinkedBlockingChannelFactory implements IChannelFactory {
 
+	public static final int DEFAULT_MAX_CONCURRENT_CONSUMERS = 20;
+	public static final long DEFAULT_ADAPTIVE_CONCURRENCY_INTERVAL_MILLIS = 1000;
+	public static final String TAG_CHANNEL = "channel";
+	public static final String TAG_RESULT = "result";
+	public static final String METRIC_QUEUE_DEPTH = "channel.queue.depth";
+	public static final String METRIC_CONSUMERS_ACTIVE = "channel.consumers.active";
+	public static final String METRIC_CONSUMERS_MAX = "channel.consumers.max";
+	public static final String METRIC_MESSAGES = "channel.messages";
+	public static final String METRIC_WAIT_TIME = "channel.wait.time";
+	public static final String METRIC_PROCESSING_TIME = "channel.processing.time";
+
+	private static final Logger ourLog = LoggerFactory.getLogger(LinkedBlockingChannelFactory.class);
+
 	private final IChannelNamer myChannelNamer;
 	private final Map<String, LinkedBlockingChannel> myChannels = Collections.synchronizedMap(new HashMap<>());
+	private final Map<String, IntSupplier> myConcurrencySuppliers = Collections.synchronizedMap(new HashMap<>());
+	private boolean myAdaptiveConcurrency;
+	private int myMaxConcurrentConsumers = DEFAULT_MAX_CONCURRENT_CONSUMERS;
+	private long myAdaptiveConcurrencyIntervalMillis = DEFAULT_ADAPTIVE_CONCURRENCY_INTERVAL_MILLIS;
+	private boolean myUseVirtualThreads;
+	private volatile IMeterRegistry myMeterRegistry;
+	private ScheduledExecutorService myAdaptiveConcurrencyScheduler;
 
 	public LinkedBlockingChannelFactory(IChannelNamer theChannelNamer) {
 		myChannelNamer = theChannelNamer;
 	}
 
+	/**
+	 * If enabled, the number of consumers of each channel is adjusted every
+	 * {@link #setAdaptiveConcurrencyIntervalMillis(long) interval}: it grows by one while messages are waiting for
+	 * a consumer (up to {@link #setMaxConcurrentConsumers(int)}), is cut back when the average handling time rises
+	 * sharply, and shrinks towards the channel's configured number of consumers when consumers are idle.
+	 * Default is <code>false</code>. Only applies to channels created after this is set.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isAdaptiveConcurrency() {
+		return myAdaptiveConcurrency;
+	}
+
+	/**
+	 * If enabled, the number of consumers of each channel is adjusted every
+	 * {@link #setAdaptiveConcurrencyIntervalMillis(long) interval}: it grows by one while messages are waiting for
+	 * a consumer (up to {@link #setMaxConcurrentConsumers(int)}), is cut back when the average handling time rises
+	 * sharply, and shrinks towards the channel's configured number of consumers when consumers are idle.
+	 * Default is <code>false</code>. Only applies to channels created after this is set.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setAdaptiveConcurrency(boolean theAdaptiveConcurrency) {
+		myAdaptiveConcurrency = theAdaptiveConcurrency;
+	}
+
+	/**
+	 * The upper bound for the number of consumers of each channel when {@link #setAdaptiveConcurrency(boolean)
+	 * adaptive concurrency} is enabled. Channels configured with more consumers than this keep their configured
+	 * number. Default is {@link #DEFAULT_MAX_CONCURRENT_CONSUMERS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public int getMaxConcurrentConsumers() {
+		return myMaxConcurrentConsumers;
+	}
+
+	/**
+	 * The upper bound for the number of consumers of each channel when {@link #setAdaptiveConcurrency(boolean)
+	 * adaptive concurrency} is enabled. Channels configured with more consumers than this keep their configured
+	 * number. Default is {@link #DEFAULT_MAX_CONCURRENT_CONSUMERS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setMaxConcurrentConsumers(int theMaxConcurrentConsumers) {
+		Validate.isTrue(theMaxConcurrentConsumers > 0, "Max concurrent consumers must be positive");
+		myMaxConcurrentConsumers = theMaxConcurrentConsumers;
+	}
+
+	/**
+	 * How often the number of consumers is adjusted when {@link #setAdaptiveConcurrency(boolean) adaptive
+	 * concurrency} is enabled. Default is {@link #DEFAULT_ADAPTIVE_CONCURRENCY_INTERVAL_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public long getAdaptiveConcurrencyIntervalMillis() {
+		return myAdaptiveConcurrencyIntervalMillis;
+	}
+
+	/**
+	 * How often the number of consumers is adjusted when {@link #setAdaptiveConcurrency(boolean) adaptive
+	 * concurrency} is enabled. Default is {@link #DEFAULT_ADAPTIVE_CONCURRENCY_INTERVAL_MILLIS}.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setAdaptiveConcurrencyIntervalMillis(long theAdaptiveConcurrencyIntervalMillis) {
+		Validate.isTrue(theAdaptiveConcurrencyIntervalMillis > 0, "Interval must be positive");
+		myAdaptiveConcurrencyIntervalMillis = theAdaptiveConcurrencyIntervalMillis;
+	}
+
+	/**
+	 * If enabled, each message is handled on a new virtual thread instead of on a pool of platform threads,
+	 * and the number of consumers only limits how many messages are handled at once. This requires Java 21
+	 * or later. On older versions a warning is logged and a thread pool is used.
+	 * Default is <code>false</code>. Only applies to channels created after this is set.
+	 *
+	 * @since 7.6.0
+	 */
+	public boolean isUseVirtualThreads() {
+		return myUseVirtualThreads;
+	}
+
+	/**
+	 * If enabled, each message is handled on a new virtual thread instead of on a pool of platform threads,
+	 * and the number of consumers only limits how many messages are handled at once. This requires Java 21
+	 * or later. On older versions a warning is logged and a thread pool is used.
+	 * Default is <code>false</code>. Only applies to channels created after this is set.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setUseVirtualThreads(boolean theUseVirtualThreads) {
+		myUseVirtualThreads = theUseVirtualThreads;
+	}
+
+	/**
+	 * If set, the statistics of every channel (existing and future) are published to this registry. Every meter
+	 * is tagged with the name of the channel (e.g. <code>channel=subscription-matching</code>).
+	 *
+	 * @since 7.6.0
+	 */
+	public void setMeterRegistry(IMeterRegistry theMeterRegistry) {
+		myMeterRegistry = theMeterRegistry;
+		List<Map.Entry<String, LinkedBlockingChannel>> channels;
+		synchronized (myChannels) {
+			channels = new ArrayList<>(myChannels.entrySet());
+		}
+		for (Map.Entry<String, LinkedBlockingChannel> next : channels) {
+			bindMetrics(next.getKey(), next.getValue().getMetrics(), myConcurrencySuppliers.get(next.getKey()));
+		}
+	}
+
 	@Override
 	public IChannelReceiver getOrCreateReceiver(
 			String theChannelName, Class<?> theMessageType, ChannelConsumerSettings theChannelSettings) {
@@ -74,17 +241,120 @@ public class LinkedBlockingChannelFactory implements IChannelFactory {
 	@Nonnull
 	private LinkedBlockingChannel buildLinkedBlockingChannel(int theConcurrentConsumers, String theChannelName) {
 		String threadNamePrefix = theChannelName + "-";
-		ThreadPoolTaskExecutor threadPoolExecutor = ThreadPoolUtil.newThreadPool(
-				theConcurrentConsumers,
-				theConcurrentConsumers,
-				threadNamePrefix,
-				SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE);
+		ChannelMetrics metrics = new ChannelMetrics();
+
+		Executor executor;
+		Supplier<Integer> queueSizeSupplier;
+		IntConsumer concurrencySetter;
+		SimpleAsyncTaskExecutor virtualThreadExecutor = myUseVirtualThreads
+				? newVirtualThreadExecutor(threadNamePrefix, theConcurrentConsumers, metrics)
+				: null;
+		if (virtualThreadExecutor != null) {
+			executor = virtualThreadExecutor;
+			queueSizeSupplier = () -> (int) metrics.getQueueDepth();
+			concurrencySetter = virtualThreadExecutor::setConcurrencyLimit;
+		} else {
+			ThreadPoolTaskExecutor threadPoolExecutor = ThreadPoolUtil.newThreadPool(
+					theConcurrentConsumers,
+					theConcurrentConsumers,
+					threadNamePrefix,
+					SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE,
+					metrics);
+			executor = threadPoolExecutor;
+			queueSizeSupplier = threadPoolExecutor::getQueueSize;
+			concurrencySetter = t -> resizePool(threadPoolExecutor, t);
+		}
+
+		IntSupplier concurrencySupplier = () -> theConcurrentConsumers;
+		if (myAdaptiveConcurrency && myMaxConcurrentConsumers > theConcurrentConsumers) {
+			AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(
+					theChannelName, metrics, theConcurrentConsumers, myMaxConcurrentConsumers, concurrencySetter);
+			concurrencySupplier = controller::getConcurrency;
+			startAdaptiveConcurrency(controller);
+		}
+
+		myConcurrencySuppliers.put(theChannelName, concurrencySupplier);
+		bindMetrics(theChannelName, metrics, concurrencySupplier);
+		return new LinkedBlockingChannel(theChannelName, executor, queueSizeSupplier, metrics);
+	}
+
+	private SimpleAsyncTaskExecutor newVirtualThreadExecutor(
+			String theThreadNamePrefix, int theConcurrentConsumers, ChannelMetrics theMetrics) {
+		SimpleAsyncTaskExecutor retVal = new SimpleAsyncTaskExecutor(theThreadNamePrefix);
+		try {
+			retVal.setVirtualThreads(true);
+		} catch (UnsupportedOperationException e) {
+			ourLog.warn(
+					"Virtual threads are not supported by this JVM, using a thread pool for channel consumers: {}",
+					e.getMessage());
+			return null;
+		}
+		retVal.setConcurrencyLimit(theConcurrentConsumers);
+		retVal.setTaskDecorator(theMetrics);
+		return retVal;
+	}
+
+	private synchronized void startAdaptiveConcurrency(AdaptiveConcurrencyController theController) {
+		if (myAdaptiveConcurrencyScheduler == null) {
+			myAdaptiveConcurrencyScheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+					.namingPattern("channel-concurrency-%d")
+					.daemon(true)
+					.build());
+		}
+		myAdaptiveConcurrencyScheduler.scheduleWithFixedDelay(
+				() -> {
+					try {
+						theController.adjust();
+					} catch (Exception e) {
+						ourLog.error("Failed to adjust channel concurrency", e);
+					}
+				},
+				myAdaptiveConcurrencyIntervalMillis,
+				myAdaptiveConcurrencyIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private void bindMetrics(String theChannelName, ChannelMetrics theMetrics, IntSupplier theConcurrencySupplier) {
+		IMeterRegistry registry = myMeterRegistry;
+		if (registry == null) {
+			return;
+		}
+		Map<String, String> tags = Map.of(TAG_CHANNEL, theChannelName);
+		registry.gauge(METRIC_QUEUE_DEPTH, tags, theMetrics::getQueueDepth);
+		registry.gauge(METRIC_CONSUMERS_ACTIVE, tags, theMetrics::getActiveCount);
+		registry.gauge(METRIC_CONSUMERS_MAX, tags, theConcurrencySupplier::getAsInt);
+		registry.counter(
+				METRIC_MESSAGES,
+				Map.of(TAG_CHANNEL, theChannelName, TAG_RESULT, "success"),
+				theMetrics::getCompletedCount);
+		registry.counter(
+				METRIC_MESSAGES,
+				Map.of(TAG_CHANNEL, theChannelName, TAG_RESULT, "failure"),
+				theMetrics::getFailedCount);
+		registry.counter(METRIC_WAIT_TIME, tags, theMetrics::getTotalWaitNanos);
+		registry.counter(METRIC_PROCESSING_TIME, tags, theMetrics::getTotalProcessingNanos);
+	}
 
-		return new LinkedBlockingChannel(theChannelName, threadPoolExecutor, threadPoolExecutor::getQueueSize);
+	private static void resizePool(ThreadPoolTaskExecutor theExecutor, int theSize) {
+		// The core size may never exceed the max size, so the order of the two calls depends on the direction
+		if (theSize > theExecutor.getMaxPoolSize()) {
+			theExecutor.setMaxPoolSize(theSize);
+			theExecutor.setCorePoolSize(theSize);
+		} else {
+			theExecutor.setCorePoolSize(theSize);
+			theExecutor.setMaxPoolSize(theSize);
+		}
 	}
 
 	@PreDestroy
 	public void stop() {
+		synchronized (this) {
+			if (myAdaptiveConcurrencyScheduler != null) {
+				myAdaptiveConcurrencyScheduler.shutdownNow();
+				myAdaptiveConcurrencyScheduler = null;
+			}
+		}
+		myConcurrencySuppliers.clear();
 		myChannels.clear();
 	}
 }
@@ -0,0 +1,323 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.model.api.IModelJson;
+import ca.uhn.fhir.util.JsonUtil;
+import jakarta.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A channel whose messages are stored in a {@link SegmentedMessageLog} on disk rather than in memory,
+ * so they survive a restart and don't use up heap while waiting to be consumed.
+ * <p>
+ * Sending a message appends it to the log. A dispatcher thread reads messages from the log in order
+ * and hands them to the subscribers on a pool of consumer threads. Once every message before a given
+ * point in the log has been handled, that point is committed, so after a restart delivery resumes with
+ * the first message that had not been fully handled (i.e. messages are delivered at least once).
+ * Nothing is read from the log while the channel has no subscribers.
+ * </p>
+ * <p>
+ * Messages must be Jackson-serializable {@link IModelJson} objects (such as the HAPI JSON message
+ * types), and are read back as the message type the channel was created with.
+ * </p>
+ */
+public class PersistentChannel extends ExecutorSubscribableChannel implements IChannelProducer, IChannelReceiver {
+	private static final Logger ourLog = LoggerFactory.getLogger(PersistentChannel.class);
+	private static final long POLL_MILLIS = 1000;
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	private final String myName;
+	private final Class<?> myMessageType;
+	private final SegmentedMessageLog myLog;
+	private final ThreadPoolTaskExecutor myConsumerExecutor;
+	private final long mySendTimeoutMillis;
+	private final Semaphore myInFlightPermits;
+	private final ConcurrentSkipListMap<Long, AtomicInteger> myInFlightOffsets = new ConcurrentSkipListMap<>();
+	private final Thread myDispatcherThread;
+	private volatile long myReadOffset;
+	private volatile boolean myStopped;
+	private long myDispatchingOffset;
+
+	PersistentChannel(
+			String theName,
+			Class<?> theMessageType,
+			SegmentedMessageLog theLog,
+			ThreadPoolTaskExecutor theConsumerExecutor,
+			int theMaxInFlightMessages,
+			long theSendTimeoutMillis) {
+		this(
+				theName,
+				theMessageType,
+				theLog,
+				theConsumerExecutor,
+				theMaxInFlightMessages,
+				theSendTimeoutMillis,
+				new TrackingExecutor(theConsumerExecutor));
+	}
+
+	private PersistentChannel(
+			String theName,
+			Class<?> theMessageType,
+			SegmentedMessageLog theLog,
+			ThreadPoolTaskExecutor theConsumerExecutor,
+			int theMaxInFlightMessages,
+			long theSendTimeoutMillis,
+			TrackingExecutor theTrackingExecutor) {
+		super(theTrackingExecutor);
+		theTrackingExecutor.setChannel(this);
+		myName = theName;
+		myMessageType = theMessageType;
+		myLog = theLog;
+		myConsumerExecutor = theConsumerExecutor;
+		mySendTimeoutMillis = theSendTimeoutMillis;
+		myInFlightPermits = new Semaphore(theMaxInFlightMessages);
+		myReadOffset = theLog.getCommittedOffset();
+
+		myDispatcherThread = new Thread(this::dispatchLoop, "persistent-channel-" + theName);
+		myDispatcherThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the dispatcher thread
+	 */
+	void start() {
+		myDispatcherThread.start();
+	}
+
+	@Override
+	public String getName() {
+		return myName;
+	}
+
+	/**
+	 * Returns the number of messages which have been sent but not yet fully handled
+	 */
+	public long getPendingMessageCount() {
+		return myLog.getPendingCount();
+	}
+
+	@Override
+	public boolean sendInternal(@Nonnull Message<?> theMessage, long theTimeout) {
+		if (!(theMessage instanceof IModelJson)) {
+			throw new MessageDeliveryException(
+					theMessage,
+					Msg.code(2792) + "Channel " + myName + " can only store JSON messages, got: "
+							+ theMessage.getClass().getName());
+		}
+		byte[] data =
+				JsonUtil.serializeWithSensitiveData((IModelJson) theMessage).getBytes(StandardCharsets.UTF_8);
+
+		boolean appended;
+		try {
+			appended = myLog.append(data, theTimeout >= 0 ? theTimeout : mySendTimeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(
+					theMessage, Msg.code(2793) + "Interrupted while sending to channel " + myName, e);
+		}
+		if (!appended) {
+			throw new MessageDeliveryException(
+					theMessage, Msg.code(2794) + "Channel " + myName + " has reached its limit of pending messages");
+		}
+		return true;
+	}
+
+	@Override
+	public boolean hasSubscription(@Nonnull MessageHandler handler) {
+		return getSubscribers().stream()
+				.map(t -> (RetryingMessageHandlerWrapper) t)
+				.anyMatch(t -> t.getWrappedHandler() == handler);
+	}
+
+	@Override
+	public boolean subscribe(@Nonnull MessageHandler theHandler) {
+		boolean retVal = super.subscribe(new RetryingMessageHandlerWrapper(theHandler, getName()));
+		synchronized (this) {
+			notifyAll();
+		}
+		return retVal;
+	}
+
+	@Override
+	public boolean unsubscribe(@Nonnull MessageHandler handler) {
+		Optional<RetryingMessageHandlerWrapper> match = getSubscribers().stream()
+				.map(t -> (RetryingMessageHandlerWrapper) t)
+				.filter(t -> t.getWrappedHandler() == handler)
+				.findFirst();
+		match.ifPresent(super::unsubscribe);
+		return match.isPresent();
+	}
+
+	@Override
+	public void destroy() {
+		// nothing - the channel is shared between producers and receivers and is closed by the factory
+	}
+
+	/**
+	 * Stops dispatching, waits for messages already handed to the consumers and closes the log
+	 */
+	void stop() {
+		myStopped = true;
+		synchronized (this) {
+			notifyAll();
+		}
+		try {
+			myDispatcherThread.join(POLL_MILLIS * 5);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Handling a message commits its offset to the log, so the log must stay open until the
+		// consumers are done. Anything still running after the timeout is redelivered after a restart.
+		ThreadPoolExecutor consumerExecutor = myConsumerExecutor.getThreadPoolExecutor();
+		consumerExecutor.shutdown();
+		try {
+			if (!consumerExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				ourLog.warn(
+						"Timed out after {}ms waiting for consumers of channel[{}] to finish",
+						SHUTDOWN_TIMEOUT_MILLIS,
+						myName);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		myConsumerExecutor.shutdown();
+		myLog.close();
+	}
+
+	private void dispatchLoop() {
+		while (!myStopped) {
+			try {
+				dispatchNext();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				ourLog.error("Failure dispatching message in channel[{}]", myName, e);
+			}
+		}
+	}
+
+	private void dispatchNext() throws InterruptedException {
+		synchronized (this) {
+			if (getSubscribers().isEmpty()) {
+				wait(POLL_MILLIS);
+				return;
+			}
+		}
+
+		myInFlightPermits.acquire();
+		SegmentedMessageLog.Record record = myLog.read(myReadOffset, POLL_MILLIS);
+		if (record == null || myStopped) {
+			myInFlightPermits.release();
+			return;
+		}
+
+		long offset = record.getOffset();
+		synchronized (myInFlightOffsets) {
+			// This entry is released below once all subscriber tasks have been submitted
+			myInFlightOffsets.put(offset, new AtomicInteger(1));
+			myReadOffset = record.getNextOffset();
+		}
+
+		try {
+			Message<?> message = (Message<?>)
+					JsonUtil.deserialize(new String(record.getData(), StandardCharsets.UTF_8), myMessageType);
+			myDispatchingOffset = offset;
+			super.sendInternal(message, -1);
+		} catch (Exception e) {
+			ourLog.error("Failed to dispatch message at offset {} in channel[{}]", offset, myName, e);
+		} finally {
+			taskFinished(offset);
+		}
+	}
+
+	private void taskFinished(long theOffset) {
+		long commitOffset;
+		synchronized (myInFlightOffsets) {
+			AtomicInteger remaining = myInFlightOffsets.get(theOffset);
+			if (remaining == null || remaining.decrementAndGet() > 0) {
+				return;
+			}
+			myInFlightOffsets.remove(theOffset);
+			Map.Entry<Long, AtomicInteger> oldestInFlight = myInFlightOffsets.firstEntry();
+			commitOffset = oldestInFlight != null ? oldestInFlight.getKey() : myReadOffset;
+		}
+		myLog.acknowledge();
+		myLog.commit(commitOffset);
+		myInFlightPermits.release();
+	}
+
+	/**
+	 * Runs the subscriber tasks created by {@link ExecutorSubscribableChannel} on the consumer pool, keeping
+	 * track of which message each one belongs to so that the message can be committed once they have all
+	 * finished. Tasks are only ever submitted from the dispatcher thread.
+	 */
+	private static class TrackingExecutor implements Executor {
+		private final Executor myDelegate;
+		private PersistentChannel myChannel;
+
+		private TrackingExecutor(Executor theDelegate) {
+			myDelegate = theDelegate;
+		}
+
+		private void setChannel(PersistentChannel theChannel) {
+			myChannel = theChannel;
+		}
+
+		@Override
+		public void execute(@Nonnull Runnable theTask) {
+			long offset = myChannel.myDispatchingOffset;
+			myChannel.myInFlightOffsets.get(offset).incrementAndGet();
+			try {
+				myDelegate.execute(() -> {
+					try {
+						theTask.run();
+					} finally {
+						myChannel.taskFinished(offset);
+					}
+				});
+			} catch (RuntimeException e) {
+				myChannel.taskFinished(offset);
+				throw e;
+			}
+		}
+	}
+}
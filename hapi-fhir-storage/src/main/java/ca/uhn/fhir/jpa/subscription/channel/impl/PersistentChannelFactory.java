@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelSettings;
+import ca.uhn.fhir.jpa.subscription.channel.subscription.IChannelNamer;
+import ca.uhn.fhir.subscription.SubscriptionConstants;
+import ca.uhn.fhir.util.ThreadPoolUtil;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link IChannelFactory} which stores the messages for each channel in an append-only log of
+ * memory-mapped files on the local disk (see {@link PersistentChannel}). Unlike
+ * {@link LinkedBlockingChannelFactory}, messages which have not yet been handled survive a restart,
+ * and a slow consumer does not cause messages to build up on the heap. No external message broker
+ * is needed.
+ * <p>
+ * Each channel is stored in its own directory below the base directory, so the base directory must
+ * not be shared between server processes. To use this factory, declare it as a <code>@Primary</code>
+ * <code>IChannelFactory</code> bean.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class PersistentChannelFactory implements IChannelFactory {
+
+	public static final int DEFAULT_SEGMENT_SIZE_BYTES = 64 * 1024 * 1024;
+	public static final int DEFAULT_MAX_PENDING_MESSAGES = 100_000;
+	public static final long DEFAULT_SEND_TIMEOUT_MILLIS = DateUtils.MILLIS_PER_MINUTE;
+
+	private final IChannelNamer myChannelNamer;
+	private final Path myBaseDirectory;
+	private final Map<String, PersistentChannel> myChannels = Collections.synchronizedMap(new HashMap<>());
+	private int mySegmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+	private int myMaxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+	private long mySendTimeoutMillis = DEFAULT_SEND_TIMEOUT_MILLIS;
+
+	/**
+	 * Constructor
+	 *
+	 * @param theChannelNamer   The channel namer
+	 * @param theBaseDirectory  The directory in which the channel data will be stored
+	 */
+	public PersistentChannelFactory(IChannelNamer theChannelNamer, Path theBaseDirectory) {
+		myChannelNamer = theChannelNamer;
+		myBaseDirectory = theBaseDirectory;
+	}
+
+	/**
+	 * The size of each memory-mapped segment file. A message can not be larger than this.
+	 * Default is {@link #DEFAULT_SEGMENT_SIZE_BYTES}. Only applies to channels created after
+	 * this is set.
+	 */
+	public int getSegmentSizeBytes() {
+		return mySegmentSizeBytes;
+	}
+
+	/**
+	 * The size of each memory-mapped segment file. A message can not be larger than this.
+	 * Default is {@link #DEFAULT_SEGMENT_SIZE_BYTES}. Only applies to channels created after
+	 * this is set.
+	 */
+	public void setSegmentSizeBytes(int theSegmentSizeBytes) {
+		Validate.isTrue(theSegmentSizeBytes > 0, "Segment size must be positive");
+		mySegmentSizeBytes = theSegmentSizeBytes;
+	}
+
+	/**
+	 * The maximum number of messages in a channel which have been sent but not yet handled. Once
+	 * this limit is reached, senders block until there is room (see {@link #setSendTimeoutMillis(long)}).
+	 * Default is {@link #DEFAULT_MAX_PENDING_MESSAGES}. Only applies to channels created after this is set.
+	 */
+	public int getMaxPendingMessages() {
+		return myMaxPendingMessages;
+	}
+
+	/**
+	 * The maximum number of messages in a channel which have been sent but not yet handled. Once
+	 * this limit is reached, senders block until there is room (see {@link #setSendTimeoutMillis(long)}).
+	 * Default is {@link #DEFAULT_MAX_PENDING_MESSAGES}. Only applies to channels created after this is set.
+	 */
+	public void setMaxPendingMessages(int theMaxPendingMessages) {
+		Validate.isTrue(theMaxPendingMessages > 0, "Max pending messages must be positive");
+		myMaxPendingMessages = theMaxPendingMessages;
+	}
+
+	/**
+	 * How long a sender waits for room in a full channel before the send fails with a
+	 * {@link org.springframework.messaging.MessageDeliveryException}.
+	 * Default is {@link #DEFAULT_SEND_TIMEOUT_MILLIS}.
+	 */
+	public long getSendTimeoutMillis() {
+		return mySendTimeoutMillis;
+	}
+
+	/**
+	 * How long a sender waits for room in a full channel before the send fails with a
+	 * {@link org.springframework.messaging.MessageDeliveryException}.
+	 * Default is {@link #DEFAULT_SEND_TIMEOUT_MILLIS}.
+	 */
+	public void setSendTimeoutMillis(long theSendTimeoutMillis) {
+		mySendTimeoutMillis = theSendTimeoutMillis;
+	}
+
+	@Override
+	public IChannelReceiver getOrCreateReceiver(
+			String theChannelName, Class<?> theMessageType, ChannelConsumerSettings theChannelSettings) {
+		return getOrCreateChannel(
+				theChannelName, theMessageType, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelProducer getOrCreateProducer(
+			String theChannelName, Class<?> theMessageType, ChannelProducerSettings theChannelSettings) {
+		return getOrCreateChannel(
+				theChannelName, theMessageType, theChannelSettings.getConcurrentConsumers(), theChannelSettings);
+	}
+
+	@Override
+	public IChannelNamer getChannelNamer() {
+		return myChannelNamer;
+	}
+
+	private PersistentChannel getOrCreateChannel(
+			String theChannelName,
+			Class<?> theMessageType,
+			int theConcurrentConsumers,
+			IChannelSettings theChannelSettings) {
+		final String channelName = myChannelNamer.getChannelName(theChannelName, theChannelSettings);
+
+		return myChannels.computeIfAbsent(
+				channelName, t -> buildPersistentChannel(theConcurrentConsumers, channelName, theMessageType));
+	}
+
+	@Nonnull
+	private PersistentChannel buildPersistentChannel(
+			int theConcurrentConsumers, String theChannelName, Class<?> theMessageType) {
+		String threadNamePrefix = theChannelName + "-";
+		ThreadPoolTaskExecutor threadPoolExecutor = ThreadPoolUtil.newThreadPool(
+				theConcurrentConsumers,
+				theConcurrentConsumers,
+				threadNamePrefix,
+				SubscriptionConstants.DELIVERY_EXECUTOR_QUEUE_SIZE);
+
+		SegmentedMessageLog log = new SegmentedMessageLog(
+				myBaseDirectory.resolve(toDirectoryName(theChannelName)), mySegmentSizeBytes, myMaxPendingMessages);
+		PersistentChannel retVal = new PersistentChannel(
+				theChannelName, theMessageType, log, threadPoolExecutor, theConcurrentConsumers, mySendTimeoutMillis);
+		retVal.start();
+		return retVal;
+	}
+
+	@PreDestroy
+	public void stop() {
+		for (PersistentChannel next : new ArrayList<>(myChannels.values())) {
+			next.stop();
+		}
+		myChannels.clear();
+	}
+
+	static String toDirectoryName(String theChannelName) {
+		return theChannelName.replaceAll("[^a-zA-Z0-9._-]", "_");
+	}
+}
@@ -0,0 +1,379 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.jpa.subscription.channel.api.PayloadTooLargeException;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import jakarta.annotation.Nullable;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of messages stored in a directory as a sequence of fixed size, memory-mapped
+ * segment files, together with the offset of the next message the consumer has not yet acknowledged.
+ * <p>
+ * Offsets are byte positions across the whole log (segment number * segment size + position within
+ * the segment). Each record is stored as <code>[length][crc32][bytes]</code>. A length of 0 means
+ * nothing has been written there yet, and a length of -1 means the rest of the segment is unused and
+ * the next record is at the start of the following segment. Segments which are entirely before the
+ * committed offset are deleted.
+ * </p>
+ * <p>
+ * When the log is reopened, writing resumes after the last intact record and reading resumes at the
+ * committed offset, so messages which were being processed when the process stopped are read again.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class SegmentedMessageLog implements AutoCloseable {
+	private static final Logger ourLog = LoggerFactory.getLogger(SegmentedMessageLog.class);
+	private static final String SEGMENT_SUFFIX = ".segment";
+	private static final String OFFSET_FILE_NAME = "consumer.offset";
+	private static final int HEADER_SIZE = 8;
+	private static final int END_OF_SEGMENT = -1;
+
+	private final Path myDirectory;
+	private final int mySegmentSize;
+	private final int myMaxPendingMessages;
+	private final TreeMap<Long, MappedByteBuffer> mySegments = new TreeMap<>();
+	private final MappedByteBuffer myOffsetBuffer;
+	private long myWriteOffset;
+	private long myCommittedOffset;
+	private long myPendingCount;
+	private boolean myClosed;
+
+	/**
+	 * Constructor - Opens (or creates) the log in the given directory
+	 *
+	 * @param theDirectory          The directory holding the segment files for this log
+	 * @param theSegmentSize        The size of each segment file in bytes. This is also the upper limit on the size of a single message.
+	 * @param theMaxPendingMessages The maximum number of appended messages which have not yet been acknowledged. Appends block while this limit is reached.
+	 */
+	SegmentedMessageLog(Path theDirectory, int theSegmentSize, int theMaxPendingMessages) {
+		Validate.isTrue(theSegmentSize > HEADER_SIZE * 2, "Segment size is too small");
+		Validate.isTrue(theMaxPendingMessages > 0, "Max pending messages must be positive");
+		myDirectory = theDirectory;
+		mySegmentSize = theSegmentSize;
+		myMaxPendingMessages = theMaxPendingMessages;
+
+		try {
+			Files.createDirectories(theDirectory);
+			myOffsetBuffer = map(theDirectory.resolve(OFFSET_FILE_NAME), Long.BYTES);
+			myCommittedOffset = myOffsetBuffer.getLong(0);
+			recover();
+		} catch (IOException e) {
+			throw new InternalErrorException(
+					Msg.code(2788) + "Failed to open message log in " + theDirectory + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Appends a message to the log, waiting for up to the given time if the log already holds the maximum
+	 * number of pending messages.
+	 *
+	 * @return <code>true</code> if the message was appended, <code>false</code> if the log was still full once
+	 * the timeout elapsed
+	 */
+	synchronized boolean append(byte[] theData, long theTimeoutMillis) throws InterruptedException {
+		int recordSize = HEADER_SIZE + theData.length;
+		if (recordSize + Integer.BYTES > mySegmentSize) {
+			throw new PayloadTooLargeException(Msg.code(2789) + "Message of " + theData.length
+					+ " bytes is larger than the message log segment size of " + mySegmentSize + " bytes");
+		}
+
+		long deadline = System.currentTimeMillis() + theTimeoutMillis;
+		while (myPendingCount >= myMaxPendingMessages && !myClosed) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+		assertOpen();
+
+		int position = positionOf(myWriteOffset);
+		if (position + recordSize + Integer.BYTES > mySegmentSize) {
+			getSegment(segmentOf(myWriteOffset)).putInt(position, END_OF_SEGMENT);
+			myWriteOffset = (segmentOf(myWriteOffset) + 1) * mySegmentSize;
+			position = 0;
+		}
+
+		MappedByteBuffer segment = getOrCreateSegment(segmentOf(myWriteOffset));
+		segment.putInt(position + Integer.BYTES, crc(theData));
+		ByteBuffer dataBuffer = segment.duplicate();
+		dataBuffer.position(position + HEADER_SIZE);
+		dataBuffer.put(theData);
+		// The length is written last, so a record is never visible before it is complete
+		segment.putInt(position, theData.length);
+
+		myWriteOffset += recordSize;
+		myPendingCount++;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Returns the record at the given offset, waiting for up to the given time for it to be written
+	 *
+	 * @return The record, or <code>null</code> if nothing was written at the given offset before the timeout elapsed
+	 */
+	@Nullable
+	synchronized Record read(long theOffset, long theTimeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + theTimeoutMillis;
+		while (!myClosed) {
+			Record retVal = readRecord(theOffset);
+			if (retVal != null) {
+				return retVal;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+			wait(remaining);
+		}
+		return null;
+	}
+
+	/**
+	 * Marks a message as fully processed, freeing up room for another pending message
+	 */
+	synchronized void acknowledge() {
+		if (myPendingCount > 0) {
+			myPendingCount--;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Records that every message before the given offset has been processed, so it will not be read again
+	 * if the log is reopened. Segments which are no longer needed are deleted.
+	 */
+	synchronized void commit(long theOffset) {
+		if (myClosed || theOffset <= myCommittedOffset) {
+			return;
+		}
+		myCommittedOffset = theOffset;
+		myOffsetBuffer.putLong(0, theOffset);
+
+		long firstNeededSegment = segmentOf(theOffset);
+		while (!mySegments.isEmpty() && mySegments.firstKey() < firstNeededSegment) {
+			deleteSegment(mySegments.pollFirstEntry().getKey());
+		}
+	}
+
+	synchronized long getCommittedOffset() {
+		return myCommittedOffset;
+	}
+
+	synchronized long getPendingCount() {
+		return myPendingCount;
+	}
+
+	/**
+	 * Flushes all changes to disk and releases the segment files
+	 */
+	@Override
+	public synchronized void close() {
+		if (myClosed) {
+			return;
+		}
+		for (MappedByteBuffer next : mySegments.values()) {
+			next.force();
+		}
+		myOffsetBuffer.force();
+		mySegments.clear();
+		myClosed = true;
+		notifyAll();
+	}
+
+	@Nullable
+	private Record readRecord(long theOffset) {
+		long offset = theOffset;
+		MappedByteBuffer segment = getSegment(segmentOf(offset));
+		if (segment == null) {
+			return null;
+		}
+		int position = positionOf(offset);
+		int length = position + Integer.BYTES <= mySegmentSize ? segment.getInt(position) : END_OF_SEGMENT;
+		if (length == END_OF_SEGMENT) {
+			offset = (segmentOf(offset) + 1) * mySegmentSize;
+			segment = getSegment(segmentOf(offset));
+			if (segment == null) {
+				return null;
+			}
+			position = 0;
+			length = segment.getInt(0);
+		}
+		if (length <= 0 || position + HEADER_SIZE + length > mySegmentSize) {
+			return null;
+		}
+
+		byte[] data = new byte[length];
+		ByteBuffer dataBuffer = segment.duplicate();
+		dataBuffer.position(position + HEADER_SIZE);
+		dataBuffer.get(data);
+		if (crc(data) != segment.getInt(position + Integer.BYTES)) {
+			return null;
+		}
+		return new Record(offset, offset + HEADER_SIZE + length, data);
+	}
+
+	/**
+	 * Finds the end of the written data and the number of messages which still need to be processed
+	 */
+	private void recover() throws IOException {
+		try (Stream<Path> files = Files.list(myDirectory)) {
+			files.map(t -> t.getFileName().toString())
+					.filter(t -> t.endsWith(SEGMENT_SUFFIX))
+					.map(t -> Long.parseLong(t.substring(0, t.length() - SEGMENT_SUFFIX.length())))
+					.sorted()
+					.forEach(t -> {
+						if (t < segmentOf(myCommittedOffset)) {
+							deleteSegment(t);
+						} else {
+							getOrCreateSegment(t);
+						}
+					});
+		}
+
+		long offset = myCommittedOffset;
+		Record record;
+		while ((record = readRecord(offset)) != null) {
+			myPendingCount++;
+			offset = record.getNextOffset();
+		}
+		myWriteOffset = offset;
+
+		// Anything after the last intact record is a partially written record which can be overwritten
+		MappedByteBuffer segment = getOrCreateSegment(segmentOf(myWriteOffset));
+		int position = positionOf(myWriteOffset);
+		if (position + Integer.BYTES <= mySegmentSize && segment.getInt(position) != 0) {
+			if (segment.getInt(position) == END_OF_SEGMENT) {
+				myWriteOffset = (segmentOf(myWriteOffset) + 1) * mySegmentSize;
+			} else {
+				segment.putInt(position, 0);
+			}
+		}
+		for (Long next :
+				mySegments.tailMap(segmentOf(myWriteOffset), false).keySet().toArray(new Long[0])) {
+			mySegments.remove(next);
+			deleteSegment(next);
+		}
+
+		if (myPendingCount > 0) {
+			ourLog.info("Message log {} has {} pending message(s)", myDirectory, myPendingCount);
+		}
+	}
+
+	private MappedByteBuffer getSegment(long theSegment) {
+		return mySegments.get(theSegment);
+	}
+
+	private MappedByteBuffer getOrCreateSegment(long theSegment) {
+		return mySegments.computeIfAbsent(theSegment, t -> {
+			try {
+				return map(segmentPath(t), mySegmentSize);
+			} catch (IOException e) {
+				throw new InternalErrorException(
+						Msg.code(2790) + "Failed to map message log segment " + segmentPath(t) + ": " + e.getMessage(),
+						e);
+			}
+		});
+	}
+
+	private void deleteSegment(long theSegment) {
+		try {
+			Files.deleteIfExists(segmentPath(theSegment));
+		} catch (IOException e) {
+			ourLog.warn("Failed to delete message log segment {}: {}", segmentPath(theSegment), e.toString());
+		}
+	}
+
+	private Path segmentPath(long theSegment) {
+		return myDirectory.resolve(String.format("%020d", theSegment) + SEGMENT_SUFFIX);
+	}
+
+	private long segmentOf(long theOffset) {
+		return theOffset / mySegmentSize;
+	}
+
+	private int positionOf(long theOffset) {
+		return (int) (theOffset % mySegmentSize);
+	}
+
+	private void assertOpen() {
+		if (myClosed) {
+			throw new IllegalStateException(Msg.code(2791) + "Message log " + myDirectory + " is closed");
+		}
+	}
+
+	private static MappedByteBuffer map(Path thePath, int theSize) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(thePath.toFile(), "rw")) {
+			if (file.length() < theSize) {
+				file.setLength(theSize);
+			}
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, theSize);
+		}
+	}
+
+	private static int crc(byte[] theData) {
+		CRC32 crc = new CRC32();
+		crc.update(theData);
+		return (int) crc.getValue();
+	}
+
+	static class Record {
+		private final long myOffset;
+		private final long myNextOffset;
+		private final byte[] myData;
+
+		Record(long theOffset, long theNextOffset, byte[] theData) {
+			myOffset = theOffset;
+			myNextOffset = theNextOffset;
+			myData = theData;
+		}
+
+		long getOffset() {
+			return myOffset;
+		}
+
+		long getNextOffset() {
+			return myNextOffset;
+		}
+
+		byte[] getData() {
+			return myData;
+		}
+	}
+}
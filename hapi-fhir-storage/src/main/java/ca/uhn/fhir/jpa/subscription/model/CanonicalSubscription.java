@@ -185,8 +185,8 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 
 	public String getChannelExtension(String theUrl) {
 		String retVal = null;
-		List<String> channelExtensions = myChannelExtensions.get(theUrl);
-		if (channelExtensions != null && !channelExtensions.isEmpty()) {
+		List<String> channelExtensions = getChannelExtensions(theUrl);
+		if (!channelExtensions.isEmpty()) {
 			retVal = channelExtensions.get(0);
 		}
 		return retVal;
@@ -194,7 +194,7 @@ public class CanonicalSubscription implements Serializable, Cloneable, IModelJso
 
 	@Nonnull
 	public List<String> getChannelExtensions(String theUrl) {
-		List<String> retVal = myChannelExtensions.get(theUrl);
+		List<String> retVal = myChannelExtensions != null ? myChannelExtensions.get(theUrl) : null;
 		if (retVal == null) {
 			retVal = Collections.emptyList();
 		} else {
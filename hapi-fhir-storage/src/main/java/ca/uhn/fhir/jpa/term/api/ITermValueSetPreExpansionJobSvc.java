@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.term.api;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ITermValueSetPreExpansionJobSvc {
+
+	/**
+	 * Claims up to the given number of ValueSets which are waiting to be pre-expanded, marking
+	 * each of them as being in progress so that they are not picked up again.
+	 * @param theMaxCount - the maximum number of ValueSets to claim
+	 * @return - the PIDs of the claimed TermValueSet entities
+	 */
+	List<Long> claimValueSetsForPreExpansion(int theMaxCount);
+
+	/**
+	 * Pre-expands a single claimed ValueSet into the terminology tables. Any partially stored
+	 * expansion from an earlier attempt is removed first, so this method may safely be retried.
+	 * If the expansion fails the ValueSet is marked as failed rather than an exception being thrown.
+	 * @param theTermValueSetPid - the PID of the TermValueSet to pre-expand
+	 * @return - the number of concepts saved, or <code>null</code> if the ValueSet no longer needs expanding
+	 */
+	Integer preExpandValueSet(long theTermValueSetPid);
+
+	/**
+	 * Notifies that the job has completed.
+	 * @param theJobId - the job id
+	 */
+	void notifyJobComplete(String theJobId);
+
+	/**
+	 * Notifies that the job has failed or was cancelled. Every ValueSet claimed by this job
+	 * which has not been expanded yet is made available for pre-expansion again.
+	 * @param theJobId - the job id
+	 * @param theClaimedTermValueSetPids - the PIDs of the TermValueSet entities claimed by the job
+	 */
+	void notifyJobFailed(String theJobId, Collection<Long> theClaimedTermValueSetPids);
+}
@@ -0,0 +1,49 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Minimal meter registry abstraction used to publish internal statistics to a metrics library,
+ * without HAPI FHIR depending on one. It is used by {@link MemoryCacheMetricsBinder} for the
+ * {@link MemoryCacheService} caches, and by
+ * {@link ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannelFactory} for the in-memory
+ * message channels. Implementations typically delegate to a Micrometer <code>MeterRegistry</code>,
+ * e.g. by registering a <code>Gauge</code> or a <code>FunctionCounter</code> that calls the
+ * supplied function whenever the meter is read.
+ *
+ * @since 7.6.0
+ */
+public interface IMeterRegistry {
+
+	/**
+	 * Registers a value which can go up and down
+	 */
+	void gauge(String theName, Map<String, String> theTags, DoubleSupplier theValueSupplier);
+
+	/**
+	 * Registers a monotonically increasing count. By default this is registered as a gauge.
+	 */
+	default void counter(String theName, Map<String, String> theTags, DoubleSupplier theValueSupplier) {
+		gauge(theName, theTags, theValueSupplier);
+	}
+}
@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Second-level cache tier sitting behind {@link MemoryCacheService}. Where the per-node caches held
+ * by {@link MemoryCacheService} are local to a single JVM, an implementation of this interface is
+ * intended to be shared by every node in a cluster (e.g. backed by a distributed cache), so that
+ * values resolved by one node can be reused by the others and a freshly started node does not
+ * start cold.
+ * <p>
+ * Only caches where {@link MemoryCacheService.CacheEnum#isShareable()} returns <code>true</code>
+ * are ever passed to this tier. Implementations which store values outside of the JVM are
+ * responsible for serializing the keys and values of those caches.
+ * </p>
+ * <p>
+ * Values found in this tier are copied back into the local caches, so implementations should expire
+ * entries after {@link MemoryCacheService#getTimeoutMillis(ca.uhn.fhir.jpa.api.config.JpaStorageSettings,
+ * MemoryCacheService.CacheEnum)} at the latest.
+ * </p>
+ *
+ * @see InJvmSharedMemoryCache for a reference implementation
+ * @since 7.6.0
+ */
+public interface ISharedMemoryCache {
+
+	/**
+	 * @return Returns the cached value, or <code>null</code> if no value is cached for the given key
+	 */
+	@Nullable
+	<K, V> V getIfPresent(MemoryCacheService.CacheEnum theCache, K theKey);
+
+	/**
+	 * @return Returns a map containing only the keys which have a cached value
+	 */
+	<K, V> Map<K, V> getAllPresent(MemoryCacheService.CacheEnum theCache, Collection<K> theKeys);
+
+	<K, V> void put(MemoryCacheService.CacheEnum theCache, K theKey, V theValue);
+
+	/**
+	 * Removes all entries from the given cache
+	 */
+	void invalidate(MemoryCacheService.CacheEnum theCache);
+}
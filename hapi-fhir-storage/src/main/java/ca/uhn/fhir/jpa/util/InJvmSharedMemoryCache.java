@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.sl.cache.Cache;
+import ca.uhn.fhir.sl.cache.CacheFactory;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reference implementation of {@link ISharedMemoryCache} which keeps the shared tier in
+ * memory. It is only shared between the {@link MemoryCacheService} instances living in the
+ * same JVM, so it is mostly useful for testing and as a template for implementations backed
+ * by a distributed cache.
+ *
+ * @since 7.6.0
+ */
+public class InJvmSharedMemoryCache implements ISharedMemoryCache {
+
+	private final EnumMap<MemoryCacheService.CacheEnum, Cache<Object, Object>> myCaches =
+			new EnumMap<>(MemoryCacheService.CacheEnum.class);
+
+	/**
+	 * Constructor
+	 *
+	 * @param theStorageSettings The settings used by the {@link MemoryCacheService} instances sharing this cache.
+	 *                           Each shared cache uses the same expiry time and maximum size as the local cache
+	 *                           in front of it, so values copied back into a local cache are never older than
+	 *                           the local cache would allow.
+	 */
+	public InJvmSharedMemoryCache(JpaStorageSettings theStorageSettings) {
+		for (MemoryCacheService.CacheEnum next : MemoryCacheService.CacheEnum.values()) {
+			if (next.isShareable()) {
+				long timeoutMillis = MemoryCacheService.getTimeoutMillis(theStorageSettings, next);
+				int maximumSize = MemoryCacheService.getMaximumSize(theStorageSettings, next);
+				myCaches.put(next, CacheFactory.build(timeoutMillis, maximumSize));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> V getIfPresent(MemoryCacheService.CacheEnum theCache, K theKey) {
+		return (V) getCache(theCache).getIfPresent(theKey);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> Map<K, V> getAllPresent(MemoryCacheService.CacheEnum theCache, Collection<K> theKeys) {
+		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+	}
+
+	@Override
+	public <K, V> void put(MemoryCacheService.CacheEnum theCache, K theKey, V theValue) {
+		getCache(theCache).put(theKey, theValue);
+	}
+
+	@Override
+	public void invalidate(MemoryCacheService.CacheEnum theCache) {
+		getCache(theCache).invalidateAll();
+	}
+
+	public long getEstimatedSize(MemoryCacheService.CacheEnum theCache) {
+		return getCache(theCache).estimatedSize();
+	}
+
+	private Cache<Object, Object> getCache(MemoryCacheService.CacheEnum theCache) {
+		Cache<Object, Object> retVal = myCaches.get(theCache);
+		assert retVal != null : "Cache " + theCache + " is not shareable";
+		return retVal;
+	}
+}
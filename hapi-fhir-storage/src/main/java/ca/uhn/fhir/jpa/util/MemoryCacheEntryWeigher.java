@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.context.support.TranslateConceptResult;
+import ca.uhn.fhir.context.support.TranslateConceptResults;
+import ca.uhn.fhir.sl.cache.Weigher;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Estimates the number of bytes used by a {@link MemoryCacheService} cache entry, for caches
+ * which are bounded by size in bytes (see
+ * {@link ca.uhn.fhir.jpa.api.config.JpaStorageSettings#setMemoryCacheMaximumBytes(MemoryCacheService.CacheEnum, Long)}).
+ * <p>
+ * This is a cheap approximation based on the types we actually cache (strings, boxed numbers,
+ * collections and terminology translation results) rather than an exact measurement of the
+ * object graph. Other objects are counted as a fixed size.
+ * </p>
+ */
+class MemoryCacheEntryWeigher implements Weigher<Object, Object> {
+
+	static final int ENTRY_OVERHEAD = 64;
+	static final int OBJECT_SIZE = 64;
+	private static final int REFERENCE_SIZE = 8;
+	private static final int BOXED_SIZE = 16;
+
+	@Override
+	public int weigh(Object theKey, Object theValue) {
+		long retVal = ENTRY_OVERHEAD + estimate(theKey) + estimate(theValue);
+		return (int) Math.min(retVal, Integer.MAX_VALUE);
+	}
+
+	static long estimate(Object theObject) {
+		if (theObject == null || theObject instanceof Enum) {
+			return 0;
+		}
+		if (theObject instanceof CharSequence) {
+			return 40L + 2L * ((CharSequence) theObject).length();
+		}
+		if (theObject instanceof Number || theObject instanceof Boolean || theObject instanceof Character) {
+			return BOXED_SIZE;
+		}
+		if (theObject instanceof Optional) {
+			return BOXED_SIZE + estimate(((Optional<?>) theObject).orElse(null));
+		}
+		if (theObject instanceof Collection) {
+			long retVal = BOXED_SIZE;
+			for (Object next : (Collection<?>) theObject) {
+				retVal += REFERENCE_SIZE + estimate(next);
+			}
+			return retVal;
+		}
+		if (theObject instanceof Map) {
+			long retVal = BOXED_SIZE;
+			for (Map.Entry<?, ?> next : ((Map<?, ?>) theObject).entrySet()) {
+				retVal += 32 + estimate(next.getKey()) + estimate(next.getValue());
+			}
+			return retVal;
+		}
+		if (theObject instanceof TranslateConceptResult) {
+			TranslateConceptResult result = (TranslateConceptResult) theObject;
+			return OBJECT_SIZE
+					+ estimate(result.getSystem())
+					+ estimate(result.getSystemVersion())
+					+ estimate(result.getCode())
+					+ estimate(result.getDisplay())
+					+ estimate(result.getEquivalence())
+					+ estimate(result.getValueSet())
+					+ estimate(result.getConceptMapUrl());
+		}
+		if (theObject instanceof TranslateConceptResults) {
+			TranslateConceptResults results = (TranslateConceptResults) theObject;
+			return OBJECT_SIZE + estimate(results.getMessage()) + estimate(results.getResults());
+		}
+		return OBJECT_SIZE;
+	}
+}
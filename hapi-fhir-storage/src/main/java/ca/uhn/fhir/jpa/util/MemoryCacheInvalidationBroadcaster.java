@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Keeps the {@link MemoryCacheService} caches of the nodes in a cluster consistent with each other. When a
+ * node invalidates one or more of its caches, this class publishes a {@link MemoryCacheInvalidationMessage}
+ * on a channel obtained from the {@link IChannelFactory}, and every other node receiving it invalidates its
+ * own local copy of the same caches.
+ * <p>
+ * The channel must deliver each message to every node (i.e. publish/subscribe rather than competing
+ * consumers). The in-memory {@link ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannelFactory}
+ * only reaches the current JVM, so a broker-backed channel factory is needed in a real cluster. Messages
+ * published by this node are ignored when they are received back.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class MemoryCacheInvalidationBroadcaster implements MessageHandler {
+
+	public static final String CHANNEL_NAME = "memory-cache-invalidation";
+	private static final Logger ourLog = LoggerFactory.getLogger(MemoryCacheInvalidationBroadcaster.class);
+
+	private final IChannelFactory myChannelFactory;
+	private final MemoryCacheService myMemoryCacheService;
+	private final String myNodeId = UUID.randomUUID().toString();
+	private IChannelProducer myProducer;
+	private IChannelReceiver myReceiver;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationBroadcaster(
+			IChannelFactory theChannelFactory, MemoryCacheService theMemoryCacheService) {
+		myChannelFactory = theChannelFactory;
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	@PostConstruct
+	public void start() {
+		myProducer = myChannelFactory.getOrCreateProducer(
+				CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelProducerSettings());
+		myReceiver = myChannelFactory.getOrCreateReceiver(
+				CHANNEL_NAME, MemoryCacheInvalidationJsonMessage.class, new ChannelConsumerSettings());
+		myReceiver.subscribe(this);
+		myMemoryCacheService.setInvalidationBroadcaster(this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		myMemoryCacheService.setInvalidationBroadcaster(null);
+		if (myReceiver != null) {
+			myReceiver.unsubscribe(this);
+		}
+	}
+
+	/**
+	 * Tells the other nodes to invalidate the given caches
+	 */
+	public void broadcastInvalidation(Collection<MemoryCacheService.CacheEnum> theCaches) {
+		if (myProducer == null || theCaches.isEmpty()) {
+			return;
+		}
+		MemoryCacheInvalidationMessage payload = new MemoryCacheInvalidationMessage(myNodeId, theCaches);
+		ourLog.debug("Broadcasting invalidation of caches: {}", payload.getCaches());
+		myProducer.send(new MemoryCacheInvalidationJsonMessage(payload));
+	}
+
+	@Override
+	public void handleMessage(@Nonnull Message<?> theMessage) throws MessagingException {
+		if (!(theMessage instanceof MemoryCacheInvalidationJsonMessage)) {
+			ourLog.warn("Received message of unexpected type on memory cache invalidation channel: {}", theMessage);
+			return;
+		}
+
+		MemoryCacheInvalidationMessage payload = ((MemoryCacheInvalidationJsonMessage) theMessage).getPayload();
+		if (payload == null || myNodeId.equals(payload.getOriginNodeId())) {
+			return;
+		}
+
+		ourLog.debug(
+				"Invalidating caches {} at the request of node {}", payload.getCaches(), payload.getOriginNodeId());
+		myMemoryCacheService.invalidateLocalCaches(payload.getCaches());
+	}
+
+	public String getNodeId() {
+		return myNodeId;
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Broadcast by {@link MemoryCacheInvalidationBroadcaster} when a node invalidates one or more
+ * of its {@link MemoryCacheService} caches, so that the other nodes can do the same.
+ *
+ * @since 7.6.0
+ */
+public class MemoryCacheInvalidationMessage implements IModelJson {
+
+	@JsonProperty("originNodeId")
+	private String myOriginNodeId;
+
+	@JsonProperty("caches")
+	private List<MemoryCacheService.CacheEnum> myCaches;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationMessage() {
+		super();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheInvalidationMessage(String theOriginNodeId, Collection<MemoryCacheService.CacheEnum> theCaches) {
+		myOriginNodeId = theOriginNodeId;
+		myCaches = new ArrayList<>(theCaches);
+	}
+
+	public String getOriginNodeId() {
+		return myOriginNodeId;
+	}
+
+	public void setOriginNodeId(String theOriginNodeId) {
+		myOriginNodeId = theOriginNodeId;
+	}
+
+	public List<MemoryCacheService.CacheEnum> getCaches() {
+		if (myCaches == null) {
+			myCaches = new ArrayList<>();
+		}
+		return myCaches;
+	}
+
+	public void setCaches(List<MemoryCacheService.CacheEnum> theCaches) {
+		myCaches = theCaches;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("originNodeId", myOriginNodeId)
+				.append("caches", myCaches)
+				.toString();
+	}
+}
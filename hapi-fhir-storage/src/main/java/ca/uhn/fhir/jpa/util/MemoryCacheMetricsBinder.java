@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the statistics of every {@link MemoryCacheService} cache to an
+ * {@link IMeterRegistry}. Meter names follow the conventions used by Micrometer's
+ * own cache metrics, and every meter is tagged with the name of the cache (e.g.
+ * <code>cache=CONCEPT_TRANSLATION</code>).
+ * <p>
+ * Values are read from the cache each time a meter is sampled, so the meters only need to be
+ * bound once at startup.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class MemoryCacheMetricsBinder {
+
+	public static final String TAG_CACHE = "cache";
+	public static final String TAG_RESULT = "result";
+	public static final String METRIC_SIZE = "cache.size";
+	public static final String METRIC_GETS = "cache.gets";
+	public static final String METRIC_HIT_RATIO = "cache.hit.ratio";
+	public static final String METRIC_LOADS = "cache.loads";
+	public static final String METRIC_LOAD_DURATION = "cache.load.duration";
+	public static final String METRIC_EVICTIONS = "cache.evictions";
+	public static final String METRIC_EVICTION_WEIGHT = "cache.eviction.weight";
+	public static final String METRIC_ESTIMATED_BYTES = "cache.estimated.bytes";
+
+	private final MemoryCacheService myMemoryCacheService;
+
+	/**
+	 * Constructor
+	 */
+	public MemoryCacheMetricsBinder(MemoryCacheService theMemoryCacheService) {
+		myMemoryCacheService = theMemoryCacheService;
+	}
+
+	public void bindTo(IMeterRegistry theRegistry) {
+		for (MemoryCacheService.CacheEnum next : MemoryCacheService.CacheEnum.values()) {
+			String cacheName = next.name();
+			Map<String, String> tags = Map.of(TAG_CACHE, cacheName);
+
+			theRegistry.gauge(METRIC_SIZE, tags, () -> myMemoryCacheService.getEstimatedSize(next));
+			theRegistry.gauge(METRIC_HIT_RATIO, tags, value(next, MemoryCacheStatistics::getHitRatio));
+			theRegistry.counter(
+					METRIC_GETS,
+					Map.of(TAG_CACHE, cacheName, TAG_RESULT, "hit"),
+					value(next, MemoryCacheStatistics::getHitCount));
+			theRegistry.counter(
+					METRIC_GETS,
+					Map.of(TAG_CACHE, cacheName, TAG_RESULT, "miss"),
+					value(next, MemoryCacheStatistics::getMissCount));
+			theRegistry.counter(
+					METRIC_LOADS,
+					Map.of(TAG_CACHE, cacheName, TAG_RESULT, "success"),
+					value(next, t -> t.getLoadCount() - t.getLoadFailureCount()));
+			theRegistry.counter(
+					METRIC_LOADS,
+					Map.of(TAG_CACHE, cacheName, TAG_RESULT, "failure"),
+					value(next, MemoryCacheStatistics::getLoadFailureCount));
+			theRegistry.counter(METRIC_LOAD_DURATION, tags, value(next, MemoryCacheStatistics::getTotalLoadTimeNanos));
+			theRegistry.counter(METRIC_EVICTIONS, tags, value(next, MemoryCacheStatistics::getEvictionCount));
+			theRegistry.counter(METRIC_EVICTION_WEIGHT, tags, value(next, MemoryCacheStatistics::getEvictionWeight));
+			if (myMemoryCacheService.getStatistics(next).getMaximumBytes() != null) {
+				theRegistry.gauge(METRIC_ESTIMATED_BYTES, tags, value(next, MemoryCacheStatistics::getEstimatedBytes));
+			}
+		}
+	}
+
+	private DoubleSupplier value(
+			MemoryCacheService.CacheEnum theCache, ToDoubleFunction<MemoryCacheStatistics> theFunction) {
+		return () -> theFunction.applyAsDouble(myMemoryCacheService.getStatistics(theCache));
+	}
+}
@@ -25,18 +25,23 @@ import ca.uhn.fhir.jpa.model.entity.TagTypeEnum;
 import ca.uhn.fhir.sl.cache.Cache;
 import ca.uhn.fhir.sl.cache.CacheFactory;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
-import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 /**
@@ -44,12 +49,22 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  * <p>
  * The API is super simplistic, and caches are all 1-minute, max 10000 entries for starters. We could definitely add nuance to this,
  * which will be much easier now that this is being centralized. Some logging/monitoring would be good too.
+ * <p>
+ * If an {@link ISharedMemoryCache} is available, it is used as a second-level tier behind the local caches: local misses
+ * are looked up in the shared tier before falling back to the loading function, and new values are written to both. Values
+ * loaded inside a database transaction only reach the shared tier once that transaction commits. If a
+ * {@link MemoryCacheInvalidationBroadcaster} is registered, invalidating a cache on this node also invalidates it on the
+ * other nodes.
+ * </p>
  */
 // TODO: JA2 extract an interface for this class and use it everywhere
 public class MemoryCacheService {
 
 	private final JpaStorageSettings myStorageSettings;
 	private final EnumMap<CacheEnum, Cache<?, ?>> myCaches = new EnumMap<>(CacheEnum.class);
+	private final EnumMap<CacheEnum, Long> myMaximumBytes = new EnumMap<>(CacheEnum.class);
+	private ISharedMemoryCache mySharedCache;
+	private MemoryCacheInvalidationBroadcaster myInvalidationBroadcaster;
 
 	public MemoryCacheService(JpaStorageSettings theStorageSettings) {
 		myStorageSettings = theStorageSettings;
@@ -60,40 +75,99 @@ public class MemoryCacheService {
 	private void populateCaches() {
 		for (CacheEnum next : CacheEnum.values()) {
 
-			long timeoutSeconds;
-			int maximumSize;
-
-			switch (next) {
-				case CONCEPT_TRANSLATION:
-				case CONCEPT_TRANSLATION_REVERSE:
-					timeoutSeconds =
-							SECONDS.convert(myStorageSettings.getTranslationCachesExpireAfterWriteInMinutes(), MINUTES);
-					maximumSize = 10000;
-					break;
-				case PID_TO_FORCED_ID:
-				case FORCED_ID_TO_PID:
-				case MATCH_URL:
-				case RESOURCE_LOOKUP:
-				case HISTORY_COUNT:
-				case TAG_DEFINITION:
-				case RESOURCE_CONDITIONAL_CREATE_VERSION:
-				case FHIRPATH_EXPRESSION:
-				default:
-					timeoutSeconds = SECONDS.convert(1, MINUTES);
-					maximumSize = 10000;
-					if (myStorageSettings.isMassIngestionMode()) {
-						timeoutSeconds = SECONDS.convert(50, MINUTES);
-						maximumSize = 100000;
-					}
-					break;
+			long timeoutMillis = getTimeoutMillis(myStorageSettings, next);
+			int maximumSize = getMaximumSize(myStorageSettings, next);
+
+			boolean recordStats = myStorageSettings.isMemoryCacheStatisticsEnabled();
+			Long maximumBytes = myStorageSettings.getMemoryCacheMaximumBytes(next);
+			Cache<Object, Object> nextCache;
+			if (maximumBytes != null) {
+				nextCache = CacheFactory.buildWeighted(
+						timeoutMillis, maximumBytes, new MemoryCacheEntryWeigher(), recordStats);
+				myMaximumBytes.put(next, maximumBytes);
+			} else {
+				nextCache = CacheFactory.build(timeoutMillis, maximumSize, recordStats);
 			}
 
-			Cache<Object, Object> nextCache = CacheFactory.build(SECONDS.toMillis(timeoutSeconds), maximumSize);
-
 			myCaches.put(next, nextCache);
 		}
 	}
 
+	/**
+	 * Returns the time after which an entry in the given cache expires once it has been written. An
+	 * {@link ISharedMemoryCache} should expire its entries after the same time, since values found in
+	 * the shared tier are copied back into the local caches.
+	 *
+	 * @since 7.6.0
+	 */
+	public static long getTimeoutMillis(JpaStorageSettings theStorageSettings, CacheEnum theCache) {
+		switch (theCache) {
+			case CONCEPT_TRANSLATION:
+			case CONCEPT_TRANSLATION_REVERSE:
+				return MINUTES.toMillis(theStorageSettings.getTranslationCachesExpireAfterWriteInMinutes());
+			case PID_TO_FORCED_ID:
+			case FORCED_ID_TO_PID:
+			case MATCH_URL:
+			case RESOURCE_LOOKUP:
+			case HISTORY_COUNT:
+			case TAG_DEFINITION:
+			case RESOURCE_CONDITIONAL_CREATE_VERSION:
+			case FHIRPATH_EXPRESSION:
+			default:
+				if (theStorageSettings.isMassIngestionMode()) {
+					return MINUTES.toMillis(50);
+				}
+				return MINUTES.toMillis(1);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of entries held in the given cache
+	 *
+	 * @since 7.6.0
+	 */
+	public static int getMaximumSize(JpaStorageSettings theStorageSettings, CacheEnum theCache) {
+		switch (theCache) {
+			case CONCEPT_TRANSLATION:
+			case CONCEPT_TRANSLATION_REVERSE:
+				return 10000;
+			default:
+				if (theStorageSettings.isMassIngestionMode()) {
+					return 100000;
+				}
+				return 10000;
+		}
+	}
+
+	/**
+	 * Sets the second-level cache tier shared with the other nodes in the cluster, or <code>null</code> to only
+	 * use the local caches
+	 *
+	 * @since 7.6.0
+	 */
+	@Autowired(required = false)
+	public void setSharedCache(@Nullable ISharedMemoryCache theSharedCache) {
+		mySharedCache = theSharedCache;
+	}
+
+	/**
+	 * @since 7.6.0
+	 */
+	@Nullable
+	public ISharedMemoryCache getSharedCache() {
+		return mySharedCache;
+	}
+
+	/**
+	 * Sets the broadcaster used to tell the other nodes in the cluster when a cache has been invalidated. This is
+	 * normally called by the {@link MemoryCacheInvalidationBroadcaster} itself when it starts.
+	 *
+	 * @since 7.6.0
+	 */
+	public void setInvalidationBroadcaster(@Nullable MemoryCacheInvalidationBroadcaster theInvalidationBroadcaster) {
+		myInvalidationBroadcaster = theInvalidationBroadcaster;
+	}
+
 	public <K, T> T get(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		assert theCache.getKeyType().isAssignableFrom(theKey.getClass());
 		return doGet(theCache, theKey, theSupplier);
@@ -101,7 +175,39 @@ public class MemoryCacheService {
 
 	protected <K, T> T doGet(CacheEnum theCache, K theKey, Function<K, T> theSupplier) {
 		Cache<K, T> cache = getCache(theCache);
-		return cache.get(theKey, theSupplier);
+		ISharedMemoryCache sharedCache = getSharedCache(theCache);
+		if (sharedCache == null) {
+			return cache.get(theKey, theSupplier);
+		}
+		return cache.get(theKey, key -> {
+			T retVal = sharedCache.getIfPresent(theCache, key);
+			if (retVal == null) {
+				retVal = theSupplier.apply(key);
+				if (retVal != null) {
+					putInSharedCacheAfterCommit(sharedCache, theCache, key, retVal);
+				}
+			}
+			return retVal;
+		});
+	}
+
+	/**
+	 * A value loaded inside a database transaction may depend on uncommitted changes, so it
+	 * is only published to the other nodes once the transaction commits. The local cache is
+	 * not affected by this.
+	 */
+	private static <K, V> void putInSharedCacheAfterCommit(
+			ISharedMemoryCache theSharedCache, CacheEnum theCache, K theKey, V theValue) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					theSharedCache.put(theCache, theKey, theValue);
+				}
+			});
+		} else {
+			theSharedCache.put(theCache, theKey, theValue);
+		}
 	}
 
 	/**
@@ -126,7 +232,18 @@ public class MemoryCacheService {
 	}
 
 	protected <K, V> V doGetIfPresent(CacheEnum theCache, K theKey) {
-		return (V) getCache(theCache).getIfPresent(theKey);
+		Cache<K, V> cache = getCache(theCache);
+		V retVal = cache.getIfPresent(theKey);
+		if (retVal == null) {
+			ISharedMemoryCache sharedCache = getSharedCache(theCache);
+			if (sharedCache != null) {
+				retVal = sharedCache.getIfPresent(theCache, theKey);
+				if (retVal != null) {
+					cache.put(theKey, retVal);
+				}
+			}
+		}
+		return retVal;
 	}
 
 	public <K, V> void put(CacheEnum theCache, K theKey, V theValue) {
@@ -136,6 +253,10 @@ public class MemoryCacheService {
 
 	protected <K, V> void doPut(CacheEnum theCache, K theKey, V theValue) {
 		getCache(theCache).put(theKey, theValue);
+		ISharedMemoryCache sharedCache = getSharedCache(theCache);
+		if (sharedCache != null) {
+			sharedCache.put(theCache, theKey, theValue);
+		}
 	}
 
 	/**
@@ -169,22 +290,89 @@ public class MemoryCacheService {
 
 	@SuppressWarnings("unchecked")
 	protected <K, V> Map<K, V> doGetAllPresent(CacheEnum theCache, Collection<K> theKeys) {
-		return (Map<K, V>) getCache(theCache).getAllPresent(theKeys);
+		Cache<K, V> cache = getCache(theCache);
+		Map<K, V> retVal = (Map<K, V>) cache.getAllPresent(theKeys);
+		ISharedMemoryCache sharedCache = getSharedCache(theCache);
+		if (sharedCache != null && retVal.size() < theKeys.size()) {
+			List<K> missingKeys = new ArrayList<>(theKeys.size() - retVal.size());
+			for (K next : theKeys) {
+				if (!retVal.containsKey(next)) {
+					missingKeys.add(next);
+				}
+			}
+			Map<K, V> sharedValues = sharedCache.getAllPresent(theCache, missingKeys);
+			if (!sharedValues.isEmpty()) {
+				cache.putAll(sharedValues);
+				retVal = new HashMap<>(retVal);
+				retVal.putAll(sharedValues);
+			}
+		}
+		return retVal;
 	}
 
 	public void invalidateAllCaches() {
-		myCaches.values().forEach(Cache::invalidateAll);
+		invalidateCaches(CacheEnum.values());
 	}
 
 	private <K, T> Cache<K, T> getCache(CacheEnum theCache) {
 		return (Cache<K, T>) myCaches.get(theCache);
 	}
 
+	@Nullable
+	private ISharedMemoryCache getSharedCache(CacheEnum theCache) {
+		if (mySharedCache != null && theCache.isShareable()) {
+			return mySharedCache;
+		}
+		return null;
+	}
+
 	public long getEstimatedSize(CacheEnum theCache) {
 		return getCache(theCache).estimatedSize();
 	}
 
+	/**
+	 * Returns the statistics for the given cache. Hit, miss, load and eviction counts are only
+	 * recorded if {@link JpaStorageSettings#isMemoryCacheStatisticsEnabled()} is enabled, and
+	 * the estimated number of bytes is only available for caches bounded by
+	 * {@link JpaStorageSettings#setMemoryCacheMaximumBytes(CacheEnum, Long) size in bytes}.
+	 *
+	 * @since 7.6.0
+	 */
+	public MemoryCacheStatistics getStatistics(CacheEnum theCache) {
+		Cache<?, ?> cache = getCache(theCache);
+		Long maximumBytes = myMaximumBytes.get(theCache);
+		Long estimatedBytes = null;
+		if (maximumBytes != null && cache.weightedSize() >= 0) {
+			estimatedBytes = cache.weightedSize();
+		}
+		return new MemoryCacheStatistics(theCache, cache.estimatedSize(), estimatedBytes, maximumBytes, cache.stats());
+	}
+
+	/**
+	 * Invalidates the given caches on this node, in the shared cache tier (if any), and on
+	 * the other nodes in the cluster (if a {@link MemoryCacheInvalidationBroadcaster} is registered).
+	 */
 	public void invalidateCaches(CacheEnum... theCaches) {
+		List<CacheEnum> caches = Arrays.asList(theCaches);
+		invalidateLocalCaches(caches);
+		for (CacheEnum next : caches) {
+			ISharedMemoryCache sharedCache = getSharedCache(next);
+			if (sharedCache != null) {
+				sharedCache.invalidate(next);
+			}
+		}
+		if (myInvalidationBroadcaster != null) {
+			myInvalidationBroadcaster.broadcastInvalidation(caches);
+		}
+	}
+
+	/**
+	 * Invalidates the given caches on this node only. This is called when another node has
+	 * broadcast an invalidation.
+	 *
+	 * @since 7.6.0
+	 */
+	public void invalidateLocalCaches(Collection<CacheEnum> theCaches) {
 		for (CacheEnum next : theCaches) {
 			getCache(next).invalidateAll();
 		}
@@ -194,7 +382,11 @@ public class MemoryCacheService {
 		TAG_DEFINITION(TagDefinitionCacheKey.class),
 		RESOURCE_LOOKUP(String.class),
 		FORCED_ID_TO_PID(String.class),
-		FHIRPATH_EXPRESSION(String.class),
+		/**
+		 * Values are parsed expressions which are specific to the local FHIRPath engine, so this
+		 * cache is never placed in the {@link ISharedMemoryCache shared tier}
+		 */
+		FHIRPATH_EXPRESSION(String.class, false),
 		/**
 		 * Key type: {@literal Long}
 		 * Value type: {@literal Optional<String>}
@@ -212,10 +404,24 @@ public class MemoryCacheService {
 			return myKeyType;
 		}
 
+		/**
+		 * @return Should this cache be stored in the {@link ISharedMemoryCache shared tier} if one is configured
+		 * @since 7.6.0
+		 */
+		public boolean isShareable() {
+			return myShareable;
+		}
+
 		private final Class<?> myKeyType;
+		private final boolean myShareable;
 
 		CacheEnum(Class<?> theKeyType) {
+			this(theKeyType, true);
+		}
+
+		CacheEnum(Class<?> theKeyType, boolean theShareable) {
 			myKeyType = theKeyType;
+			myShareable = theShareable;
 		}
 	}
 
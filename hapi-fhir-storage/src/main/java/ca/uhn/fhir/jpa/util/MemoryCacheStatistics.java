@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.sl.cache.CacheStats;
+import jakarta.annotation.Nullable;
+
+/**
+ * Point-in-time statistics for one of the caches held by {@link MemoryCacheService}
+ *
+ * @see MemoryCacheService#getStatistics(MemoryCacheService.CacheEnum)
+ * @since 7.6.0
+ */
+public class MemoryCacheStatistics {
+
+	private final MemoryCacheService.CacheEnum myCache;
+	private final long myEstimatedSize;
+	private final Long myEstimatedBytes;
+	private final Long myMaximumBytes;
+	private final CacheStats myStats;
+
+	public MemoryCacheStatistics(
+			MemoryCacheService.CacheEnum theCache,
+			long theEstimatedSize,
+			@Nullable Long theEstimatedBytes,
+			@Nullable Long theMaximumBytes,
+			CacheStats theStats) {
+		myCache = theCache;
+		myEstimatedSize = theEstimatedSize;
+		myEstimatedBytes = theEstimatedBytes;
+		myMaximumBytes = theMaximumBytes;
+		myStats = theStats;
+	}
+
+	public MemoryCacheService.CacheEnum getCache() {
+		return myCache;
+	}
+
+	/**
+	 * @return The approximate number of entries in the cache
+	 */
+	public long getEstimatedSize() {
+		return myEstimatedSize;
+	}
+
+	/**
+	 * @return The approximate number of bytes held by the cache, or <code>null</code> if the cache
+	 * is not bounded by size in bytes
+	 */
+	@Nullable
+	public Long getEstimatedBytes() {
+		return myEstimatedBytes;
+	}
+
+	/**
+	 * @return The configured maximum number of bytes, or <code>null</code> if the cache is
+	 * bounded by its number of entries
+	 */
+	@Nullable
+	public Long getMaximumBytes() {
+		return myMaximumBytes;
+	}
+
+	public long getHitCount() {
+		return myStats.getHitCount();
+	}
+
+	public long getMissCount() {
+		return myStats.getMissCount();
+	}
+
+	public double getHitRatio() {
+		return myStats.getHitRate();
+	}
+
+	public long getLoadCount() {
+		return myStats.getLoadCount();
+	}
+
+	public long getLoadFailureCount() {
+		return myStats.getLoadFailureCount();
+	}
+
+	public long getTotalLoadTimeNanos() {
+		return myStats.getTotalLoadTimeNanos();
+	}
+
+	public double getAverageLoadPenaltyNanos() {
+		return myStats.getAverageLoadPenaltyNanos();
+	}
+
+	public long getEvictionCount() {
+		return myStats.getEvictionCount();
+	}
+
+	public long getEvictionWeight() {
+		return myStats.getEvictionWeight();
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * HAPI FHIR Storage api
+ * %%
+ * Copyright (C) 2014 - 2024 Smile CDR, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package ca.uhn.fhir.util;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+/**
+ * A fixed size thread pool (see {@link ThreadPoolUtil}) whose size is read from a setting
+ * each time work is submitted. The pool is created lazily on first use, and resized if the
+ * setting has changed since the last submission.
+ * <p>
+ * The queue holds a few tasks per thread. When it is full, the submitting thread waits for
+ * space, so tasks submitted to the pool must never submit further work to the same pool.
+ * </p>
+ *
+ * @since 7.6.0
+ */
+public class ResizableThreadPool {
+
+	private static final int QUEUE_CAPACITY_PER_THREAD = 4;
+	private final String myThreadNamePrefix;
+	private final IntSupplier myThreadCountSupplier;
+	private ThreadPoolTaskExecutor myExecutor;
+
+	/**
+	 * @param theThreadNamePrefix   The thread name prefix, which must end with a hyphen
+	 * @param theThreadCountSupplier Supplies the number of threads. Values below <code>1</code> are treated as <code>1</code>.
+	 */
+	public ResizableThreadPool(String theThreadNamePrefix, IntSupplier theThreadCountSupplier) {
+		Validate.isTrue(theThreadNamePrefix.endsWith("-"), "Thread pool prefix name must end with a hyphen");
+		myThreadNamePrefix = theThreadNamePrefix;
+		myThreadCountSupplier = theThreadCountSupplier;
+	}
+
+	public <T> Future<T> submit(Callable<T> theTask) {
+		return getExecutor().submit(theTask);
+	}
+
+	private synchronized ThreadPoolTaskExecutor getExecutor() {
+		int threadCount = Math.max(myThreadCountSupplier.getAsInt(), 1);
+		if (myExecutor == null) {
+			myExecutor = ThreadPoolUtil.newThreadPool(
+					threadCount, threadCount, myThreadNamePrefix, threadCount * QUEUE_CAPACITY_PER_THREAD);
+		} else if (myExecutor.getMaxPoolSize() != threadCount) {
+			// The core size can't exceed the max size, so grow the max first and shrink it last
+			if (threadCount > myExecutor.getMaxPoolSize()) {
+				myExecutor.setMaxPoolSize(threadCount);
+				myExecutor.setCorePoolSize(threadCount);
+			} else {
+				myExecutor.setCorePoolSize(threadCount);
+				myExecutor.setMaxPoolSize(threadCount);
+			}
+		}
+		return myExecutor;
+	}
+
+	public synchronized void stop() {
+		if (myExecutor != null) {
+			myExecutor.shutdown();
+			myExecutor = null;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.i18n.Msg;
+import ca.uhn.fhir.parser.DataFormatException;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Lz4UtilTest {
+
+	@Test
+	public void testRoundTrip() {
+		String input = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"Simpson\"}]}" + StringUtils.repeat("é", 5000);
+
+		byte[] compressed = Lz4Util.compress(input);
+
+		assertThat(compressed.length).isLessThan(input.length());
+		assertEquals(input, Lz4Util.decompress(compressed));
+	}
+
+	@Test
+	public void testRoundTripEmpty() {
+		assertEquals("", Lz4Util.decompress(Lz4Util.compress("")));
+	}
+
+	@Test
+	public void testDecompressMissingHeader() {
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(new byte[]{1, 2}));
+		assertThat(e.getMessage()).startsWith(Msg.code(2781));
+		assertThat(e.getCause().getMessage()).startsWith(Msg.code(2797) + "Missing length header");
+	}
+
+	@Test
+	public void testDecompressLengthHeaderTooLarge() {
+		byte[] compressed = Lz4Util.compress("Hello");
+		ByteBuffer.wrap(compressed).putInt(Integer.MAX_VALUE);
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(compressed));
+		assertThat(e.getMessage()).startsWith(Msg.code(2796) + "Failed to decompress contents: length header " + Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testDecompressNegativeLengthHeader() {
+		byte[] compressed = Lz4Util.compress("Hello");
+		ByteBuffer.wrap(compressed).putInt(-1);
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(compressed));
+		assertThat(e.getMessage()).startsWith(Msg.code(2796));
+	}
+
+	@Test
+	public void testDecompressLengthHeaderMismatch() {
+		byte[] compressed = Lz4Util.compress("Hello");
+		ByteBuffer.wrap(compressed).putInt(4);
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> Lz4Util.decompress(compressed));
+		assertThat(e.getMessage()).startsWith(Msg.code(2781));
+	}
+}
@@ -0,0 +1,89 @@
+package ca.uhn.fhir.jpa.dao;
+
+import ca.uhn.fhir.jpa.model.entity.StorageSettings;
+import ca.uhn.fhir.parser.DataFormatException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionIndexingExecutorTest {
+
+	private final StorageSettings myStorageSettings = new StorageSettings();
+	private final TransactionIndexingExecutor myExecutor = new TransactionIndexingExecutor(myStorageSettings);
+
+	@AfterEach
+	public void after() {
+		myExecutor.stop();
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertEquals(0, myStorageSettings.getTransactionIndexingThreadCount());
+		assertFalse(myExecutor.isEnabledFor(1000));
+	}
+
+	@Test
+	public void testSmallTransactionIsNotSplit() {
+		myStorageSettings.setTransactionIndexingThreadCount(4);
+		assertFalse(myExecutor.isEnabledFor(TransactionIndexingExecutor.MIN_BATCH_SIZE - 1));
+		assertTrue(myExecutor.isEnabledFor(TransactionIndexingExecutor.MIN_BATCH_SIZE));
+	}
+
+	@Test
+	public void testMapPreservesOrder() {
+		myStorageSettings.setTransactionIndexingThreadCount(4);
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+		List<String> outputs = myExecutor.map(inputs, t -> {
+			threadNames.add(Thread.currentThread().getName());
+			return Integer.toString(t);
+		});
+
+		assertThat(outputs).hasSize(100);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(Integer.toString(i), outputs.get(i));
+		}
+		assertThat(threadNames).allMatch(t -> t.startsWith("transaction-indexing-") || t.equals(Thread.currentThread().getName()));
+	}
+
+	@Test
+	public void testThreadCountChangedAtRuntime() {
+		List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+		myStorageSettings.setTransactionIndexingThreadCount(2);
+		assertThat(myExecutor.map(inputs, t -> t * 2)).hasSize(100);
+
+		myStorageSettings.setTransactionIndexingThreadCount(6);
+		assertThat(myExecutor.map(inputs, t -> t * 2)).hasSize(100);
+
+		myStorageSettings.setTransactionIndexingThreadCount(1);
+		List<Integer> outputs = myExecutor.map(inputs, t -> t * 2);
+		assertEquals(198, outputs.get(99));
+	}
+
+	@Test
+	public void testFailureIsPropagated() {
+		myStorageSettings.setTransactionIndexingThreadCount(2);
+		List<Integer> inputs = IntStream.range(0, 30).boxed().collect(Collectors.toList());
+
+		DataFormatException e = assertThrows(DataFormatException.class, () -> myExecutor.map(inputs, t -> {
+			if (t == 25) {
+				throw new DataFormatException("Bad resource");
+			}
+			return t;
+		}));
+		assertEquals("Bad resource", e.getMessage());
+	}
+}
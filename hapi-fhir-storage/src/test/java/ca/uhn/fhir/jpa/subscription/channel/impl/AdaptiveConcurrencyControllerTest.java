@@ -0,0 +1,77 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveConcurrencyControllerTest {
+
+	private final ChannelMetrics myMetrics = new ChannelMetrics();
+	private final List<Integer> myAppliedConcurrency = new ArrayList<>();
+	private final AdaptiveConcurrencyController mySvc =
+			new AdaptiveConcurrencyController("test", myMetrics, 2, 5, myAppliedConcurrency::add);
+
+	@Test
+	void testIncreaseWhileMessagesAreWaiting() {
+		// Submitted but never started, so they stay queued
+		for (int i = 0; i < 10; i++) {
+			myMetrics.decorate(() -> {});
+		}
+
+		for (int i = 0; i < 10; i++) {
+			mySvc.adjust();
+		}
+
+		assertThat(myAppliedConcurrency).containsExactly(3, 4, 5);
+		assertEquals(5, mySvc.getConcurrency());
+	}
+
+	@Test
+	void testDecreaseWhenIdle() {
+		Runnable queued = myMetrics.decorate(() -> {});
+		mySvc.adjust();
+		mySvc.adjust();
+		mySvc.adjust();
+		assertEquals(5, mySvc.getConcurrency());
+
+		// Drain the queue - consumers are now idle
+		queued.run();
+
+		for (int i = 0; i < 10; i++) {
+			mySvc.adjust();
+		}
+		assertEquals(2, mySvc.getConcurrency());
+	}
+
+	@Test
+	void testMultiplicativeDecreaseWhenHandlingTimeRises() {
+		myMetrics.decorate(() -> {});
+		for (int i = 0; i < 3; i++) {
+			runTask(1);
+			mySvc.adjust();
+		}
+		assertEquals(5, mySvc.getConcurrency());
+
+		// Handling suddenly takes much longer than the baseline
+		runTask(200);
+		mySvc.adjust();
+
+		assertEquals(3, mySvc.getConcurrency());
+	}
+
+	private void runTask(long theMillis) {
+		myMetrics
+				.decorate(() -> {
+					try {
+						Thread.sleep(theMillis);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				})
+				.run();
+	}
+}
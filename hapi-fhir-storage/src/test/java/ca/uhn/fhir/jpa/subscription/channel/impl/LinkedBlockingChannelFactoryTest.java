@@ -14,10 +14,14 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
@@ -36,7 +40,7 @@ class LinkedBlockingChannelFactoryTest {
 	};
 	@BeforeEach
 	public void before() {
-		myReceivedPayloads = new ArrayList<>();
+		myReceivedPayloads = Collections.synchronizedList(new ArrayList<>());
 	}
 
 	@Test
@@ -100,6 +104,65 @@ class LinkedBlockingChannelFactoryTest {
 		successfulProcessedLatch.await(20, TimeUnit.SECONDS);
 	}
 
+	@Test
+	void testMetricsArePublished() {
+		// setup
+		Map<String, DoubleSupplier> meters = new ConcurrentHashMap<>();
+		myChannelFactory.setMeterRegistry((name, tags, value) -> meters.put(name + tags.getOrDefault("result", ""), value));
+		LinkedBlockingChannel producer = (LinkedBlockingChannel) buildChannels(() -> {});
+
+		// execute
+		producer.send(new TestMessage(TEST_PAYLOAD));
+		producer.send(new TestMessage(TEST_PAYLOAD));
+
+		// verify
+		await().until(() -> meters.get(LinkedBlockingChannelFactory.METRIC_MESSAGES + "success").getAsDouble() == 2);
+		assertEquals(0, meters.get(LinkedBlockingChannelFactory.METRIC_QUEUE_DEPTH).getAsDouble());
+		assertEquals(1, meters.get(LinkedBlockingChannelFactory.METRIC_CONSUMERS_MAX).getAsDouble());
+		assertEquals(0, meters.get(LinkedBlockingChannelFactory.METRIC_MESSAGES + "failure").getAsDouble());
+		assertThat(meters.get(LinkedBlockingChannelFactory.METRIC_PROCESSING_TIME).getAsDouble()).isPositive();
+		assertEquals(2, producer.getMetrics().getCompletedCount());
+	}
+
+	@Test
+	void testVirtualThreadConsumers() {
+		// Falls back to a thread pool on JVMs without virtual threads
+		myChannelFactory.setUseVirtualThreads(true);
+		LinkedBlockingChannel producer = (LinkedBlockingChannel) buildChannels(() -> {});
+
+		producer.send(new TestMessage(TEST_PAYLOAD));
+
+		await().until(() -> myReceivedPayloads.size() == 1);
+		assertEquals(TEST_PAYLOAD, myReceivedPayloads.get(0));
+	}
+
+	@Test
+	void testAdaptiveConcurrencyGrowsUnderBacklog() {
+		// setup
+		myChannelFactory.setAdaptiveConcurrency(true);
+		myChannelFactory.setMaxConcurrentConsumers(4);
+		myChannelFactory.setAdaptiveConcurrencyIntervalMillis(20);
+		CountDownLatch release = new CountDownLatch(1);
+		LinkedBlockingChannel producer = (LinkedBlockingChannel) buildChannels(() -> {
+			try {
+				release.await(20, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		// execute
+		for (int i = 0; i < 10; i++) {
+			producer.send(new TestMessage(TEST_PAYLOAD));
+		}
+
+		// verify - consumers are added while messages are waiting, up to the max
+		await().until(() -> producer.getMetrics().getActiveCount() == 4);
+		release.countDown();
+		await().until(() -> producer.getMetrics().getCompletedCount() == 10);
+		myChannelFactory.stop();
+	}
+
 	@Nonnull
 	private Runnable failTwiceThenProceed(CountDownLatch theSuccessfulProcessedLatch) {
 		AtomicInteger failCounter = new AtomicInteger(0);
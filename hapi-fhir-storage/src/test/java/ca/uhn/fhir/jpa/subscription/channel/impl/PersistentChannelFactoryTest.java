@@ -0,0 +1,175 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelConsumerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.ChannelProducerSettings;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelProducer;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelReceiver;
+import ca.uhn.fhir.rest.server.messaging.json.BaseJsonMessage;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersistentChannelFactoryTest {
+
+	private static final String TEST_CHANNEL_NAME = "test-channel-name";
+
+	@TempDir
+	Path myDirectory;
+
+	private PersistentChannelFactory myChannelFactory;
+	private final List<String> myReceivedPayloads = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	public void after() {
+		if (myChannelFactory != null) {
+			myChannelFactory.stop();
+		}
+	}
+
+	@Test
+	void testDeliverInOrder() {
+		myChannelFactory = newFactory();
+		IChannelProducer producer = buildChannels(message -> myReceivedPayloads.add((String) message.getPayload()));
+
+		for (int i = 0; i < 20; i++) {
+			producer.send(new TestJsonMessage("payload-" + i));
+		}
+
+		await().until(() -> myReceivedPayloads.size() == 20);
+		for (int i = 0; i < 20; i++) {
+			assertEquals("payload-" + i, myReceivedPayloads.get(i));
+		}
+		await().until(() -> ((PersistentChannel) producer).getPendingMessageCount() == 0);
+	}
+
+	@Test
+	void testUnhandledMessagesAreRedeliveredAfterRestart() throws InterruptedException {
+		// Nothing is subscribed, so the messages stay in the log
+		myChannelFactory = newFactory();
+		IChannelProducer producer = myChannelFactory.getOrCreateProducer(
+				TEST_CHANNEL_NAME, TestJsonMessage.class, new ChannelProducerSettings());
+		producer.send(new TestJsonMessage("payload-0"));
+		producer.send(new TestJsonMessage("payload-1"));
+		myChannelFactory.stop();
+
+		myChannelFactory = newFactory();
+		CountDownLatch latch = new CountDownLatch(2);
+		buildChannels(message -> {
+			myReceivedPayloads.add((String) message.getPayload());
+			latch.countDown();
+		});
+
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(myReceivedPayloads).containsExactly("payload-0", "payload-1");
+	}
+
+	@Test
+	void testStopWaitsForMessagesBeingHandled() throws InterruptedException {
+		myChannelFactory = newFactory();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		IChannelProducer producer = buildChannels(message -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			myReceivedPayloads.add((String) message.getPayload());
+		});
+		producer.send(new TestJsonMessage("payload-0"));
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+		PersistentChannelFactory factory = myChannelFactory;
+		Thread stopThread = new Thread(factory::stop);
+		stopThread.start();
+		await().until(() -> stopThread.getState() == Thread.State.TIMED_WAITING);
+		release.countDown();
+		stopThread.join(10000);
+		assertThat(stopThread.isAlive()).isFalse();
+		assertThat(myReceivedPayloads).containsExactly("payload-0");
+
+		// The message was committed before the log was closed, so it isn't redelivered
+		myReceivedPayloads.clear();
+		myChannelFactory = newFactory();
+		producer = buildChannels(message -> myReceivedPayloads.add((String) message.getPayload()));
+		producer.send(new TestJsonMessage("payload-1"));
+		await().until(() -> myReceivedPayloads.contains("payload-1"));
+		assertThat(myReceivedPayloads).containsExactly("payload-1");
+	}
+
+	@Test
+	void testSendNonJsonMessage() {
+		myChannelFactory = newFactory();
+		IChannelProducer producer = myChannelFactory.getOrCreateProducer(
+				TEST_CHANNEL_NAME, TestJsonMessage.class, new ChannelProducerSettings());
+
+		assertThrows(MessageDeliveryException.class, () -> producer.send(new GenericMessage<>("payload")));
+	}
+
+	@Test
+	void testSendTimesOutWhenFull() {
+		myChannelFactory = newFactory();
+		myChannelFactory.setMaxPendingMessages(1);
+		myChannelFactory.setSendTimeoutMillis(10);
+		IChannelProducer producer = myChannelFactory.getOrCreateProducer(
+				TEST_CHANNEL_NAME, TestJsonMessage.class, new ChannelProducerSettings());
+
+		producer.send(new TestJsonMessage("payload-0"));
+		assertThrows(MessageDeliveryException.class, () -> producer.send(new TestJsonMessage("payload-1")));
+	}
+
+	private PersistentChannelFactory newFactory() {
+		PersistentChannelFactory retVal = new PersistentChannelFactory((name, settings) -> name, myDirectory);
+		retVal.setSegmentSizeBytes(4096);
+		return retVal;
+	}
+
+	private IChannelProducer buildChannels(MessageHandler theHandler) {
+		ChannelProducerSettings producerSettings = new ChannelProducerSettings();
+		producerSettings.setConcurrentConsumers(1);
+		IChannelProducer producer =
+				myChannelFactory.getOrCreateProducer(TEST_CHANNEL_NAME, TestJsonMessage.class, producerSettings);
+		ChannelConsumerSettings consumerSettings = new ChannelConsumerSettings();
+		consumerSettings.setConcurrentConsumers(1);
+		IChannelReceiver receiver =
+				myChannelFactory.getOrCreateReceiver(TEST_CHANNEL_NAME, TestJsonMessage.class, consumerSettings);
+		receiver.subscribe(theHandler);
+		return producer;
+	}
+
+	public static class TestJsonMessage extends BaseJsonMessage<String> {
+
+		@JsonProperty("payload")
+		private String myPayload;
+
+		public TestJsonMessage() {
+			super();
+		}
+
+		public TestJsonMessage(String thePayload) {
+			myPayload = thePayload;
+		}
+
+		@Override
+		public String getPayload() {
+			return myPayload;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package ca.uhn.fhir.jpa.subscription.channel.impl;
+
+import ca.uhn.fhir.jpa.subscription.channel.api.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedMessageLogTest {
+
+	@TempDir
+	Path myDirectory;
+
+	@Test
+	void testAppendAndRead() throws InterruptedException {
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 1024, 100)) {
+			assertTrue(log.append(bytes("one"), 0));
+			assertTrue(log.append(bytes("two"), 0));
+
+			SegmentedMessageLog.Record first = log.read(0, 0);
+			SegmentedMessageLog.Record second = log.read(first.getNextOffset(), 0);
+			assertEquals("one", string(first.getData()));
+			assertEquals("two", string(second.getData()));
+			assertNull(log.read(second.getNextOffset(), 0));
+			assertEquals(2, log.getPendingCount());
+		}
+	}
+
+	@Test
+	void testRollOverToNewSegment() throws Exception {
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 64, 100)) {
+			for (int i = 0; i < 10; i++) {
+				assertTrue(log.append(bytes("message-" + i), 0));
+			}
+
+			long offset = 0;
+			for (int i = 0; i < 10; i++) {
+				SegmentedMessageLog.Record record = log.read(offset, 0);
+				assertEquals("message-" + i, string(record.getData()));
+				offset = record.getNextOffset();
+			}
+			assertThat(countSegments()).isGreaterThan(1);
+
+			// Committing past the old segments deletes them
+			for (int i = 0; i < 10; i++) {
+				log.acknowledge();
+			}
+			log.commit(offset);
+			assertEquals(0, log.getPendingCount());
+			assertThat(countSegments()).isLessThanOrEqualTo(1);
+		}
+	}
+
+	@Test
+	void testReopenResumesFromCommittedOffset() throws InterruptedException {
+		long committed;
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 64, 100)) {
+			for (int i = 0; i < 5; i++) {
+				log.append(bytes("message-" + i), 0);
+			}
+			SegmentedMessageLog.Record first = log.read(0, 0);
+			SegmentedMessageLog.Record second = log.read(first.getNextOffset(), 0);
+			log.acknowledge();
+			log.acknowledge();
+			committed = second.getNextOffset();
+			log.commit(committed);
+		}
+
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 64, 100)) {
+			assertEquals(committed, log.getCommittedOffset());
+			assertEquals(3, log.getPendingCount());
+			assertEquals("message-2", string(log.read(committed, 0).getData()));
+
+			// New messages are appended after the recovered ones
+			log.append(bytes("message-5"), 0);
+			long offset = committed;
+			for (int i = 2; i <= 5; i++) {
+				SegmentedMessageLog.Record record = log.read(offset, 0);
+				assertEquals("message-" + i, string(record.getData()));
+				offset = record.getNextOffset();
+			}
+		}
+	}
+
+	@Test
+	void testAppendTimesOutWhenFull() throws InterruptedException {
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 1024, 2)) {
+			assertTrue(log.append(bytes("one"), 0));
+			assertTrue(log.append(bytes("two"), 0));
+			assertFalse(log.append(bytes("three"), 10));
+
+			log.acknowledge();
+			assertTrue(log.append(bytes("three"), 0));
+		}
+	}
+
+	@Test
+	void testPayloadTooLarge() {
+		try (SegmentedMessageLog log = new SegmentedMessageLog(myDirectory, 64, 100)) {
+			assertThrows(PayloadTooLargeException.class, () -> log.append(new byte[100], 0));
+		}
+	}
+
+	private long countSegments() throws Exception {
+		try (Stream<Path> files = Files.list(myDirectory)) {
+			return files.filter(t -> t.getFileName().toString().endsWith(".segment")).count();
+		}
+	}
+
+	private static byte[] bytes(String theString) {
+		return theString.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] theBytes) {
+		return new String(theBytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,184 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import ca.uhn.fhir.jpa.api.model.TranslationQuery;
+import ca.uhn.fhir.jpa.subscription.channel.api.IChannelFactory;
+import ca.uhn.fhir.jpa.subscription.channel.impl.LinkedBlockingChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MemoryCacheServiceSharedCacheTest {
+
+	private final JpaStorageSettings myStorageSettings = new JpaStorageSettings() {
+		@Override
+		public Long getTranslationCachesExpireAfterWriteInMinutes() {
+			// Expire translations immediately so that we can test expiry without waiting
+			return 0L;
+		}
+	};
+	private final InJvmSharedMemoryCache mySharedCache = new InJvmSharedMemoryCache(myStorageSettings);
+	private MemoryCacheService myNode1;
+	private MemoryCacheService myNode2;
+	private MemoryCacheInvalidationBroadcaster myBroadcaster1;
+	private MemoryCacheInvalidationBroadcaster myBroadcaster2;
+
+	@BeforeEach
+	public void before() {
+		myNode1 = newNode();
+		myNode2 = newNode();
+
+		LinkedBlockingChannel channel = LinkedBlockingChannel.newSynchronous(MemoryCacheInvalidationBroadcaster.CHANNEL_NAME);
+		IChannelFactory channelFactory = mock(IChannelFactory.class);
+		when(channelFactory.getOrCreateProducer(eq(MemoryCacheInvalidationBroadcaster.CHANNEL_NAME), any(), any())).thenReturn(channel);
+		when(channelFactory.getOrCreateReceiver(eq(MemoryCacheInvalidationBroadcaster.CHANNEL_NAME), any(), any())).thenReturn(channel);
+		myBroadcaster1 = new MemoryCacheInvalidationBroadcaster(channelFactory, myNode1);
+		myBroadcaster1.start();
+		myBroadcaster2 = new MemoryCacheInvalidationBroadcaster(channelFactory, myNode2);
+		myBroadcaster2.start();
+	}
+
+	@AfterEach
+	public void after() {
+		myBroadcaster1.stop();
+		myBroadcaster2.stop();
+	}
+
+	private MemoryCacheService newNode() {
+		MemoryCacheService retVal = new MemoryCacheService(myStorageSettings);
+		retVal.setSharedCache(mySharedCache);
+		return retVal;
+	}
+
+	@Test
+	public void testValuePutOnOneNodeIsVisibleOnAnother() {
+		myNode1.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|bar", 123L);
+
+		Long value = myNode2.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|bar");
+		assertEquals(123L, value);
+		assertEquals(1, myNode2.getEstimatedSize(MemoryCacheService.CacheEnum.MATCH_URL));
+	}
+
+	@Test
+	public void testSharedValueExpiresWithLocalValue() {
+		TranslationQuery query = new TranslationQuery();
+		query.setUrl("http://foo/ConceptMap");
+		myNode1.put(MemoryCacheService.CacheEnum.CONCEPT_TRANSLATION, query, "value");
+
+		assertNull(myNode1.getIfPresent(MemoryCacheService.CacheEnum.CONCEPT_TRANSLATION, query));
+		assertNull(mySharedCache.getIfPresent(MemoryCacheService.CacheEnum.CONCEPT_TRANSLATION, query));
+		assertNull(myNode2.getIfPresent(MemoryCacheService.CacheEnum.CONCEPT_TRANSLATION, query));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {true, false})
+	public void testSharedCachePolicyMatchesLocalCachePolicy(boolean theMassIngestionMode) {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setMassIngestionMode(theMassIngestionMode);
+
+		long expectedTimeout = theMassIngestionMode ? MINUTES.toMillis(50) : MINUTES.toMillis(1);
+		assertEquals(
+				expectedTimeout,
+				MemoryCacheService.getTimeoutMillis(storageSettings, MemoryCacheService.CacheEnum.MATCH_URL));
+		assertEquals(
+				theMassIngestionMode ? 100000 : 10000,
+				MemoryCacheService.getMaximumSize(storageSettings, MemoryCacheService.CacheEnum.MATCH_URL));
+		assertEquals(
+				MINUTES.toMillis(JpaStorageSettings.DEFAULT_TRANSLATION_CACHES_EXPIRE_AFTER_WRITE_IN_MINUTES),
+				MemoryCacheService.getTimeoutMillis(storageSettings, MemoryCacheService.CacheEnum.CONCEPT_TRANSLATION));
+	}
+
+	@Test
+	public void testGetUsesSharedValueBeforeLoading() {
+		String loaded = myNode1.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+		assertEquals("1", loaded);
+
+		String value = myNode2.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "2");
+		assertEquals("1", value);
+	}
+
+	@Test
+	public void testGetInRolledBackTransactionIsNotShared() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			String loaded = myNode1.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+			assertEquals("1", loaded);
+			assertNull(mySharedCache.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A"));
+
+			TransactionSynchronizationUtils.invokeAfterCompletion(
+					TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertNull(mySharedCache.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A"));
+		String value = myNode2.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "2");
+		assertEquals("2", value);
+	}
+
+	@Test
+	public void testGetInCommittedTransactionIsShared() {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			myNode1.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+			assertNull(mySharedCache.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A"));
+
+			TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		String value = myNode2.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "2");
+		assertEquals("1", value);
+	}
+
+	@Test
+	public void testGetAllPresentCombinesLocalAndSharedValues() {
+		myNode1.put(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", "1");
+		myNode2.put(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/B", "2");
+
+		Map<String, String> values = myNode2.getAllPresent(
+				MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, List.of("Patient/A", "Patient/B", "Patient/C"));
+		assertThat(values).containsOnly(Map.entry("Patient/A", "1"), Map.entry("Patient/B", "2"));
+	}
+
+	@Test
+	public void testUnshareableCacheIsNotShared() {
+		myNode1.put(MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION, "Patient.name", "parsed");
+
+		assertNull(myNode2.getIfPresent(MemoryCacheService.CacheEnum.FHIRPATH_EXPRESSION, "Patient.name"));
+	}
+
+	@Test
+	public void testInvalidationIsBroadcast() {
+		myNode1.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|bar", 123L);
+		myNode2.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|bar");
+		myNode2.put(MemoryCacheService.CacheEnum.HISTORY_COUNT, MemoryCacheService.HistoryCountKey.forSystem(), 5);
+		assertEquals(1, myNode2.getEstimatedSize(MemoryCacheService.CacheEnum.MATCH_URL));
+
+		myNode1.invalidateCaches(MemoryCacheService.CacheEnum.MATCH_URL);
+
+		assertEquals(0, mySharedCache.getEstimatedSize(MemoryCacheService.CacheEnum.MATCH_URL));
+		assertNull(myNode2.getIfPresent(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=foo|bar"));
+		Integer historyCount = myNode2.getIfPresent(
+				MemoryCacheService.CacheEnum.HISTORY_COUNT, MemoryCacheService.HistoryCountKey.forSystem());
+		assertEquals(5, historyCount);
+	}
+}
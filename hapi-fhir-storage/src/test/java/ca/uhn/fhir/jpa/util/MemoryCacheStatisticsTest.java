@@ -0,0 +1,109 @@
+package ca.uhn.fhir.jpa.util;
+
+import ca.uhn.fhir.context.support.TranslateConceptResult;
+import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MemoryCacheStatisticsTest {
+
+	@Test
+	public void testStatisticsAreRecorded() {
+		MemoryCacheService svc = new MemoryCacheService(new JpaStorageSettings());
+
+		svc.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+		svc.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+		svc.getIfPresent(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/B");
+
+		MemoryCacheStatistics stats = svc.getStatistics(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID);
+		assertEquals(1, stats.getEstimatedSize());
+		assertEquals(1, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(1, stats.getLoadCount());
+		assertEquals(1.0 / 3.0, stats.getHitRatio(), 0.0001);
+		assertNull(stats.getMaximumBytes());
+		assertNull(stats.getEstimatedBytes());
+	}
+
+	@Test
+	public void testStatisticsDisabled() {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setMemoryCacheStatisticsEnabled(false);
+		MemoryCacheService svc = new MemoryCacheService(storageSettings);
+
+		svc.get(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID, "Patient/A", t -> "1");
+
+		MemoryCacheStatistics stats = svc.getStatistics(MemoryCacheService.CacheEnum.FORCED_ID_TO_PID);
+		assertEquals(1, stats.getEstimatedSize());
+		assertEquals(0, stats.getMissCount());
+	}
+
+	@Test
+	public void testCacheBoundedByBytes() throws InterruptedException {
+		JpaStorageSettings storageSettings = new JpaStorageSettings();
+		storageSettings.setMemoryCacheMaximumBytes(MemoryCacheService.CacheEnum.MATCH_URL, 10_000L);
+		MemoryCacheService svc = new MemoryCacheService(storageSettings);
+
+		for (int i = 0; i < 1000; i++) {
+			svc.put(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=http://foo|" + i, (long) i);
+		}
+
+		// Caffeine evicts asynchronously
+		MemoryCacheStatistics stats = svc.getStatistics(MemoryCacheService.CacheEnum.MATCH_URL);
+		for (int i = 0; i < 100 && stats.getEstimatedBytes() > 10_000L; i++) {
+			Thread.sleep(100);
+			stats = svc.getStatistics(MemoryCacheService.CacheEnum.MATCH_URL);
+		}
+		assertEquals(10_000L, stats.getMaximumBytes());
+		assertNotNull(stats.getEstimatedBytes());
+		assertThat(stats.getEstimatedBytes()).isBetween(1L, 10_000L);
+		assertThat(stats.getEstimatedSize()).isLessThan(1000);
+		assertThat(stats.getEvictionCount()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testWeigherCountsTranslationResults() {
+		List<TranslateConceptResult> results = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			results.add(new TranslateConceptResult()
+					.setSystem("http://loinc.org")
+					.setCode("1234-" + i)
+					.setDisplay("A fairly long display name for code " + i));
+		}
+
+		int small = new MemoryCacheEntryWeigher().weigh("key", results.subList(0, 1));
+		int large = new MemoryCacheEntryWeigher().weigh("key", results);
+		assertThat(large).isGreaterThan(small * 5);
+	}
+
+	@Test
+	public void testBindMetrics() {
+		MemoryCacheService svc = new MemoryCacheService(new JpaStorageSettings());
+		svc.get(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=a|b", t -> 1L);
+		svc.get(MemoryCacheService.CacheEnum.MATCH_URL, "Patient?identifier=a|b", t -> 1L);
+
+		Map<String, DoubleSupplier> meters = new HashMap<>();
+		new MemoryCacheMetricsBinder(svc).bindTo((theName, theTags, theValueSupplier) -> {
+			if ("MATCH_URL".equals(theTags.get(MemoryCacheMetricsBinder.TAG_CACHE))) {
+				String result = theTags.get(MemoryCacheMetricsBinder.TAG_RESULT);
+				meters.put(result != null ? theName + "." + result : theName, theValueSupplier);
+			}
+		});
+
+		assertEquals(1.0, meters.get(MemoryCacheMetricsBinder.METRIC_SIZE).getAsDouble());
+		assertEquals(1.0, meters.get(MemoryCacheMetricsBinder.METRIC_GETS + ".hit").getAsDouble());
+		assertEquals(1.0, meters.get(MemoryCacheMetricsBinder.METRIC_GETS + ".miss").getAsDouble());
+		assertEquals(0.5, meters.get(MemoryCacheMetricsBinder.METRIC_HIT_RATIO).getAsDouble());
+		assertThat(meters).doesNotContainKey(MemoryCacheMetricsBinder.METRIC_ESTIMATED_BYTES);
+	}
+}
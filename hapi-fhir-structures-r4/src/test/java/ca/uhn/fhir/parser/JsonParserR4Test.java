@@ -70,6 +70,7 @@ import java.util.concurrent.TimeUnit;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -94,6 +95,7 @@ public class JsonParserR4Test extends BaseTest {
 	@AfterEach
 	public void afterEach() {
 		ourCtx.getParserOptions().setAutoContainReferenceTargetsWithNoId(true);
+		ourCtx.getParserOptions().setStreamingJsonParse(false);
 	}
 
 	@Test
@@ -296,6 +298,42 @@ public class JsonParserR4Test extends BaseTest {
 		assertEquals("12345", getPatientIdValue(bundle, 1));
 	}
 
+	@Test
+	public void testStreamingParseProducesSameResult() throws Exception {
+		String bundleText = loadResource("/bundle-with-two-patient-resources.json");
+		String observationText = "{\"resourceType\":\"Observation\",\"id\":\"1\",\"status\":\"final\"," +
+			"\"_status\":{\"extension\":[{\"url\":\"http://foo\",\"valueString\":\"bar\"}]}," +
+			"\"_issued\":{\"id\":\"issued-id\"}," +
+			"\"valueQuantity\":{\"value\":1.500,\"unit\":\"mg\"}," +
+			"\"component\":[{\"valueInteger\":+12,\"valueBoolean\":false}]}";
+
+		ourCtx.getParserOptions().setStreamingJsonParse(false);
+		String expectedBundle = ourCtx.newJsonParser().encodeResourceToString(ourCtx.newJsonParser().parseResource(Bundle.class, bundleText));
+		String expectedObservation = ourCtx.newJsonParser().encodeResourceToString(ourCtx.newJsonParser().parseResource(observationText));
+
+		ourCtx.getParserOptions().setStreamingJsonParse(true);
+		Bundle bundle = ourCtx.newJsonParser().parseResource(Bundle.class, bundleText);
+		assertEquals("12346", getPatientIdValue(bundle, 0));
+		assertEquals(expectedBundle, ourCtx.newJsonParser().encodeResourceToString(bundle));
+
+		Observation observation = (Observation) ourCtx.newJsonParser().parseResource(observationText);
+		assertEquals("1.500", observation.getValueQuantity().getValueElement().getValueAsString());
+		assertEquals(expectedObservation, ourCtx.newJsonParser().encodeResourceToString(observation));
+	}
+
+	@Test
+	public void testStreamingParseTrailingContent() {
+		String input = "{\"resourceType\":\"Patient\"} {}";
+		DataFormatException treeFailure =
+				assertThrows(DataFormatException.class, () -> ourCtx.newJsonParser().parseResource(input));
+		assertThat(treeFailure.getMessage()).startsWith(Msg.code(1861) + "Failed to parse JSON encoded FHIR content: Trailing token (of type START_OBJECT) found after value");
+
+		ourCtx.getParserOptions().setStreamingJsonParse(true);
+		DataFormatException streamingFailure =
+				assertThrows(DataFormatException.class, () -> ourCtx.newJsonParser().parseResource(input));
+		assertEquals(treeFailure.getMessage(), streamingFailure.getMessage());
+	}
+
 	private String getPatientIdValue(Bundle input, int entry) {
 		final DocumentReference documentReference = (DocumentReference) input.getEntry().get(entry).getResource();
 		final Patient patient = (Patient) documentReference.getSubject().getResource();
@@ -3,6 +3,7 @@ package ca.uhn.fhir.util;
 import ca.uhn.fhir.context.FhirContext;
 import org.hl7.fhir.instance.model.api.IBase;
 import org.hl7.fhir.instance.model.api.IBaseParameters;
+import org.hl7.fhir.r4.model.DecimalType;
 import org.hl7.fhir.r4.model.IntegerType;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.StringType;
@@ -92,4 +93,22 @@ public class ParametersUtilR4Test {
 		List<String> results = ParametersUtil.getNamedParameterPartAsString(ourFhirContext, parameters, "link", "linkCreated");
 		assertEquals(expected, results.get(0));
 	}
+
+	@Test
+	public void testAddPartInteger64() {
+		// setup
+		IBaseParameters parameters = ParametersUtil.newInstance(ourFhirContext);
+		IBase resultPart = ParametersUtil.addParameterToParameters(ourFhirContext, parameters, "cache");
+
+		// execute
+		ParametersUtil.addPartInteger64(ourFhirContext, resultPart, "small", 123L);
+		ParametersUtil.addPartInteger64(ourFhirContext, resultPart, "large", 10_000_000_000L);
+
+		// verify
+		Parameters.ParametersParameterComponent part = ((Parameters) parameters).getParameterFirstRep();
+		assertThat(part.getPart().get(0).getValue()).isInstanceOf(IntegerType.class);
+		assertThat(part.getPart().get(1).getValue()).isInstanceOf(DecimalType.class);
+		assertEquals("123", ParametersUtil.getNamedParameterPartAsString(ourFhirContext, parameters, "cache", "small").get(0));
+		assertEquals("10000000000", ParametersUtil.getNamedParameterPartAsString(ourFhirContext, parameters, "cache", "large").get(0));
+	}
 }